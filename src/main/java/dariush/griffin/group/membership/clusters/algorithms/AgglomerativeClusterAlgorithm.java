@@ -18,147 +18,472 @@
  */
 package dariush.griffin.group.membership.clusters.algorithms;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
+import dariush.griffin.group.membership.clusters.metrics.DistanceMetric;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
 import dariush.griffin.group.membership.clusters.model.Cluster;
 import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.Member;
 import dariush.griffin.group.membership.clusters.model.MembershipMapping;
-import dariush.griffin.group.membership.clusters.utilities.GroupCache;
+import dariush.griffin.group.membership.clusters.utilities.DistanceCache;
+import dariush.griffin.group.membership.clusters.utilities.EdgeSource;
+import dariush.griffin.group.membership.clusters.utilities.GridIndex;
+import dariush.griffin.group.membership.clusters.utilities.IndexedGroups;
+import dariush.griffin.group.membership.clusters.utilities.PostingLists;
+import dariush.griffin.group.membership.clusters.utilities.SparseProductEdges;
+import dariush.griffin.group.membership.clusters.utilities.TiledAllPairsEdges;
+import dariush.griffin.group.membership.clusters.utilities.UnionFind;
+import dariush.griffin.group.membership.clusters.utilities.VantagePointTree;
 
-import static dariush.griffin.group.membership.clusters.utilities.ClusterUtilities.calculateSquaredEuclideanDistance;
+import static dariush.griffin.group.membership.clusters.utilities.SortedIntArrays.difference;
+import static dariush.griffin.group.membership.clusters.utilities.SortedIntArrays.union;
 
 /**
- * <p>This algorithm clusters {@link Group} based on the squared euclidean distances between them. Unlike a traditional
+ * <p>This algorithm clusters {@link Group} based on the distances between them, by default the squared euclidean
+ * distance, see {@link DistanceMetric} for the alternatives. Unlike a traditional
  * agglomerative algorithm, this algorithm can take advantage of two heuristics because we are clustering groups based
  * on membership.</p><br><p>The first is that we only need to compare groups to other "similar" groups. Groups are
  * "similar" if they contain at least one shared member. The second heuristic is that we can stop finding clusters to
  * merge once we find one that is within our minimum distance. That is because comparison is still done between all
  * groups between clusters so if there are other clusters that are closer they will eventually merge
- * correctly.</p><br><p>The steps are as follows:<ol><li>Create a cluster for every group.</li><li>For each cluster,
- * find groups that are "similar".</li><li>For each group in the cluster compare them to the "similar"
- * groups.</li><li>If a group in this cluster is within ("<") the minimum squared euclidean distance merge this cluster
- * with the cluster that contains that group.</li><li>Repeat steps 2 through 4 until no clusters are
- * merged.</li></ol></p>
+ * correctly.</p><br><p>The steps are as follows:<ol><li>Create a cluster for every group, whose candidates are the
+ * groups that are "similar" to it.</li><li>For each group in the cluster compare them to the cluster's
+ * candidates.</li><li>If a group in this cluster is within ("<") the minimum squared euclidean distance merge this
+ * cluster with the cluster that contains that group. The merged cluster's candidates are the union of both clusters'
+ * candidates, minus the merged groups.</li><li>Repeat steps 2 and 3 until no clusters are merged.</li></ol></p><br>
+ * <p>Mappings with only a few members are point clouds where every group shares a member with every other group. For
+ * those a {@link GridIndex} finds every pair of groups within the minimum distance directly, and the clusters are the
+ * connected components of those pairs. A {@link VantagePointTree} does the same for mappings with more members, and
+ * for squared euclidean distance a {@link SparseProductEdges} finds every pair that shares a member in one sparse
+ * matrix product. See {@link CandidateStrategy}.</p>
  *
  * @author Dariush Griffin
  */
 public class AgglomerativeClusterAlgorithm
     implements ClusterAlgorithm
 {
-  private final MembershipMapping membershipMapping;
 
-  private final GroupCache groupCache;
+  private final DistanceMetric distanceMetric;
 
-  private final float minSquaredEuclideanDistance;
+  /**
+   * {@link Group}s closer than this distance, as measured by the distance metric, are clustered together.
+   */
+  private final float minDistance;
+
+  /**
+   * Ids for the mapping's {@link Group}s, the working clusters refer to {@link Group}s by these ids.
+   */
+  private final IndexedGroups indexedGroups;
+
+  /**
+   * An optional cache of distances between {@link Group}s, or null when distances are always calculated.
+   */
+  private final DistanceCache distanceCache;
+
+  private final CandidateStrategy candidateStrategy;
+
+  /**
+   * Posting lists shared with other algorithms, or null to build them when {@link CandidateStrategy#SHARED_MEMBERS}
+   * needs them.
+   */
+  private final PostingLists postingLists;
 
   public AgglomerativeClusterAlgorithm(MembershipMapping membershipMapping, float minSquaredEuclideanDistance) {
-    this.membershipMapping = membershipMapping;
-    this.groupCache = new GroupCache();
-    this.groupCache.addGroups(membershipMapping.getGroups());
-    this.minSquaredEuclideanDistance = minSquaredEuclideanDistance;
+    this(membershipMapping, minSquaredEuclideanDistance, null);
+  }
+
+  /**
+   * <p>Constructs the algorithm with a {@link DistanceCache}. Between rounds most clusters compare against the same
+   * "similar" {@link Group}s, so caching their distances avoids recalculating them every round.</p>
+   *
+   * @param membershipMapping           The mapping whose {@link Group}s will be clustered.
+   * @param minSquaredEuclideanDistance {@link Group}s closer than this distance are clustered together.
+   * @param distanceCache               The cache used to store distances between {@link Group}s, or null to always
+   *                                    calculate them.
+   */
+  public AgglomerativeClusterAlgorithm(
+      MembershipMapping membershipMapping,
+      float minSquaredEuclideanDistance,
+      DistanceCache distanceCache)
+  {
+    this(membershipMapping, new SquaredEuclideanDistance(), minSquaredEuclideanDistance, distanceCache);
+  }
+
+  /**
+   * @param membershipMapping The mapping whose {@link Group}s will be clustered.
+   * @param distanceMetric    The metric used to measure the distance between {@link Group}s.
+   * @param minDistance       {@link Group}s closer than this distance are clustered together.
+   */
+  public AgglomerativeClusterAlgorithm(
+      MembershipMapping membershipMapping,
+      DistanceMetric distanceMetric,
+      float minDistance)
+  {
+    this(membershipMapping, distanceMetric, minDistance, null);
+  }
+
+  /**
+   * <p>Constructs the algorithm with the provided {@link DistanceMetric}. Candidates are still only the {@link Group}s
+   * that share a {@link Member}, which is exact for metrics that support
+   * {@link dariush.griffin.group.membership.clusters.metrics.PruningBound#DISJOINT_MAXIMUM} when the minimum distance
+   * is below their maximum, and a heuristic for the others.</p>
+   *
+   * @param membershipMapping The mapping whose {@link Group}s will be clustered.
+   * @param distanceMetric    The metric used to measure the distance between {@link Group}s.
+   * @param minDistance       {@link Group}s closer than this distance are clustered together.
+   * @param distanceCache     The cache used to store distances between {@link Group}s, or null to always calculate
+   *                          them.
+   */
+  public AgglomerativeClusterAlgorithm(
+      MembershipMapping membershipMapping,
+      DistanceMetric distanceMetric,
+      float minDistance,
+      DistanceCache distanceCache)
+  {
+    this(membershipMapping, distanceMetric, minDistance, distanceCache, CandidateStrategy.AUTOMATIC);
+  }
+
+  /**
+   * @param membershipMapping The mapping whose {@link Group}s will be clustered.
+   * @param distanceMetric    The metric used to measure the distance between {@link Group}s.
+   * @param minDistance       {@link Group}s closer than this distance are clustered together.
+   * @param distanceCache     The cache used to store distances between {@link Group}s, or null to always calculate
+   *                          them. Only used by {@link CandidateStrategy#SHARED_MEMBERS}.
+   * @param candidateStrategy How candidate {@link Group}s are found.
+   */
+  public AgglomerativeClusterAlgorithm(
+      MembershipMapping membershipMapping,
+      DistanceMetric distanceMetric,
+      float minDistance,
+      DistanceCache distanceCache,
+      CandidateStrategy candidateStrategy)
+  {
+    this(membershipMapping.getGroups(), distanceMetric, minDistance, distanceCache, candidateStrategy);
+  }
+
+  /**
+   * <p>Constructs the algorithm over the {@link Group}s of prebuilt {@link PostingLists}, so several algorithms, for
+   * example with different minimum distances, can share them rather than each building their own. A
+   * {@link DistanceCache} is keyed by the same ids, so it can be shared too.</p>
+   *
+   * @param postingLists      The posting lists of the {@link Group}s that will be clustered.
+   * @param distanceMetric    The metric used to measure the distance between {@link Group}s.
+   * @param minDistance       {@link Group}s closer than this distance are clustered together.
+   * @param distanceCache     The cache used to store distances between {@link Group}s, or null to always calculate
+   *                          them. Only used by {@link CandidateStrategy#SHARED_MEMBERS}.
+   * @param candidateStrategy How candidate {@link Group}s are found.
+   */
+  public AgglomerativeClusterAlgorithm(
+      PostingLists postingLists,
+      DistanceMetric distanceMetric,
+      float minDistance,
+      DistanceCache distanceCache,
+      CandidateStrategy candidateStrategy)
+  {
+    this.distanceMetric = distanceMetric;
+    this.minDistance = minDistance;
+    this.indexedGroups = postingLists.getIndexedGroups();
+    this.distanceCache = distanceCache;
+    this.candidateStrategy = candidateStrategy;
+    this.postingLists = postingLists;
+  }
+
+  /**
+   * <p>Constructs the algorithm over already indexed {@link Group}s, such as those of a
+   * {@link dariush.griffin.group.membership.clusters.model.MappingSnapshot#toIndexedGroups()}.</p>
+   *
+   * @param indexedGroups     The {@link Group}s that will be clustered.
+   * @param distanceMetric    The metric used to measure the distance between {@link Group}s.
+   * @param minDistance       {@link Group}s closer than this distance are clustered together.
+   * @param distanceCache     The cache used to store distances between {@link Group}s, or null to always calculate
+   *                          them. Only used by {@link CandidateStrategy#SHARED_MEMBERS}.
+   * @param candidateStrategy How candidate {@link Group}s are found.
+   */
+  public AgglomerativeClusterAlgorithm(
+      IndexedGroups indexedGroups,
+      DistanceMetric distanceMetric,
+      float minDistance,
+      DistanceCache distanceCache,
+      CandidateStrategy candidateStrategy)
+  {
+    this.distanceMetric = distanceMetric;
+    this.minDistance = minDistance;
+    this.indexedGroups = indexedGroups;
+    this.distanceCache = distanceCache;
+    this.candidateStrategy = candidateStrategy;
+    this.postingLists = null;
+  }
+
+  /**
+   * <p>Constructs the algorithm over a subset of a mapping's {@link Group}s, used by {@link SampledClusterAlgorithm}
+   * to cluster its sample.</p>
+   */
+  AgglomerativeClusterAlgorithm(
+      Collection<Group> groups,
+      DistanceMetric distanceMetric,
+      float minDistance,
+      DistanceCache distanceCache,
+      CandidateStrategy candidateStrategy)
+  {
+    this(new IndexedGroups(groups), distanceMetric, minDistance, distanceCache, candidateStrategy);
   }
 
   @Override
   public Set<Cluster> cluster() {
-    Map<Group, Cluster> workingGroups = createInitialClusters();
-    return clusterHelper(workingGroups);
+    Set<Cluster> result = new HashSet<>();
+    cluster(result::add);
+    return result;
+  }
+
+  @Override
+  public void cluster(Consumer<Cluster> sink) {
+    switch (resolveCandidateStrategy()) {
+      case GRID:
+        clusterEdges(new GridIndex(indexedGroups, distanceMetric, minDistance), sink);
+        break;
+      case VANTAGE_POINT_TREE:
+        clusterEdges(new VantagePointTree(indexedGroups, distanceMetric).edgesWithin(minDistance), sink);
+        break;
+      case SPARSE_PRODUCT:
+        clusterEdges(new SparseProductEdges(indexedGroups, minDistance), sink);
+        break;
+      case TILED_ALL_PAIRS:
+        clusterEdges(new TiledAllPairsEdges(indexedGroups, minDistance), sink);
+        break;
+      default:
+        WorkingCluster[] clusterOfGroup = createInitialClusters();
+        clusterHelper(clusterOfGroup, sink);
+    }
   }
 
   /**
-   * <p>Loops through each cluster, finds if a "similar" group is within the minimum distance. If there is a close
-   * group merges the cluster with the cluster that contains that group.</p>
+   * @return The strategy that will be used, {@link CandidateStrategy#AUTOMATIC} is resolved to a concrete strategy.
+   */
+  public CandidateStrategy resolveCandidateStrategy() {
+    return candidateStrategy.resolve(indexedGroups, distanceMetric, minDistance);
+  }
+
+  /**
+   * <p>Every pair of {@link Group}s within the minimum distance is an edge, single linkage clusters are the connected
+   * components of those edges. Ids are bucketed by component root with a counting sort, so each {@link Cluster} is
+   * built only when it is passed to the sink.</p>
+   *
+   * @param edgeSource Finds every pair of {@link Group}s within the minimum distance.
+   * @param sink       Receives each {@link Cluster}.
+   */
+  private void clusterEdges(EdgeSource edgeSource, Consumer<Cluster> sink) {
+    UnionFind components = new UnionFind(indexedGroups.size());
+    edgeSource.forEachEdge((first, second, distance) -> components.union(first, second));
+    emitComponents(indexedGroups, components, sink);
+  }
+
+  /**
+   * <p>Passes one {@link Cluster} per component of the forest to the sink.</p>
    *
-   * @param workingGroups A mapping of {@link Group} to the {@link Cluster} that contains it.
-   * @return A set of {@link Cluster}s.
-   */
-  private Set<Cluster> clusterHelper(Map<Group, Cluster> workingGroups) {
-    boolean merged = false;
-
-    for (Cluster sourceCluster : workingGroups.values()) {
-      Group closestGroup = getClosestGroup(workingGroups, sourceCluster);
-      if (closestGroup != null) {
-        Cluster closestCluster = workingGroups.get(closestGroup);
-        // Merge the closest cluster with our source cluster.
-        mergeClusters(closestCluster, sourceCluster);
-        // Make sure the closest cluster's groups now point to the merged cluster.
-        remapClosestCluster(workingGroups, closestCluster, sourceCluster);
-        merged = true;
+   * @param indexedGroups The {@link Group}s, positioned by the ids of the forest.
+   * @param components    The components of the {@link Group} ids.
+   * @param sink          Receives each {@link Cluster}.
+   */
+  static void emitComponents(IndexedGroups indexedGroups, UnionFind components, Consumer<Cluster> sink) {
+    int[] roots = new int[indexedGroups.size()];
+    int[] starts = new int[roots.length + 1];
+    for (int id = 0; id < roots.length; id++) {
+      roots[id] = components.find(id);
+      starts[roots[id] + 1]++;
+    }
+    for (int root = 0; root < roots.length; root++) {
+      starts[root + 1] += starts[root];
+    }
+    int[] ids = new int[roots.length];
+    int[] cursors = Arrays.copyOf(starts, roots.length);
+    for (int id = 0; id < roots.length; id++) {
+      ids[cursors[roots[id]]++] = id;
+    }
+
+    for (int root = 0; root < roots.length; root++) {
+      if (starts[root] == starts[root + 1]) {
+        continue;
+      }
+      Cluster cluster = new Cluster();
+      for (int p = starts[root]; p < starts[root + 1]; p++) {
+        cluster.addGroup(indexedGroups.getGroup(ids[p]));
       }
+      sink.accept(cluster);
     }
+  }
 
-    // If we haven't merged any clusters then we have confirmed that all clustering is done.
-    if (!merged) {
-      return new HashSet<>(workingGroups.values());
+  /**
+   * <p>Loops through each cluster, finds if a candidate group is within the minimum distance. If there is a close
+   * group merges the cluster with the cluster that contains that group. Rounds are repeated until a round merges no
+   * clusters.</p>
+   *
+   * @param clusterOfGroup The {@link WorkingCluster} that contains each {@link Group}, indexed by {@link Group} id.
+   * @param sink           Receives each {@link Cluster} once no more merges are possible.
+   */
+  private void clusterHelper(WorkingCluster[] clusterOfGroup, Consumer<Cluster> sink) {
+    List<WorkingCluster> clusters = new ArrayList<>(clusterOfGroup.length);
+    for (WorkingCluster cluster : clusterOfGroup) {
+      clusters.add(cluster);
     }
 
-    // Want to use tail recursion here so we don't blow up the stack.
-    return clusterHelper(workingGroups);
+    boolean merged;
+    do {
+      merged = false;
+      for (WorkingCluster sourceCluster : clusters) {
+        if (sourceCluster.absorbed) {
+          continue;
+        }
+        int closestGroup = getClosestGroup(clusterOfGroup, sourceCluster);
+        if (closestGroup >= 0) {
+          WorkingCluster closestCluster = clusterOfGroup[closestGroup];
+          // Merge the closest cluster with our source cluster.
+          mergeClusters(closestCluster, sourceCluster);
+          // Make sure the closest cluster's groups now point to the merged cluster.
+          remapClosestCluster(clusterOfGroup, closestCluster, sourceCluster);
+          merged = true;
+        }
+      }
+      // Absorbed clusters will never be visited again, so drop them before the next round.
+      clusters.removeIf(cluster -> cluster.absorbed);
+    }
+    while (merged);
+
+    for (WorkingCluster cluster : clusters) {
+      sink.accept(cluster.cluster);
+    }
   }
 
   /**
    * <p>Once we've merged clusters this method will ensure that we update the working groups so they map to their new
    * cluster.</p>
    *
-   * @param workingGroups  A mapping of {@link Group} to the {@link Cluster} that contains it.
+   * @param clusterOfGroup The {@link WorkingCluster} that contains each {@link Group}, indexed by {@link Group} id.
    * @param closestCluster The cluster we are eliminating through the merge.
    * @param target         The combined cluster representing all groups plus those in the closestCluster.
    */
-  private void remapClosestCluster(Map<Group, Cluster> workingGroups, Cluster closestCluster, Cluster target) {
-    for (Group group : closestCluster.getGroups()) {
-      workingGroups.put(group, target);
+  private void remapClosestCluster(WorkingCluster[] clusterOfGroup, WorkingCluster closestCluster,
+      WorkingCluster target)
+  {
+    for (int groupId : closestCluster.groupIds) {
+      clusterOfGroup[groupId] = target;
     }
   }
 
   /**
-   * <p>Adds all groups from the source cluster to the target cluster.</p>
+   * <p>Adds all groups from the source cluster to the target cluster. The target's candidates become the union of
+   * both clusters' candidates, minus the groups that are now in the target.</p>
    *
-   * @param source The {@link Cluster} that is no longer going to be needed after merge.
-   * @param target The {@link Cluster} that will contain all groups.
+   * @param source The {@link WorkingCluster} that is no longer going to be needed after merge.
+   * @param target The {@link WorkingCluster} that will contain all groups.
    */
-  private void mergeClusters(Cluster source, Cluster target) {
-    target.addGroups(source.getGroups());
+  private void mergeClusters(WorkingCluster source, WorkingCluster target) {
+    target.cluster.addGroups(source.cluster.getGroups());
+    target.groupIds = union(target.groupIds, source.groupIds);
+    target.candidateIds = difference(union(target.candidateIds, source.candidateIds), target.groupIds);
+    source.absorbed = true;
   }
 
   /**
-   * <p>For each {@link Group} in the source {@link Cluster}, find "similar" {@link Group}s. If that {@link Group}
-   * isn't contained in the source {@link Cluster} calculate the distance to that {@link Group}. If that {@link Group}
-   * is within our minimum distance, return it as a closest {@link Group}.</p>
+   * <p>For each {@link Group} in the source {@link WorkingCluster}, calculate the distance to the cluster's candidate
+   * {@link Group}s. If a candidate is within our minimum distance, return it as a closest {@link Group}.</p>
    *
-   * @param workingGroups A mapping of {@link Group} to the {@link Cluster} that contains it.
-   * @param sourceCluster The {@link Cluster} whose {@link Group}s we are checking for a "similar" {@link Group} within
-   *                      the minimum distance.
-   * @return A {@link Group} that is within the minimum distance to a {@link Group} within the sourceCluster, or
-   * {@literal Null} if there is no closest {@link Group}.
-   */
-  private Group getClosestGroup(Map<Group, Cluster> workingGroups, Cluster sourceCluster) {
-    for (Group sourceGroup : sourceCluster.getGroups()) {
-      for (Group similarGroup : groupCache.getSimilarGroups(sourceCluster)) {
-        float distance = calculateSquaredEuclideanDistance(sourceGroup, similarGroup);
-        if (distance < minSquaredEuclideanDistance) {
-          return similarGroup;
+   * @param clusterOfGroup The {@link WorkingCluster} that contains each {@link Group}, indexed by {@link Group} id.
+   * @param sourceCluster  The {@link WorkingCluster} whose {@link Group}s we are checking for a "similar"
+   *                       {@link Group} within the minimum distance.
+   * @return The id of a {@link Group} that is within the minimum distance to a {@link Group} within the
+   * sourceCluster, or -1 if there is no closest {@link Group}.
+   */
+  private int getClosestGroup(WorkingCluster[] clusterOfGroup, WorkingCluster sourceCluster) {
+    int[] candidateIds = sourceCluster.candidateIds;
+    for (int sourceGroup : sourceCluster.groupIds) {
+      for (int candidateGroup : candidateIds) {
+        if (clusterOfGroup[candidateGroup] == sourceCluster) {
+          continue;
+        }
+        float distance = distance(sourceGroup, candidateGroup);
+        if (distance < minDistance) {
+          return candidateGroup;
         }
       }
     }
 
-    return null;
+    return -1;
   }
 
   /**
-   * <p>Creates a {@link Cluster} for each {@link Group} and returns them as a mapping between the {@link Group} and
-   * the {@link Cluster} that contains it.</p>
+   * <p>Calculates the distance between two {@link Group}s, using the distance cache if there is one.</p>
    *
-   * @return A mapping of {@link Group} to the {@link Cluster} that contains it.
+   * @param firstId  The id of a {@link Group}.
+   * @param secondId The id of a {@link Group}.
+   * @return The distance between the {@link Group}s.
    */
-  private Map<Group, Cluster> createInitialClusters() {
-    Map<Group, Cluster> clusters = new HashMap<>(membershipMapping.getGroups().size());
-    for (Group group : membershipMapping.getGroups()) {
-      Cluster cluster = new Cluster();
-      cluster.addGroup(group);
-      clusters.put(group, cluster);
+  private float distance(int firstId, int secondId) {
+    if (distanceCache == null) {
+      return distanceMetric.distance(indexedGroups.getGroup(firstId), indexedGroups.getGroup(secondId));
+    }
+
+    float distance = distanceCache.get(firstId, secondId);
+    if (Float.isNaN(distance)) {
+      distance = distanceMetric.distance(indexedGroups.getGroup(firstId), indexedGroups.getGroup(secondId));
+      distanceCache.put(firstId, secondId, distance);
     }
+    return distance;
+  }
+
+  /**
+   * <p>Creates a {@link WorkingCluster} for each {@link Group}, whose candidates are the {@link Group}s "similar" to
+   * it. The posting lists are immutable, so the candidates of every {@link Group} are found in parallel.</p>
+   *
+   * @return The {@link WorkingCluster} that contains each {@link Group}, indexed by {@link Group} id.
+   */
+  private WorkingCluster[] createInitialClusters() {
+    PostingLists candidates = (postingLists != null) ? postingLists : PostingLists.build(indexedGroups);
+
+    WorkingCluster[] clusters = new WorkingCluster[indexedGroups.size()];
+    IntStream.range(0, clusters.length).parallel().forEach(id -> {
+      Cluster cluster = new Cluster();
+      cluster.addGroup(indexedGroups.getGroup(id));
+      clusters[id] = new WorkingCluster(cluster, id, candidates.getSimilarGroupIds(id));
+    });
     return clusters;
   }
+
+  /**
+   * <p>A {@link Cluster} being built by the algorithm, along with the ids of its {@link Group}s and the ids of the
+   * candidate {@link Group}s it may merge with. Candidates are computed once per {@link Group} and combined on merge,
+   * rather than recomputed from the {@link PostingLists} every round.</p>
+   */
+  private static final class WorkingCluster
+  {
+    private final Cluster cluster;
+
+    /**
+     * The strictly increasing ids of the {@link Group}s in this cluster.
+     */
+    private int[] groupIds;
+
+    /**
+     * The strictly increasing ids of "similar" {@link Group}s that are not in this cluster.
+     */
+    private int[] candidateIds;
+
+    /**
+     * Set once this cluster has been merged into another cluster.
+     */
+    private boolean absorbed;
+
+    private WorkingCluster(Cluster cluster, int groupId, int[] candidateIds) {
+      this.cluster = cluster;
+      this.groupIds = new int[]{groupId};
+      this.candidateIds = candidateIds;
+    }
+  }
 }
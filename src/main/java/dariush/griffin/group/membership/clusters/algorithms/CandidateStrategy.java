@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.algorithms;
+
+import dariush.griffin.group.membership.clusters.metrics.DistanceMetric;
+import dariush.griffin.group.membership.clusters.utilities.GridIndex;
+import dariush.griffin.group.membership.clusters.utilities.IndexedGroups;
+
+/**
+ * <p>How {@link AgglomerativeClusterAlgorithm} finds the groups each group could be clustered with.</p>
+ *
+ * @author Dariush Griffin
+ */
+public enum CandidateStrategy
+{
+  /**
+   * Picks {@link #GRID} when it is applicable, otherwise {@link #SHARED_MEMBERS}. {@link #SPARSE_PRODUCT} is never
+   * picked automatically, as its clusters can be finer than those of {@link #SHARED_MEMBERS}.
+   */
+  AUTOMATIC,
+  /**
+   * Groups that share at least one member, found through
+   * {@link dariush.griffin.group.membership.clusters.utilities.PostingLists}, and merged round by round.
+   */
+  SHARED_MEMBERS,
+  /**
+   * A {@link dariush.griffin.group.membership.clusters.utilities.GridIndex} over mappings with only a few members.
+   * Every pair of groups within the minimum distance is found directly, including groups with no shared member, so
+   * clusters can be coarser than with {@link #SHARED_MEMBERS}.
+   */
+  GRID,
+  /**
+   * A {@link dariush.griffin.group.membership.clusters.utilities.VantagePointTree} range query for each group. Every
+   * pair of groups within the minimum distance is found, for any metric that satisfies the triangle inequality. Never
+   * picked automatically, it pays off for mappings with tens to hundreds of members where groups share most members.
+   */
+  VANTAGE_POINT_TREE,
+  /**
+   * Every pair of groups that share a member and are within the minimum distance, found at once from the dot products
+   * of a {@link dariush.griffin.group.membership.clusters.utilities.SparseProductEdges} sparse matrix product. Only
+   * for squared euclidean distance. Unlike {@link #SHARED_MEMBERS}, whose merged clusters are compared with the groups
+   * sharing a member with any of their groups, groups that share no member are never joined directly. With groups
+   * A{m1: 1}, B{m1: 1, m2: 1} and C{m2: 0.1} at 1.5, A and C are 1.01 apart but share no member, and B and C are
+   * 1.81 apart, so this leaves C on its own while {@link #SHARED_MEMBERS} clusters all three.
+   */
+  SPARSE_PRODUCT,
+  /**
+   * Every pair of groups is compared, in cache sized tiles of dense rows, by a
+   * {@link dariush.griffin.group.membership.clusters.utilities.TiledAllPairsEdges}. Exact for squared euclidean
+   * distance, including groups with no shared member. Never picked automatically, it pays off for dense mappings where
+   * most groups share members and no candidate source prunes.
+   */
+  TILED_ALL_PAIRS;
+
+  /**
+   * @param indexedGroups  The groups that will be clustered.
+   * @param distanceMetric The metric used to measure the distance between groups.
+   * @param threshold      Groups closer than this distance are clustered together.
+   * @return This strategy, or the strategy {@link #AUTOMATIC} picks for the groups.
+   */
+  CandidateStrategy resolve(IndexedGroups indexedGroups, DistanceMetric distanceMetric, float threshold) {
+    if (this != AUTOMATIC) {
+      return this;
+    }
+    if (GridIndex.isApplicable(indexedGroups, distanceMetric, threshold)) {
+      return GRID;
+    }
+    return SHARED_MEMBERS;
+  }
+}
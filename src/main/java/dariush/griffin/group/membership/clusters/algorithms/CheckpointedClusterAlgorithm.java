@@ -0,0 +1,468 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.algorithms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import dariush.griffin.group.membership.clusters.metrics.DistanceMetric;
+import dariush.griffin.group.membership.clusters.model.Cluster;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.Member;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import dariush.griffin.group.membership.clusters.utilities.IndexedGroups;
+import dariush.griffin.group.membership.clusters.utilities.PostingLists;
+import dariush.griffin.group.membership.clusters.utilities.UnionFind;
+
+/**
+ * <p>Clusters {@link Group}s into the connected components of the pairs that share a {@link Member} and are within the
+ * minimum distance, the clusters {@link AgglomerativeClusterAlgorithm} finds with
+ * {@link CandidateStrategy#SPARSE_PRODUCT}, but for any metric and periodically saving its progress to a checkpoint
+ * file, so a long run can continue after the JVM restarts rather than starting over.</p><br><p>{@link Group}s are
+ * numbered by name, so the ids do not depend on the order the mapping was built in, and visited as rows: each row
+ * compares a {@link Group} to the "similar" {@link Group}s with a larger id and joins those within the minimum distance
+ * in a {@link UnionFind}. Blocks of rows are compared in parallel. Between blocks the state is small, the component of
+ * every {@link Group} and the next row, and is written to a compact binary file: a temporary file is written, synced
+ * and atomically renamed over the previous checkpoint, and the directory is synced, so a crash leaves either the old or
+ * the new checkpoint, never a partial one. A file system without atomic renames fails the write instead.</p><br><p>The
+ * checkpoint records a fingerprint of the mapping's {@link Group} names and weights, the metric and the minimum
+ * distance. {@link #resume(MembershipMapping, DistanceMetric, Path, long, TimeUnit)} refuses a checkpoint whose
+ * fingerprint does not match the mapping, as continuing would silently mix two inputs.</p><br><p>A checkpoint is
+ * written at most once per interval, and never sooner than {@link #MAX_CHECKPOINT_OVERHEAD_RATIO} times the duration of
+ * the last write after it, which bounds the time spent writing checkpoints to about {@code 1 /
+ * MAX_CHECKPOINT_OVERHEAD_RATIO} of the run.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class CheckpointedClusterAlgorithm
+    implements ClusterAlgorithm
+{
+  /**
+   * The smallest ratio of clustering time to checkpoint time, 50 keeps checkpoints to about 2% of the run.
+   */
+  public static final int MAX_CHECKPOINT_OVERHEAD_RATIO = 50;
+
+  /**
+   * "GCKP", identifies a checkpoint file.
+   */
+  private static final int MAGIC = 0x47434B50;
+
+  private static final int VERSION = 1;
+
+  private static final int ROWS_PER_BLOCK = 1024;
+
+  private static final int BUFFER_BYTES = 1 << 16;
+
+  private final DistanceMetric distanceMetric;
+
+  private final float minDistance;
+
+  private final IndexedGroups indexedGroups;
+
+  private final long fingerprint;
+
+  private final Path checkpointFile;
+
+  private final long checkpointIntervalNanos;
+
+  private final UnionFind components;
+
+  /**
+   * The row the next block starts at, every row before it has been compared.
+   */
+  private int nextRow;
+
+  private long edgeCount;
+
+  private final int resumedRow;
+
+  private int checkpointCount;
+
+  private long checkpointNanos;
+
+  private long runNanos;
+
+  /**
+   * @param membershipMapping  The mapping whose {@link Group}s will be clustered.
+   * @param distanceMetric     The metric used to measure the distance between {@link Group}s.
+   * @param minDistance        {@link Group}s closer than this distance are clustered together.
+   * @param checkpointFile     The file progress is saved to, replaced by every checkpoint.
+   * @param checkpointInterval The least time between checkpoints.
+   * @param unit               The unit of the interval.
+   */
+  public CheckpointedClusterAlgorithm(
+      MembershipMapping membershipMapping,
+      DistanceMetric distanceMetric,
+      float minDistance,
+      Path checkpointFile,
+      long checkpointInterval,
+      TimeUnit unit)
+  {
+    this(new IndexedGroups(sortedGroups(membershipMapping)), distanceMetric, minDistance, checkpointFile,
+        unit.toNanos(checkpointInterval));
+  }
+
+  private CheckpointedClusterAlgorithm(
+      IndexedGroups indexedGroups,
+      DistanceMetric distanceMetric,
+      float minDistance,
+      Path checkpointFile,
+      long checkpointIntervalNanos)
+  {
+    this.distanceMetric = distanceMetric;
+    this.minDistance = minDistance;
+    this.indexedGroups = indexedGroups;
+    this.fingerprint = fingerprint(indexedGroups, distanceMetric, minDistance);
+    this.checkpointFile = checkpointFile;
+    this.checkpointIntervalNanos = checkpointIntervalNanos;
+    this.components = new UnionFind(indexedGroups.size());
+    this.resumedRow = 0;
+  }
+
+  private CheckpointedClusterAlgorithm(CheckpointedClusterAlgorithm fresh, int nextRow, long edgeCount, int[] roots) {
+    this.distanceMetric = fresh.distanceMetric;
+    this.minDistance = fresh.minDistance;
+    this.indexedGroups = fresh.indexedGroups;
+    this.fingerprint = fresh.fingerprint;
+    this.checkpointFile = fresh.checkpointFile;
+    this.checkpointIntervalNanos = fresh.checkpointIntervalNanos;
+    this.components = fresh.components;
+    for (int id = 0; id < roots.length; id++) {
+      components.union(id, roots[id]);
+    }
+    this.nextRow = nextRow;
+    this.edgeCount = edgeCount;
+    this.resumedRow = nextRow;
+  }
+
+  /**
+   * <p>Continues a run from its last checkpoint. The minimum distance is read from the checkpoint.</p>
+   *
+   * @param membershipMapping  The mapping the checkpointed run was clustering.
+   * @param distanceMetric     The metric the checkpointed run was using.
+   * @param checkpointFile     The checkpoint to continue from, it keeps being replaced as the run progresses.
+   * @param checkpointInterval The least time between checkpoints.
+   * @param unit               The unit of the interval.
+   * @return The algorithm, {@link #cluster()} continues after the last checkpointed row.
+   * @throws IOException              If the checkpoint cannot be read or is corrupt.
+   * @throws IllegalArgumentException If the checkpoint was written for a different mapping, metric or number of
+   *                                  {@link Group}s.
+   */
+  public static CheckpointedClusterAlgorithm resume(
+      MembershipMapping membershipMapping,
+      DistanceMetric distanceMetric,
+      Path checkpointFile,
+      long checkpointInterval,
+      TimeUnit unit) throws IOException
+  {
+    CRC32 crc = new CRC32();
+    try (DataInputStream checked = new DataInputStream(new CheckedInputStream(
+        new BufferedInputStream(Files.newInputStream(checkpointFile), BUFFER_BYTES), crc)))
+    {
+      if (checked.readInt() != MAGIC || checked.readInt() != VERSION) {
+        throw new IOException(String.format("%s is not a version %d checkpoint.", checkpointFile, VERSION));
+      }
+      long checkpointFingerprint = checked.readLong();
+      String metricName = checked.readUTF();
+      float minDistance = checked.readFloat();
+      int groupCount = checked.readInt();
+      int nextRow = checked.readInt();
+      long edgeCount = checked.readLong();
+
+      CheckpointedClusterAlgorithm fresh = new CheckpointedClusterAlgorithm(
+          new IndexedGroups(sortedGroups(membershipMapping)), distanceMetric, minDistance, checkpointFile,
+          unit.toNanos(checkpointInterval));
+      if (groupCount != fresh.indexedGroups.size() || !metricName.equals(distanceMetric.getClass().getName()) ||
+          checkpointFingerprint != fresh.fingerprint)
+      {
+        throw new IllegalArgumentException(String.format(
+            "Checkpoint %s of %d groups with %s does not match a mapping of %d groups with %s.", checkpointFile,
+            groupCount, metricName, fresh.indexedGroups.size(), distanceMetric.getClass().getName()));
+      }
+      if (nextRow < 0 || nextRow > groupCount) {
+        throw new IOException(String.format("Checkpoint %s has row %d out of %d.", checkpointFile, nextRow,
+            groupCount));
+      }
+
+      int[] roots = new int[groupCount];
+      for (int id = 0; id < groupCount; id++) {
+        roots[id] = checked.readInt();
+        if (roots[id] < 0 || roots[id] >= groupCount) {
+          throw new IOException(String.format("Checkpoint %s is corrupt.", checkpointFile));
+        }
+      }
+      long checksum = crc.getValue();
+      // The checksum is the last field, so the sum is taken before it is read.
+      if (checked.readLong() != checksum) {
+        throw new IOException(String.format("Checkpoint %s is corrupt.", checkpointFile));
+      }
+      return new CheckpointedClusterAlgorithm(fresh, nextRow, edgeCount, roots);
+    }
+  }
+
+  @Override
+  public Set<Cluster> cluster() {
+    Set<Cluster> result = new HashSet<>();
+    cluster(result::add);
+    return result;
+  }
+
+  /**
+   * <p>Compares the remaining rows, writes a final checkpoint and then passes one {@link Cluster} per component to
+   * the sink.</p>
+   *
+   * @param sink Receives each {@link Cluster}.
+   * @throws UncheckedIOException If a checkpoint cannot be written.
+   */
+  @Override
+  public void cluster(Consumer<Cluster> sink) {
+    run(indexedGroups.size());
+    AgglomerativeClusterAlgorithm.emitComponents(indexedGroups, components, sink);
+  }
+
+  /**
+   * <p>Compares rows up to the limit and checkpoints once it is reached, as if the run stopped there.</p>
+   *
+   * @param rowLimit The row to stop before.
+   */
+  void run(int rowLimit) {
+    long start = System.nanoTime();
+    long lastCheckpoint = start;
+    long lastWriteNanos = 0;
+    PostingLists postingLists = null;
+    while (nextRow < rowLimit) {
+      if (postingLists == null) {
+        postingLists = PostingLists.build(indexedGroups);
+      }
+      int blockStart = nextRow;
+      int blockEnd = Math.min(rowLimit, blockStart + ROWS_PER_BLOCK);
+      int[][] neighbours = new int[blockEnd - blockStart][];
+      PostingLists candidates = postingLists;
+      IntStream.range(blockStart, blockEnd).parallel().forEach(row ->
+          neighbours[row - blockStart] = closeGroupIds(row, candidates));
+      for (int row = blockStart; row < blockEnd; row++) {
+        for (int neighbour : neighbours[row - blockStart]) {
+          components.union(row, neighbour);
+          edgeCount++;
+        }
+      }
+      nextRow = blockEnd;
+
+      long now = System.nanoTime();
+      if (nextRow < rowLimit && now - lastCheckpoint >= Math.max(checkpointIntervalNanos,
+          lastWriteNanos * MAX_CHECKPOINT_OVERHEAD_RATIO))
+      {
+        lastWriteNanos = checkpoint();
+        lastCheckpoint = System.nanoTime();
+      }
+    }
+    checkpoint();
+    runNanos += System.nanoTime() - start;
+  }
+
+  /**
+   * @return The number of rows compared before this run started, 0 unless resumed from a checkpoint.
+   */
+  public int getResumedRow() {
+    return resumedRow;
+  }
+
+  /**
+   * @return The row the next block starts at, the number of {@link Group}s once clustering has finished.
+   */
+  public int getNextRow() {
+    return nextRow;
+  }
+
+  /**
+   * @return The number of pairs of {@link Group}s found within the minimum distance, including before resuming.
+   */
+  public long getEdgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * @return The number of checkpoints this instance has written.
+   */
+  public int getCheckpointCount() {
+    return checkpointCount;
+  }
+
+  /**
+   * @return The fraction of this instance's clustering time spent writing checkpoints.
+   */
+  public double getCheckpointOverhead() {
+    return (runNanos == 0) ? 0D : ((double) checkpointNanos) / runNanos;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("CheckpointedClusterAlgorithm{");
+    sb.append("checkpointFile=").append(checkpointFile);
+    sb.append(", nextRow=").append(nextRow);
+    sb.append(", groupCount=").append(indexedGroups.size());
+    sb.append(", edgeCount=").append(edgeCount);
+    sb.append(", checkpointCount=").append(checkpointCount);
+    sb.append('}');
+    return sb.toString();
+  }
+
+  /**
+   * @return The ids of the "similar" {@link Group}s after the row that are within the minimum distance.
+   */
+  private int[] closeGroupIds(int row, PostingLists postingLists) {
+    Group group = indexedGroups.getGroup(row);
+    int[] similar = postingLists.getSimilarGroupIds(row);
+    int[] result = new int[similar.length];
+    int size = 0;
+    for (int id : similar) {
+      if (id > row && distanceMetric.distance(group, indexedGroups.getGroup(id)) < minDistance) {
+        result[size++] = id;
+      }
+    }
+    return Arrays.copyOf(result, size);
+  }
+
+  /**
+   * <p>Writes the state to a temporary file next to the checkpoint, syncs it, atomically renames it over the
+   * checkpoint and syncs the directory so the rename itself survives a crash. A file system that cannot rename
+   * atomically fails the write rather than risk a partial checkpoint, and a failed write deletes the temporary
+   * file.</p>
+   *
+   * @return The time the write took, in nanoseconds.
+   */
+  private long checkpoint() {
+    long start = System.nanoTime();
+    Path temporaryFile = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+    try {
+      writeState(temporaryFile);
+      Files.move(temporaryFile, checkpointFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      syncDirectory(checkpointFile.toAbsolutePath().getParent());
+    }
+    catch (IOException | RuntimeException e) {
+      try {
+        Files.deleteIfExists(temporaryFile);
+      }
+      catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      if (e instanceof IOException) {
+        throw new UncheckedIOException((IOException) e);
+      }
+      throw (RuntimeException) e;
+    }
+    checkpointCount++;
+    long elapsed = System.nanoTime() - start;
+    checkpointNanos += elapsed;
+    return elapsed;
+  }
+
+  private void writeState(Path file) throws IOException {
+    CRC32 crc = new CRC32();
+    try (FileOutputStream output = new FileOutputStream(file.toFile())) {
+      DataOutputStream out = new DataOutputStream(
+          new CheckedOutputStream(new BufferedOutputStream(output, BUFFER_BYTES), crc));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(fingerprint);
+      out.writeUTF(distanceMetric.getClass().getName());
+      out.writeFloat(minDistance);
+      out.writeInt(indexedGroups.size());
+      out.writeInt(nextRow);
+      out.writeLong(edgeCount);
+      for (int id = 0; id < indexedGroups.size(); id++) {
+        out.writeInt(components.find(id));
+      }
+      out.writeLong(crc.getValue());
+      out.flush();
+      output.getFD().sync();
+    }
+  }
+
+  /**
+   * <p>Flushes a directory's entries to disk. Windows cannot open a directory as a file, there the rename is only
+   * durable once the file system flushes its metadata.</p>
+   */
+  private static void syncDirectory(Path directory) throws IOException {
+    if (System.getProperty("os.name", "").startsWith("Windows")) {
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    }
+  }
+
+  private static List<Group> sortedGroups(MembershipMapping membershipMapping) {
+    List<Group> groups = new ArrayList<>(membershipMapping.getGroups());
+    groups.sort(null);
+    return groups;
+  }
+
+  /**
+   * <p>Hashes the {@link Group}s in id order. A {@link Group}'s weights are summed as a set, as their order follows
+   * the {@link Member}s' vector indices, which depend on the order the mapping was built in.</p>
+   */
+  private static long fingerprint(IndexedGroups indexedGroups, DistanceMetric distanceMetric, float minDistance) {
+    long hash = mix(distanceMetric.getClass().getName().hashCode() ^ ((long) Float.floatToIntBits(minDistance) << 32));
+    for (int id = 0; id < indexedGroups.size(); id++) {
+      Group group = indexedGroups.getGroup(id);
+      long weights = 0;
+      for (Map.Entry<Member, Float> entry : group.getMembers().entrySet()) {
+        weights += mix(((long) entry.getKey().getName().hashCode() << 32) |
+            (Float.floatToIntBits(entry.getValue()) & 0xFFFFFFFFL));
+      }
+      hash = mix(hash * 31 + group.getName().hashCode()) ^ mix(weights + group.getMembers().size());
+    }
+    return hash;
+  }
+
+  /**
+   * <p>The murmur3 finalizer.</p>
+   */
+  private static long mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return key;
+  }
+}
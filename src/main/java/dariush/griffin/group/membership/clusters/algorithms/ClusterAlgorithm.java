@@ -19,6 +19,7 @@
 package dariush.griffin.group.membership.clusters.algorithms;
 
 import java.util.Set;
+import java.util.function.Consumer;
 
 import dariush.griffin.group.membership.clusters.model.Cluster;
 
@@ -34,4 +35,15 @@ public interface ClusterAlgorithm
    * @return A set of {@link Cluster}s.
    */
   public Set<Cluster> cluster();
+
+  /**
+   * <p>Passes each {@link Cluster} to the sink as it is produced, so results can be written out without holding, or
+   * hashing, the whole set. Each {@link Cluster} is passed exactly once. The default collects {@link #cluster()},
+   * algorithms override it to stream from their own structures.</p>
+   *
+   * @param sink Receives each {@link Cluster}.
+   */
+  public default void cluster(Consumer<Cluster> sink) {
+    cluster().forEach(sink);
+  }
 }
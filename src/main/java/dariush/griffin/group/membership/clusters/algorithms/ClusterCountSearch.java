@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.algorithms;
+
+import java.util.Arrays;
+
+import dariush.griffin.group.membership.clusters.metrics.DistanceMetric;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import dariush.griffin.group.membership.clusters.utilities.EdgeSource;
+import dariush.griffin.group.membership.clusters.utilities.GridIndex;
+import dariush.griffin.group.membership.clusters.utilities.IndexedGroups;
+import dariush.griffin.group.membership.clusters.utilities.SparseProductEdges;
+import dariush.griffin.group.membership.clusters.utilities.TiledAllPairsEdges;
+import dariush.griffin.group.membership.clusters.utilities.UnionFind;
+import dariush.griffin.group.membership.clusters.utilities.VantagePointTree;
+
+/**
+ * <p>Finds the minimum distance at which the {@link AgglomerativeClusterAlgorithm} produces a target number of
+ * clusters, without clustering from singletons for every probe.</p><br><p>Single linkage clusters at a threshold are
+ * the connected components of the pairs of {@link Group}s closer than it, so a clustering at a higher threshold is the
+ * clustering at a lower threshold plus more edges. The search records every edge it finds, sorted by distance, and the
+ * clustering at any recorded threshold is the union find over a prefix of the edges:<ol><li>Edges are collected up to
+ * an initial threshold. While that leaves too many clusters the threshold is doubled, and only the edges beyond the
+ * previous threshold are recorded and unioned into the existing components.</li><li>The prefixes of the recorded
+ * edges are then bisected. The union find of the longest prefix known to leave too many clusters is kept as a
+ * checkpoint, and each probe copies it and unions only the edges between it and the probe. A probe that still leaves
+ * too many clusters becomes the new checkpoint.</li></ol></p><br><p>Distances are computed once per edge, and each
+ * probe costs a copy of the union find plus the edges it adds, which halve with every probe.</p><br><p>This only
+ * holds for strategies whose edges are a fixed set of pairs. {@link CandidateStrategy#SHARED_MEMBERS} compares a
+ * merged cluster with the groups sharing a member with any of its groups, so whether a pair joins depends on the
+ * clusters merged so far, and it is rejected. {@link CandidateStrategy#AUTOMATIC} picks
+ * {@link CandidateStrategy#GRID} when it is applicable, otherwise {@link CandidateStrategy#SPARSE_PRODUCT} for squared
+ * euclidean distance and {@link CandidateStrategy#VANTAGE_POINT_TREE} for other metrics. Thresholds found are for the
+ * {@link AgglomerativeClusterAlgorithm} with the strategy {@link #getCandidateStrategy()} returns.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class ClusterCountSearch
+{
+  private static final int INITIAL_EDGE_CAPACITY = 1024;
+
+  private final DistanceMetric distanceMetric;
+
+  private final IndexedGroups indexedGroups;
+
+  /**
+   * The strategy every collection uses, {@link CandidateStrategy#AUTOMATIC} resolved once for the whole search.
+   */
+  private final CandidateStrategy candidateStrategy;
+
+  private final float initialThreshold;
+
+  private final float maxThreshold;
+
+  private VantagePointTree vantagePointTree;
+
+  /**
+   * Every edge closer than {@link #collectedThreshold}, by increasing distance.
+   */
+  private float[] distances = new float[INITIAL_EDGE_CAPACITY];
+
+  private int[] firsts = new int[INITIAL_EDGE_CAPACITY];
+
+  private int[] seconds = new int[INITIAL_EDGE_CAPACITY];
+
+  private int edgeCount;
+
+  private float collectedThreshold;
+
+  /**
+   * The components of every recorded edge.
+   */
+  private UnionFind collectedComponents;
+
+  private int collectionCount;
+
+  private int probeCount;
+
+  /**
+   * <p>Constructs a search of squared euclidean distance thresholds, that starts at the initial threshold and never
+   * goes beyond the maximum.</p>
+   *
+   * @param membershipMapping The mapping whose {@link Group}s will be clustered.
+   * @param initialThreshold  The first threshold edges are collected to, must be positive.
+   * @param maxThreshold      The largest threshold edges are collected to.
+   */
+  public ClusterCountSearch(MembershipMapping membershipMapping, float initialThreshold, float maxThreshold) {
+    this(membershipMapping, new SquaredEuclideanDistance(), CandidateStrategy.AUTOMATIC, initialThreshold,
+        maxThreshold);
+  }
+
+  /**
+   * @param membershipMapping The mapping whose {@link Group}s will be clustered.
+   * @param distanceMetric    The metric used to measure the distance between {@link Group}s.
+   * @param candidateStrategy How edges are found, as in the {@link AgglomerativeClusterAlgorithm}, any strategy but
+   *                          {@link CandidateStrategy#SHARED_MEMBERS}.
+   * @param initialThreshold  The first threshold edges are collected to, must be positive.
+   * @param maxThreshold      The largest threshold edges are collected to, at least the initial threshold.
+   * @throws IllegalArgumentException If the thresholds are not positive and increasing, or the strategy is
+   *                                  {@link CandidateStrategy#SHARED_MEMBERS}.
+   */
+  public ClusterCountSearch(
+      MembershipMapping membershipMapping,
+      DistanceMetric distanceMetric,
+      CandidateStrategy candidateStrategy,
+      float initialThreshold,
+      float maxThreshold)
+  {
+    if (!(initialThreshold > 0F) || !(maxThreshold >= initialThreshold)) {
+      throw new IllegalArgumentException(
+          String.format("Cannot search thresholds from %f to %f.", initialThreshold, maxThreshold));
+    }
+    if (candidateStrategy == CandidateStrategy.SHARED_MEMBERS) {
+      throw new IllegalArgumentException(String.format(
+          "Cannot search thresholds for %s, whose candidates depend on the clusters merged so far.",
+          candidateStrategy));
+    }
+    this.distanceMetric = distanceMetric;
+    this.indexedGroups = new IndexedGroups(membershipMapping.getGroups());
+    // Grid cells only grow with the threshold, so a grid that fits the initial threshold fits every later one.
+    CandidateStrategy resolved = candidateStrategy.resolve(indexedGroups, distanceMetric, initialThreshold);
+    if (resolved == CandidateStrategy.SHARED_MEMBERS) {
+      resolved = SparseProductEdges.isApplicable(distanceMetric) ? CandidateStrategy.SPARSE_PRODUCT
+          : CandidateStrategy.VANTAGE_POINT_TREE;
+    }
+    this.candidateStrategy = resolved;
+    this.initialThreshold = initialThreshold;
+    this.maxThreshold = maxThreshold;
+    this.collectedComponents = new UnionFind(indexedGroups.size());
+  }
+
+  /**
+   * <p>Finds the smallest threshold whose clustering has at most the target number of clusters. If even the maximum
+   * threshold leaves more clusters, the maximum threshold is returned.</p>
+   *
+   * @param targetClusterCount The most clusters wanted, at least 1.
+   * @return The smallest threshold with at most the target number of clusters, which can be passed to the
+   * {@link AgglomerativeClusterAlgorithm} as its minimum distance along with {@link #getCandidateStrategy()}.
+   * @throws IllegalArgumentException If the target is less than 1.
+   */
+  public float searchThreshold(int targetClusterCount) {
+    if (targetClusterCount < 1) {
+      throw new IllegalArgumentException(String.format("Cannot search for %d clusters.", targetClusterCount));
+    }
+    if (indexedGroups.size() <= targetClusterCount) {
+      return Float.MIN_VALUE;
+    }
+    float threshold = (collectedThreshold > 0F) ? collectedThreshold : initialThreshold;
+    collect(threshold);
+    while (collectedComponents.getComponentCount() > targetClusterCount && collectedThreshold < maxThreshold) {
+      collect(Math.min(collectedThreshold * 2F, maxThreshold));
+    }
+    if (collectedComponents.getComponentCount() > targetClusterCount) {
+      return maxThreshold;
+    }
+
+    // Bisect the prefixes: the checkpoint's prefix leaves too many clusters, the high prefix does not.
+    UnionFind checkpoint = new UnionFind(indexedGroups.size());
+    int low = 0;
+    int high = edgeCount;
+    while (high - low > 1) {
+      int middle = (low + high) >>> 1;
+      UnionFind probe = new UnionFind(checkpoint);
+      union(probe, low, middle);
+      probeCount++;
+      if (probe.getComponentCount() > targetClusterCount) {
+        checkpoint = probe;
+        low = middle;
+      }
+      else {
+        high = middle;
+      }
+    }
+    // Edges are strictly closer than the threshold, so it must be just above the last edge of the prefix.
+    return Math.nextUp(distances[high - 1]);
+  }
+
+  /**
+   * @param threshold A minimum distance, no more than the largest threshold collected so far.
+   * @return The number of clusters at the threshold.
+   * @throws IllegalArgumentException If edges have not been collected up to the threshold.
+   */
+  public int clusterCount(float threshold) {
+    if (threshold > collectedThreshold) {
+      throw new IllegalArgumentException(
+          String.format("Edges are only collected up to %f, not %f.", collectedThreshold, threshold));
+    }
+    int end = edgesBelow(threshold);
+    UnionFind components = new UnionFind(indexedGroups.size());
+    union(components, 0, end);
+    return components.getComponentCount();
+  }
+
+  /**
+   * @return The strategy every collection uses, {@link CandidateStrategy#AUTOMATIC} is resolved for the initial
+   * threshold. The {@link AgglomerativeClusterAlgorithm} must use the same strategy for the thresholds to hold.
+   */
+  public CandidateStrategy getCandidateStrategy() {
+    return candidateStrategy;
+  }
+
+  /**
+   * @return The number of recorded edges.
+   */
+  public int getEdgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * @return The largest threshold edges have been collected to.
+   */
+  public float getCollectedThreshold() {
+    return collectedThreshold;
+  }
+
+  /**
+   * @return The number of times edges have been collected, once per threshold raise.
+   */
+  public int getCollectionCount() {
+    return collectionCount;
+  }
+
+  /**
+   * @return The number of bisection probes made.
+   */
+  public int getProbeCount() {
+    return probeCount;
+  }
+
+  /**
+   * <p>Records the edges closer than the threshold that were not already recorded, and unions them into the collected
+   * components.</p>
+   */
+  private void collect(float threshold) {
+    if (threshold <= collectedThreshold) {
+      return;
+    }
+    int start = edgeCount;
+    float previous = collectedThreshold;
+    edgeSource(threshold).forEachEdge((first, second, distance) -> {
+      if (distance >= previous) {
+        append(first, second, distance);
+      }
+    });
+    sortFrom(start);
+    union(collectedComponents, start, edgeCount);
+    collectedThreshold = threshold;
+    collectionCount++;
+  }
+
+  private EdgeSource edgeSource(float threshold) {
+    switch (candidateStrategy) {
+      case GRID:
+        return new GridIndex(indexedGroups, distanceMetric, threshold);
+      case VANTAGE_POINT_TREE:
+        if (vantagePointTree == null) {
+          vantagePointTree = new VantagePointTree(indexedGroups, distanceMetric);
+        }
+        return vantagePointTree.edgesWithin(threshold);
+      case SPARSE_PRODUCT:
+        return new SparseProductEdges(indexedGroups, threshold);
+      case TILED_ALL_PAIRS:
+        return new TiledAllPairsEdges(indexedGroups, threshold);
+      default:
+        throw new IllegalStateException(String.format("No edges are recorded for %s.", candidateStrategy));
+    }
+  }
+
+  private void append(int first, int second, float distance) {
+    if (edgeCount == distances.length) {
+      int capacity = distances.length * 2;
+      distances = Arrays.copyOf(distances, capacity);
+      firsts = Arrays.copyOf(firsts, capacity);
+      seconds = Arrays.copyOf(seconds, capacity);
+    }
+    distances[edgeCount] = distance;
+    firsts[edgeCount] = first;
+    seconds[edgeCount] = second;
+    edgeCount++;
+  }
+
+  /**
+   * <p>Sorts the edges from the start by distance. Distances are never negative, so their bits sort in the same order
+   * as their values and can be packed above the edge's position.</p>
+   */
+  private void sortFrom(int start) {
+    int count = edgeCount - start;
+    long[] packed = new long[count];
+    for (int i = 0; i < count; i++) {
+      packed[i] = ((long) Float.floatToIntBits(distances[start + i]) << 32) | i;
+    }
+    Arrays.parallelSort(packed);
+    float[] sortedDistances = new float[count];
+    int[] sortedFirsts = new int[count];
+    int[] sortedSeconds = new int[count];
+    for (int i = 0; i < count; i++) {
+      int position = start + (int) packed[i];
+      sortedDistances[i] = distances[position];
+      sortedFirsts[i] = firsts[position];
+      sortedSeconds[i] = seconds[position];
+    }
+    System.arraycopy(sortedDistances, 0, distances, start, count);
+    System.arraycopy(sortedFirsts, 0, firsts, start, count);
+    System.arraycopy(sortedSeconds, 0, seconds, start, count);
+  }
+
+  private void union(UnionFind components, int start, int end) {
+    for (int i = start; i < end; i++) {
+      components.union(firsts[i], seconds[i]);
+    }
+  }
+
+  /**
+   * @return The number of recorded edges strictly closer than the threshold.
+   */
+  private int edgesBelow(float threshold) {
+    int low = 0;
+    int high = edgeCount;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (distances[middle] < threshold) {
+        low = middle + 1;
+      }
+      else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
@@ -0,0 +1,882 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.algorithms;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import dariush.griffin.group.membership.clusters.metrics.DistanceMetric;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.Cluster;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.Member;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+import dariush.griffin.group.membership.clusters.utilities.MappedSegments;
+
+/**
+ * <p>Clusters {@link Group}s with a bounded heap, keeping the working data on disk. The clusters are the connected
+ * components of the pairs of {@link Group}s that share a {@link Member} and are within the minimum distance, the same
+ * clusters {@link AgglomerativeClusterAlgorithm} finds with {@link CandidateStrategy#SPARSE_PRODUCT}.</p><br><p>The
+ * steps are as follows:<ol><li>Write every {@link Group}'s vector, and the posting list of the {@link Group}s
+ * containing each {@link Member}, to files in compressed sparse row form. Posting lists are filled by a counting
+ * sort, so they are increasing without sorting.</li><li>Compare {@link Group}s in parallel, each worker reading
+ * vectors and posting lists through {@link MappedSegments} and comparing a {@link Group} with the later {@link Group}s
+ * that share one of its {@link Member}s. Pairs within the minimum distance are buffered and spilled to a run file
+ * whenever the buffer fills. Workers take rows in increasing order, so every run is already sorted.</li><li>Merge the
+ * runs in order, as many at a time as the budget allows, into a union-find whose parent and size arrays are
+ * themselves memory mapped files, and bucket the ids by component root in mapped files to emit each
+ * {@link Cluster}.</li></ol></p><br><p>A worker streams a row's candidates by merging its posting lists in place,
+ * with one cursor per {@link Member} of the row, and compares squared euclidean distances directly against the mapped
+ * candidate vector. Other metrics load each candidate's vector to compare it.</p><br><p>The memory budget bounds the
+ * heap and direct buffers the algorithm allocates: the array of {@link Group}s by id, each worker's edge buffer and
+ * its scratch arrays sized by the largest {@link Group}, and the read buffers of the runs being merged. Fewer workers
+ * and fewer runs at a time are used rather than exceeding it. Everything else proportional to the number of
+ * {@link Group}s, {@link Member}s or edges is in mapped files, whose pages are owned by the operating system's page
+ * cache rather than the heap. The {@link Group}s themselves stay in the mapping the caller already holds.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class OutOfCoreClusterAlgorithm
+    implements ClusterAlgorithm
+{
+  /**
+   * The smallest edge buffer a worker can use.
+   */
+  public static final int MIN_BUFFER_BYTES = 1 << 16;
+
+  private static final int ROWS_PER_TASK = 1024;
+
+  /**
+   * An edge is stored as its two ids.
+   */
+  private static final int EDGE_BYTES = 2 * Integer.BYTES;
+
+  /**
+   * A reference in the array of {@link Group}s by id, at most eight bytes.
+   */
+  private static final int REFERENCE_BYTES = 8;
+
+  /**
+   * A worker's scratch bytes for each {@link Member} of the largest {@link Group}: the row's vector, and for metrics
+   * other than squared euclidean its copy and a loaded candidate's, eight bytes each, and a posting list cursor's
+   * position, end, current id and heap slot.
+   */
+  private static final int SCRATCH_BYTES_PER_MEMBER = 3 * (Integer.BYTES + Float.BYTES) + 2 * Long.BYTES +
+      2 * Integer.BYTES;
+
+  /**
+   * The direct buffer each run is read through while it is merged.
+   */
+  private static final int RUN_READ_BYTES = 1 << 12;
+
+  /**
+   * A run's read buffer and an allowance for its cursor, channel and queue entry.
+   */
+  private static final int RUN_CURSOR_BYTES = RUN_READ_BYTES + 256;
+
+  private final Collection<Group> groups;
+
+  private final DistanceMetric distanceMetric;
+
+  private final float minDistance;
+
+  private final Path workDirectory;
+
+  private final long memoryBudgetBytes;
+
+  private final int segmentBytes;
+
+  private int workerCount;
+
+  private int runCount;
+
+  private long edgeCount;
+
+  private long spilledBytes;
+
+  private int segmentCount;
+
+  private int mergePassCount;
+
+  /**
+   * @param membershipMapping           The mapping whose {@link Group}s will be clustered.
+   * @param minSquaredEuclideanDistance {@link Group}s closer than this distance are clustered together.
+   * @param workDirectory               The directory temporary files are written to, they are deleted when
+   *                                    clustering finishes.
+   * @param memoryBudgetBytes           The most bytes of arrays and buffers the algorithm allocates.
+   */
+  public OutOfCoreClusterAlgorithm(
+      MembershipMapping membershipMapping,
+      float minSquaredEuclideanDistance,
+      Path workDirectory,
+      long memoryBudgetBytes)
+  {
+    this(membershipMapping, new SquaredEuclideanDistance(), minSquaredEuclideanDistance, workDirectory,
+        memoryBudgetBytes);
+  }
+
+  /**
+   * @param membershipMapping The mapping whose {@link Group}s will be clustered.
+   * @param distanceMetric    The metric used to measure the distance between {@link Group}s.
+   * @param minDistance       {@link Group}s closer than this distance are clustered together.
+   * @param workDirectory     The directory temporary files are written to, they are deleted when clustering
+   *                          finishes.
+   * @param memoryBudgetBytes The most bytes of arrays and buffers the algorithm allocates.
+   * @throws IllegalArgumentException If the budget is smaller than {@link #MIN_BUFFER_BYTES}.
+   */
+  public OutOfCoreClusterAlgorithm(
+      MembershipMapping membershipMapping,
+      DistanceMetric distanceMetric,
+      float minDistance,
+      Path workDirectory,
+      long memoryBudgetBytes)
+  {
+    this(membershipMapping.getGroups(), distanceMetric, minDistance, workDirectory, memoryBudgetBytes,
+        MappedSegments.DEFAULT_SEGMENT_BYTES);
+  }
+
+  /**
+   * <p>Constructs the algorithm with a segment size, small segments let tests span many segments.</p>
+   */
+  OutOfCoreClusterAlgorithm(
+      Collection<Group> groups,
+      DistanceMetric distanceMetric,
+      float minDistance,
+      Path workDirectory,
+      long memoryBudgetBytes,
+      int segmentBytes)
+  {
+    if (memoryBudgetBytes < MIN_BUFFER_BYTES) {
+      throw new IllegalArgumentException(String.format(
+          "A memory budget of %d bytes is smaller than the minimum of %d bytes.", memoryBudgetBytes,
+          MIN_BUFFER_BYTES));
+    }
+    this.groups = groups;
+    this.distanceMetric = distanceMetric;
+    this.minDistance = minDistance;
+    this.workDirectory = workDirectory;
+    this.memoryBudgetBytes = memoryBudgetBytes;
+    this.segmentBytes = segmentBytes;
+  }
+
+  @Override
+  public Set<Cluster> cluster() {
+    Set<Cluster> result = new HashSet<>();
+    cluster(result::add);
+    return result;
+  }
+
+  /**
+   * @param sink Receives each {@link Cluster}.
+   * @throws IllegalStateException If the budget cannot hold the {@link Group}s by id and one worker.
+   * @throws UncheckedIOException  If the temporary files cannot be written.
+   */
+  @Override
+  public void cluster(Consumer<Cluster> sink) {
+    Path directory;
+    try {
+      directory = Files.createTempDirectory(workDirectory, "clusters");
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    List<MappedSegments> files = new ArrayList<>();
+    try {
+      long availableBytes = memoryBudgetBytes - (long) groups.size() * REFERENCE_BYTES;
+      if (availableBytes < MIN_BUFFER_BYTES) {
+        throw new IllegalStateException(String.format(
+            "A memory budget of %d bytes cannot hold %d groups and a worker's %d byte buffer.", memoryBudgetBytes,
+            groups.size(), MIN_BUFFER_BYTES));
+      }
+      Group[] groupsById = groups.toArray(new Group[0]);
+      Layout layout = writeLayout(groupsById, directory, files);
+      List<Path> runs = findEdges(layout, directory, availableBytes);
+      MappedUnionFind components = new MappedUnionFind(groupsById.length, directory, files);
+      mergeRuns(runs, components, availableBytes);
+      emitComponents(groupsById, components, directory, files, sink);
+      segmentCount = 0;
+      for (MappedSegments file : files) {
+        segmentCount += file.getSegmentCount();
+      }
+    }
+    finally {
+      for (MappedSegments file : files) {
+        file.close();
+      }
+      delete(directory);
+    }
+  }
+
+  /**
+   * @return The number of workers the last run compared {@link Group}s with, as many processors as the budget allows.
+   */
+  public int getWorkerCount() {
+    return workerCount;
+  }
+
+  /**
+   * @return The number of sorted runs of edges the last run spilled to disk.
+   */
+  public int getRunCount() {
+    return runCount;
+  }
+
+  /**
+   * @return The number of passes the last run merged its runs in, each over as many runs as the budget allows.
+   */
+  public int getMergePassCount() {
+    return mergePassCount;
+  }
+
+  /**
+   * @return The number of pairs of {@link Group}s the last run found within the minimum distance.
+   */
+  public long getEdgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * @return The number of bytes of edges the last run spilled to disk.
+   */
+  public long getSpilledBytes() {
+    return spilledBytes;
+  }
+
+  /**
+   * @return The number of segments the last run mapped across all of its files.
+   */
+  public int getSegmentCount() {
+    return segmentCount;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("OutOfCoreClusterAlgorithm{");
+    sb.append("memoryBudgetBytes=").append(memoryBudgetBytes);
+    sb.append(", workerCount=").append(workerCount);
+    sb.append(", runCount=").append(runCount);
+    sb.append(", edgeCount=").append(edgeCount);
+    sb.append(", spilledBytes=").append(spilledBytes);
+    sb.append('}');
+    return sb.toString();
+  }
+
+  /**
+   * <p>Writes the {@link Group}s' vectors and the {@link Member}s' posting lists, each as a file of starts and files
+   * of the concatenated values.</p>
+   */
+  private Layout writeLayout(Group[] groupsById, Path directory, List<MappedSegments> files) {
+    long nonZeroCount = 0;
+    int memberCount = 0;
+    for (Group group : groupsById) {
+      Map<Member, Float> members = group.getMembers();
+      nonZeroCount += members.size();
+      for (Member member : members.keySet()) {
+        memberCount = Math.max(memberCount, member.getVectorIndex() + 1);
+      }
+    }
+
+    Layout layout = new Layout();
+    layout.groupCount = groupsById.length;
+    for (Group group : groupsById) {
+      layout.maxDegree = Math.max(layout.maxDegree, group.getMembers().size());
+    }
+    layout.vectorStarts = map(directory.resolve("vector-starts"), (groupsById.length + 1L) * Long.BYTES, files);
+    layout.vectorIndices = map(directory.resolve("vector-indices"), nonZeroCount * Integer.BYTES, files);
+    layout.vectorWeights = map(directory.resolve("vector-weights"), nonZeroCount * Float.BYTES, files);
+    layout.postingStarts = map(directory.resolve("posting-starts"), (memberCount + 1L) * Long.BYTES, files);
+    layout.postingIds = map(directory.resolve("posting-ids"), nonZeroCount * Integer.BYTES, files);
+
+    long position = 0;
+    for (int id = 0; id < groupsById.length; id++) {
+      layout.vectorStarts.putLong((long) id * Long.BYTES, position);
+      for (Map.Entry<Member, Float> entry : groupsById[id].getMembers().entrySet()) {
+        int index = entry.getKey().getVectorIndex();
+        layout.vectorIndices.putInt(position * Integer.BYTES, index);
+        layout.vectorWeights.putFloat(position * Float.BYTES, entry.getValue());
+        long degreeOffset = (index + 1L) * Long.BYTES;
+        layout.postingStarts.putLong(degreeOffset, layout.postingStarts.getLong(degreeOffset) + 1);
+        position++;
+      }
+    }
+    layout.vectorStarts.putLong((long) groupsById.length * Long.BYTES, position);
+    for (long index = 0; index < memberCount; index++) {
+      long next = (index + 1) * Long.BYTES;
+      layout.postingStarts.putLong(next, layout.postingStarts.getLong(next) +
+          layout.postingStarts.getLong(index * Long.BYTES));
+    }
+
+    // Each member's cursor starts at its list's start, visiting the groups in id order keeps every list increasing.
+    MappedSegments cursors = map(directory.resolve("posting-cursors"), (long) memberCount * Long.BYTES, files);
+    for (long index = 0; index < memberCount; index++) {
+      cursors.putLong(index * Long.BYTES, layout.postingStarts.getLong(index * Long.BYTES));
+    }
+    for (int id = 0; id < groupsById.length; id++) {
+      long end = layout.vectorStarts.getLong((id + 1L) * Long.BYTES);
+      for (long p = layout.vectorStarts.getLong((long) id * Long.BYTES); p < end; p++) {
+        long cursorOffset = (long) layout.vectorIndices.getInt(p * Integer.BYTES) * Long.BYTES;
+        long cursor = cursors.getLong(cursorOffset);
+        layout.postingIds.putInt(cursor * Integer.BYTES, id);
+        cursors.putLong(cursorOffset, cursor + 1);
+      }
+    }
+    return layout;
+  }
+
+  /**
+   * <p>Compares every {@link Group} with the later {@link Group}s sharing a {@link Member} on as many workers as the
+   * budget allows, each spilling its edges to sorted runs.</p>
+   *
+   * @return The run files.
+   */
+  private List<Path> findEdges(Layout layout, Path directory, long availableBytes) {
+    long scratchBytes = (long) layout.maxDegree * SCRATCH_BYTES_PER_MEMBER;
+    if (availableBytes < MIN_BUFFER_BYTES + scratchBytes) {
+      throw new IllegalStateException(String.format(
+          "A memory budget of %d bytes cannot hold a worker for groups of %d members.", memoryBudgetBytes,
+          layout.maxDegree));
+    }
+    workerCount = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+        availableBytes / (MIN_BUFFER_BYTES + scratchBytes)));
+    int bufferEdges = (int) Math.min(Integer.MAX_VALUE / EDGE_BYTES,
+        (availableBytes / workerCount - scratchBytes) / EDGE_BYTES);
+    boolean squaredEuclidean = distanceMetric instanceof SquaredEuclideanDistance;
+    int taskCount = (layout.groupCount + ROWS_PER_TASK - 1) / ROWS_PER_TASK;
+    AtomicInteger nextTask = new AtomicInteger();
+    ConcurrentLinkedQueue<Path> runs = new ConcurrentLinkedQueue<>();
+    AtomicLong edges = new AtomicLong();
+
+    IntStream.range(0, workerCount).parallel().forEach(worker -> {
+      EdgeWriter writer = new EdgeWriter(directory, worker, bufferEdges, runs);
+      CandidateMerger candidates = new CandidateMerger(layout);
+      for (int task = nextTask.getAndIncrement(); task < taskCount; task = nextTask.getAndIncrement()) {
+        int end = Math.min(layout.groupCount, (task + 1) * ROWS_PER_TASK);
+        for (int row = task * ROWS_PER_TASK; row < end; row++) {
+          candidates.start(row);
+          SparseVector vector = squaredEuclidean ? null : candidates.rowVector();
+          for (int id = candidates.next(); id >= 0; id = candidates.next()) {
+            float distance = squaredEuclidean ? candidates.squaredEuclidean(id)
+                : distanceMetric.distance(vector, layout.vector(id));
+            if (distance < minDistance) {
+              writer.add(row, id);
+            }
+          }
+        }
+      }
+      writer.spill();
+      edges.addAndGet(writer.edgeCount);
+    });
+
+    List<Path> result = new ArrayList<>(runs);
+    runCount = result.size();
+    edgeCount = edges.get();
+    spilledBytes = edgeCount * EDGE_BYTES;
+    return result;
+  }
+
+  /**
+   * <p>Unions the edges of every run. Runs are merged in order of their ids, so the union-find's pages are visited in
+   * order, as many runs at a time as the budget has read buffers for.</p>
+   */
+  private void mergeRuns(List<Path> runs, MappedUnionFind components, long availableBytes) {
+    int fanIn = (int) Math.max(2, Math.min(Integer.MAX_VALUE, availableBytes / RUN_CURSOR_BYTES));
+    mergePassCount = 0;
+    for (int passStart = 0; passStart < runs.size(); passStart += fanIn) {
+      List<Path> pass = runs.subList(passStart, Math.min(runs.size(), passStart + fanIn));
+      List<RunCursor> cursors = new ArrayList<>(pass.size());
+      try {
+        PriorityQueue<RunCursor> queue = new PriorityQueue<>(pass.size());
+        for (Path run : pass) {
+          RunCursor cursor = new RunCursor(run);
+          cursors.add(cursor);
+          if (cursor.advance()) {
+            queue.add(cursor);
+          }
+        }
+        while (!queue.isEmpty()) {
+          RunCursor cursor = queue.poll();
+          components.union((int) (cursor.edge >>> 32), (int) cursor.edge);
+          if (cursor.advance()) {
+            queue.add(cursor);
+          }
+        }
+      }
+      finally {
+        for (RunCursor cursor : cursors) {
+          cursor.close();
+        }
+      }
+      mergePassCount++;
+    }
+  }
+
+  /**
+   * <p>Buckets the ids by component root with a counting sort in mapped files, and passes one {@link Cluster} per
+   * component to the sink.</p>
+   */
+  private void emitComponents(
+      Group[] groupsById,
+      MappedUnionFind components,
+      Path directory,
+      List<MappedSegments> files,
+      Consumer<Cluster> sink)
+  {
+    int groupCount = groupsById.length;
+    MappedSegments roots = map(directory.resolve("roots"), (long) groupCount * Integer.BYTES, files);
+    MappedSegments bounds = map(directory.resolve("bounds"), (long) groupCount * Integer.BYTES, files);
+    MappedSegments ids = map(directory.resolve("ids"), (long) groupCount * Integer.BYTES, files);
+    for (int id = 0; id < groupCount; id++) {
+      int root = components.find(id);
+      roots.putInt((long) id * Integer.BYTES, root);
+      bounds.putInt((long) root * Integer.BYTES, bounds.getInt((long) root * Integer.BYTES) + 1);
+    }
+    int end = 0;
+    for (int root = 0; root < groupCount; root++) {
+      end += bounds.getInt((long) root * Integer.BYTES);
+      bounds.putInt((long) root * Integer.BYTES, end);
+    }
+    // Filling each bucket from its end moves every bound back to its bucket's start.
+    for (int id = groupCount - 1; id >= 0; id--) {
+      long boundOffset = (long) roots.getInt((long) id * Integer.BYTES) * Integer.BYTES;
+      int position = bounds.getInt(boundOffset) - 1;
+      bounds.putInt(boundOffset, position);
+      ids.putInt((long) position * Integer.BYTES, id);
+    }
+
+    for (int root = 0; root < groupCount; root++) {
+      int start = bounds.getInt((long) root * Integer.BYTES);
+      int stop = (root + 1 < groupCount) ? bounds.getInt((root + 1L) * Integer.BYTES) : groupCount;
+      if (start == stop) {
+        continue;
+      }
+      Cluster cluster = new Cluster();
+      for (int p = start; p < stop; p++) {
+        cluster.addGroup(groupsById[ids.getInt((long) p * Integer.BYTES)]);
+      }
+      sink.accept(cluster);
+    }
+  }
+
+  private MappedSegments map(Path file, long size, List<MappedSegments> files) {
+    MappedSegments result = MappedSegments.create(file, size, segmentBytes);
+    files.add(result);
+    return result;
+  }
+
+  private static void delete(Path directory) {
+    try {
+      List<Path> children = new ArrayList<>();
+      try (Stream<Path> files = Files.list(directory)) {
+        files.forEach(children::add);
+      }
+      for (Path child : children) {
+        Files.deleteIfExists(child);
+      }
+      Files.deleteIfExists(directory);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * <p>The mapped vectors and posting lists.</p>
+   */
+  private static final class Layout
+  {
+    private int groupCount;
+
+    /**
+     * The most {@link Member}s of any {@link Group}.
+     */
+    private int maxDegree;
+
+    private MappedSegments vectorStarts;
+
+    private MappedSegments vectorIndices;
+
+    private MappedSegments vectorWeights;
+
+    private MappedSegments postingStarts;
+
+    private MappedSegments postingIds;
+
+    private SparseVector vector(int id) {
+      long start = vectorStarts.getLong((long) id * Long.BYTES);
+      int size = (int) (vectorStarts.getLong((id + 1L) * Long.BYTES) - start);
+      int[] indices = new int[size];
+      float[] weights = new float[size];
+      for (int i = 0; i < size; i++) {
+        indices[i] = vectorIndices.getInt((start + i) * Integer.BYTES);
+        weights[i] = vectorWeights.getFloat((start + i) * Float.BYTES);
+      }
+      return new SparseVector(indices, weights);
+    }
+  }
+
+  /**
+   * <p>A worker's buffer of edges, written to a new run file whenever it fills.</p>
+   */
+  private static final class EdgeWriter
+  {
+    private final Path directory;
+
+    private final int worker;
+
+    private final ByteBuffer buffer;
+
+    private final ConcurrentLinkedQueue<Path> runs;
+
+    private long edgeCount;
+
+    private int spillCount;
+
+    private EdgeWriter(Path directory, int worker, int bufferEdges, ConcurrentLinkedQueue<Path> runs) {
+      this.directory = directory;
+      this.worker = worker;
+      // A direct buffer is written to the channel as is, a heap buffer would be copied into a temporary direct one.
+      this.buffer = ByteBuffer.allocateDirect(bufferEdges * EDGE_BYTES);
+      this.runs = runs;
+    }
+
+    private void add(int first, int second) {
+      if (!buffer.hasRemaining()) {
+        spill();
+      }
+      buffer.putInt(first).putInt(second);
+      edgeCount++;
+    }
+
+    private void spill() {
+      if (buffer.position() == 0) {
+        return;
+      }
+      Path run = directory.resolve(String.format("edges-%d-%d.run", worker, spillCount++));
+      buffer.flip();
+      try (FileChannel channel = FileChannel.open(run, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      buffer.clear();
+      runs.add(run);
+    }
+  }
+
+  /**
+   * <p>A worker's merge of a row's posting lists, yielding each later {@link Group} sharing a {@link Member} with the
+   * row once and in increasing order. Each list is sorted, so a heap of one cursor per {@link Member} of the row
+   * replaces collecting and sorting the candidates, and every array is sized by the largest {@link Group}.</p>
+   */
+  private static final class CandidateMerger
+  {
+    private final Layout layout;
+
+    private final int[] rowIndices;
+
+    private final float[] rowWeights;
+
+    private final long[] positions;
+
+    private final long[] ends;
+
+    /**
+     * The id at each cursor's position.
+     */
+    private final int[] currentIds;
+
+    /**
+     * The cursors with ids left, as a binary heap on their current ids.
+     */
+    private final int[] heap;
+
+    private int rowSize;
+
+    private int heapSize;
+
+    private int previous;
+
+    private CandidateMerger(Layout layout) {
+      this.layout = layout;
+      this.rowIndices = new int[layout.maxDegree];
+      this.rowWeights = new float[layout.maxDegree];
+      this.positions = new long[layout.maxDegree];
+      this.ends = new long[layout.maxDegree];
+      this.currentIds = new int[layout.maxDegree];
+      this.heap = new int[layout.maxDegree];
+    }
+
+    /**
+     * <p>Loads the row's vector and places a cursor after the row in each of its {@link Member}s' posting lists.</p>
+     */
+    private void start(int row) {
+      long start = layout.vectorStarts.getLong((long) row * Long.BYTES);
+      rowSize = (int) (layout.vectorStarts.getLong((row + 1L) * Long.BYTES) - start);
+      heapSize = 0;
+      previous = row;
+      for (int i = 0; i < rowSize; i++) {
+        int index = layout.vectorIndices.getInt((start + i) * Integer.BYTES);
+        rowIndices[i] = index;
+        rowWeights[i] = layout.vectorWeights.getFloat((start + i) * Float.BYTES);
+        long end = layout.postingStarts.getLong((index + 1L) * Long.BYTES);
+        long position = firstAfter(layout.postingStarts.getLong((long) index * Long.BYTES), end, row);
+        if (position < end) {
+          positions[i] = position;
+          ends[i] = end;
+          currentIds[i] = layout.postingIds.getInt(position * Integer.BYTES);
+          heap[heapSize++] = i;
+        }
+      }
+      for (int slot = heapSize / 2 - 1; slot >= 0; slot--) {
+        siftDown(slot);
+      }
+    }
+
+    /**
+     * @return The next candidate id, or -1 once every posting list is exhausted.
+     */
+    private int next() {
+      while (heapSize > 0) {
+        int cursor = heap[0];
+        int id = currentIds[cursor];
+        if (++positions[cursor] < ends[cursor]) {
+          currentIds[cursor] = layout.postingIds.getInt(positions[cursor] * Integer.BYTES);
+        }
+        else {
+          heap[0] = heap[--heapSize];
+        }
+        siftDown(0);
+        if (id != previous) {
+          previous = id;
+          return id;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * @return A copy of the row's vector.
+     */
+    private SparseVector rowVector() {
+      return new SparseVector(Arrays.copyOf(rowIndices, rowSize), Arrays.copyOf(rowWeights, rowSize));
+    }
+
+    /**
+     * <p>Walks the row and the mapped candidate vector together, summing in the same order as
+     * {@link SquaredEuclideanDistance} so the distances are identical.</p>
+     */
+    private float squaredEuclidean(int id) {
+      long j = layout.vectorStarts.getLong((long) id * Long.BYTES);
+      long end = layout.vectorStarts.getLong((id + 1L) * Long.BYTES);
+      float result = 0F;
+      int i = 0;
+      while (i < rowSize && j < end) {
+        int secondIndex = layout.vectorIndices.getInt(j * Integer.BYTES);
+        float diff;
+        if (rowIndices[i] == secondIndex) {
+          diff = rowWeights[i++] - layout.vectorWeights.getFloat(j++ * Float.BYTES);
+        }
+        else if (rowIndices[i] < secondIndex) {
+          diff = rowWeights[i++];
+        }
+        else {
+          diff = layout.vectorWeights.getFloat(j++ * Float.BYTES);
+        }
+        result += diff * diff;
+      }
+      for (; i < rowSize; i++) {
+        result += rowWeights[i] * rowWeights[i];
+      }
+      for (; j < end; j++) {
+        float weight = layout.vectorWeights.getFloat(j * Float.BYTES);
+        result += weight * weight;
+      }
+      return result;
+    }
+
+    /**
+     * @return The first position in {@code [start, end)} whose id is greater than the row, or the end.
+     */
+    private long firstAfter(long start, long end, int row) {
+      long low = start;
+      long high = end;
+      while (low < high) {
+        long middle = (low + high) >>> 1;
+        if (layout.postingIds.getInt(middle * Integer.BYTES) <= row) {
+          low = middle + 1;
+        }
+        else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    private void siftDown(int slot) {
+      int cursor = heap[slot];
+      while (2 * slot + 1 < heapSize) {
+        int child = 2 * slot + 1;
+        if (child + 1 < heapSize && currentIds[heap[child + 1]] < currentIds[heap[child]]) {
+          child++;
+        }
+        if (currentIds[cursor] <= currentIds[heap[child]]) {
+          break;
+        }
+        heap[slot] = heap[child];
+        slot = child;
+      }
+      heap[slot] = cursor;
+    }
+  }
+
+  /**
+   * <p>The next edge of a run, ordered by its ids, read through a small direct buffer.</p>
+   */
+  private static final class RunCursor
+      implements Comparable<RunCursor>
+  {
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * The current edge, its first id in the high bits, so edges compare in the order they were written.
+     */
+    private long edge;
+
+    private RunCursor(Path run) {
+      try {
+        this.channel = FileChannel.open(run, StandardOpenOption.READ);
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      this.buffer = ByteBuffer.allocateDirect(RUN_READ_BYTES);
+      buffer.flip();
+    }
+
+    private boolean advance() {
+      if (buffer.remaining() < EDGE_BYTES) {
+        buffer.compact();
+        try {
+          int read = 0;
+          while (buffer.position() < EDGE_BYTES && read >= 0) {
+            read = channel.read(buffer);
+          }
+        }
+        catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        buffer.flip();
+        if (buffer.remaining() < EDGE_BYTES) {
+          return false;
+        }
+      }
+      edge = ((long) buffer.getInt() << 32) | (buffer.getInt() & 0xFFFFFFFFL);
+      return true;
+    }
+
+    private void close() {
+      try {
+        channel.close();
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public int compareTo(RunCursor o) {
+      return Long.compare(edge, o.edge);
+    }
+  }
+
+  /**
+   * <p>A {@link dariush.griffin.group.membership.clusters.utilities.UnionFind} whose parents and sizes are mapped
+   * files rather than arrays.</p>
+   */
+  private final class MappedUnionFind
+  {
+    private final MappedSegments parents;
+
+    private final MappedSegments sizes;
+
+    private MappedUnionFind(int size, Path directory, List<MappedSegments> files) {
+      this.parents = map(directory.resolve("parents"), (long) size * Integer.BYTES, files);
+      this.sizes = map(directory.resolve("sizes"), (long) size * Integer.BYTES, files);
+      for (int id = 0; id < size; id++) {
+        parents.putInt((long) id * Integer.BYTES, id);
+        sizes.putInt((long) id * Integer.BYTES, 1);
+      }
+    }
+
+    private int parent(int id) {
+      return parents.getInt((long) id * Integer.BYTES);
+    }
+
+    private int find(int id) {
+      while (parent(id) != id) {
+        int grandparent = parent(parent(id));
+        parents.putInt((long) id * Integer.BYTES, grandparent);
+        id = grandparent;
+      }
+      return id;
+    }
+
+    private void union(int first, int second) {
+      int firstRoot = find(first);
+      int secondRoot = find(second);
+      if (firstRoot == secondRoot) {
+        return;
+      }
+      int firstSize = sizes.getInt((long) firstRoot * Integer.BYTES);
+      int secondSize = sizes.getInt((long) secondRoot * Integer.BYTES);
+      if (firstSize < secondSize) {
+        int swap = firstRoot;
+        firstRoot = secondRoot;
+        secondRoot = swap;
+      }
+      parents.putInt((long) secondRoot * Integer.BYTES, firstRoot);
+      sizes.putInt((long) firstRoot * Integer.BYTES, firstSize + secondSize);
+    }
+  }
+}
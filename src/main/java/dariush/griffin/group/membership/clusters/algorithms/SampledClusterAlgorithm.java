@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.algorithms;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import dariush.griffin.group.membership.clusters.metrics.DistanceMetric;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.Cluster;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import dariush.griffin.group.membership.clusters.query.GroupQueryService;
+import dariush.griffin.group.membership.clusters.query.Neighbour;
+import dariush.griffin.group.membership.clusters.scoring.ClusterScorer;
+import dariush.griffin.group.membership.clusters.utilities.IndexedGroups;
+
+/**
+ * <p>An approximate algorithm for mappings too large to cluster exactly. A random sample of the {@link Group}s is
+ * clustered with the {@link AgglomerativeClusterAlgorithm}, and every other {@link Group} joins the cluster of its
+ * nearest sampled {@link Group}, if that is within the minimum distance, or is left as an outlier in a cluster of its
+ * own.</p><br><p>The steps are as follows:<ol><li>Split the {@link Group}s into strata by the power of two of their
+ * member count and sample the same fraction of each, so small and large {@link Group}s are both represented.</li>
+ * <li>Cluster the sample.</li><li>Index the sampled {@link Group}s, the representatives of their clusters, in a
+ * {@link GroupQueryService}.</li><li>Assign the remaining {@link Group}s in parallel with a nearest neighbour query
+ * each, bounded by the minimum distance so candidates beyond it are pruned from the start.</li></ol></p><br><p>Single
+ * linkage chains through {@link Group}s that may not be sampled, so the result can split clusters the exact algorithm
+ * would join. To measure that, a held out subset of the unsampled {@link Group}s is clustered exactly together with the
+ * sample, and the Rand index between that and the approximate assignment of the held out {@link Group}s is reported
+ * by {@link #getEstimatedRandIndex()}.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class SampledClusterAlgorithm
+    implements ClusterAlgorithm
+{
+  private static final int DEFAULT_HOLDOUT_SIZE = 1000;
+
+  private static final long DEFAULT_SEED = 0x5EED;
+
+  /**
+   * An assignment of a {@link Group} that is not within the minimum distance of any sampled {@link Group}.
+   */
+  private static final int OUTLIER = -1;
+
+  private final MembershipMapping membershipMapping;
+
+  private final DistanceMetric distanceMetric;
+
+  private final float minDistance;
+
+  private final double sampleFraction;
+
+  private final int holdoutSize;
+
+  private final long seed;
+
+  private int sampleSize;
+
+  private int outlierCount;
+
+  private double estimatedRandIndex = Double.NaN;
+
+  /**
+   * @param membershipMapping           The mapping whose {@link Group}s will be clustered.
+   * @param minSquaredEuclideanDistance {@link Group}s closer than this distance are clustered together.
+   * @param sampleFraction              The fraction of {@link Group}s clustered exactly, in (0, 1].
+   */
+  public SampledClusterAlgorithm(
+      MembershipMapping membershipMapping,
+      float minSquaredEuclideanDistance,
+      double sampleFraction)
+  {
+    this(membershipMapping, new SquaredEuclideanDistance(), minSquaredEuclideanDistance, sampleFraction,
+        DEFAULT_HOLDOUT_SIZE, DEFAULT_SEED);
+  }
+
+  /**
+   * @param membershipMapping The mapping whose {@link Group}s will be clustered.
+   * @param distanceMetric    The metric used to measure the distance between {@link Group}s.
+   * @param minDistance       {@link Group}s closer than this distance are clustered together.
+   * @param sampleFraction    The fraction of {@link Group}s clustered exactly, in (0, 1].
+   * @param holdoutSize       The most unsampled {@link Group}s used to estimate the agreement with exact clustering.
+   * @param seed              The seed of the random sample, the same seed gives the same clusters.
+   * @throws IllegalArgumentException If the sample fraction is not in (0, 1] or the holdout size is negative.
+   */
+  public SampledClusterAlgorithm(
+      MembershipMapping membershipMapping,
+      DistanceMetric distanceMetric,
+      float minDistance,
+      double sampleFraction,
+      int holdoutSize,
+      long seed)
+  {
+    if (!(sampleFraction > 0D && sampleFraction <= 1D) || holdoutSize < 0) {
+      throw new IllegalArgumentException(String.format(
+          "Sample fraction %f must be in (0, 1] and holdout size %d not negative.", sampleFraction, holdoutSize));
+    }
+    this.membershipMapping = membershipMapping;
+    this.distanceMetric = distanceMetric;
+    this.minDistance = minDistance;
+    this.sampleFraction = sampleFraction;
+    this.holdoutSize = holdoutSize;
+    this.seed = seed;
+  }
+
+  @Override
+  public Set<Cluster> cluster() {
+    Set<Cluster> result = new HashSet<>();
+    cluster(result::add);
+    return result;
+  }
+
+  /**
+   * <p>Outliers are passed to the sink as soon as assignment finishes, the sampled clusters once the held out
+   * {@link Group}s have been compared.</p>
+   *
+   * @param sink Receives each {@link Cluster}.
+   */
+  @Override
+  public void cluster(Consumer<Cluster> sink) {
+    Random random = new Random(seed);
+    Group[] groups = membershipMapping.getGroups().toArray(new Group[0]);
+    boolean[] sampled = stratifiedSample(groups, random);
+
+    List<Group> sample = new ArrayList<>();
+    List<Group> remaining = new ArrayList<>();
+    for (int i = 0; i < groups.length; i++) {
+      (sampled[i] ? sample : remaining).add(groups[i]);
+    }
+    sampleSize = sample.size();
+
+    // Resolved once on the sample, so the held out groups are clustered the same way.
+    IndexedGroups sampleGroups = new IndexedGroups(sample);
+    CandidateStrategy candidateStrategy = CandidateStrategy.AUTOMATIC.resolve(sampleGroups, distanceMetric,
+        minDistance);
+    List<Cluster> sampleClusters = new ArrayList<>();
+    new AgglomerativeClusterAlgorithm(sampleGroups, distanceMetric, minDistance, null, candidateStrategy)
+        .cluster(sampleClusters::add);
+    Map<Group, Integer> clusterOfSampled = new IdentityHashMap<>(sample.size());
+    for (int index = 0; index < sampleClusters.size(); index++) {
+      for (Group group : sampleClusters.get(index).getGroups()) {
+        clusterOfSampled.put(group, index);
+      }
+    }
+
+    int[] assignments = assign(remaining, new GroupQueryService(sample, distanceMetric), clusterOfSampled);
+
+    outlierCount = 0;
+    for (int i = 0; i < assignments.length; i++) {
+      if (assignments[i] == OUTLIER) {
+        Cluster outlier = new Cluster();
+        outlier.addGroup(remaining.get(i));
+        sink.accept(outlier);
+        outlierCount++;
+      }
+      else {
+        sampleClusters.get(assignments[i]).addGroup(remaining.get(i));
+      }
+    }
+
+    estimatedRandIndex = estimateRandIndex(sample, remaining, assignments, candidateStrategy, random);
+    sampleClusters.forEach(sink);
+  }
+
+  /**
+   * @return The number of {@link Group}s clustered exactly by the last {@link #cluster()}.
+   */
+  public int getSampleSize() {
+    return sampleSize;
+  }
+
+  /**
+   * @return The number of unsampled {@link Group}s left in clusters of their own by the last {@link #cluster()}.
+   */
+  public int getOutlierCount() {
+    return outlierCount;
+  }
+
+  /**
+   * @return The Rand index, from 0 to 1, between the last {@link #cluster()} and an exact clustering of the held out
+   * {@link Group}s, or {@link Double#NaN} if fewer than two {@link Group}s were held out.
+   */
+  public double getEstimatedRandIndex() {
+    return estimatedRandIndex;
+  }
+
+  /**
+   * <p>Samples the same fraction of every stratum, rounded up, so each stratum keeps at least one {@link Group}.</p>
+   *
+   * @return Whether each {@link Group} is sampled, positioned to match the groups.
+   */
+  private boolean[] stratifiedSample(Group[] groups, Random random) {
+    Map<Integer, List<Integer>> strata = new TreeMap<>();
+    for (int i = 0; i < groups.length; i++) {
+      int stratum = 32 - Integer.numberOfLeadingZeros(groups[i].getMembers().size());
+      strata.computeIfAbsent(stratum, key -> new ArrayList<>()).add(i);
+    }
+
+    boolean[] result = new boolean[groups.length];
+    for (List<Integer> stratum : strata.values()) {
+      int count = (int) Math.min(stratum.size(), Math.ceil(stratum.size() * sampleFraction));
+      // A partial Fisher-Yates shuffle, the first count positions are a uniform sample.
+      for (int i = 0; i < count; i++) {
+        int j = i + random.nextInt(stratum.size() - i);
+        Integer swapped = stratum.get(j);
+        stratum.set(j, stratum.get(i));
+        stratum.set(i, swapped);
+        result[swapped] = true;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return The index of the sampled cluster each remaining {@link Group} joins, or {@link #OUTLIER}.
+   */
+  private int[] assign(List<Group> remaining, GroupQueryService representatives,
+      Map<Group, Integer> clusterOfSampled)
+  {
+    int[] result = new int[remaining.size()];
+    IntStream.range(0, result.length).parallel().forEach(i -> {
+      List<Neighbour> nearest = representatives.nearest(remaining.get(i), 1, minDistance);
+      result[i] = nearest.isEmpty() ? OUTLIER : clusterOfSampled.get(nearest.get(0).getGroup());
+    });
+    return result;
+  }
+
+  /**
+   * <p>Clusters the sample and a random subset of the remaining {@link Group}s exactly, and compares how the subset
+   * was split by both. Outliers each count as their own cluster.</p>
+   *
+   * @param candidateStrategy The strategy the sample was clustered with.
+   */
+  private double estimateRandIndex(
+      List<Group> sample,
+      List<Group> remaining,
+      int[] assignments,
+      CandidateStrategy candidateStrategy,
+      Random random)
+  {
+    int count = Math.min(holdoutSize, remaining.size());
+    if (count < 2) {
+      return Double.NaN;
+    }
+    int[] positions = IntStream.range(0, remaining.size()).toArray();
+    for (int i = 0; i < count; i++) {
+      int j = i + random.nextInt(positions.length - i);
+      int swapped = positions[j];
+      positions[j] = positions[i];
+      positions[i] = swapped;
+    }
+
+    List<Group> exactGroups = new ArrayList<>(sample);
+    Map<Group, Integer> approximateLabels = new IdentityHashMap<>(count);
+    for (int i = 0; i < count; i++) {
+      int position = positions[i];
+      Group group = remaining.get(position);
+      exactGroups.add(group);
+      // Outliers are given labels that cannot collide with cluster indices.
+      approximateLabels.put(group, (assignments[position] == OUTLIER) ? -1 - position : assignments[position]);
+    }
+
+    int[] approximate = new int[count];
+    int[] exact = new int[count];
+    int label = 0;
+    int held = 0;
+    for (Cluster cluster : new AgglomerativeClusterAlgorithm(exactGroups, distanceMetric, minDistance, null,
+        candidateStrategy).cluster())
+    {
+      for (Group group : cluster.getGroups()) {
+        Integer approximateLabel = approximateLabels.get(group);
+        if (approximateLabel != null) {
+          approximate[held] = approximateLabel;
+          exact[held] = label;
+          held++;
+        }
+      }
+      label++;
+    }
+    return ClusterScorer.randIndex(approximate, exact);
+  }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.batch;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import dariush.griffin.group.membership.clusters.algorithms.ClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.model.Cluster;
+
+/**
+ * <p>Runs many independent {@link ClusterJob}s at once, such as one per customer, within a memory budget.</p><br>
+ * <p>Each job reserves its estimated memory when it is admitted and releases it when it finishes, and a job is only
+ * admitted while its reservation fits in what is left of the budget. A job estimated at more than the whole budget
+ * reserves the whole budget, so it runs once nothing else is running rather than never.</p><br><p>Jobs are queued
+ * per tenant and tenants take turns: the next job comes from the tenant with the fewest running jobs, ties going to
+ * the tenant admitted least recently, so a tenant that submits thousands of jobs does not hold back one that submits a
+ * few. If the next job does not fit, no other tenant overtakes it, so a large job is delayed until memory frees up but
+ * never starved by a stream of smaller ones.</p><br><p>On Java 21 and later, when the JAR is on the class path, every job runs on its
+ * own virtual thread. Otherwise, including on Java 8, jobs run on a fixed pool of daemon threads, one per job that may
+ * run at once. Setting the system property {@value #POOLED_PROPERTY} to true forces the pool. Unless a concurrency is
+ * given, virtual threads leave admission to the memory budget alone, while the pool runs one job per available
+ * processor.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class BatchClusterExecutor
+    implements AutoCloseable
+{
+  public static final String POOLED_PROPERTY = "group.membership.clusters.pooledJobThreads";
+
+  private static final String VIRTUAL_THREADS_CLASS =
+      "dariush.griffin.group.membership.clusters.batch.VirtualJobThreads";
+
+  private final long memoryBudgetBytes;
+
+  private final int maxConcurrency;
+
+  private final JobThreads jobThreads;
+
+  private final ExecutorService executor;
+
+  /**
+   * The tenants with queued or running jobs, in the order they first submitted one.
+   */
+  private final Map<String, Tenant> tenants = new LinkedHashMap<>();
+
+  /**
+   * The number of jobs admitted, orders the tenants' last admissions.
+   */
+  private long admissionCount;
+
+  private long reservedBytes;
+
+  private long peakReservedBytes;
+
+  private int runningCount;
+
+  private int queuedCount;
+
+  private long completedCount;
+
+  private boolean closed;
+
+  /**
+   * <p>Constructs an executor whose admission is bounded by the memory budget alone when jobs run on virtual threads,
+   * and which otherwise runs as many jobs at once as there are available processors.</p>
+   *
+   * @param memoryBudgetBytes The most memory reserved by running jobs at once.
+   * @throws IllegalArgumentException If the budget is not positive.
+   */
+  public BatchClusterExecutor(long memoryBudgetBytes) {
+    this(memoryBudgetBytes, loadJobThreads());
+  }
+
+  private BatchClusterExecutor(long memoryBudgetBytes, JobThreads jobThreads) {
+    this(memoryBudgetBytes, jobThreads.getDefaultConcurrency(), jobThreads);
+  }
+
+  /**
+   * @param memoryBudgetBytes The most memory reserved by running jobs at once.
+   * @param maxConcurrency    The most jobs that run at once.
+   * @throws IllegalArgumentException If either is not positive.
+   */
+  public BatchClusterExecutor(long memoryBudgetBytes, int maxConcurrency) {
+    this(memoryBudgetBytes, maxConcurrency, loadJobThreads());
+  }
+
+  private BatchClusterExecutor(long memoryBudgetBytes, int maxConcurrency, JobThreads jobThreads) {
+    if (memoryBudgetBytes < 1 || maxConcurrency < 1) {
+      throw new IllegalArgumentException(String.format(
+          "Memory budget %d and concurrency %d must be positive.", memoryBudgetBytes, maxConcurrency));
+    }
+    this.memoryBudgetBytes = memoryBudgetBytes;
+    this.maxConcurrency = maxConcurrency;
+    this.jobThreads = jobThreads;
+    this.executor = jobThreads.newExecutor(maxConcurrency);
+  }
+
+  /**
+   * <p>Queues the job, it runs once it is admitted.</p>
+   *
+   * @param job The job to run.
+   * @return A future completed with the job's result, or with the exception its algorithm threw.
+   * @throws IllegalStateException If the executor has been closed.
+   */
+  public synchronized CompletableFuture<JobResult> submit(ClusterJob job) {
+    if (closed) {
+      throw new IllegalStateException("The executor has been closed.");
+    }
+    PendingJob pending = new PendingJob(job, System.nanoTime());
+    Tenant tenant = tenants.get(job.getTenant());
+    if (tenant == null) {
+      tenant = new Tenant(job.getTenant());
+      tenants.put(job.getTenant(), tenant);
+    }
+    tenant.queue.addLast(pending);
+    queuedCount++;
+    admit();
+    return pending.future;
+  }
+
+  /**
+   * <p>Stops accepting jobs, waits for every queued and running job to finish and then stops the threads.</p>
+   *
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  @Override
+  public void close() throws InterruptedException {
+    synchronized (this) {
+      closed = true;
+      while (runningCount > 0 || queuedCount > 0) {
+        wait();
+      }
+    }
+    executor.shutdown();
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @return "virtual" if jobs run on virtual threads, otherwise "platform".
+   */
+  public String getThreadKind() {
+    return jobThreads.toString();
+  }
+
+  /**
+   * @return The most jobs that run at once, {@link Integer#MAX_VALUE} if only the memory budget limits them.
+   */
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  /**
+   * @return The memory currently reserved by running jobs.
+   */
+  public synchronized long getReservedBytes() {
+    return reservedBytes;
+  }
+
+  /**
+   * @return The most memory reserved by running jobs at once.
+   */
+  public synchronized long getPeakReservedBytes() {
+    return peakReservedBytes;
+  }
+
+  /**
+   * @return The number of jobs running.
+   */
+  public synchronized int getRunningCount() {
+    return runningCount;
+  }
+
+  /**
+   * @return The number of jobs waiting to be admitted.
+   */
+  public synchronized int getQueuedCount() {
+    return queuedCount;
+  }
+
+  /**
+   * @return The number of jobs that have finished, successfully or not.
+   */
+  public synchronized long getCompletedCount() {
+    return completedCount;
+  }
+
+  @Override
+  public synchronized String toString() {
+    final StringBuilder sb = new StringBuilder("BatchClusterExecutor{");
+    sb.append("memoryBudgetBytes=").append(memoryBudgetBytes);
+    sb.append(", maxConcurrency=").append(maxConcurrency);
+    sb.append(", threadKind=").append(jobThreads);
+    sb.append(", reservedBytes=").append(reservedBytes);
+    sb.append(", runningCount=").append(runningCount);
+    sb.append(", queuedCount=").append(queuedCount);
+    sb.append(", completedCount=").append(completedCount);
+    sb.append('}');
+    return sb.toString();
+  }
+
+  /**
+   * <p>Admits jobs in turn while they fit, stopping at the first job that does not.</p>
+   */
+  private void admit() {
+    while (runningCount < maxConcurrency) {
+      Tenant next = null;
+      for (Tenant tenant : tenants.values()) {
+        if (!tenant.queue.isEmpty() && (next == null || tenant.runningCount < next.runningCount ||
+            (tenant.runningCount == next.runningCount && tenant.lastAdmission < next.lastAdmission)))
+        {
+          next = tenant;
+        }
+      }
+      if (next == null) {
+        return;
+      }
+      PendingJob pending = next.queue.peekFirst();
+      long reservation = Math.min(pending.job.getEstimatedBytes(), memoryBudgetBytes);
+      if (reservedBytes + reservation > memoryBudgetBytes) {
+        return;
+      }
+
+      next.queue.pollFirst();
+      next.runningCount++;
+      next.lastAdmission = admissionCount++;
+      queuedCount--;
+      runningCount++;
+      reservedBytes += reservation;
+      peakReservedBytes = Math.max(peakReservedBytes, reservedBytes);
+      Tenant tenant = next;
+      executor.execute(() -> run(tenant, pending, reservation));
+    }
+  }
+
+  /**
+   * <p>Runs the job and releases its reservation before completing its future, so a caller that submits more work
+   * on completion finds the memory free.</p>
+   */
+  private void run(Tenant tenant, PendingJob pending, long reservation) {
+    long start = System.nanoTime();
+    JobResult result = null;
+    Throwable failure = null;
+    try {
+      ClusterAlgorithm algorithm = pending.job.createAlgorithm();
+      Set<Cluster> clusters = algorithm.cluster();
+      result = new JobResult(pending.job, clusters, start - pending.submitted, System.nanoTime() - start,
+          reservation, Thread.currentThread().getName());
+    }
+    catch (Throwable e) {
+      failure = e;
+    }
+
+    synchronized (this) {
+      tenant.runningCount--;
+      if (tenant.runningCount == 0 && tenant.queue.isEmpty()) {
+        tenants.remove(tenant.name);
+      }
+      runningCount--;
+      reservedBytes -= reservation;
+      completedCount++;
+      admit();
+      notifyAll();
+    }
+    if (failure == null) {
+      pending.future.complete(result);
+    }
+    else {
+      pending.future.completeExceptionally(failure);
+    }
+  }
+
+  /**
+   * <p>The virtual thread implementation only exists in the multi-release part of the JAR, without it we fall back to
+   * the pool.</p>
+   */
+  private static JobThreads loadJobThreads() {
+    if (!Boolean.getBoolean(POOLED_PROPERTY)) {
+      try {
+        return (JobThreads) Class.forName(VIRTUAL_THREADS_CLASS).getDeclaredConstructor().newInstance();
+      }
+      catch (ReflectiveOperationException | LinkageError ignored) {
+        // Fall through to the pool.
+      }
+    }
+    return new PooledJobThreads();
+  }
+
+  private static final class Tenant
+  {
+    private final String name;
+
+    private final ArrayDeque<PendingJob> queue = new ArrayDeque<>();
+
+    private int runningCount;
+
+    /**
+     * When the tenant last had a job admitted, -1 if it has not.
+     */
+    private long lastAdmission = -1;
+
+    private Tenant(String name) {
+      this.name = name;
+    }
+  }
+
+  private static final class PendingJob
+  {
+    private final ClusterJob job;
+
+    private final long submitted;
+
+    private final CompletableFuture<JobResult> future = new CompletableFuture<>();
+
+    private PendingJob(ClusterJob job, long submitted) {
+      this.job = job;
+      this.submitted = submitted;
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.batch;
+
+import java.util.function.Supplier;
+
+import dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.algorithms.ClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+
+/**
+ * <p>A clustering job for a {@link BatchClusterExecutor}: the tenant it belongs to, an estimate of the memory it
+ * needs while running, and a supplier of the {@link ClusterAlgorithm} to run. The algorithm is only created once the
+ * job is admitted, so queued jobs do not hold its working memory.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class ClusterJob
+{
+  /**
+   * A rough estimate of the working memory per {@link Group}: its id, its cluster and component, and its share of
+   * the result.
+   */
+  static final long BYTES_PER_GROUP = 256;
+
+  /**
+   * A rough estimate of the working memory per membership: its posting list entry and its vector component.
+   */
+  static final long BYTES_PER_MEMBERSHIP = 32;
+
+  private final String tenant;
+
+  private final String name;
+
+  private final long estimatedBytes;
+
+  private final Supplier<? extends ClusterAlgorithm> algorithm;
+
+  /**
+   * @param tenant         The tenant the job belongs to, jobs are scheduled fairly between tenants.
+   * @param name           The name of the job, reported with its result.
+   * @param estimatedBytes The memory the job is expected to need while running.
+   * @param algorithm      Creates the algorithm to run, once the job is admitted.
+   * @throws IllegalArgumentException If the estimate is negative.
+   */
+  public ClusterJob(String tenant, String name, long estimatedBytes, Supplier<? extends ClusterAlgorithm> algorithm) {
+    if (estimatedBytes < 0) {
+      throw new IllegalArgumentException(
+          String.format("Job %s of tenant %s has a negative memory estimate %d.", name, tenant, estimatedBytes));
+    }
+    this.tenant = tenant;
+    this.name = name;
+    this.estimatedBytes = estimatedBytes;
+    this.algorithm = algorithm;
+  }
+
+  /**
+   * <p>Creates a job that clusters the mapping with an {@link AgglomerativeClusterAlgorithm}, estimating its memory
+   * with {@link #estimateBytes(MembershipMapping)}.</p>
+   *
+   * @param tenant                      The tenant the job belongs to.
+   * @param name                        The name of the job.
+   * @param membershipMapping           The mapping whose {@link Group}s will be clustered.
+   * @param minSquaredEuclideanDistance {@link Group}s closer than this distance are clustered together.
+   * @return The job.
+   */
+  public static ClusterJob of(
+      String tenant,
+      String name,
+      MembershipMapping membershipMapping,
+      float minSquaredEuclideanDistance)
+  {
+    return new ClusterJob(tenant, name, estimateBytes(membershipMapping),
+        () -> new AgglomerativeClusterAlgorithm(membershipMapping, minSquaredEuclideanDistance));
+  }
+
+  /**
+   * <p>Estimates the working memory of clustering the mapping from its number of {@link Group}s and memberships. The
+   * mapping itself is not counted, it is held whether or not the job runs.</p>
+   *
+   * @param membershipMapping A mapping.
+   * @return The estimated bytes.
+   */
+  public static long estimateBytes(MembershipMapping membershipMapping) {
+    long membershipCount = 0;
+    for (Group group : membershipMapping.getGroups()) {
+      membershipCount += group.getMembers().size();
+    }
+    return membershipMapping.getGroups().size() * BYTES_PER_GROUP + membershipCount * BYTES_PER_MEMBERSHIP;
+  }
+
+  /**
+   * @return The tenant the job belongs to.
+   */
+  public String getTenant() {
+    return tenant;
+  }
+
+  /**
+   * @return The name of the job.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return The memory the job is expected to need while running.
+   */
+  public long getEstimatedBytes() {
+    return estimatedBytes;
+  }
+
+  /**
+   * @return A new instance of the job's algorithm.
+   */
+  public ClusterAlgorithm createAlgorithm() {
+    return algorithm.get();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("ClusterJob{");
+    sb.append("tenant='").append(tenant).append('\'');
+    sb.append(", name='").append(name).append('\'');
+    sb.append(", estimatedBytes=").append(estimatedBytes);
+    sb.append('}');
+    return sb.toString();
+  }
+}
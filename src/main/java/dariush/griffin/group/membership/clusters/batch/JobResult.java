@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.batch;
+
+import java.util.Collections;
+import java.util.Set;
+
+import dariush.griffin.group.membership.clusters.model.Cluster;
+
+/**
+ * <p>The {@link Cluster}s a {@link ClusterJob} found, with its metrics: how long it waited to be admitted, how long it
+ * ran and the memory reserved for it.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class JobResult
+{
+  private final ClusterJob job;
+
+  private final Set<Cluster> clusters;
+
+  private final long queuedNanos;
+
+  private final long runNanos;
+
+  private final long reservedBytes;
+
+  private final String threadName;
+
+  JobResult(ClusterJob job, Set<Cluster> clusters, long queuedNanos, long runNanos, long reservedBytes,
+      String threadName)
+  {
+    this.job = job;
+    this.clusters = clusters;
+    this.queuedNanos = queuedNanos;
+    this.runNanos = runNanos;
+    this.reservedBytes = reservedBytes;
+    this.threadName = threadName;
+  }
+
+  /**
+   * @return The job.
+   */
+  public ClusterJob getJob() {
+    return job;
+  }
+
+  /**
+   * @return An unmodifiable set of the job's {@link Cluster}s.
+   */
+  public Set<Cluster> getClusters() {
+    return Collections.unmodifiableSet(clusters);
+  }
+
+  /**
+   * @return The time from submission until the job was admitted, in nanoseconds.
+   */
+  public long getQueuedNanos() {
+    return queuedNanos;
+  }
+
+  /**
+   * @return The time the job ran for, in nanoseconds.
+   */
+  public long getRunNanos() {
+    return runNanos;
+  }
+
+  /**
+   * @return The memory reserved for the job, its estimate capped at the executor's budget.
+   */
+  public long getReservedBytes() {
+    return reservedBytes;
+  }
+
+  /**
+   * @return The name of the thread the job ran on.
+   */
+  public String getThreadName() {
+    return threadName;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("JobResult{");
+    sb.append("job=").append(job);
+    sb.append(", clusterCount=").append(clusters.size());
+    sb.append(", queuedNanos=").append(queuedNanos);
+    sb.append(", runNanos=").append(runNanos);
+    sb.append(", reservedBytes=").append(reservedBytes);
+    sb.append(", threadName='").append(threadName).append('\'');
+    sb.append('}');
+    return sb.toString();
+  }
+}
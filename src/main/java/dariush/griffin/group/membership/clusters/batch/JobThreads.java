@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.batch;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * <p>Creates the threads {@link BatchClusterExecutor} runs jobs on. The virtual thread implementation only exists in
+ * the Java 21 layer of the multi-release JAR.</p>
+ *
+ * @author Dariush Griffin
+ */
+interface JobThreads
+{
+  /**
+   * @param maxConcurrency The most jobs that will run at once.
+   * @return An executor that can run that many jobs at once.
+   */
+  ExecutorService newExecutor(int maxConcurrency);
+
+  /**
+   * @return The most jobs to run at once when the caller does not say.
+   */
+  int getDefaultConcurrency();
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import dariush.griffin.group.membership.clusters.algorithms.ClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.model.Cluster;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import dariush.griffin.group.membership.clusters.model.MembershipMappingBuilder;
+
+/**
+ * <p>Clusters edge files into {@code group -> cluster id} assignments without holding either the input lines or the
+ * output in memory. Each line of an input is an edge, {@code member, group} and an optional weight, separated by a
+ * delimiter; blank lines and lines starting with {@code #} are skipped, and a missing weight is 1.</p><br><p>The
+ * stages run on their own threads, connected by bounded queues, so each overlaps the next:<ol><li>Parse: one thread
+ * per input file reads lines and splits them into batches of edges, routing each edge by the hash of its group name
+ * to one indexer.</li><li>Index: a thread per processor adds its batches to a {@link MembershipMappingBuilder},
+ * taking every batch of one input before the next.</li><li>Cluster: once every edge is indexed the mapping is built
+ * and clustered, streaming each {@link Cluster} as it is produced, see
+ * {@link ClusterAlgorithm#cluster(java.util.function.Consumer)}.</li><li>Write: a thread numbers the clusters in the
+ * order they arrive and writes a {@code group, cluster id} line per {@link Group}.</li></ol></p><br><p>Clustering
+ * needs every edge, so it cannot start before indexing finishes, but parsing and indexing overlap, as do clustering and
+ * writing.</p><br><p>Every edge of a group is applied by the same indexer, in the order of the inputs and of the lines
+ * within each input. So when the same {@code member, group} edge appears more than once the last line wins, with the
+ * inputs taken in the order given, however the threads are scheduled. A later input is parsed while earlier ones are
+ * indexed only until its queues fill.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class ClusterPipeline
+{
+  /**
+   * The number of edges handed from a parser to an indexer at once.
+   */
+  static final int BATCH_SIZE = 4096;
+
+  /**
+   * The batches queued across all indexers for each input.
+   */
+  private static final int QUEUE_CAPACITY = 64;
+
+  private static final EdgeBatch END_OF_EDGES = new EdgeBatch();
+
+  private static final Cluster END_OF_CLUSTERS = new Cluster();
+
+  private final List<Path> inputs;
+
+  private final char delimiter;
+
+  private final Function<MembershipMapping, ? extends ClusterAlgorithm> engine;
+
+  private final int indexerCount;
+
+  /**
+   * @param inputs    The edge files, {@code -} reads standard input.
+   * @param delimiter The character between the fields of a line.
+   * @param engine    Creates the algorithm that clusters the built mapping.
+   */
+  public ClusterPipeline(
+      List<Path> inputs,
+      char delimiter,
+      Function<MembershipMapping, ? extends ClusterAlgorithm> engine)
+  {
+    this(inputs, delimiter, engine, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * <p>Constructs the pipeline with a number of indexers, tests use several whatever the processor count.</p>
+   */
+  ClusterPipeline(
+      List<Path> inputs,
+      char delimiter,
+      Function<MembershipMapping, ? extends ClusterAlgorithm> engine,
+      int indexerCount)
+  {
+    this.inputs = inputs;
+    this.delimiter = delimiter;
+    this.engine = engine;
+    this.indexerCount = indexerCount;
+  }
+
+  /**
+   * <p>Runs the pipeline, writing a line per {@link Group} to the output.</p>
+   *
+   * @param output Receives the {@code group, cluster id} lines, separated by the delimiter. It is flushed, not
+   *               closed.
+   * @return The timings of the parse, index, cluster and write stages.
+   * @throws IOException              If an input cannot be read or the output cannot be written.
+   * @throws IllegalArgumentException If a line is not an edge.
+   * @throws InterruptedException     If interrupted while waiting for a stage.
+   */
+  public List<StageTiming> run(Writer output) throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    ExecutorService threads = Executors.newFixedThreadPool(inputs.size() + indexerCount + 1, runnable -> {
+      Thread thread = new Thread(runnable, "cluster-pipeline");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      // A queue per indexer and input, so each indexer can take the inputs in order.
+      List<List<BlockingQueue<EdgeBatch>>> batches = new ArrayList<>();
+      for (int i = 0; i < indexerCount; i++) {
+        List<BlockingQueue<EdgeBatch>> inputBatches = new ArrayList<>();
+        for (int k = 0; k < inputs.size(); k++) {
+          inputBatches.add(new ArrayBlockingQueue<>(Math.max(2, QUEUE_CAPACITY / indexerCount)));
+        }
+        batches.add(inputBatches);
+      }
+      MembershipMappingBuilder builder = new MembershipMappingBuilder();
+      AtomicLong edgeCount = new AtomicLong();
+
+      List<Future<?>> parsers = new ArrayList<>();
+      for (int k = 0; k < inputs.size(); k++) {
+        int input = k;
+        parsers.add(threads.submit(() -> {
+          edgeCount.addAndGet(parse(input, batches));
+          return null;
+        }));
+      }
+      List<Future<?>> indexers = new ArrayList<>();
+      for (int i = 0; i < indexerCount; i++) {
+        List<BlockingQueue<EdgeBatch>> inputBatches = batches.get(i);
+        indexers.add(threads.submit(() -> {
+          index(inputBatches, builder);
+          return null;
+        }));
+      }
+
+      Throwable failure = await(parsers, null);
+      long parsed = System.nanoTime();
+      failure = await(indexers, failure);
+      rethrow(failure);
+      MembershipMapping mapping = builder.build();
+      long indexed = System.nanoTime();
+
+      BlockingQueue<Cluster> clusters = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+      AtomicLong groupCount = new AtomicLong();
+      AtomicLong writeStart = new AtomicLong();
+      Future<Long> writer = threads.submit(() -> write(clusters, output, groupCount, writeStart));
+      long clusterCount;
+      try {
+        ClusterAlgorithm algorithm = engine.apply(mapping);
+        AtomicLong counter = new AtomicLong();
+        algorithm.cluster(cluster -> {
+          counter.incrementAndGet();
+          put(clusters, cluster);
+        });
+        clusterCount = counter.get();
+      }
+      finally {
+        clusters.put(END_OF_CLUSTERS);
+      }
+      long clustered = System.nanoTime();
+      rethrow(await(Arrays.asList(writer), null));
+      long written = System.nanoTime();
+
+      List<StageTiming> timings = new ArrayList<>();
+      timings.add(new StageTiming("parse", "edges", 0, parsed - start, edgeCount.get()));
+      timings.add(new StageTiming("index", "edges", 0, indexed - start, edgeCount.get()));
+      timings.add(new StageTiming("cluster", "groups", indexed - start, clustered - start,
+          mapping.getGroups().size()));
+      timings.add(new StageTiming("write", "groups", Math.max(indexed, writeStart.get()) - start, written - start,
+          groupCount.get()));
+      timings.add(new StageTiming("total", "edges", 0, written - start, edgeCount.get()));
+      return timings;
+    }
+    finally {
+      threads.shutdownNow();
+    }
+  }
+
+  /**
+   * <p>Parses an input into a batch per indexer. Each indexer is sent the end marker even if parsing fails, so none
+   * waits for this input forever.</p>
+   *
+   * @return The number of edges parsed.
+   */
+  private long parse(int inputIndex, List<List<BlockingQueue<EdgeBatch>>> batches)
+      throws IOException, InterruptedException
+  {
+    Path input = inputs.get(inputIndex);
+    long edges = 0;
+    EdgeBatch[] indexerBatches = new EdgeBatch[indexerCount];
+    try (BufferedReader reader = open(input)) {
+      int lineNumber = 0;
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        lineNumber++;
+        if (line.isEmpty() || line.charAt(0) == '#') {
+          continue;
+        }
+        int first = line.indexOf(delimiter);
+        int second = (first < 0) ? -1 : line.indexOf(delimiter, first + 1);
+        if (first <= 0 || first == line.length() - 1 || second == first + 1) {
+          throw new IllegalArgumentException(
+              String.format("Line %d of %s is not 'member%sgroup[%sweight]': %s", lineNumber, input, delimiter,
+                  delimiter, line));
+        }
+        int groupEnd = (second < 0) ? line.length() : second;
+        float weight;
+        try {
+          weight = (second < 0) ? 1F : Float.parseFloat(line.substring(second + 1).trim());
+        }
+        catch (NumberFormatException e) {
+          throw new IllegalArgumentException(
+              String.format("Line %d of %s has an invalid weight: %s", lineNumber, input, line), e);
+        }
+        String group = line.substring(first + 1, groupEnd);
+        int indexer = (group.hashCode() & Integer.MAX_VALUE) % indexerCount;
+        if (indexerBatches[indexer] == null) {
+          indexerBatches[indexer] = new EdgeBatch();
+        }
+        indexerBatches[indexer].add(line.substring(0, first), group, weight);
+        edges++;
+        if (indexerBatches[indexer].size == BATCH_SIZE) {
+          batches.get(indexer).get(inputIndex).put(indexerBatches[indexer]);
+          indexerBatches[indexer] = null;
+        }
+      }
+      for (int indexer = 0; indexer < indexerCount; indexer++) {
+        if (indexerBatches[indexer] != null) {
+          batches.get(indexer).get(inputIndex).put(indexerBatches[indexer]);
+        }
+      }
+    }
+    finally {
+      for (int indexer = 0; indexer < indexerCount; indexer++) {
+        batches.get(indexer).get(inputIndex).put(END_OF_EDGES);
+      }
+    }
+    return edges;
+  }
+
+  /**
+   * <p>Adds an indexer's batches one input at a time. After a failed add the remaining batches are still taken, so no
+   * parser is left blocked on a full queue.</p>
+   */
+  private void index(List<BlockingQueue<EdgeBatch>> inputBatches, MembershipMappingBuilder builder)
+      throws InterruptedException
+  {
+    RuntimeException failure = null;
+    for (BlockingQueue<EdgeBatch> batches : inputBatches) {
+      for (EdgeBatch batch = batches.take(); batch != END_OF_EDGES; batch = batches.take()) {
+        if (failure == null) {
+          try {
+            for (int i = 0; i < batch.size; i++) {
+              builder.addMemberToGroup(batch.members[i], batch.groups[i], batch.weights[i]);
+            }
+          }
+          catch (RuntimeException e) {
+            failure = e;
+          }
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * <p>Writes the clusters until the end marker. After a failed write the remaining clusters are still taken, so the
+   * clustering thread is never left blocked on a full queue.</p>
+   *
+   * @return The number of clusters written.
+   */
+  private long write(BlockingQueue<Cluster> clusters, Writer output, AtomicLong groupCount, AtomicLong writeStart)
+      throws IOException, InterruptedException
+  {
+    IOException failure = null;
+    long clusterId = 0;
+    for (Cluster cluster = clusters.take(); cluster != END_OF_CLUSTERS; cluster = clusters.take()) {
+      if (clusterId == 0) {
+        writeStart.set(System.nanoTime());
+      }
+      if (failure == null) {
+        try {
+          for (Group group : cluster.getGroups()) {
+            output.write(group.getName());
+            output.write(delimiter);
+            output.write(Long.toString(clusterId));
+            output.write('\n');
+            groupCount.incrementAndGet();
+          }
+        }
+        catch (IOException e) {
+          failure = e;
+        }
+      }
+      clusterId++;
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    output.flush();
+    return clusterId;
+  }
+
+  private static BufferedReader open(Path input) throws IOException {
+    if (input.toString().equals("-")) {
+      return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+    }
+    return Files.newBufferedReader(input, StandardCharsets.UTF_8);
+  }
+
+  private static void put(BlockingQueue<Cluster> clusters, Cluster cluster) {
+    try {
+      clusters.put(cluster);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while writing clusters.", e);
+    }
+  }
+
+  /**
+   * @return The first failure of the futures, or the provided failure if there was one already.
+   */
+  private static Throwable await(List<? extends Future<?>> futures, Throwable failure) throws InterruptedException {
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      }
+      catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        }
+      }
+    }
+    return failure;
+  }
+
+  private static void rethrow(Throwable failure) throws IOException {
+    if (failure == null) {
+      return;
+    }
+    if (failure instanceof IOException) {
+      throw (IOException) failure;
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    throw new IllegalStateException(failure);
+  }
+
+  /**
+   * <p>Parsed edges, handed from a parser to an indexer.</p>
+   */
+  private static final class EdgeBatch
+  {
+    private final String[] members = new String[BATCH_SIZE];
+
+    private final String[] groups = new String[BATCH_SIZE];
+
+    private final float[] weights = new float[BATCH_SIZE];
+
+    private int size;
+
+    private void add(String member, String group, float weight) {
+      members[size] = member;
+      groups[size] = group;
+      weights[size] = weight;
+      size++;
+    }
+  }
+}
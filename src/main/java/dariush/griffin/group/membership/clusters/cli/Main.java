@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.cli;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.algorithms.CandidateStrategy;
+import dariush.griffin.group.membership.clusters.algorithms.CheckpointedClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.algorithms.ClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.algorithms.OutOfCoreClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.algorithms.SampledClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.metrics.CosineDistance;
+import dariush.griffin.group.membership.clusters.metrics.DistanceMetric;
+import dariush.griffin.group.membership.clusters.metrics.ManhattanDistance;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.metrics.WeightedJaccardDistance;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+
+/**
+ * <p>The command line entry point of the JAR, runs a {@link ClusterPipeline} and reports its stage timings on
+ * standard error.</p>
+ *
+ * <pre>
+ * java -jar group-membership-clustering.jar --threshold 0.6 [options] edges.tsv [more-edges.tsv ...]
+ * </pre>
+ *
+ * @author Dariush Griffin
+ */
+public class Main
+{
+  private static final String USAGE = String.join("\n",
+      "Usage: java -jar group-membership-clustering.jar --threshold <distance> [options] <edge file|-> ...",
+      "",
+      "Reads 'member<delimiter>group[<delimiter>weight]' lines and writes 'group<delimiter>cluster id' lines.",
+      "",
+      "Options:",
+      "  --threshold <distance>     Groups closer than this distance are clustered together, required.",
+      "  --output <file>            Where assignments are written, standard output by default.",
+      "  --delimiter <character>    The field delimiter, a tab by default.",
+      "  --metric <name>            squared-euclidean (default), cosine, manhattan or weighted-jaccard.",
+      "  --engine <name>            agglomerative (default), sampled, out-of-core or checkpointed.",
+      "  --strategy <name>          The agglomerative candidate strategy, automatic by default.",
+      "  --sample-fraction <f>      The fraction of groups the sampled engine clusters exactly, 0.1 by default.",
+      "  --work-directory <dir>     Where the out-of-core engine writes temporary files, java.io.tmpdir by default.",
+      "  --memory-budget <bytes>    The out-of-core engine's buffer budget, 64 MiB by default.",
+      "  --checkpoint <file>        The checkpointed engine's file, resumed from if it exists.",
+      "  --checkpoint-interval <s>  The least seconds between checkpoints, 300 by default.");
+
+  /**
+   * @param args The command line arguments, see {@link #USAGE}.
+   */
+  public static void main(String[] args) {
+    int status = run(args, System.out, System.err);
+    if (status != 0) {
+      System.exit(status);
+    }
+  }
+
+  /**
+   * @param args The command line arguments.
+   * @param out  Receives the assignments, unless an output file is given.
+   * @param err  Receives the usage, errors and the stage timings.
+   * @return The exit status, 0 on success, 1 if the pipeline failed and 2 if the arguments are invalid.
+   */
+  static int run(String[] args, PrintStream out, PrintStream err) {
+    Map<String, String> options = new HashMap<>();
+    List<Path> inputs = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].startsWith("--") && args[i].length() > 2) {
+        if (i + 1 == args.length) {
+          return usage(err, "Missing value for " + args[i]);
+        }
+        options.put(args[i].substring(2), args[++i]);
+      }
+      else {
+        inputs.add(Paths.get(args[i]));
+      }
+    }
+    if (inputs.isEmpty() || !options.containsKey("threshold")) {
+      return usage(err, inputs.isEmpty() ? "No edge files." : "Missing --threshold.");
+    }
+
+    ClusterPipeline pipeline;
+    try {
+      String delimiter = options.getOrDefault("delimiter", "\t").replace("\\t", "\t");
+      if (delimiter.length() != 1) {
+        return usage(err, "The delimiter must be a single character.");
+      }
+      pipeline = new ClusterPipeline(inputs, delimiter.charAt(0), engine(options));
+    }
+    catch (IllegalArgumentException e) {
+      return usage(err, e.getMessage());
+    }
+
+    try {
+      List<StageTiming> timings;
+      if (options.containsKey("output")) {
+        try (Writer output = Files.newBufferedWriter(Paths.get(options.get("output")), StandardCharsets.UTF_8)) {
+          timings = pipeline.run(output);
+        }
+      }
+      else {
+        Writer output = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        timings = pipeline.run(output);
+      }
+      report(timings, err);
+      return 0;
+    }
+    catch (IOException | RuntimeException e) {
+      err.println("Clustering failed: " + e);
+      return 1;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      err.println("Clustering was interrupted.");
+      return 1;
+    }
+  }
+
+  /**
+   * @return Creates the chosen engine for the built mapping.
+   * @throws IllegalArgumentException If an option is invalid.
+   */
+  private static Function<MembershipMapping, ClusterAlgorithm> engine(Map<String, String> options) {
+    float threshold = Float.parseFloat(options.get("threshold"));
+    DistanceMetric metric = metric(options.getOrDefault("metric", "squared-euclidean"));
+    String engine = options.getOrDefault("engine", "agglomerative");
+    switch (engine) {
+      case "agglomerative":
+        CandidateStrategy strategy = CandidateStrategy.valueOf(
+            options.getOrDefault("strategy", "automatic").toUpperCase(Locale.ROOT).replace('-', '_'));
+        return mapping -> new AgglomerativeClusterAlgorithm(mapping, metric, threshold, null, strategy);
+      case "sampled":
+        double sampleFraction = Double.parseDouble(options.getOrDefault("sample-fraction", "0.1"));
+        return mapping -> new SampledClusterAlgorithm(mapping, metric, threshold, sampleFraction, 1000, 0x5EED);
+      case "out-of-core":
+        Path workDirectory = Paths.get(options.getOrDefault("work-directory", System.getProperty("java.io.tmpdir")));
+        long memoryBudget = Long.parseLong(options.getOrDefault("memory-budget", Long.toString(64L << 20)));
+        return mapping -> new OutOfCoreClusterAlgorithm(mapping, metric, threshold, workDirectory, memoryBudget);
+      case "checkpointed":
+        if (!options.containsKey("checkpoint")) {
+          throw new IllegalArgumentException("The checkpointed engine needs --checkpoint.");
+        }
+        Path checkpoint = Paths.get(options.get("checkpoint"));
+        long interval = Long.parseLong(options.getOrDefault("checkpoint-interval", "300"));
+        return mapping -> {
+          if (!Files.exists(checkpoint)) {
+            return new CheckpointedClusterAlgorithm(mapping, metric, threshold, checkpoint, interval,
+                TimeUnit.SECONDS);
+          }
+          try {
+            return CheckpointedClusterAlgorithm.resume(mapping, metric, checkpoint, interval, TimeUnit.SECONDS);
+          }
+          catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        };
+      default:
+        throw new IllegalArgumentException("Unknown engine " + engine + ".");
+    }
+  }
+
+  private static DistanceMetric metric(String name) {
+    switch (name) {
+      case "squared-euclidean":
+        return new SquaredEuclideanDistance();
+      case "cosine":
+        return new CosineDistance();
+      case "manhattan":
+        return new ManhattanDistance();
+      case "weighted-jaccard":
+        return new WeightedJaccardDistance();
+      default:
+        throw new IllegalArgumentException("Unknown metric " + name + ".");
+    }
+  }
+
+  private static void report(List<StageTiming> timings, PrintStream err) {
+    err.println(String.format("%-8s %10s %10s %12s %16s", "stage", "start ms", "end ms", "items", "items/s"));
+    for (StageTiming timing : timings) {
+      err.println(String.format("%-8s %10d %10d %12d %16.0f %s", timing.getName(),
+          TimeUnit.NANOSECONDS.toMillis(timing.getStartNanos()), TimeUnit.NANOSECONDS.toMillis(timing.getEndNanos()),
+          timing.getItemCount(), timing.getThroughput(), timing.getUnit()));
+    }
+  }
+
+  private static int usage(PrintStream err, String message) {
+    err.println(message);
+    err.println(USAGE);
+    return 2;
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.cli;
+
+/**
+ * <p>When a {@link ClusterPipeline} stage started and finished, relative to the start of the pipeline, and how many
+ * items it processed. Stages overlap, so their elapsed times add up to more than the pipeline's.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class StageTiming
+{
+  private final String name;
+
+  private final String unit;
+
+  private final long startNanos;
+
+  private final long endNanos;
+
+  private final long itemCount;
+
+  /**
+   * @param name       The name of the stage.
+   * @param unit       The name of the items the stage processed, in the plural.
+   * @param startNanos When the stage started, relative to the start of the pipeline.
+   * @param endNanos   When the stage finished, relative to the start of the pipeline.
+   * @param itemCount  The number of items the stage processed.
+   */
+  public StageTiming(String name, String unit, long startNanos, long endNanos, long itemCount) {
+    this.name = name;
+    this.unit = unit;
+    this.startNanos = startNanos;
+    this.endNanos = endNanos;
+    this.itemCount = itemCount;
+  }
+
+  /**
+   * @return The name of the stage.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return The name of the items the stage processed, in the plural.
+   */
+  public String getUnit() {
+    return unit;
+  }
+
+  /**
+   * @return When the stage started, relative to the start of the pipeline.
+   */
+  public long getStartNanos() {
+    return startNanos;
+  }
+
+  /**
+   * @return When the stage finished, relative to the start of the pipeline.
+   */
+  public long getEndNanos() {
+    return endNanos;
+  }
+
+  /**
+   * @return The number of items the stage processed.
+   */
+  public long getItemCount() {
+    return itemCount;
+  }
+
+  /**
+   * @return The time from the stage's start to its end, in nanoseconds.
+   */
+  public long getElapsedNanos() {
+    return endNanos - startNanos;
+  }
+
+  /**
+   * @return The items processed per second of the stage's elapsed time.
+   */
+  public double getThroughput() {
+    long elapsed = getElapsedNanos();
+    return (elapsed <= 0) ? 0D : itemCount * 1e9D / elapsed;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("StageTiming{");
+    sb.append("name='").append(name).append('\'');
+    sb.append(", startNanos=").append(startNanos);
+    sb.append(", endNanos=").append(endNanos);
+    sb.append(", itemCount=").append(itemCount);
+    sb.append(", unit='").append(unit).append('\'');
+    sb.append('}');
+    return sb.toString();
+  }
+}
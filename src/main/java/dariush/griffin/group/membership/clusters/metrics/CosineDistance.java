@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.metrics;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+
+/**
+ * <p>Cosine distance, one minus the cosine of the angle between two vectors, for non-negative weights. Only the shared
+ * components are visited, the norms are cached by each {@link SparseVector}, so pre-normalized vectors cost no more
+ * than a sparse dot product. A vector with no members is at distance 1 from every vector.</p><br><p>Bounds:<ul><li>
+ * {@link PruningBound#TRIANGLE_INEQUALITY}: {@code sqrt(2d)} is the euclidean distance between the normalized
+ * vectors.</li><li>{@link PruningBound#DISJOINT_MAXIMUM}: vectors without shared members are orthogonal, distance
+ * 1.</li></ul></p>
+ *
+ * @author Dariush Griffin
+ */
+public class CosineDistance
+    implements DistanceMetric
+{
+  private static final Set<PruningBound> PRUNING_BOUNDS = Collections.unmodifiableSet(
+      EnumSet.of(PruningBound.TRIANGLE_INEQUALITY, PruningBound.DISJOINT_MAXIMUM));
+
+  @Override
+  public float distance(SparseVector first, SparseVector second) {
+    float normProduct = first.getNorm() * second.getNorm();
+    if (normProduct == 0F) {
+      return 1F;
+    }
+    float cosine = SparseKernels.dot(first, second) / normProduct;
+    // Rounding can push the cosine of parallel vectors just past one.
+    return Math.max(0F, 1F - cosine);
+  }
+
+  @Override
+  public Set<PruningBound> getPruningBounds() {
+    return PRUNING_BOUNDS;
+  }
+
+  @Override
+  public float toMetric(float distance) {
+    return (float) Math.sqrt(2F * distance);
+  }
+
+  @Override
+  public String toString() {
+    return "CosineDistance";
+  }
+}
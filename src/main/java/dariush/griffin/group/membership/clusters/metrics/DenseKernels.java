@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.metrics;
+
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+
+/**
+ * <p>Kernels over dense {@code float[]} blocks, such as centroids or sketches, and over a {@link SparseVector}
+ * gathered against a dense block.</p><br><p>On Java 17 and later, when the JAR is on the class path and the
+ * {@code jdk.incubator.vector} module is added ({@code --add-modules jdk.incubator.vector}), the kernels use the Vector
+ * API. Otherwise, including on Java 8, they fall back to scalar loops. Setting the system property
+ * {@value #SCALAR_PROPERTY} to true forces the scalar loops.</p><br><p>Two sparse vectors can be intersected with the
+ * gather kernel by scattering one of them into a reusable dense block, see {@link #scatter(SparseVector, float[])},
+ * gathering the other against it, and then clearing the block.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class DenseKernels
+{
+  public static final String SCALAR_PROPERTY = "group.membership.clusters.scalarKernels";
+
+  private static final String VECTOR_OPERATIONS_CLASS =
+      "dariush.griffin.group.membership.clusters.metrics.VectorDenseKernelOperations";
+
+  private static final DenseKernelOperations OPERATIONS = loadOperations();
+
+  /**
+   * @param first  A dense vector.
+   * @param second A dense vector.
+   * @param length The number of leading components to use from each vector.
+   * @return The dot product of the leading components.
+   */
+  public static float dot(float[] first, float[] second, int length) {
+    return OPERATIONS.dot(first, second, length);
+  }
+
+  /**
+   * @param first  A dense vector.
+   * @param second A dense vector.
+   * @param length The number of leading components to use from each vector.
+   * @return The sum of squared differences of the leading components.
+   */
+  public static float squaredEuclidean(float[] first, float[] second, int length) {
+    return OPERATIONS.squaredEuclidean(first, second, length);
+  }
+
+  /**
+   * @param sparse A sparse vector, whose indices must all be within the dense vector.
+   * @param dense  A dense vector, indexed by vector index.
+   * @return The dot product of the vectors.
+   */
+  public static float gatherDot(SparseVector sparse, float[] dense) {
+    return OPERATIONS.gatherDot(sparse.getIndices(), sparse.getWeights(), sparse.size(), dense);
+  }
+
+  /**
+   * <p>Calculates {@code |s|^2 + |d|^2 - 2 s.d}, so only the sparse vector's components are visited.</p>
+   *
+   * @param sparse           A sparse vector, whose indices must all be within the dense vector.
+   * @param dense            A dense vector, indexed by vector index.
+   * @param denseSquaredNorm The squared norm of the dense vector, see {@link #dot(float[], float[], int)}.
+   * @return The squared euclidean distance between the vectors.
+   */
+  public static float squaredEuclidean(SparseVector sparse, float[] dense, float denseSquaredNorm) {
+    float result = sparse.getSquaredNorm() + denseSquaredNorm - 2F * gatherDot(sparse, dense);
+    // The expansion can round to slightly below zero for (nearly) identical vectors.
+    return Math.max(0F, result);
+  }
+
+  /**
+   * <p>Writes the sparse vector's weights into the dense vector at their vector indices.</p>
+   *
+   * @param sparse A sparse vector, whose indices must all be within the dense vector.
+   * @param dense  The dense vector written to.
+   */
+  public static void scatter(SparseVector sparse, float[] dense) {
+    int[] indices = sparse.getIndices();
+    float[] weights = sparse.getWeights();
+    for (int i = 0; i < indices.length; i++) {
+      dense[indices[i]] = weights[i];
+    }
+  }
+
+  /**
+   * <p>Zeroes the dense vector at the sparse vector's indices, undoing {@link #scatter(SparseVector, float[])}
+   * without clearing the whole block.</p>
+   *
+   * @param sparse A sparse vector, whose indices must all be within the dense vector.
+   * @param dense  The dense vector written to.
+   */
+  public static void clear(SparseVector sparse, float[] dense) {
+    for (int index : sparse.getIndices()) {
+      dense[index] = 0F;
+    }
+  }
+
+  /**
+   * @return A short name for the implementation in use, "scalar" or the Vector API species.
+   */
+  public static String getImplementation() {
+    return OPERATIONS.toString();
+  }
+
+  /**
+   * <p>The Vector API implementation only exists in the multi-release part of the JAR, and fails to link if the
+   * incubator module was not added, either way we fall back to the scalar loops.</p>
+   */
+  private static DenseKernelOperations loadOperations() {
+    if (!Boolean.getBoolean(SCALAR_PROPERTY)) {
+      try {
+        return (DenseKernelOperations) Class.forName(VECTOR_OPERATIONS_CLASS).getDeclaredConstructor().newInstance();
+      }
+      catch (ReflectiveOperationException | LinkageError ignored) {
+        // Fall through to the scalar implementation.
+      }
+    }
+    return new ScalarDenseKernelOperations();
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.metrics;
+
+import java.util.Set;
+
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+
+/**
+ * <p>A distance between {@link Group}s, calculated from their {@link SparseVector}s. Smaller distances mean more
+ * similar {@link Group}s. Implementations must be thread safe and should not allocate while calculating a
+ * distance.</p><br><p>Each metric declares the {@link PruningBound}s it supports, the default implementations of the
+ * bound methods are valid, but useless, for any metric.</p>
+ *
+ * @author Dariush Griffin
+ */
+public interface DistanceMetric
+{
+  /**
+   * @param first  A vector.
+   * @param second A vector.
+   * @return The distance between the vectors.
+   */
+  public float distance(SparseVector first, SparseVector second);
+
+  /**
+   * @param first  A {@link Group}.
+   * @param second A {@link Group}.
+   * @return The distance between the {@link Group}s' member vectors.
+   */
+  public default float distance(Group first, Group second) {
+    return distance(first.getVector(), second.getVector());
+  }
+
+  /**
+   * @return The {@link PruningBound}s this metric guarantees.
+   */
+  public Set<PruningBound> getPruningBounds();
+
+  /**
+   * @param bound A {@link PruningBound}.
+   * @return True, if this metric guarantees the bound.
+   */
+  public default boolean supports(PruningBound bound) {
+    return getPruningBounds().contains(bound);
+  }
+
+  /**
+   * <p>A lower bound on the distance between two vectors, see {@link PruningBound#NORM}.</p>
+   *
+   * @param first  A vector.
+   * @param second A vector.
+   * @return A value no greater than the distance between the vectors.
+   */
+  public default float normLowerBound(SparseVector first, SparseVector second) {
+    return normLowerBound(normOf(first), normOf(second));
+  }
+
+  /**
+   * <p>A lower bound on the distance between two vectors with the provided norms, see {@link PruningBound#NORM}.</p>
+   *
+   * @param firstNorm  The {@link #normOf(SparseVector)} of a vector.
+   * @param secondNorm The {@link #normOf(SparseVector)} of a vector.
+   * @return A value no greater than the distance between any vectors with these norms.
+   */
+  public default float normLowerBound(float firstNorm, float secondNorm) {
+    return 0F;
+  }
+
+  /**
+   * @param vector A vector.
+   * @return The norm this metric's {@link #normLowerBound(float, float)} is calculated from.
+   */
+  public default float normOf(SparseVector vector) {
+    return vector.getNorm();
+  }
+
+  /**
+   * <p>Maps a distance onto a true metric, see {@link PruningBound#TRIANGLE_INEQUALITY}. The mapping must be
+   * increasing so thresholds can be mapped the same way.</p>
+   *
+   * @param distance A distance calculated by this metric.
+   * @return The distance in a space that satisfies the triangle inequality.
+   */
+  public default float toMetric(float distance) {
+    return distance;
+  }
+
+  /**
+   * <p>See {@link PruningBound#COORDINATE}.</p>
+   *
+   * @param threshold A distance.
+   * @return The largest difference any single component of two vectors can have while they are within the threshold.
+   */
+  public default float maxCoordinateDifference(float threshold) {
+    return Float.POSITIVE_INFINITY;
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.metrics;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+
+/**
+ * <p>Manhattan distance, the sum of absolute component differences.</p><br><p>Bounds:<ul><li>
+ * {@link PruningBound#NORM}: {@code ||a|_1 - |b|_1| <= d}.</li><li>{@link PruningBound#TRIANGLE_INEQUALITY}: the
+ * distance is a metric.</li><li>{@link PruningBound#COORDINATE}: no component can differ by more than the
+ * threshold.</li></ul></p>
+ *
+ * @author Dariush Griffin
+ */
+public class ManhattanDistance
+    implements DistanceMetric
+{
+  private static final Set<PruningBound> PRUNING_BOUNDS = Collections.unmodifiableSet(
+      EnumSet.of(PruningBound.NORM, PruningBound.TRIANGLE_INEQUALITY, PruningBound.COORDINATE));
+
+  @Override
+  public float distance(SparseVector first, SparseVector second) {
+    return SparseKernels.manhattan(first, second);
+  }
+
+  @Override
+  public Set<PruningBound> getPruningBounds() {
+    return PRUNING_BOUNDS;
+  }
+
+  @Override
+  public float normOf(SparseVector vector) {
+    return vector.getSum();
+  }
+
+  @Override
+  public float normLowerBound(float firstNorm, float secondNorm) {
+    return Math.abs(firstNorm - secondNorm);
+  }
+
+  @Override
+  public float maxCoordinateDifference(float threshold) {
+    return threshold;
+  }
+
+  @Override
+  public String toString() {
+    return "ManhattanDistance";
+  }
+}
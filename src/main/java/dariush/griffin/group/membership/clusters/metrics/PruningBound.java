@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.metrics;
+
+/**
+ * <p>The bounds a {@link DistanceMetric} can guarantee, which candidate generators use to skip distance
+ * calculations.</p>
+ *
+ * @author Dariush Griffin
+ */
+public enum PruningBound
+{
+  /**
+   * {@link DistanceMetric#normLowerBound(float, float)} is a lower bound on the distance between two vectors, computed
+   * from their norms alone.
+   */
+  NORM,
+  /**
+   * {@link DistanceMetric#toMetric(float)} maps distances onto a true metric, so the triangle inequality can be used
+   * to prune whole regions of a metric index.
+   */
+  TRIANGLE_INEQUALITY,
+  /**
+   * Vectors with no shared members are always at the metric's maximum distance. Only comparing groups that share a
+   * member is then exact, rather than a heuristic.
+   */
+  DISJOINT_MAXIMUM,
+  /**
+   * {@link DistanceMetric#maxCoordinateDifference(float)} bounds how far apart any one component of two vectors can
+   * be when they are within a threshold, so vectors can be bucketed by their coordinates.
+   */
+  COORDINATE
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.metrics;
+
+/**
+ * <p>Plain loops, used when the Vector API is unavailable.</p>
+ *
+ * @author Dariush Griffin
+ */
+class ScalarDenseKernelOperations
+    implements DenseKernelOperations
+{
+  @Override
+  public float dot(float[] first, float[] second, int length) {
+    float result = 0F;
+    for (int i = 0; i < length; i++) {
+      result += first[i] * second[i];
+    }
+    return result;
+  }
+
+  @Override
+  public float squaredEuclidean(float[] first, float[] second, int length) {
+    float result = 0F;
+    for (int i = 0; i < length; i++) {
+      float diff = first[i] - second[i];
+      result += diff * diff;
+    }
+    return result;
+  }
+
+  @Override
+  public float gatherDot(int[] indices, float[] weights, int length, float[] dense) {
+    float result = 0F;
+    for (int i = 0; i < length; i++) {
+      result += weights[i] * dense[indices[i]];
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "scalar";
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.metrics;
+
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+
+/**
+ * <p>Allocation free kernels over {@link SparseVector}s. Each kernel walks both vectors' increasing indices together,
+ * a component missing from one vector is treated as zero.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class SparseKernels
+{
+  /**
+   * @param first  A vector.
+   * @param second A vector.
+   * @return The dot product of the vectors, only shared components contribute.
+   */
+  public static float dot(SparseVector first, SparseVector second) {
+    int[] firstIndices = first.getIndices();
+    float[] firstWeights = first.getWeights();
+    int[] secondIndices = second.getIndices();
+    float[] secondWeights = second.getWeights();
+
+    float result = 0F;
+    int i = 0;
+    int j = 0;
+    while (i < firstIndices.length && j < secondIndices.length) {
+      int firstIndex = firstIndices[i];
+      int secondIndex = secondIndices[j];
+      if (firstIndex == secondIndex) {
+        result += firstWeights[i++] * secondWeights[j++];
+      }
+      else if (firstIndex < secondIndex) {
+        i++;
+      }
+      else {
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param first  A vector.
+   * @param second A vector.
+   * @return The sum of squared component differences.
+   */
+  public static float squaredEuclidean(SparseVector first, SparseVector second) {
+    int[] firstIndices = first.getIndices();
+    float[] firstWeights = first.getWeights();
+    int[] secondIndices = second.getIndices();
+    float[] secondWeights = second.getWeights();
+
+    float result = 0F;
+    int i = 0;
+    int j = 0;
+    while (i < firstIndices.length && j < secondIndices.length) {
+      int firstIndex = firstIndices[i];
+      int secondIndex = secondIndices[j];
+      float diff;
+      if (firstIndex == secondIndex) {
+        diff = firstWeights[i++] - secondWeights[j++];
+      }
+      else if (firstIndex < secondIndex) {
+        diff = firstWeights[i++];
+      }
+      else {
+        diff = secondWeights[j++];
+      }
+      result += diff * diff;
+    }
+    for (; i < firstIndices.length; i++) {
+      result += firstWeights[i] * firstWeights[i];
+    }
+    for (; j < secondIndices.length; j++) {
+      result += secondWeights[j] * secondWeights[j];
+    }
+    return result;
+  }
+
+  /**
+   * @param first  A vector.
+   * @param second A vector.
+   * @return The sum of absolute component differences.
+   */
+  public static float manhattan(SparseVector first, SparseVector second) {
+    int[] firstIndices = first.getIndices();
+    float[] firstWeights = first.getWeights();
+    int[] secondIndices = second.getIndices();
+    float[] secondWeights = second.getWeights();
+
+    float result = 0F;
+    int i = 0;
+    int j = 0;
+    while (i < firstIndices.length && j < secondIndices.length) {
+      int firstIndex = firstIndices[i];
+      int secondIndex = secondIndices[j];
+      if (firstIndex == secondIndex) {
+        result += Math.abs(firstWeights[i++] - secondWeights[j++]);
+      }
+      else if (firstIndex < secondIndex) {
+        result += Math.abs(firstWeights[i++]);
+      }
+      else {
+        result += Math.abs(secondWeights[j++]);
+      }
+    }
+    for (; i < firstIndices.length; i++) {
+      result += Math.abs(firstWeights[i]);
+    }
+    for (; j < secondIndices.length; j++) {
+      result += Math.abs(secondWeights[j]);
+    }
+    return result;
+  }
+
+  /**
+   * <p>The sum of component minimums, for non-negative weights. The matching sum of maximums is
+   * {@code first.getSum() + second.getSum() - minimumSum}, so it does not need its own pass.</p>
+   *
+   * @param first  A vector with non-negative weights.
+   * @param second A vector with non-negative weights.
+   * @return The sum of the smaller weight of each shared component.
+   */
+  public static float minimumSum(SparseVector first, SparseVector second) {
+    int[] firstIndices = first.getIndices();
+    float[] firstWeights = first.getWeights();
+    int[] secondIndices = second.getIndices();
+    float[] secondWeights = second.getWeights();
+
+    float result = 0F;
+    int i = 0;
+    int j = 0;
+    while (i < firstIndices.length && j < secondIndices.length) {
+      int firstIndex = firstIndices[i];
+      int secondIndex = secondIndices[j];
+      if (firstIndex == secondIndex) {
+        result += Math.min(firstWeights[i++], secondWeights[j++]);
+      }
+      else if (firstIndex < secondIndex) {
+        i++;
+      }
+      else {
+        j++;
+      }
+    }
+    return result;
+  }
+}
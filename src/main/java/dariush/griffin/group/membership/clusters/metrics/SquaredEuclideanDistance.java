@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.metrics;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+
+/**
+ * <p>Squared euclidean distance, the sum of squared component differences. This is the distance the library has
+ * always clustered with.</p><br><p>Bounds:<ul><li>{@link PruningBound#NORM}: {@code (|a| - |b|)^2 <= d}.</li>
+ * <li>{@link PruningBound#TRIANGLE_INEQUALITY}: the square root of the distance is the euclidean metric.</li>
+ * <li>{@link PruningBound#COORDINATE}: no component can differ by more than {@code sqrt(threshold)}.</li></ul></p>
+ *
+ * @author Dariush Griffin
+ */
+public class SquaredEuclideanDistance
+    implements DistanceMetric
+{
+  private static final Set<PruningBound> PRUNING_BOUNDS = Collections.unmodifiableSet(
+      EnumSet.of(PruningBound.NORM, PruningBound.TRIANGLE_INEQUALITY, PruningBound.COORDINATE));
+
+  @Override
+  public float distance(SparseVector first, SparseVector second) {
+    return SparseKernels.squaredEuclidean(first, second);
+  }
+
+  @Override
+  public Set<PruningBound> getPruningBounds() {
+    return PRUNING_BOUNDS;
+  }
+
+  @Override
+  public float normLowerBound(float firstNorm, float secondNorm) {
+    float diff = firstNorm - secondNorm;
+    return diff * diff;
+  }
+
+  @Override
+  public float toMetric(float distance) {
+    return (float) Math.sqrt(distance);
+  }
+
+  @Override
+  public float maxCoordinateDifference(float threshold) {
+    return (float) Math.sqrt(threshold);
+  }
+
+  @Override
+  public String toString() {
+    return "SquaredEuclideanDistance";
+  }
+}
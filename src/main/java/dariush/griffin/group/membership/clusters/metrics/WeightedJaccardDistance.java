@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.metrics;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+
+/**
+ * <p>Weighted Jaccard distance for non-negative weights, {@code 1 - sum(min(a_i, b_i)) / sum(max(a_i, b_i))}. Only
+ * shared components are visited, the sum of maximums is derived from each vector's cached sum. Two vectors with no
+ * members are at distance 0.</p><br><p>Bounds:<ul><li>{@link PruningBound#NORM}: {@code 1 - min(|a|_1, |b|_1) /
+ * max(|a|_1, |b|_1) <= d}.</li><li>{@link PruningBound#TRIANGLE_INEQUALITY}: the distance is a metric.</li><li>
+ * {@link PruningBound#DISJOINT_MAXIMUM}: vectors without shared members are at distance 1.</li></ul></p>
+ *
+ * @author Dariush Griffin
+ */
+public class WeightedJaccardDistance
+    implements DistanceMetric
+{
+  private static final Set<PruningBound> PRUNING_BOUNDS = Collections.unmodifiableSet(
+      EnumSet.of(PruningBound.NORM, PruningBound.TRIANGLE_INEQUALITY, PruningBound.DISJOINT_MAXIMUM));
+
+  @Override
+  public float distance(SparseVector first, SparseVector second) {
+    float minimumSum = SparseKernels.minimumSum(first, second);
+    float maximumSum = first.getSum() + second.getSum() - minimumSum;
+    if (maximumSum == 0F) {
+      return 0F;
+    }
+    return Math.max(0F, 1F - minimumSum / maximumSum);
+  }
+
+  @Override
+  public Set<PruningBound> getPruningBounds() {
+    return PRUNING_BOUNDS;
+  }
+
+  @Override
+  public float normOf(SparseVector vector) {
+    return vector.getSum();
+  }
+
+  @Override
+  public float normLowerBound(float firstNorm, float secondNorm) {
+    float larger = Math.max(firstNorm, secondNorm);
+    return (larger == 0F) ? 0F : 1F - Math.min(firstNorm, secondNorm) / larger;
+  }
+
+  @Override
+  public String toString() {
+    return "WeightedJaccardDistance";
+  }
+}
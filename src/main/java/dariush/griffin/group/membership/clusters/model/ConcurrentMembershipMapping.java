@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.model;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import dariush.griffin.group.membership.clusters.utilities.PersistentHashTrie;
+
+/**
+ * <p>A membership mapping, with the same writes as a {@link MembershipMapping}, that many threads can write to while
+ * others cluster it. The whole mapping is an immutable {@link MappingSnapshot} held in a single atomic reference. A
+ * write builds the next snapshot, copying only the changed {@link Group}'s vector and the trie nodes on the path to
+ * it, and installs it with a compare and set, retrying if another write got there first. No lock is ever taken, and
+ * vector indices are assigned in the order {@link Member}s are installed.</p><br><p>{@link #snapshot()} returns the
+ * current version in constant time. Readers keep using their snapshot, for example clustering its
+ * {@link MappingSnapshot#toIndexedGroups()}, however many writes follow.</p><br><p>Every write, whatever its
+ * {@link Group}, installs through that one reference, so writes are serialized: adding writer threads does not add
+ * write throughput, and under contention most of their work is snapshots that lose the compare and set and are
+ * rebuilt. A single version for the whole mapping is what makes a snapshot consistent across {@link Group}s. Bulk
+ * loads should go through a {@link MembershipMappingBuilder} instead, and continuous writes that do not need
+ * snapshots through a {@link DecayingMembershipMapping}, which only contends per {@link Group}.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class ConcurrentMembershipMapping
+{
+  private static final String EXISTING_GROUP_ERROR_MESSAGE =
+      "Unable to create group as a group with the name '%s' already exists.";
+  private static final String EXISTING_MEMBER_ERROR_MESSAGE =
+      "Unable to create member as a member with the name '%s' already exists.";
+
+  private final AtomicReference<MappingSnapshot> current = new AtomicReference<>(MappingSnapshot.EMPTY);
+
+  /**
+   * @return The current version of the mapping, which never changes.
+   */
+  public MappingSnapshot snapshot() {
+    return current.get();
+  }
+
+  /**
+   * @return The number of writes applied so far.
+   */
+  public long getVersion() {
+    return current.get().getVersion();
+  }
+
+  /**
+   * @param groupName The name of the {@link Group}.
+   * @return True, if the {@link Group} currently exists.
+   */
+  public boolean hasGroup(String groupName) {
+    return current.get().hasGroup(groupName);
+  }
+
+  /**
+   * @param memberName The name of the {@link Member}.
+   * @return True, if the {@link Member} currently exists.
+   */
+  public boolean hasMember(String memberName) {
+    return current.get().getMember(memberName) != null;
+  }
+
+  /**
+   * <p>Creates a {@link Group} with the provided name.</p>
+   *
+   * @param groupName The unique name for this group.
+   * @throws IllegalArgumentException If a {@link Group} already exists with the provided name.
+   */
+  public void createGroup(String groupName) {
+    update(snapshot -> {
+      if (snapshot.hasGroup(groupName)) {
+        throw new IllegalArgumentException(String.format(EXISTING_GROUP_ERROR_MESSAGE, groupName));
+      }
+      return next(snapshot, snapshot.getMembers(),
+          snapshot.getGroups().put(groupName, GroupState.empty(groupName)));
+    });
+  }
+
+  /**
+   * <p>Creates a {@link Member} with the provided name and the next vector index.</p>
+   *
+   * @param memberName The unique name for this member.
+   * @throws IllegalArgumentException If a {@link Member} already exists with the provided name.
+   */
+  public void createMember(String memberName) {
+    update(snapshot -> {
+      if (snapshot.getMember(memberName) != null) {
+        throw new IllegalArgumentException(String.format(EXISTING_MEMBER_ERROR_MESSAGE, memberName));
+      }
+      return next(snapshot, withMember(snapshot.getMembers(), memberName), snapshot.getGroups());
+    });
+  }
+
+  /**
+   * <p>Adds the {@link Member} with the given name to the {@link Group} with the given name. <b>If the member or group
+   * does not exist in the mapping they are created.</b></p>
+   *
+   * @param memberName The name of the {@link Member}.
+   * @param groupName  The name of the {@link Group}.
+   * @param weight     The contribution of this {@link Member} to this {@link Group}.
+   */
+  public void addMemberToGroup(String memberName, String groupName, float weight) {
+    update(snapshot -> {
+      PersistentHashTrie<Member> members = withMember(snapshot.getMembers(), memberName);
+      GroupState group = snapshot.getGroups().get(groupName);
+      if (group == null) {
+        group = GroupState.empty(groupName);
+      }
+      group = group.withMember(members.get(memberName), weight);
+      return next(snapshot, members, snapshot.getGroups().put(groupName, group));
+    });
+  }
+
+  /**
+   * <p>Removes the named {@link Member} from the named {@link Group}. If the member or the group does not exist
+   * nothing is removed.</p>
+   *
+   * @param memberName The name of the {@link Member}.
+   * @param groupName  The name of the {@link Group}.
+   */
+  public void removeMemberFromGroup(String memberName, String groupName) {
+    update(snapshot -> {
+      Member member = snapshot.getMember(memberName);
+      GroupState group = snapshot.getGroups().get(groupName);
+      if (member == null || group == null || group.getWeight(member) == null) {
+        return snapshot;
+      }
+      return next(snapshot, snapshot.getMembers(), snapshot.getGroups().put(groupName, group.withoutMember(member)));
+    });
+  }
+
+  /**
+   * <p>Removes the named {@link Member} from all {@link Group}s in a single write. If the {@link Member} does not
+   * exist then nothing is removed.</p><br><p>The {@link Group}s containing the {@link Member} are found by scanning
+   * one snapshot before the write is attempted. If another write gets in first, only the {@link Group}s changed since
+   * the scanned snapshot are checked again, so a retry costs as much as the writes it lost to rather than another
+   * scan of every {@link Group}.</p>
+   *
+   * @param memberName The name of the {@link Member} to remove from all {@link Group}.
+   */
+  public void removeMemberFromAllGroups(String memberName) {
+    MappingSnapshot scanned = current.get();
+    Member member = scanned.getMember(memberName);
+    if (member == null) {
+      return;
+    }
+    Set<String> memberGroups = new HashSet<>();
+    scanned.forEachGroup(group -> {
+      if (group.getWeight(member) != null) {
+        memberGroups.add(group.getName());
+      }
+    });
+
+    while (true) {
+      MappingSnapshot snapshot = current.get();
+      if (snapshot != scanned) {
+        snapshot.getGroups().forEachDifference(scanned.getGroups(), (name, group) -> {
+          if (group.getWeight(member) != null) {
+            memberGroups.add(name);
+          }
+        });
+        scanned = snapshot;
+      }
+      PersistentHashTrie<GroupState> groups = snapshot.getGroups();
+      for (String name : memberGroups) {
+        GroupState group = groups.get(name);
+        GroupState removed = group.withoutMember(member);
+        if (removed != group) {
+          groups = groups.put(name, removed);
+        }
+      }
+      if (groups == snapshot.getGroups()
+          || current.compareAndSet(snapshot, next(snapshot, snapshot.getMembers(), groups))) {
+        return;
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("ConcurrentMembershipMapping{");
+    sb.append("snapshot=").append(current.get());
+    sb.append('}');
+    return sb.toString();
+  }
+
+  /**
+   * <p>Applies the change to the current snapshot until it is installed without a concurrent write in between. The
+   * change must not have side effects as it may run more than once, and returns the same snapshot to write
+   * nothing.</p>
+   */
+  private void update(UnaryOperator<MappingSnapshot> change) {
+    while (true) {
+      MappingSnapshot snapshot = current.get();
+      MappingSnapshot next = change.apply(snapshot);
+      if (next == snapshot || current.compareAndSet(snapshot, next)) {
+        return;
+      }
+    }
+  }
+
+  private static MappingSnapshot next(
+      MappingSnapshot snapshot,
+      PersistentHashTrie<Member> members,
+      PersistentHashTrie<GroupState> groups)
+  {
+    return new MappingSnapshot(snapshot.getVersion() + 1, members, groups);
+  }
+
+  /**
+   * @return The members with the named {@link Member} created if it does not exist.
+   */
+  private static PersistentHashTrie<Member> withMember(PersistentHashTrie<Member> members, String memberName) {
+    if (members.get(memberName) != null) {
+      return members;
+    }
+    return members.put(memberName, new Member(memberName, members.size()));
+  }
+}
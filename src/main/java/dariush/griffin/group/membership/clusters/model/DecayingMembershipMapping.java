@@ -0,0 +1,452 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import dariush.griffin.group.membership.clusters.metrics.SparseKernels;
+import dariush.griffin.group.membership.clusters.utilities.IndexedGroups;
+
+/**
+ * <p>A membership mapping whose weights fade exponentially over time, so contributions can be applied continuously
+ * instead of rebuilding the mapping with recomputed weights. A weight {@code w} written at time {@code t} is worth
+ * {@code w * 2^(-(now - t) / halfLife)} at time {@code now}.</p><br><p>Decaying every weight on every tick would cost
+ * O(weights). Instead each {@link Group} has a reference time, and its weights are stored as they were at that time.
+ * All weights of a {@link Group} decay at the same rate, so the current vector is the stored vector times a single
+ * per group scale factor, {@code 2^(-(now - reference) / halfLife)}, which reads and distances apply lazily. A write
+ * at time {@code now} stores {@code w / scale}.</p><br><p>Each {@link Group}'s stored weights are guarded by the
+ * {@link Group}'s own lock, so writes, reads and the purge only ever contend on a single {@link Group} and never lock
+ * the whole mapping. A write to a {@link Member} already in the {@link Group} updates its weight in place, the arrays
+ * of {@link Member}s and weights are only copied when a {@link Member} joins or is purged. {@link #purge()} rebases
+ * one {@link Group} at a time to the current time, which keeps stored weights from growing without bound, and removes
+ * {@link Member}s whose weight has decayed below epsilon. {@link #schedulePurge(long, TimeUnit)} runs it on a
+ * background thread.</p><br><p>{@link #toIndexedGroups()} hands the stored vectors to the clustering algorithms with
+ * only their scale applied, no {@link Group} is rebased and no map of {@link Member}s is built. Methods that read many
+ * {@link Group}s see each one as of some moment during the call.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class DecayingMembershipMapping
+    implements AutoCloseable
+{
+  /**
+   * A group is rebased on write once its stored weights are this many half lives old, a factor of 2^16, well within
+   * a float's precision.
+   */
+  private static final double REBASE_HALF_LIVES = 16D;
+
+  private final ConcurrentHashMap<String, Member> members = new ConcurrentHashMap<>();
+
+  private final AtomicInteger vectorComponentCounter = new AtomicInteger();
+
+  /**
+   * A mapping of group name to its stored, reference time, weights.
+   */
+  private final ConcurrentHashMap<String, DecayingGroup> groups = new ConcurrentHashMap<>();
+
+  private final double halfLifeMillis;
+
+  private final float epsilon;
+
+  private final LongSupplier clock;
+
+  private final List<ScheduledFuture<?>> scheduledPurges = new ArrayList<>();
+
+  private ScheduledExecutorService purgeExecutor;
+
+  /**
+   * @param halfLifeMillis The time it takes a weight to halve, in milliseconds.
+   * @param epsilon        Weights whose magnitude decays below this are purged.
+   */
+  public DecayingMembershipMapping(double halfLifeMillis, float epsilon) {
+    this(halfLifeMillis, epsilon, System::currentTimeMillis);
+  }
+
+  /**
+   * @param halfLifeMillis The time it takes a weight to halve, in milliseconds.
+   * @param epsilon        Weights whose magnitude decays below this are purged.
+   * @param clock          The current time in milliseconds.
+   * @throws IllegalArgumentException If the half life is not positive or epsilon is negative.
+   */
+  public DecayingMembershipMapping(double halfLifeMillis, float epsilon, LongSupplier clock) {
+    if (!(halfLifeMillis > 0D) || !(epsilon >= 0F)) {
+      throw new IllegalArgumentException(
+          String.format("Half life %f must be positive and epsilon %f not negative.", halfLifeMillis, epsilon));
+    }
+    this.halfLifeMillis = halfLifeMillis;
+    this.epsilon = epsilon;
+    this.clock = clock;
+  }
+
+  /**
+   * <p>Sets the {@link Member}'s current weight in the {@link Group}, creating either if they do not exist.</p>
+   *
+   * @param memberName The name of the {@link Member}.
+   * @param groupName  The name of the {@link Group}.
+   * @param weight     The contribution of this {@link Member} to this {@link Group}, as of now.
+   */
+  public void addMemberToGroup(String memberName, String groupName, float weight) {
+    Member member = resolveMember(memberName);
+    DecayingGroup group = resolveGroup(groupName);
+    long now = clock.getAsLong();
+    synchronized (group) {
+      group.rebaseIfOld(now);
+      group.put(member, weight / group.scale(now), false);
+    }
+  }
+
+  /**
+   * <p>Adds to the {@link Member}'s current weight in the {@link Group}, the decayed value of earlier contributions
+   * plus this one.</p>
+   *
+   * @param memberName   The name of the {@link Member}.
+   * @param groupName    The name of the {@link Group}.
+   * @param contribution The contribution made now.
+   */
+  public void addContribution(String memberName, String groupName, float contribution) {
+    Member member = resolveMember(memberName);
+    DecayingGroup group = resolveGroup(groupName);
+    long now = clock.getAsLong();
+    synchronized (group) {
+      group.rebaseIfOld(now);
+      group.put(member, contribution / group.scale(now), true);
+    }
+  }
+
+  /**
+   * @param memberName The name of the {@link Member}.
+   * @param groupName  The name of the {@link Group}.
+   * @return The {@link Member}'s current, decayed, weight in the {@link Group}, or null if they are not in it.
+   */
+  public Float getWeight(String memberName, String groupName) {
+    Member member = members.get(memberName);
+    DecayingGroup group = groups.get(groupName);
+    if (group == null || member == null) {
+      return null;
+    }
+    long now = clock.getAsLong();
+    synchronized (group) {
+      int position = Arrays.binarySearch(group.members, member);
+      return (position >= 0) ? (float) (group.weights[position] * group.scale(now)) : null;
+    }
+  }
+
+  /**
+   * <p>The squared euclidean distance between the current vectors of two {@link Group}s. Each {@link Group}'s
+   * weights are copied, with its scale applied, under its own lock, so the two are never locked together.</p>
+   *
+   * @param firstGroupName  The name of a {@link Group}.
+   * @param secondGroupName The name of a {@link Group}.
+   * @return The squared euclidean distance.
+   * @throws IllegalArgumentException If either {@link Group} does not exist.
+   */
+  public float squaredEuclideanDistance(String firstGroupName, String secondGroupName) {
+    DecayingGroup firstGroup = existingGroup(firstGroupName);
+    DecayingGroup secondGroup = existingGroup(secondGroupName);
+    long now = clock.getAsLong();
+    SparseVector first = firstGroup.toGroup(now, 0F).getVector();
+    SparseVector second = secondGroup.toGroup(now, 0F).getVector();
+    double result = (double) first.getSquaredNorm() + second.getSquaredNorm() - 2D * SparseKernels.dot(first, second);
+    return (float) Math.max(0D, result);
+  }
+
+  /**
+   * <p>Indexes the current, decayed, {@link Group}s for the
+   * {@link dariush.griffin.group.membership.clusters.algorithms.ClusterAlgorithm}s. Each {@link Group} shares its
+   * stored {@link Member}s and vector indices and only gets its own array of scaled weights. Each {@link Group} is
+   * locked only while its weights are copied, and no map of {@link Member}s is built. Weights below
+   * epsilon that have not been purged yet are kept, as they are by
+   * {@link #squaredEuclideanDistance(String, String)}.</p>
+   *
+   * @return The indexed, decayed, {@link Group}s.
+   */
+  public IndexedGroups toIndexedGroups() {
+    long now = clock.getAsLong();
+    List<Group> result = new ArrayList<>(groups.size());
+    for (DecayingGroup group : groups.values()) {
+      result.add(group.toGroup(now, 0F));
+    }
+    return new IndexedGroups(result);
+  }
+
+  /**
+   * <p>Builds a regular {@link MembershipMapping} with the current, decayed, weights. Weights below epsilon are left
+   * out, and {@link Member}s keep their vector indices. Clustering should use {@link #toIndexedGroups()}, which does
+   * not copy the {@link Member}s.</p>
+   *
+   * @return A mapping of the current weights.
+   */
+  public MembershipMapping toMembershipMapping() {
+    long now = clock.getAsLong();
+    Map<String, Group> groupMap = new HashMap<>(groups.size() * 4 / 3 + 1);
+    for (DecayingGroup group : groups.values()) {
+      groupMap.put(group.name, group.toGroup(now, epsilon));
+    }
+    return new MembershipMapping(groupMap, new HashMap<>(members), vectorComponentCounter.get());
+  }
+
+  /**
+   * <p>Rebases every {@link Group} to the current time and removes the {@link Member}s whose weight has decayed below
+   * epsilon from their {@link Group}s. Each {@link Group} is rebased on its own, so writes to other {@link Group}s
+   * carry on while the purge runs.</p>
+   *
+   * @return The number of weights removed.
+   */
+  public int purge() {
+    long now = clock.getAsLong();
+    int removed = 0;
+    for (DecayingGroup group : groups.values()) {
+      synchronized (group) {
+        removed += group.rebase(now, epsilon);
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * <p>Runs {@link #purge()} periodically on a daemon thread until {@link #close()}.</p>
+   *
+   * @param period The time between purges.
+   * @param unit   The unit of the period.
+   * @return The scheduled purge, which can be cancelled.
+   */
+  public synchronized ScheduledFuture<?> schedulePurge(long period, TimeUnit unit) {
+    if (purgeExecutor == null) {
+      purgeExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "decaying-membership-purge");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    ScheduledFuture<?> result = purgeExecutor.scheduleAtFixedRate(this::purge, period, period, unit);
+    scheduledPurges.add(result);
+    return result;
+  }
+
+  /**
+   * <p>Stops the background purge, if one was scheduled.</p>
+   */
+  @Override
+  public synchronized void close() {
+    if (purgeExecutor != null) {
+      for (ScheduledFuture<?> purge : scheduledPurges) {
+        purge.cancel(false);
+      }
+      scheduledPurges.clear();
+      purgeExecutor.shutdown();
+      purgeExecutor = null;
+    }
+  }
+
+  /**
+   * @return The number of weights currently stored, including those not yet purged.
+   */
+  public int getWeightCount() {
+    int result = 0;
+    for (DecayingGroup group : groups.values()) {
+      synchronized (group) {
+        result += group.members.length;
+      }
+    }
+    return result;
+  }
+
+  private Member resolveMember(String memberName) {
+    Member member = members.get(memberName);
+    if (member == null) {
+      member = members.computeIfAbsent(memberName,
+          name -> new Member(name, vectorComponentCounter.getAndIncrement()));
+    }
+    return member;
+  }
+
+  /**
+   * @return The group to write to, created with the current time as its reference time if it does not exist.
+   */
+  private DecayingGroup resolveGroup(String groupName) {
+    DecayingGroup group = groups.get(groupName);
+    if (group == null) {
+      group = groups.computeIfAbsent(groupName, name -> new DecayingGroup(name, clock.getAsLong()));
+    }
+    return group;
+  }
+
+  private DecayingGroup existingGroup(String groupName) {
+    DecayingGroup group = groups.get(groupName);
+    if (group == null) {
+      throw new IllegalArgumentException(String.format("There is no group named '%s'.", groupName));
+    }
+    return group;
+  }
+
+  /**
+   * <p>A {@link Group}'s stored weights and the time they were current, guarded by the group's lock. Weights are
+   * updated in place, the arrays are replaced when a {@link Member} joins or is purged, so a {@link Group} built from
+   * them can share the {@link Member}s and vector indices.</p>
+   */
+  private final class DecayingGroup
+  {
+    private final String name;
+
+    /**
+     * The {@link Member}s in increasing order.
+     */
+    private Member[] members = new Member[0];
+
+    /**
+     * The vector index of each {@link Member}, positioned to match.
+     */
+    private int[] indices = new int[0];
+
+    /**
+     * The stored weight of each {@link Member}, positioned to match.
+     */
+    private float[] weights = new float[0];
+
+    private long referenceTime;
+
+    private DecayingGroup(String name, long referenceTime) {
+      this.name = name;
+      this.referenceTime = referenceTime;
+    }
+
+    /**
+     * @return The factor the stored weights are multiplied by at the time.
+     */
+    private double scale(long now) {
+      return Math.pow(2D, -(now - referenceTime) / halfLifeMillis);
+    }
+
+    /**
+     * <p>Rebases the group before a write if its stored weights are old, none are removed.</p>
+     */
+    private void rebaseIfOld(long now) {
+      if ((now - referenceTime) / halfLifeMillis > REBASE_HALF_LIVES) {
+        rebase(now, 0F);
+      }
+    }
+
+    /**
+     * <p>Scales the stored weights in place to the time and makes it the reference time.</p>
+     *
+     * @param epsilon Scaled weights whose magnitude is below this are removed.
+     * @return The number of weights removed.
+     */
+    private int rebase(long now, float epsilon) {
+      double scale = scale(now);
+      int kept = 0;
+      for (int i = 0; i < weights.length; i++) {
+        weights[i] = (float) (weights[i] * scale);
+        kept += (Math.abs(weights[i]) >= epsilon) ? 1 : 0;
+      }
+      referenceTime = now;
+      int removed = weights.length - kept;
+      if (removed > 0) {
+        Member[] keptMembers = new Member[kept];
+        int[] keptIndices = new int[kept];
+        float[] keptWeights = new float[kept];
+        kept = 0;
+        for (int i = 0; i < weights.length; i++) {
+          if (Math.abs(weights[i]) >= epsilon) {
+            keptMembers[kept] = members[i];
+            keptIndices[kept] = indices[i];
+            keptWeights[kept++] = weights[i];
+          }
+        }
+        members = keptMembers;
+        indices = keptIndices;
+        weights = keptWeights;
+      }
+      return removed;
+    }
+
+    /**
+     * @param member       A {@link Member}.
+     * @param storedWeight The weight relative to the reference time.
+     * @param add          Whether the weight is added to the {@link Member}'s stored weight rather than replacing it.
+     */
+    private void put(Member member, double storedWeight, boolean add) {
+      int position = Arrays.binarySearch(members, member);
+      if (position >= 0) {
+        weights[position] = (float) (add ? weights[position] + storedWeight : storedWeight);
+        return;
+      }
+      int insertion = -position - 1;
+      Member[] grownMembers = new Member[members.length + 1];
+      int[] grownIndices = new int[members.length + 1];
+      float[] grownWeights = new float[members.length + 1];
+      System.arraycopy(members, 0, grownMembers, 0, insertion);
+      System.arraycopy(indices, 0, grownIndices, 0, insertion);
+      System.arraycopy(weights, 0, grownWeights, 0, insertion);
+      grownMembers[insertion] = member;
+      grownIndices[insertion] = member.getVectorIndex();
+      grownWeights[insertion] = (float) storedWeight;
+      int tail = members.length - insertion;
+      System.arraycopy(members, insertion, grownMembers, insertion + 1, tail);
+      System.arraycopy(indices, insertion, grownIndices, insertion + 1, tail);
+      System.arraycopy(weights, insertion, grownWeights, insertion + 1, tail);
+      members = grownMembers;
+      indices = grownIndices;
+      weights = grownWeights;
+    }
+
+    /**
+     * <p>Copies the current, decayed, weights under the group's lock. The new {@link Group} shares the arrays of
+     * {@link Member}s and vector indices unless some weights are left out.</p>
+     *
+     * @param epsilon Scaled weights whose magnitude is below this are left out.
+     * @return A new {@link Group} with the current weights.
+     */
+    private synchronized Group toGroup(long now, float epsilon) {
+      double scale = scale(now);
+      float[] scaled = new float[weights.length];
+      int kept = 0;
+      for (int i = 0; i < scaled.length; i++) {
+        scaled[i] = (float) (weights[i] * scale);
+        kept += (Math.abs(scaled[i]) >= epsilon) ? 1 : 0;
+      }
+      if (kept == scaled.length) {
+        return new Group(name, members, new SparseVector(indices, scaled));
+      }
+      Member[] keptMembers = new Member[kept];
+      int[] keptIndices = new int[kept];
+      float[] keptWeights = new float[kept];
+      kept = 0;
+      for (int i = 0; i < scaled.length; i++) {
+        if (Math.abs(scaled[i]) >= epsilon) {
+          keptMembers[kept] = members[i];
+          keptIndices[kept] = indices[i];
+          keptWeights[kept++] = scaled[i];
+        }
+      }
+      return new Group(name, keptMembers, new SparseVector(keptIndices, keptWeights));
+    }
+  }
+}
@@ -18,6 +18,7 @@
  */
 package dariush.griffin.group.membership.clusters.model;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
@@ -35,15 +36,27 @@ public class Group
     implements Comparable<Group>
 {
   /**
-   * A map of {@link Member} to their weight, or contribution to this group.
+   * A map of {@link Member} to their weight, or contribution to this group. Null for a group created from shared
+   * arrays until the map is first needed, see {@link #members()}.
    */
-  private final Map<Member, Float> membersToWeights;
+  private volatile Map<Member, Float> membersToWeights;
+
+  /**
+   * The {@link Member}s of a group created from shared arrays, positioned to match the weights of its initial vector,
+   * or null for a group built member by member.
+   */
+  private final Member[] sharedMembers;
 
   /**
    * The unique name for this group.
    */
   private final String name;
 
+  /**
+   * A primitive copy of the member vector, built on first use and discarded whenever the members change.
+   */
+  private volatile SparseVector vector;
+
   /**
    * <p>Constructs a group with an empty member vector and the given name.</p>
    *
@@ -52,6 +65,22 @@ public class Group
   public Group(String name) {
     this.name = name;
     this.membersToWeights = new TreeMap<>();
+    this.sharedMembers = null;
+  }
+
+  /**
+   * <p>Constructs a group over immutable arrays, as held by a {@link MappingSnapshot}, without copying them. The
+   * vector is used as is, and the map of {@link Member}s to weights is only built if it is asked for or the group is
+   * changed.</p>
+   *
+   * @param name    The unique name of this group.
+   * @param members The {@link Member}s in increasing order, which must not be modified.
+   * @param vector  The vector of the {@link Member}s' weights, positioned to match.
+   */
+  Group(String name, Member[] members, SparseVector vector) {
+    this.name = name;
+    this.sharedMembers = members;
+    this.vector = vector;
   }
 
   /**
@@ -62,7 +91,8 @@ public class Group
    * @param weight The weight of the provided member's contributions.
    */
   public void addMember(Member member, float weight) {
-    membersToWeights.put(member, weight);
+    members().put(member, weight);
+    vector = null;
   }
 
   /**
@@ -71,7 +101,25 @@ public class Group
    * @param member The {@link Member} to be removed from this group.
    */
   public void removeMember(Member member) {
-    membersToWeights.remove(member);
+    members().remove(member);
+    vector = null;
+  }
+
+  /**
+   * <p>Replaces each {@link Member} with its renumbered {@link Member}, used when a {@link MembershipMapping} compacts
+   * its vector indices. The renumbering must keep the {@link Member}s' relative order.</p>
+   *
+   * @param renumbered A mapping of each current {@link Member} to its replacement.
+   */
+  void renumberMembers(Map<Member, Member> renumbered) {
+    Map<Member, Float> membersToWeights = members();
+    Map<Member, Float> current = new TreeMap<>(membersToWeights);
+    membersToWeights.clear();
+    for (Map.Entry<Member, Float> entry : current.entrySet()) {
+      Member member = renumbered.get(entry.getKey());
+      membersToWeights.put((member != null) ? member : entry.getKey(), entry.getValue());
+    }
+    vector = null;
   }
 
   /**
@@ -79,7 +127,20 @@ public class Group
    * vector index this is the sparse vector of contributions that can be used for cluster calculations.
    */
   public Map<Member, Float> getMembers() {
-    return Collections.unmodifiableMap(membersToWeights);
+    return Collections.unmodifiableMap(members());
+  }
+
+  /**
+   * @return The member vector of this group as a {@link SparseVector}. The vector is cached until the group's
+   * members change.
+   */
+  public SparseVector getVector() {
+    SparseVector result = vector;
+    if (result == null) {
+      result = SparseVector.of(members());
+      vector = result;
+    }
+    return result;
   }
 
   /**
@@ -89,6 +150,10 @@ public class Group
    * @return The {@link Member}'s weight, or null if the {@link Member} does not exist in this group.
    */
   public Float getWeight(Member member) {
+    if (membersToWeights == null) {
+      int position = Arrays.binarySearch(sharedMembers, member);
+      return (position >= 0) ? vector.getWeights()[position] : null;
+    }
     return membersToWeights.get(member);
   }
 
@@ -99,6 +164,23 @@ public class Group
     return name;
   }
 
+  /**
+   * <p>Returns the map of {@link Member} to weight, building it from the shared arrays the first time it is needed.
+   * Building it twice from concurrent readers is harmless, both maps are equal.</p>
+   */
+  private Map<Member, Float> members() {
+    Map<Member, Float> result = membersToWeights;
+    if (result == null) {
+      result = new TreeMap<>();
+      float[] weights = vector.getWeights();
+      for (int i = 0; i < sharedMembers.length; i++) {
+        result.put(sharedMembers[i], weights[i]);
+      }
+      membersToWeights = result;
+    }
+    return result;
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (this == o) {
@@ -108,18 +190,27 @@ public class Group
       return false;
     }
     Group group = (Group) o;
-    return membersToWeights.equals(group.membersToWeights) && Objects.equals(name, group.name);
+    return members().equals(group.members()) && Objects.equals(name, group.name);
   }
 
   @Override
   public int hashCode() {
+    if (membersToWeights == null) {
+      // The same hash as the map would give, Map.hashCode is the sum of its entries' hash codes.
+      float[] weights = vector.getWeights();
+      int membersHash = 0;
+      for (int i = 0; i < sharedMembers.length; i++) {
+        membersHash += sharedMembers[i].hashCode() ^ Float.hashCode(weights[i]);
+      }
+      return 31 * (31 + membersHash) + Objects.hashCode(name);
+    }
     return Objects.hash(membersToWeights, name);
   }
 
   @Override
   public String toString() {
     final StringBuilder sb = new StringBuilder("Group{");
-    sb.append("membersToWeights=").append(membersToWeights);
+    sb.append("membersToWeights=").append(members());
     sb.append(", name='").append(name).append('\'');
     sb.append('}');
     return sb.toString();
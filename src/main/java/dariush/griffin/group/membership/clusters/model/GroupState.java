@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.model;
+
+import java.util.Arrays;
+
+/**
+ * <p>An immutable version of a {@link Group}'s member vector, used by {@link ConcurrentMembershipMapping}. Every
+ * change copies the group's arrays, so a {@link MappingSnapshot} that refers to a state never sees it change.</p>
+ *
+ * @author Dariush Griffin
+ */
+final class GroupState
+{
+  private final String name;
+
+  /**
+   * The {@link Member}s in increasing order.
+   */
+  private final Member[] members;
+
+  /**
+   * The weight of each {@link Member}, positioned to match.
+   */
+  private final float[] weights;
+
+  /**
+   * The member vector, sharing the weights array, so snapshots can be clustered without copying it.
+   */
+  private final SparseVector vector;
+
+  private GroupState(String name, Member[] members, float[] weights) {
+    this.name = name;
+    this.members = members;
+    this.weights = weights;
+    int[] indices = new int[members.length];
+    for (int i = 0; i < indices.length; i++) {
+      indices[i] = members[i].getVectorIndex();
+    }
+    this.vector = new SparseVector(indices, weights);
+  }
+
+  /**
+   * @param name The name of the group.
+   * @return A state with no members.
+   */
+  static GroupState empty(String name) {
+    return new GroupState(name, new Member[0], new float[0]);
+  }
+
+  String getName() {
+    return name;
+  }
+
+  int size() {
+    return members.length;
+  }
+
+  /**
+   * @param member A {@link Member}.
+   * @return The member's weight, or null if they are not in the group.
+   */
+  Float getWeight(Member member) {
+    int position = Arrays.binarySearch(members, member);
+    return (position >= 0) ? weights[position] : null;
+  }
+
+  /**
+   * @param member A {@link Member}.
+   * @param weight The member's weight.
+   * @return A copy with the member added, or their weight replaced.
+   */
+  GroupState withMember(Member member, float weight) {
+    int position = Arrays.binarySearch(members, member);
+    if (position >= 0) {
+      float[] replaced = weights.clone();
+      replaced[position] = weight;
+      return new GroupState(name, members, replaced);
+    }
+    int insertion = -position - 1;
+    Member[] grownMembers = new Member[members.length + 1];
+    float[] grownWeights = new float[members.length + 1];
+    System.arraycopy(members, 0, grownMembers, 0, insertion);
+    System.arraycopy(weights, 0, grownWeights, 0, insertion);
+    grownMembers[insertion] = member;
+    grownWeights[insertion] = weight;
+    System.arraycopy(members, insertion, grownMembers, insertion + 1, members.length - insertion);
+    System.arraycopy(weights, insertion, grownWeights, insertion + 1, members.length - insertion);
+    return new GroupState(name, grownMembers, grownWeights);
+  }
+
+  /**
+   * @param member A {@link Member}.
+   * @return A copy without the member, or this state if they are not in the group.
+   */
+  GroupState withoutMember(Member member) {
+    int position = Arrays.binarySearch(members, member);
+    if (position < 0) {
+      return this;
+    }
+    Member[] shrunkMembers = new Member[members.length - 1];
+    float[] shrunkWeights = new float[members.length - 1];
+    System.arraycopy(members, 0, shrunkMembers, 0, position);
+    System.arraycopy(weights, 0, shrunkWeights, 0, position);
+    System.arraycopy(members, position + 1, shrunkMembers, position, members.length - position - 1);
+    System.arraycopy(weights, position + 1, shrunkWeights, position, members.length - position - 1);
+    return new GroupState(name, shrunkMembers, shrunkWeights);
+  }
+
+  /**
+   * @return A new {@link Group} with this state's members, which shares this state's arrays until it is changed.
+   */
+  Group toGroup() {
+    return new Group(name, members, vector);
+  }
+}
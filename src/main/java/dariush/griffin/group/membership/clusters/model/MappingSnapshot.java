@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import dariush.griffin.group.membership.clusters.utilities.IndexedGroups;
+import dariush.griffin.group.membership.clusters.utilities.PersistentHashTrie;
+
+/**
+ * <p>An immutable, consistent, view of a {@link ConcurrentMembershipMapping} at one version. Taking a snapshot is a
+ * single volatile read, as every write to the mapping creates a new snapshot that shares everything it did not change
+ * with the previous one. A snapshot can be held and read from any thread for as long as needed while writes
+ * continue.</p>
+ *
+ * @author Dariush Griffin
+ */
+public final class MappingSnapshot
+{
+  static final MappingSnapshot EMPTY =
+      new MappingSnapshot(0L, PersistentHashTrie.<Member>empty(), PersistentHashTrie.<GroupState>empty());
+
+  private final long version;
+
+  private final PersistentHashTrie<Member> members;
+
+  private final PersistentHashTrie<GroupState> groups;
+
+  MappingSnapshot(long version, PersistentHashTrie<Member> members, PersistentHashTrie<GroupState> groups) {
+    this.version = version;
+    this.members = members;
+    this.groups = groups;
+  }
+
+  /**
+   * @return The number of writes applied to the mapping before this snapshot.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * @return The number of {@link Group}s.
+   */
+  public int getGroupCount() {
+    return groups.size();
+  }
+
+  /**
+   * @return The number of {@link Member}s, which is also the next vector index.
+   */
+  public int getMemberCount() {
+    return members.size();
+  }
+
+  /**
+   * @param groupName The name of the {@link Group}.
+   * @return True, if the {@link Group} exists in this snapshot.
+   */
+  public boolean hasGroup(String groupName) {
+    return groups.get(groupName) != null;
+  }
+
+  /**
+   * @param memberName The name of the {@link Member}.
+   * @return The {@link Member} if it exists in this snapshot, or null.
+   */
+  public Member getMember(String memberName) {
+    return members.get(memberName);
+  }
+
+  /**
+   * @param memberName The name of the {@link Member}.
+   * @param groupName  The name of the {@link Group}.
+   * @return The {@link Member}'s weight in the {@link Group}, or null if either does not exist or the {@link Member}
+   * is not in the {@link Group}.
+   */
+  public Float getWeight(String memberName, String groupName) {
+    Member member = members.get(memberName);
+    GroupState group = groups.get(groupName);
+    return (member == null || group == null) ? null : group.getWeight(member);
+  }
+
+  /**
+   * <p>Indexes this snapshot's {@link Group}s, so the
+   * {@link dariush.griffin.group.membership.clusters.algorithms.ClusterAlgorithm}s can cluster them directly. Each
+   * {@link Group} is a new object that shares its snapshot's immutable member and weight arrays, nothing is copied per
+   * member, and a {@link Group} only builds its map of {@link Member}s if it is asked for one or changed. Changing a
+   * {@link Group} does not change the snapshot.</p>
+   *
+   * @return The indexed {@link Group}s of this snapshot.
+   */
+  public IndexedGroups toIndexedGroups() {
+    List<Group> result = new ArrayList<>(groups.size());
+    groups.forEach((name, state) -> result.add(state.toGroup()));
+    return new IndexedGroups(result);
+  }
+
+  /**
+   * <p>Builds a regular {@link MembershipMapping} with this snapshot's {@link Group}s and {@link Member}s, for code
+   * that needs a mutable mapping. The {@link Group}s share the snapshot's arrays as with {@link #toIndexedGroups()},
+   * but the name maps of the mapping are copied, so clustering should use {@link #toIndexedGroups()}.</p>
+   *
+   * @return A mapping equal to this snapshot.
+   */
+  public MembershipMapping toMembershipMapping() {
+    Map<String, Member> memberMap = new HashMap<>(members.size() * 4 / 3 + 1);
+    members.forEach(memberMap::put);
+    Map<String, Group> groupMap = new HashMap<>(groups.size() * 4 / 3 + 1);
+    groups.forEach((name, state) -> groupMap.put(name, state.toGroup()));
+    return new MembershipMapping(groupMap, memberMap, members.size());
+  }
+
+  PersistentHashTrie<Member> getMembers() {
+    return members;
+  }
+
+  PersistentHashTrie<GroupState> getGroups() {
+    return groups;
+  }
+
+  void forEachGroup(Consumer<GroupState> consumer) {
+    groups.forEach((name, state) -> consumer.accept(state));
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("MappingSnapshot{");
+    sb.append("version=").append(version);
+    sb.append(", groups=").append(groups.size());
+    sb.append(", members=").append(members.size());
+    sb.append('}');
+    return sb.toString();
+  }
+}
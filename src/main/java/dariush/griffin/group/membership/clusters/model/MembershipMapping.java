@@ -18,12 +18,21 @@
  */
 package dariush.griffin.group.membership.clusters.model;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.function.Function;
+import java.util.function.Predicate;
+
+import dariush.griffin.group.membership.clusters.utilities.IndexedGroups;
+import dariush.griffin.group.membership.clusters.utilities.PostingLists;
 
 /**
  * <p>A MembershipMapping stores {@link Member}s and {@link Group}s. {@link Member}s are added to {@link Group}s with a
@@ -33,7 +42,11 @@ import java.util.function.Function;
  * <p>For example, a mapping that has two members (A, B) would be analogous to a cartesian plane. If member A
  * contributed to group 1 with a weight of 2 and member B contributed to group 1 with a weight of 3, group 1 would be
  * placed on that cartesian plane at (2,3). If there was a second group, 2, and member A contributed to that group with
- * weight 1 and member B contributed to the group with a weight of 10, group 2 would be at (1,10) on that plane.</p>
+ * weight 1 and member B contributed to the group with a weight of 10, group 2 would be at (1,10) on that plane.</p><br>
+ * <p>The mapping also keeps a reverse index of the names of the {@link Group}s each {@link Member} belongs to, so
+ * removing a {@link Member} only visits their own {@link Group}s. The index follows changes made through the mapping,
+ * not changes made directly to a {@link Group}. Evicted {@link Member}s leave gaps in the vector indices until
+ * {@link #compact()} renumbers them.</p>
  *
  * @author Dariush Griffin
  */
@@ -59,6 +72,11 @@ public class MembershipMapping
    */
   private int vectorComponentCounter;
 
+  /**
+   * A mapping of member name to the names of the {@link Group}s that member belongs to.
+   */
+  private Map<String, Set<String>> memberToGroupNames;
+
   /**
    * <p>Constructs an empty MembershipMapping.</p>
    */
@@ -66,6 +84,27 @@ public class MembershipMapping
     this.groups = new HashMap<>();
     this.members = new HashMap<>();
     this.vectorComponentCounter = 0;
+    this.memberToGroupNames = new HashMap<>();
+  }
+
+  /**
+   * <p>Constructs a mapping around already built {@link Group}s and {@link Member}s, such as a
+   * {@link MappingSnapshot}'s. The maps are used directly.</p>
+   *
+   * @param groups                 A mapping of group name to {@link Group}.
+   * @param members                A mapping of member name to {@link Member}.
+   * @param vectorComponentCounter The next vector index, one more than the largest {@link Member} index.
+   */
+  MembershipMapping(Map<String, Group> groups, Map<String, Member> members, int vectorComponentCounter) {
+    this.groups = groups;
+    this.members = members;
+    this.vectorComponentCounter = vectorComponentCounter;
+    this.memberToGroupNames = new HashMap<>(members.size() * 4 / 3 + 1);
+    for (Group group : groups.values()) {
+      for (Member member : group.getMembers().keySet()) {
+        indexMembership(member.getName(), group.getName());
+      }
+    }
   }
 
   /**
@@ -157,6 +196,7 @@ public class MembershipMapping
       createGroup(groupName);
     }
     groups.get(groupName).addMember(members.get(memberName), weight);
+    indexMembership(memberName, groupName);
   }
 
   /**
@@ -172,11 +212,15 @@ public class MembershipMapping
       return;
     }
     groups.get(groupName).removeMember(members.get(memberName));
+    Set<String> groupNames = memberToGroupNames.get(memberName);
+    if (groupNames != null) {
+      groupNames.remove(groupName);
+    }
   }
 
   /**
    * <p>Removes the named {@link Member} from all {@link Group}s. If the {@link Member} does not exist in this mapping
-   * then nothing is removed.</p>
+   * then nothing is removed. Only the {@link Member}'s own {@link Group}s are visited.</p>
    *
    * @param memberName The name of the {@link Member} to remove from all {@link Group}.
    */
@@ -184,9 +228,91 @@ public class MembershipMapping
     if (!hasMember(memberName)) {
       return;
     }
+    Member member = members.get(memberName);
+    Set<String> groupNames = memberToGroupNames.remove(memberName);
+    if (groupNames == null) {
+      return;
+    }
+    for (String groupName : groupNames) {
+      groups.get(groupName).removeMember(member);
+    }
+  }
+
+  /**
+   * @param memberName The name of the {@link Member}.
+   * @return An unmodifiable set of the names of the {@link Group}s the {@link Member} belongs to, empty if the
+   * {@link Member} does not exist.
+   */
+  public Set<String> getGroupNames(String memberName) {
+    Set<String> groupNames = memberToGroupNames.get(memberName);
+    return (groupNames == null) ? Collections.emptySet() : Collections.unmodifiableSet(groupNames);
+  }
+
+  /**
+   * <p>Removes every {@link Member} that matches the predicate from their {@link Group}s and from the mapping. Their
+   * vector indices are left unused until {@link #compact()}.</p>
+   *
+   * @param predicate Matches the {@link Member}s to evict.
+   * @return The number of evicted {@link Member}s.
+   */
+  public int evictMembers(Predicate<Member> predicate) {
+    List<String> memberNames = new ArrayList<>();
+    for (Member member : members.values()) {
+      if (predicate.test(member)) {
+        memberNames.add(member.getName());
+      }
+    }
+    return evictMembers(memberNames);
+  }
+
+  /**
+   * <p>Removes the named {@link Member}s from their {@link Group}s and from the mapping, names that do not exist are
+   * ignored. Their vector indices are left unused until {@link #compact()}.</p>
+   *
+   * @param memberNames The names of the {@link Member}s to evict.
+   * @return The number of evicted {@link Member}s.
+   */
+  public int evictMembers(Collection<String> memberNames) {
+    int evicted = 0;
+    for (String memberName : memberNames) {
+      if (hasMember(memberName)) {
+        removeMemberFromAllGroups(memberName);
+        members.remove(memberName);
+        evicted++;
+      }
+    }
+    return evicted;
+  }
+
+  /**
+   * <p>Renumbers the {@link Member}s' vector indices densely from zero, keeping their relative order, so evicted
+   * {@link Member}s no longer leave gaps in the vector space. Every {@link Group} is rewritten with the renumbered
+   * {@link Member}s, which invalidates any {@link PostingLists} or cached vectors built before, so new
+   * {@link PostingLists} are built from the compacted {@link Group}s. They can be passed straight to
+   * {@link dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm}.</p>
+   *
+   * @return The {@link PostingLists} of the compacted {@link Group}s.
+   */
+  public PostingLists compact() {
+    Map<Member, Member> renumbered = new TreeMap<>();
+    for (Member member : members.values()) {
+      renumbered.put(member, member);
+    }
+    int vectorIndex = 0;
+    for (Map.Entry<Member, Member> entry : renumbered.entrySet()) {
+      Member member = entry.getKey();
+      entry.setValue((member.getVectorIndex() == vectorIndex) ? member : new Member(member.getName(), vectorIndex));
+      vectorIndex++;
+    }
+    for (Member member : renumbered.values()) {
+      members.put(member.getName(), member);
+    }
+    vectorComponentCounter = vectorIndex;
+
     for (Group group : groups.values()) {
-      removeMemberFromGroup(memberName, group.getName());
+      group.renumberMembers(renumbered);
     }
+    return PostingLists.build(new IndexedGroups(groups.values()));
   }
 
   @Override
@@ -249,4 +375,13 @@ public class MembershipMapping
   private Member buildMember(String memberName) {
     return new Member(memberName, vectorComponentCounter++);
   }
+
+  private void indexMembership(String memberName, String groupName) {
+    Set<String> groupNames = memberToGroupNames.get(memberName);
+    if (groupNames == null) {
+      groupNames = new HashSet<>();
+      memberToGroupNames.put(memberName, groupNames);
+    }
+    groupNames.add(groupName);
+  }
 }
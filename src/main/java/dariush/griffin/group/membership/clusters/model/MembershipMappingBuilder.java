@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Builds a {@link MembershipMapping} from many threads at once, for example one per partition of an ingest
+ * stream. {@link MembershipMapping#addMemberToGroup(String, String, float)} cannot be called concurrently, its name
+ * tables are plain maps and its vector index is a plain counter.</p><br><p>Here {@link Member}s live in one shared
+ * concurrent table, read without locking, and vector indices come from an atomic counter. Group names are split across
+ * shards by hash, each a plain map guarded by its own lock. Each thread appends its edges to its own buffer and only
+ * takes shard locks when the buffer is full: the buffered edges are grouped by shard and each shard's edges are
+ * applied under a single lock acquisition. {@link #build()} releases every thread's buffer, so pooled threads do not
+ * keep them once the mapping is built.</p><br>
+ * <p>Edges from one thread are applied in the order they were added. When several threads set the weight of the same
+ * member in the same group the last one flushed wins, and vector indices are assigned in the order members are first
+ * seen, which depends on thread scheduling.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class MembershipMappingBuilder
+{
+  private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+  /**
+   * Every {@link Member} by name, shared by all threads.
+   */
+  private final ConcurrentHashMap<String, Member> members = new ConcurrentHashMap<>();
+
+  private final GroupShard[] groupShards;
+
+  private final int shardMask;
+
+  private final int bufferSize;
+
+  private final AtomicInteger vectorComponentCounter = new AtomicInteger();
+
+  /**
+   * Every thread's buffer, so {@link #build()} can flush them.
+   */
+  private final Queue<EdgeBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+  private final ThreadLocal<EdgeBuffer> threadBuffer = ThreadLocal.withInitial(this::registerBuffer);
+
+  private volatile boolean built;
+
+  /**
+   * <p>Constructs a builder with four shards per available processor.</p>
+   */
+  public MembershipMappingBuilder() {
+    this(4 * Runtime.getRuntime().availableProcessors(), DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * @param shardCount The number of group shards, rounded up to a power of two. More shards mean less lock
+   *                   contention.
+   * @param bufferSize The number of edges each thread buffers before applying them.
+   * @throws IllegalArgumentException If either is not positive.
+   */
+  public MembershipMappingBuilder(int shardCount, int bufferSize) {
+    if (shardCount < 1 || bufferSize < 1) {
+      throw new IllegalArgumentException(
+          String.format("Shard count %d and buffer size %d must be positive.", shardCount, bufferSize));
+    }
+    int shards = (shardCount == 1) ? 1 : Integer.highestOneBit(shardCount - 1) << 1;
+    this.groupShards = new GroupShard[shards];
+    for (int i = 0; i < shards; i++) {
+      groupShards[i] = new GroupShard();
+    }
+    this.shardMask = shards - 1;
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * <p>Adds the {@link Member} with the given name to the {@link Group} with the given name, creating either if they
+   * do not exist. Safe to call from any number of threads.</p>
+   *
+   * @param memberName The name of the {@link Member}.
+   * @param groupName  The name of the {@link Group}.
+   * @param weight     The contribution of this {@link Member} to this {@link Group}.
+   * @throws IllegalStateException If the mapping has already been built.
+   */
+  public void addMemberToGroup(String memberName, String groupName, float weight) {
+    checkNotBuilt();
+    threadBuffer.get().add(memberName, groupName, weight);
+  }
+
+  /**
+   * <p>Applies the calling thread's buffered edges. Does nothing once the mapping has been built.</p>
+   */
+  public void flush() {
+    if (!built) {
+      threadBuffer.get().flush();
+    }
+  }
+
+  /**
+   * @return The number of {@link Member}s created so far.
+   */
+  public int getMemberCount() {
+    return vectorComponentCounter.get();
+  }
+
+  /**
+   * <p>Flushes every thread's buffer and builds the mapping. It must only be called once every writing thread has
+   * finished, for example after joining them or waiting on their futures, as their buffers are flushed by the calling
+   * thread.</p>
+   *
+   * @return A regular {@link MembershipMapping} with every added edge.
+   * @throws IllegalStateException If the mapping has already been built.
+   */
+  public MembershipMapping build() {
+    checkNotBuilt();
+    built = true;
+    // Only its own thread can remove a thread local entry, so other threads' buffers release their arrays instead,
+    // which frees them even while the threads live on in a pool. The calling thread's entry is removed outright.
+    for (EdgeBuffer buffer = buffers.poll(); buffer != null; buffer = buffers.poll()) {
+      buffer.flush();
+      buffer.release();
+    }
+    threadBuffer.remove();
+
+    Map<String, Member> memberMap = new HashMap<>(members);
+    int groupCount = 0;
+    for (GroupShard shard : groupShards) {
+      synchronized (shard) {
+        groupCount += shard.groups.size();
+      }
+    }
+    Map<String, Group> groups = new HashMap<>(groupCount * 4 / 3 + 1);
+    for (GroupShard shard : groupShards) {
+      synchronized (shard) {
+        groups.putAll(shard.groups);
+      }
+    }
+    return new MembershipMapping(groups, memberMap, vectorComponentCounter.get());
+  }
+
+  private void checkNotBuilt() {
+    if (built) {
+      throw new IllegalStateException("The mapping has already been built.");
+    }
+  }
+
+  private EdgeBuffer registerBuffer() {
+    EdgeBuffer buffer = new EdgeBuffer();
+    buffers.add(buffer);
+    return buffer;
+  }
+
+  private int shardOf(String name) {
+    int hash = name.hashCode() * 0x9E3779B9;
+    return (hash ^ (hash >>> 16)) & shardMask;
+  }
+
+  /**
+   * <p>Returns the named {@link Member}, creating it with the next vector index if it does not exist. Existing
+   * members are read without locking; only a miss locks its bin of the table, so each index is assigned once.</p>
+   */
+  private Member resolveMember(String memberName) {
+    Member member = members.get(memberName);
+    if (member == null) {
+      member = members.computeIfAbsent(memberName,
+          name -> new Member(name, vectorComponentCounter.getAndIncrement()));
+    }
+    return member;
+  }
+
+  private static final class GroupShard
+  {
+    private final Map<String, Group> groups = new HashMap<>();
+  }
+
+  /**
+   * <p>A thread's pending edges, only ever used by its own thread until {@link #build()}.</p>
+   */
+  private final class EdgeBuffer
+  {
+    private Member[] members = new Member[bufferSize];
+
+    private String[] groupNames = new String[bufferSize];
+
+    private float[] weights = new float[bufferSize];
+
+    private int[] shards = new int[bufferSize];
+
+    /**
+     * The edges' positions ordered by shard, reused by every flush.
+     */
+    private int[] order = new int[bufferSize];
+
+    private int[] shardStarts = new int[groupShards.length + 1];
+
+    private int size;
+
+    private void add(String memberName, String groupName, float weight) {
+      members[size] = resolveMember(memberName);
+      groupNames[size] = groupName;
+      weights[size] = weight;
+      shards[size] = shardOf(groupName);
+      if (++size == bufferSize) {
+        flush();
+      }
+    }
+
+    /**
+     * <p>Counting sorts the edges by shard, keeping each shard's edges in the order they were added, then applies
+     * each shard's edges under one lock.</p>
+     */
+    private void flush() {
+      if (size == 0) {
+        return;
+      }
+      Arrays.fill(shardStarts, 0);
+      for (int i = 0; i < size; i++) {
+        shardStarts[shards[i] + 1]++;
+      }
+      for (int s = 0; s < groupShards.length; s++) {
+        shardStarts[s + 1] += shardStarts[s];
+      }
+      int[] cursors = shardStarts.clone();
+      for (int i = 0; i < size; i++) {
+        order[cursors[shards[i]]++] = i;
+      }
+
+      for (int s = 0; s < groupShards.length; s++) {
+        if (shardStarts[s] == shardStarts[s + 1]) {
+          continue;
+        }
+        GroupShard shard = groupShards[s];
+        synchronized (shard) {
+          for (int o = shardStarts[s]; o < shardStarts[s + 1]; o++) {
+            int i = order[o];
+            Group group = shard.groups.get(groupNames[i]);
+            if (group == null) {
+              group = new Group(groupNames[i]);
+              shard.groups.put(groupNames[i], group);
+            }
+            group.addMember(members[i], weights[i]);
+          }
+        }
+      }
+
+      Arrays.fill(members, 0, size, null);
+      Arrays.fill(groupNames, 0, size, null);
+      size = 0;
+    }
+
+    /**
+     * <p>Drops the arrays once the buffer has been flushed for the last time, leaving an empty shell in its thread's
+     * map until the builder is collected.</p>
+     */
+    private void release() {
+      members = null;
+      groupNames = null;
+      weights = null;
+      shards = null;
+      order = null;
+      shardStarts = null;
+    }
+  }
+}
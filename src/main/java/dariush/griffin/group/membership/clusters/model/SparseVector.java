@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * <p>An immutable, primitive copy of a {@link Group}'s member vector. The vector indices of its {@link Member}s are
+ * stored in increasing order alongside their weights, which lets distance kernels walk two vectors together without
+ * boxing or allocating. Norms are calculated once when the vector is created.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class SparseVector
+{
+  public static final SparseVector EMPTY = new SparseVector(new int[0], new float[0]);
+
+  /**
+   * The increasing vector indices of the non-zero components.
+   */
+  private final int[] indices;
+
+  /**
+   * The weights of the non-zero components, positioned to match their indices.
+   */
+  private final float[] weights;
+
+  private final float squaredNorm;
+
+  private final float sum;
+
+  /**
+   * <p>Constructs a vector from parallel arrays, which are used directly and must not be modified afterwards.</p>
+   *
+   * @param indices The strictly increasing vector indices.
+   * @param weights The weight of each vector index.
+   * @throws IllegalArgumentException If the arrays are different lengths.
+   */
+  public SparseVector(int[] indices, float[] weights) {
+    if (indices.length != weights.length) {
+      throw new IllegalArgumentException(
+          String.format("Indices and weights must be the same length, %d != %d.", indices.length, weights.length));
+    }
+    this.indices = indices;
+    this.weights = weights;
+
+    float squaredNormSum = 0F;
+    float weightSum = 0F;
+    for (float weight : weights) {
+      squaredNormSum += weight * weight;
+      weightSum += Math.abs(weight);
+    }
+    this.squaredNorm = squaredNormSum;
+    this.sum = weightSum;
+  }
+
+  /**
+   * <p>Creates a vector from a mapping of {@link Member} to weight. Maps ordered by {@link Member}, as {@link Group}s
+   * and {@link dariush.griffin.group.membership.clusters.utilities.ClusterUtilities} vectors are, are copied directly,
+   * any other iteration order is sorted by vector index first.</p>
+   *
+   * @param vector A mapping of {@link Member} to their contribution weight.
+   * @return The equivalent sparse vector.
+   * @throws IllegalArgumentException If two {@link Member}s share a vector index.
+   */
+  public static SparseVector of(Map<Member, Float> vector) {
+    int[] indices = new int[vector.size()];
+    float[] weights = new float[vector.size()];
+    boolean increasing = true;
+    int i = 0;
+    for (Entry<Member, Float> entry : vector.entrySet()) {
+      indices[i] = entry.getKey().getVectorIndex();
+      weights[i] = entry.getValue();
+      increasing &= (i == 0) || (indices[i - 1] < indices[i]);
+      i++;
+    }
+    if (!increasing) {
+      sortByIndex(indices, weights);
+    }
+    return new SparseVector(indices, weights);
+  }
+
+  /**
+   * <p>Sorts parallel index and weight arrays by index, packing each pair into a long so a primitive sort keeps them
+   * together. Vector indices are never negative, so the packed order is the index order.</p>
+   */
+  private static void sortByIndex(int[] indices, float[] weights) {
+    long[] packed = new long[indices.length];
+    for (int i = 0; i < packed.length; i++) {
+      packed[i] = ((long) indices[i] << 32) | (Float.floatToRawIntBits(weights[i]) & 0xFFFFFFFFL);
+    }
+    Arrays.sort(packed);
+    for (int i = 0; i < packed.length; i++) {
+      indices[i] = (int) (packed[i] >>> 32);
+      weights[i] = Float.intBitsToFloat((int) packed[i]);
+      if (i > 0 && indices[i - 1] == indices[i]) {
+        throw new IllegalArgumentException(String.format("Vector index %d is used by more than one member.",
+            indices[i]));
+      }
+    }
+  }
+
+  /**
+   * @return The number of non-zero components.
+   */
+  public int size() {
+    return indices.length;
+  }
+
+  /**
+   * @return The increasing vector indices, the array is shared and must not be modified.
+   */
+  public int[] getIndices() {
+    return indices;
+  }
+
+  /**
+   * @return The weights positioned to match {@link #getIndices()}, the array is shared and must not be modified.
+   */
+  public float[] getWeights() {
+    return weights;
+  }
+
+  /**
+   * @return The squared euclidean norm, the sum of squared weights.
+   */
+  public float getSquaredNorm() {
+    return squaredNorm;
+  }
+
+  /**
+   * @return The euclidean norm.
+   */
+  public float getNorm() {
+    return (float) Math.sqrt(squaredNorm);
+  }
+
+  /**
+   * @return The manhattan norm, the sum of absolute weights.
+   */
+  public float getSum() {
+    return sum;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    SparseVector that = (SparseVector) o;
+    return Arrays.equals(indices, that.indices) && Arrays.equals(weights, that.weights);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(indices) + Arrays.hashCode(weights);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("SparseVector{");
+    sb.append("indices=").append(Arrays.toString(indices));
+    sb.append(", weights=").append(Arrays.toString(weights));
+    sb.append('}');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,554 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import dariush.griffin.group.membership.clusters.metrics.DistanceMetric;
+import dariush.griffin.group.membership.clusters.metrics.PruningBound;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+import dariush.griffin.group.membership.clusters.utilities.IndexedGroups;
+import dariush.griffin.group.membership.clusters.utilities.LatencyHistogram;
+import dariush.griffin.group.membership.clusters.utilities.PostingLists;
+import dariush.griffin.group.membership.clusters.utilities.QuantizedVectors;
+
+/**
+ * <p>Answers online queries for the {@link Group}s nearest to a {@link Group}, without clustering the whole mapping.
+ * The service indexes a snapshot of the mapping's {@link Group}s when it is constructed; it must be rebuilt to see
+ * later changes to the mapping. Queries only read the index, so any number of threads can query
+ * concurrently.</p><br><p>How candidates are visited depends on the metric's {@link PruningBound}s:<ul><li>
+ * {@link PruningBound#NORM}: {@link Group}s are sorted by norm and visited outwards from the query's norm. The norm
+ * lower bound only grows as the walk moves outwards, so each direction stops as soon as its bound reaches the k-th
+ * best distance, or the threshold.</li><li>Squared euclidean distance within a finite threshold: a {@link Group}
+ * sharing no member with the query is exactly the sum of their squared norms away, so only the {@link Group}s found
+ * through weighted posting lists and the prefix of small norms are visited.</li><li>
+ * {@link PruningBound#DISJOINT_MAXIMUM}: only the {@link Group}s that share a member, found through the
+ * {@link PostingLists}, are visited. The rest are at the metric's maximum distance and are never returned.</li><li>
+ * Otherwise every {@link Group} is visited.</li></ul></p><br><p>The k nearest are kept in a bounded heap of primitive
+ * arrays, and query latencies are recorded in a {@link LatencyHistogram} for each kind of query.</p><br><p>For
+ * squared euclidean distance the service can also keep {@link QuantizedVectors} of the {@link Group}s, contiguous 8
+ * or 16 bit codes. Candidates the codes prove to be beyond the threshold, or the k-th best distance, are skipped
+ * without reading their {@link Group}'s vector, so a scan mostly walks the compact codes rather than chasing every
+ * {@link Group}.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class GroupQueryService
+{
+  /**
+   * The relative slack given to bounds computed from norms, which round differently from the exact distance.
+   */
+  private static final double NORM_MARGIN = 1E-4;
+
+  private final DistanceMetric distanceMetric;
+
+  private final IndexedGroups indexedGroups;
+
+  /**
+   * Only built for metrics that are walked through shared members, null otherwise.
+   */
+  private final PostingLists postingLists;
+
+  /**
+   * Group ids ordered by increasing norm, only used for metrics with a norm bound.
+   */
+  private final int[] idsByNorm;
+
+  /**
+   * The norm of each group in {@link #idsByNorm}, positioned to match.
+   */
+  private final float[] sortedNorms;
+
+  /**
+   * The start of each member's weighted posting list, by vector index, followed by the total length. The weighted
+   * posting lists are only built for squared euclidean distance, null otherwise.
+   */
+  private final int[] postingStarts;
+
+  /**
+   * The increasing group ids of every weighted posting list, concatenated.
+   */
+  private final int[] postingIds;
+
+  /**
+   * The weight of each group in {@link #postingIds} for the list's member.
+   */
+  private final float[] postingWeights;
+
+  /**
+   * The squared norm of each group, by id, in double precision so the expanded distance loses as little as possible.
+   */
+  private final double[] squaredNorms;
+
+  /**
+   * Codes used to skip far candidates, or null to always compare the original vectors.
+   */
+  private final QuantizedVectors quantizedVectors;
+
+  private final LatencyHistogram nearestLatencies = new LatencyHistogram();
+
+  private final LatencyHistogram withinLatencies = new LatencyHistogram();
+
+  /**
+   * <p>Constructs a service that measures squared euclidean distance.</p>
+   *
+   * @param membershipMapping The mapping whose {@link Group}s will be queried.
+   */
+  public GroupQueryService(MembershipMapping membershipMapping) {
+    this(membershipMapping, new SquaredEuclideanDistance());
+  }
+
+  /**
+   * @param membershipMapping The mapping whose {@link Group}s will be queried.
+   * @param distanceMetric    The metric used to measure the distance between {@link Group}s.
+   */
+  public GroupQueryService(MembershipMapping membershipMapping, DistanceMetric distanceMetric) {
+    this(membershipMapping.getGroups(), distanceMetric);
+  }
+
+  /**
+   * <p>Constructs a service over a subset of {@link Group}s, such as representatives of clusters.</p>
+   *
+   * @param groups         The {@link Group}s that will be queried.
+   * @param distanceMetric The metric used to measure the distance between {@link Group}s.
+   */
+  public GroupQueryService(Collection<Group> groups, DistanceMetric distanceMetric) {
+    this(groups, distanceMetric, 0);
+  }
+
+  /**
+   * <p>Constructs a service that measures squared euclidean distance, and skips far candidates using quantized
+   * copies of the {@link Group}s' vectors. Results are exactly those of the unquantized service.</p>
+   *
+   * @param membershipMapping The mapping whose {@link Group}s will be queried.
+   * @param quantizedBits     The bits per quantized weight, 8 or 16.
+   * @throws IllegalArgumentException If the bits are not 8 or 16.
+   */
+  public GroupQueryService(MembershipMapping membershipMapping, int quantizedBits) {
+    this(membershipMapping.getGroups(), quantizedBits);
+  }
+
+  /**
+   * <p>Constructs a service over a subset of {@link Group}s that measures squared euclidean distance, and skips far
+   * candidates using quantized copies of the {@link Group}s' vectors.</p>
+   *
+   * @param groups        The {@link Group}s that will be queried.
+   * @param quantizedBits The bits per quantized weight, 8 or 16.
+   * @throws IllegalArgumentException If the bits are not 8 or 16.
+   */
+  public GroupQueryService(Collection<Group> groups, int quantizedBits) {
+    this(groups, new SquaredEuclideanDistance(), quantizedBits);
+    if (quantizedVectors == null) {
+      throw new IllegalArgumentException(String.format("Codes must be 8 or 16 bits, not %d.", quantizedBits));
+    }
+  }
+
+  /**
+   * @param quantizedBits The bits per quantized weight, or 0 to compare only the original vectors.
+   */
+  private GroupQueryService(Collection<Group> groups, DistanceMetric distanceMetric, int quantizedBits) {
+    this.distanceMetric = distanceMetric;
+    this.indexedGroups = new IndexedGroups(groups);
+    this.quantizedVectors = (quantizedBits == 0) ? null
+        : new QuantizedVectors(indexedGroups, quantizedBits, QuantizedVectors.Scale.PER_GROUP);
+
+    if (distanceMetric instanceof SquaredEuclideanDistance) {
+      int groupCount = indexedGroups.size();
+      this.squaredNorms = new double[groupCount];
+      int dimensions = 0;
+      for (int id = 0; id < groupCount; id++) {
+        SparseVector vector = indexedGroups.getGroup(id).getVector();
+        for (float weight : vector.getWeights()) {
+          squaredNorms[id] += (double) weight * weight;
+        }
+        int[] indices = vector.getIndices();
+        if (indices.length > 0) {
+          dimensions = Math.max(dimensions, indices[indices.length - 1] + 1);
+        }
+      }
+      // Counting sort of every (member, group) entry, ids are visited in order so lists are sorted.
+      this.postingStarts = new int[dimensions + 1];
+      for (int id = 0; id < groupCount; id++) {
+        for (int index : indexedGroups.getGroup(id).getVector().getIndices()) {
+          postingStarts[index + 1]++;
+        }
+      }
+      for (int index = 0; index < dimensions; index++) {
+        postingStarts[index + 1] += postingStarts[index];
+      }
+      this.postingIds = new int[postingStarts[dimensions]];
+      this.postingWeights = new float[postingIds.length];
+      int[] cursors = Arrays.copyOf(postingStarts, dimensions);
+      for (int id = 0; id < groupCount; id++) {
+        SparseVector vector = indexedGroups.getGroup(id).getVector();
+        int[] indices = vector.getIndices();
+        float[] weights = vector.getWeights();
+        for (int i = 0; i < indices.length; i++) {
+          int position = cursors[indices[i]]++;
+          postingIds[position] = id;
+          postingWeights[position] = weights[i];
+        }
+      }
+    }
+    else {
+      this.postingStarts = null;
+      this.postingIds = null;
+      this.postingWeights = null;
+      this.squaredNorms = null;
+    }
+
+    if (distanceMetric.supports(PruningBound.NORM)) {
+      this.postingLists = null;
+      long[] packed = new long[indexedGroups.size()];
+      for (int id = 0; id < packed.length; id++) {
+        float norm = distanceMetric.normOf(indexedGroups.getGroup(id).getVector());
+        // Norms are never negative, so their bits sort in the same order as their values.
+        packed[id] = ((long) Float.floatToIntBits(norm) << 32) | id;
+      }
+      Arrays.sort(packed);
+      this.idsByNorm = new int[packed.length];
+      this.sortedNorms = new float[packed.length];
+      for (int i = 0; i < packed.length; i++) {
+        idsByNorm[i] = (int) packed[i];
+        sortedNorms[i] = Float.intBitsToFloat((int) (packed[i] >>> 32));
+      }
+    }
+    else {
+      this.idsByNorm = null;
+      this.sortedNorms = null;
+      if (distanceMetric.supports(PruningBound.DISJOINT_MAXIMUM)) {
+        this.postingLists = PostingLists.build(indexedGroups);
+      }
+      else {
+        this.postingLists = null;
+      }
+    }
+  }
+
+  /**
+   * <p>Finds the k {@link Group}s nearest to the provided {@link Group}, excluding the {@link Group} itself.</p>
+   *
+   * @param group The queried {@link Group}, which does not need to be in the mapping.
+   * @param k     The most {@link Neighbour}s to return.
+   * @return At most k {@link Neighbour}s, nearest first.
+   * @throws IllegalArgumentException If k is negative.
+   */
+  public List<Neighbour> nearest(Group group, int k) {
+    return nearest(group, k, Float.POSITIVE_INFINITY);
+  }
+
+  /**
+   * <p>Finds the k {@link Group}s nearest to the provided {@link Group} that are closer than the threshold, excluding
+   * the {@link Group} itself. Candidates are pruned against the threshold from the start, rather than only once k
+   * {@link Neighbour}s have been found.</p>
+   *
+   * @param group     The queried {@link Group}, which does not need to be in the mapping.
+   * @param k         The most {@link Neighbour}s to return.
+   * @param threshold {@link Group}s closer than this distance are returned.
+   * @return At most k {@link Neighbour}s within the threshold, nearest first.
+   * @throws IllegalArgumentException If k is negative.
+   */
+  public List<Neighbour> nearest(Group group, int k, float threshold) {
+    if (k < 0) {
+      throw new IllegalArgumentException(String.format("Cannot find the %d nearest groups.", k));
+    }
+    long start = System.nanoTime();
+    BoundedHeap heap = new BoundedHeap(k);
+    if (k > 0) {
+      search(group, threshold, heap);
+    }
+    List<Neighbour> result = heap.toNeighbours();
+    nearestLatencies.record(System.nanoTime() - start);
+    return result;
+  }
+
+  /**
+   * <p>Finds every {@link Group} closer than the threshold to the provided {@link Group}, excluding the {@link Group}
+   * itself.</p>
+   *
+   * @param group     The queried {@link Group}, which does not need to be in the mapping.
+   * @param threshold {@link Group}s closer than this distance are returned.
+   * @return The {@link Neighbour}s within the threshold, nearest first.
+   */
+  public List<Neighbour> within(Group group, float threshold) {
+    long start = System.nanoTime();
+    BoundedHeap heap = new BoundedHeap(Integer.MAX_VALUE);
+    search(group, threshold, heap);
+    List<Neighbour> result = heap.toNeighbours();
+    withinLatencies.record(System.nanoTime() - start);
+    return result;
+  }
+
+  /**
+   * @return The latencies of {@link #nearest(Group, int)} queries.
+   */
+  public LatencyHistogram getNearestLatencies() {
+    return nearestLatencies;
+  }
+
+  /**
+   * @return The latencies of {@link #within(Group, float)} queries.
+   */
+  public LatencyHistogram getWithinLatencies() {
+    return withinLatencies;
+  }
+
+  /**
+   * <p>Offers every candidate closer than the threshold to the heap. Candidates are pruned against the smaller of the
+   * threshold and the heap's worst distance once it is full.</p>
+   */
+  private void search(Group group, float threshold, BoundedHeap heap) {
+    int queryId = indexedGroups.getId(group);
+    SparseVector query = group.getVector();
+    if (postingStarts != null && threshold < Float.POSITIVE_INFINITY) {
+      searchSharedOrSmall(query, queryId, threshold, heap);
+    }
+    else if (idsByNorm != null) {
+      searchByNorm(query, queryId, threshold, heap);
+    }
+    else if (postingLists != null) {
+      for (int id : postingLists.getSimilarGroupIds(group)) {
+        offer(query, id, threshold, heap);
+      }
+    }
+    else {
+      for (int id = 0; id < indexedGroups.size(); id++) {
+        if (id != queryId) {
+          offer(query, id, threshold, heap);
+        }
+      }
+    }
+  }
+
+  /**
+   * <p>For squared euclidean distance a {@link Group} that shares no member with the query is exactly the sum of
+   * their squared norms away. Within a finite threshold only the {@link Group}s that share a member, and the few
+   * whose squared norm is below the threshold minus the query's, can be closer.</p><br><p>The dot products with the
+   * {@link Group}s that share a member are accumulated over the query's weighted posting lists, as a row of the
+   * sparse matrix product in {@link dariush.griffin.group.membership.clusters.utilities.SparseProductEdges}. The row
+   * is kept in a small open addressed table rather than a dense one, so concurrent queries need no shared state, and
+   * only the {@link Group}s the expanded distance puts within the threshold are compared exactly.</p>
+   */
+  private void searchSharedOrSmall(SparseVector query, int queryId, float threshold, BoundedHeap heap) {
+    int[] indices = query.getIndices();
+    float[] weights = query.getWeights();
+    long candidateCount = 0L;
+    for (int index : indices) {
+      if (index < postingStarts.length - 1) {
+        candidateCount += postingStarts[index + 1] - postingStarts[index];
+      }
+    }
+    // Postings repeat groups that share several members, but there are never more distinct candidates than groups.
+    candidateCount = Math.max(1L, Math.min(candidateCount, indexedGroups.size()));
+    int[] ids = new int[(int) Math.min(Long.highestOneBit(candidateCount * 2L - 1L) << 1, 1 << 30)];
+    double[] dots = new double[ids.length];
+    Arrays.fill(ids, -1);
+    double queryNorm = 0D;
+    for (int i = 0; i < indices.length; i++) {
+      double weight = weights[i];
+      queryNorm += weight * weight;
+      if (indices[i] >= postingStarts.length - 1) {
+        continue;
+      }
+      for (int position = postingStarts[indices[i]]; position < postingStarts[indices[i] + 1]; position++) {
+        int slot = slotOf(ids, postingIds[position]);
+        ids[slot] = postingIds[position];
+        dots[slot] += weight * postingWeights[position];
+      }
+    }
+
+    for (int slot = 0; slot < ids.length; slot++) {
+      int id = ids[slot];
+      if (id >= 0 && id != queryId) {
+        double distance = queryNorm + squaredNorms[id] - 2D * dots[slot];
+        // The margin covers the rounding of the expanded distance, offered candidates are compared exactly.
+        if (distance - NORM_MARGIN * (queryNorm + squaredNorms[id]) < Math.min(threshold, heap.getBound())) {
+          offer(query, id, threshold, heap);
+        }
+      }
+    }
+
+    double room = threshold * (1D + NORM_MARGIN) - queryNorm;
+    for (int i = 0; i < idsByNorm.length && (double) sortedNorms[i] * sortedNorms[i] < room; i++) {
+      int id = idsByNorm[i];
+      if (id != queryId && ids[slotOf(ids, id)] != id) {
+        offer(query, id, threshold, heap);
+      }
+    }
+  }
+
+  /**
+   * @return The slot of the id in the open addressed table, or the empty slot it would take.
+   */
+  private static int slotOf(int[] ids, int id) {
+    int mask = ids.length - 1;
+    int slot = (id * 0x9E3779B9) & mask;
+    while (ids[slot] >= 0 && ids[slot] != id) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void searchByNorm(SparseVector query, int queryId, float threshold, BoundedHeap heap) {
+    float queryNorm = distanceMetric.normOf(query);
+    int insertion = Arrays.binarySearch(sortedNorms, queryNorm);
+    int lower = ((insertion >= 0) ? insertion : -insertion - 1) - 1;
+    int upper = lower + 1;
+    while (lower >= 0 || upper < idsByNorm.length) {
+      float limit = Math.min(threshold, heap.getBound());
+      float lowerBound = (lower >= 0) ? distanceMetric.normLowerBound(queryNorm, sortedNorms[lower])
+          : Float.POSITIVE_INFINITY;
+      float upperBound = (upper < idsByNorm.length) ? distanceMetric.normLowerBound(queryNorm, sortedNorms[upper])
+          : Float.POSITIVE_INFINITY;
+      // Visit the side with the smaller bound first, so the heap fills with close groups early.
+      if (lowerBound <= upperBound) {
+        if (lowerBound >= limit) {
+          return;
+        }
+        int id = idsByNorm[lower--];
+        if (id != queryId) {
+          offer(query, id, threshold, heap);
+        }
+      }
+      else {
+        if (upperBound >= limit) {
+          return;
+        }
+        int id = idsByNorm[upper++];
+        if (id != queryId) {
+          offer(query, id, threshold, heap);
+        }
+      }
+    }
+  }
+
+  private void offer(SparseVector query, int id, float threshold, BoundedHeap heap) {
+    if (quantizedVectors != null && quantizedVectors.isBeyond(query, id, Math.min(threshold, heap.getBound()))) {
+      return;
+    }
+    float distance = distanceMetric.distance(query, indexedGroups.getGroup(id).getVector());
+    if (distance < threshold) {
+      heap.offer(id, distance);
+    }
+  }
+
+  /**
+   * <p>A max heap of at most {@code capacity} ids by distance, so the worst of the best k is always on top.</p>
+   */
+  private final class BoundedHeap
+  {
+    private final int capacity;
+
+    private int[] ids;
+
+    private float[] distances;
+
+    private int size;
+
+    private BoundedHeap(int capacity) {
+      this.capacity = capacity;
+      int initialCapacity = Math.min(capacity, 16);
+      this.ids = new int[initialCapacity];
+      this.distances = new float[initialCapacity];
+    }
+
+    /**
+     * @return The distance a candidate must beat once the heap is full, otherwise infinity.
+     */
+    private float getBound() {
+      return (size == capacity) ? distances[0] : Float.POSITIVE_INFINITY;
+    }
+
+    private void offer(int id, float distance) {
+      if (size < capacity) {
+        if (size == ids.length) {
+          int grown = (int) Math.min(capacity, ids.length * 2L);
+          ids = Arrays.copyOf(ids, grown);
+          distances = Arrays.copyOf(distances, grown);
+        }
+        ids[size] = id;
+        distances[size] = distance;
+        siftUp(size++);
+      }
+      else if (distance < distances[0]) {
+        ids[0] = id;
+        distances[0] = distance;
+        siftDown(0);
+      }
+    }
+
+    private void siftUp(int position) {
+      while (position > 0) {
+        int parent = (position - 1) >>> 1;
+        if (distances[parent] >= distances[position]) {
+          return;
+        }
+        swap(parent, position);
+        position = parent;
+      }
+    }
+
+    private void siftDown(int position) {
+      while (true) {
+        int largest = position;
+        int left = 2 * position + 1;
+        int right = left + 1;
+        if (left < size && distances[left] > distances[largest]) {
+          largest = left;
+        }
+        if (right < size && distances[right] > distances[largest]) {
+          largest = right;
+        }
+        if (largest == position) {
+          return;
+        }
+        swap(largest, position);
+        position = largest;
+      }
+    }
+
+    private void swap(int first, int second) {
+      int id = ids[first];
+      ids[first] = ids[second];
+      ids[second] = id;
+      float distance = distances[first];
+      distances[first] = distances[second];
+      distances[second] = distance;
+    }
+
+    private List<Neighbour> toNeighbours() {
+      if (size == 0) {
+        return Collections.emptyList();
+      }
+      List<Neighbour> result = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        result.add(new Neighbour(indexedGroups.getGroup(ids[i]), distances[i]));
+      }
+      Collections.sort(result);
+      return result;
+    }
+  }
+}
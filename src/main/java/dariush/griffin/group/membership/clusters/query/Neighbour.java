@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.query;
+
+import java.util.Objects;
+
+import dariush.griffin.group.membership.clusters.model.Group;
+
+/**
+ * <p>A {@link Group} found by a {@link GroupQueryService} query, with its distance from the queried
+ * {@link Group}. Neighbours are ordered by distance and then by {@link Group}.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class Neighbour
+    implements Comparable<Neighbour>
+{
+  private final Group group;
+
+  private final float distance;
+
+  /**
+   * @param group    The neighbouring {@link Group}.
+   * @param distance The distance from the queried {@link Group}.
+   */
+  public Neighbour(Group group, float distance) {
+    this.group = group;
+    this.distance = distance;
+  }
+
+  /**
+   * @return The neighbouring {@link Group}.
+   */
+  public Group getGroup() {
+    return group;
+  }
+
+  /**
+   * @return The distance from the queried {@link Group}.
+   */
+  public float getDistance() {
+    return distance;
+  }
+
+  @Override
+  public int compareTo(final Neighbour o) {
+    int distanceDiff = Float.compare(distance, o.distance);
+    return (distanceDiff != 0) ? distanceDiff : group.compareTo(o.group);
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    Neighbour neighbour = (Neighbour) o;
+    return Float.compare(neighbour.distance, distance) == 0 && Objects.equals(group, neighbour.group);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(group, distance);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("Neighbour{");
+    sb.append("group=").append(group.getName());
+    sb.append(", distance=").append(distance);
+    sb.append('}');
+    return sb.toString();
+  }
+}
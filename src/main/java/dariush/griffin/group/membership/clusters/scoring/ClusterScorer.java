@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.scoring;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import dariush.griffin.group.membership.clusters.metrics.DistanceMetric;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.Cluster;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+import dariush.griffin.group.membership.clusters.utilities.ClusterUtilities;
+
+/**
+ * <p>Scores a clustering, so clusterings made with different minimum distances can be compared. Distances are mapped
+ * onto a true metric with {@link DistanceMetric#toMetric(float)} before they are scored, so squared euclidean
+ * distances are scored as euclidean distances.</p><br><p>The scores are:<ul><li>{@link #silhouette(int, long)}: how
+ * much closer each {@link Group} is to its own cluster than to the next nearest, from -1 to 1, higher is better. It is
+ * quadratic in the number of {@link Group}s, so it can be estimated from a random sample.</li><li>
+ * {@link #daviesBouldin()}: the average ratio of the scatter of each cluster and its most similar cluster to the
+ * distance between their centroids, lower is better. It is linear in the number of {@link Group}s and quadratic in
+ * the number of clusters.</li><li>{@link #clusterCountScore(int)}: how close the number of clusters is to
+ * {@code 2^n - 1} for n members, from 0 to 1, higher is better.</li></ul></p><br><p>The centroid of each cluster,
+ * from {@link ClusterUtilities#calculateAverageVector(java.util.Set)}, is calculated once on construction and every
+ * score is computed in parallel. {@link #adjustedRandIndex(int[], int[])} and {@link #randIndex(int[], int[])} score
+ * a clustering against a known answer or another clustering instead.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class ClusterScorer
+{
+  private final DistanceMetric distanceMetric;
+
+  /**
+   * Every clustered {@link Group}, grouped by cluster.
+   */
+  private final Group[] groups;
+
+  /**
+   * The index of the cluster of each {@link Group}, positioned to match {@link #groups}.
+   */
+  private final int[] labels;
+
+  /**
+   * The position of the first {@link Group} of each cluster, followed by the number of {@link Group}s.
+   */
+  private final int[] clusterStarts;
+
+  private final SparseVector[] centroids;
+
+  /**
+   * <p>Constructs a scorer that measures squared euclidean distance.</p>
+   *
+   * @param clusters The clustering to score.
+   */
+  public ClusterScorer(Collection<Cluster> clusters) {
+    this(clusters, new SquaredEuclideanDistance());
+  }
+
+  /**
+   * @param clusters       The clustering to score.
+   * @param distanceMetric The metric used to measure the distance between {@link Group}s.
+   */
+  public ClusterScorer(Collection<Cluster> clusters, DistanceMetric distanceMetric) {
+    this.distanceMetric = distanceMetric;
+    Cluster[] clusterArray = clusters.toArray(new Cluster[0]);
+    this.clusterStarts = new int[clusterArray.length + 1];
+    for (int label = 0; label < clusterArray.length; label++) {
+      clusterStarts[label + 1] = clusterStarts[label] + clusterArray[label].getGroups().size();
+    }
+    this.groups = new Group[clusterStarts[clusterArray.length]];
+    this.labels = new int[groups.length];
+    int position = 0;
+    for (int label = 0; label < clusterArray.length; label++) {
+      for (Group group : clusterArray[label].getGroups()) {
+        groups[position] = group;
+        labels[position++] = label;
+      }
+    }
+    this.centroids = new SparseVector[clusterArray.length];
+    IntStream.range(0, clusterArray.length).parallel().forEach(label -> centroids[label] =
+        SparseVector.of(ClusterUtilities.calculateAverageVector(clusterArray[label].getGroups())));
+  }
+
+  /**
+   * @return The number of scored clusters.
+   */
+  public int getClusterCount() {
+    return centroids.length;
+  }
+
+  /**
+   * @return The number of scored {@link Group}s.
+   */
+  public int getGroupCount() {
+    return groups.length;
+  }
+
+  /**
+   * @return The mean silhouette of every {@link Group}, see {@link #silhouette(int, long)}.
+   */
+  public double silhouette() {
+    return silhouette(Integer.MAX_VALUE, 0L);
+  }
+
+  /**
+   * <p>The mean silhouette of a random sample of the {@link Group}s, computed as if the sample were the whole
+   * clustering. A {@link Group} alone in its cluster, within the sample, has a silhouette of 0.</p>
+   *
+   * @param sampleSize The most {@link Group}s to sample.
+   * @param seed       The seed of the random sample.
+   * @return The mean silhouette, from -1 to 1, or 0 if there are fewer than two clusters.
+   */
+  public double silhouette(int sampleSize, long seed) {
+    int[] sample = sample(sampleSize, seed);
+    if (sample.length < 2) {
+      return 0D;
+    }
+    int[] sampledSizes = new int[centroids.length];
+    for (int position : sample) {
+      sampledSizes[labels[position]]++;
+    }
+
+    return IntStream.range(0, sample.length).parallel().mapToDouble(i -> {
+      int label = labels[sample[i]];
+      if (sampledSizes[label] < 2) {
+        return 0D;
+      }
+      SparseVector vector = groups[sample[i]].getVector();
+      double[] totals = new double[centroids.length];
+      for (int j = 0; j < sample.length; j++) {
+        if (j != i) {
+          totals[labels[sample[j]]] += distance(vector, groups[sample[j]].getVector());
+        }
+      }
+      double inner = totals[label] / (sampledSizes[label] - 1);
+      double outer = Double.POSITIVE_INFINITY;
+      for (int other = 0; other < totals.length; other++) {
+        if (other != label && sampledSizes[other] > 0) {
+          outer = Math.min(outer, totals[other] / sampledSizes[other]);
+        }
+      }
+      if (outer == Double.POSITIVE_INFINITY) {
+        return 0D;
+      }
+      double scale = Math.max(inner, outer);
+      return (scale == 0D) ? 0D : (outer - inner) / scale;
+    }).sum() / sample.length;
+  }
+
+  /**
+   * <p>The Davies-Bouldin index, the mean over clusters of {@code max (s_i + s_j) / d(c_i, c_j)}, where {@code s} is
+   * the mean distance of a cluster's {@link Group}s to its centroid {@code c}.</p>
+   *
+   * @return The index, 0 or more, or 0 if there are fewer than two clusters.
+   */
+  public double daviesBouldin() {
+    int clusterCount = centroids.length;
+    if (clusterCount < 2) {
+      return 0D;
+    }
+    double[] scatters = new double[clusterCount];
+    IntStream.range(0, clusterCount).parallel().forEach(label -> {
+      double total = 0D;
+      for (int position = clusterStarts[label]; position < clusterStarts[label + 1]; position++) {
+        total += distance(groups[position].getVector(), centroids[label]);
+      }
+      scatters[label] = total / (clusterStarts[label + 1] - clusterStarts[label]);
+    });
+
+    return IntStream.range(0, clusterCount).parallel().mapToDouble(label -> {
+      double worst = 0D;
+      for (int other = 0; other < clusterCount; other++) {
+        if (other == label) {
+          continue;
+        }
+        double scatter = scatters[label] + scatters[other];
+        double separation = distance(centroids[label], centroids[other]);
+        double ratio = (separation > 0D) ? scatter / separation : (scatter > 0D) ? Double.POSITIVE_INFINITY : 0D;
+        worst = Math.max(worst, ratio);
+      }
+      return worst;
+    }).sum() / clusterCount;
+  }
+
+  /**
+   * <p>Scores the number of clusters against {@link #optimalClusterCount(int, int)}, as the ratio of the smaller
+   * count to the larger.</p>
+   *
+   * @param memberCount The number of members in the clustered mapping.
+   * @return The score, from 0 to 1, where 1 is the optimal count.
+   */
+  public double clusterCountScore(int memberCount) {
+    int optimal = optimalClusterCount(memberCount, groups.length);
+    int count = centroids.length;
+    if (optimal == 0 || count == 0) {
+      return (optimal == count) ? 1D : 0D;
+    }
+    return ((double) Math.min(count, optimal)) / Math.max(count, optimal);
+  }
+
+  /**
+   * <p>The optimal number of clusters may be {@code 2^n - 1} for n members, one for each non empty subset of the
+   * members dominating a cluster, but there can never be more clusters than {@link Group}s.</p>
+   *
+   * @param memberCount The number of members.
+   * @param groupCount  The number of {@link Group}s.
+   * @return The optimal number of clusters.
+   */
+  public static int optimalClusterCount(int memberCount, int groupCount) {
+    long subsets = (memberCount >= 31) ? Integer.MAX_VALUE : (1L << memberCount) - 1L;
+    return (int) Math.min(subsets, groupCount);
+  }
+
+  /**
+   * <p>Compares a clustering with a known answer, such as the clusters planted by a
+   * {@link dariush.griffin.group.membership.clusters.synthetic.PlantedPartitionGenerator}. The Rand index is the
+   * fraction of pairs of items that both labelings put together or both put apart, the adjusted index subtracts the
+   * value expected of random labelings with the same cluster sizes. Counts come from sorting the labels and the
+   * packed pairs of labels, so nothing is boxed.</p>
+   *
+   * @param expected The expected cluster of each item.
+   * @param actual   The cluster each item was put in, positioned to match expected.
+   * @return The adjusted Rand index, 1 when the labelings match up to renaming, around 0 for random labelings and
+   * negative for worse than random.
+   * @throws IllegalArgumentException If the labelings have different lengths.
+   */
+  public static double adjustedRandIndex(int[] expected, int[] actual) {
+    PairCounts counts = new PairCounts(expected, actual);
+    double chance = (counts.pairs == 0D) ? 0D : counts.expectedTogether * counts.actualTogether / counts.pairs;
+    double maximum = (counts.expectedTogether + counts.actualTogether) / 2D;
+    if (maximum == chance) {
+      // Both labelings are all singletons or a single cluster, so they can only agree.
+      return 1D;
+    }
+    return (counts.together - chance) / (maximum - chance);
+  }
+
+  /**
+   * <p>The unadjusted Rand index, the fraction of pairs of items that both labelings put together or both put apart,
+   * counted the same way as {@link #adjustedRandIndex(int[], int[])}.</p>
+   *
+   * @param expected The expected cluster of each item.
+   * @param actual   The cluster each item was put in, positioned to match expected.
+   * @return The Rand index, from 0 to 1, or {@link Double#NaN} if there are fewer than two items.
+   * @throws IllegalArgumentException If the labelings have different lengths.
+   */
+  public static double randIndex(int[] expected, int[] actual) {
+    PairCounts counts = new PairCounts(expected, actual);
+    return (counts.pairs + 2D * counts.together - counts.expectedTogether - counts.actualTogether) / counts.pairs;
+  }
+
+  /**
+   * @return The labels widened and sorted.
+   */
+  private static long[] sortedLongs(int[] labels) {
+    long[] result = new long[labels.length];
+    for (int i = 0; i < labels.length; i++) {
+      result[i] = labels[i];
+    }
+    Arrays.parallelSort(result);
+    return result;
+  }
+
+  /**
+   * @return The number of pairs of equal values in a sorted array, the sum of n choose 2 over each run of n values.
+   */
+  private static double samePairs(long[] sorted) {
+    double result = 0D;
+    int run = 1;
+    for (int i = 1; i <= sorted.length; i++) {
+      if (i < sorted.length && sorted[i] == sorted[i - 1]) {
+        run++;
+      }
+      else {
+        result += run * (run - 1D) / 2D;
+        run = 1;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * <p>The contingency counts of two labelings, the pairs of items each puts together and the pairs both do.</p>
+   */
+  private static final class PairCounts
+  {
+    private final double pairs;
+
+    private final double together;
+
+    private final double expectedTogether;
+
+    private final double actualTogether;
+
+    private PairCounts(int[] expected, int[] actual) {
+      if (expected.length != actual.length) {
+        throw new IllegalArgumentException(
+            String.format("Cannot compare %d expected labels to %d actual labels.", expected.length, actual.length));
+      }
+      long[] both = new long[expected.length];
+      for (int i = 0; i < both.length; i++) {
+        both[i] = ((long) expected[i] << 32) | (actual[i] & 0xFFFFFFFFL);
+      }
+      Arrays.parallelSort(both);
+      this.pairs = expected.length * (expected.length - 1D) / 2D;
+      this.together = samePairs(both);
+      this.expectedTogether = samePairs(sortedLongs(expected));
+      this.actualTogether = samePairs(sortedLongs(actual));
+    }
+  }
+
+  /**
+   * @return Positions of at most sampleSize {@link Group}s, chosen uniformly.
+   */
+  private int[] sample(int sampleSize, long seed) {
+    int[] positions = IntStream.range(0, groups.length).toArray();
+    if (sampleSize >= positions.length) {
+      return positions;
+    }
+    Random random = new Random(seed);
+    for (int i = 0; i < sampleSize; i++) {
+      int j = i + random.nextInt(positions.length - i);
+      int swapped = positions[j];
+      positions[j] = positions[i];
+      positions[i] = swapped;
+    }
+    int[] result = new int[Math.max(sampleSize, 0)];
+    System.arraycopy(positions, 0, result, 0, result.length);
+    return result;
+  }
+
+  private double distance(SparseVector first, SparseVector second) {
+    return distanceMetric.toMetric(distanceMetric.distance(first, second));
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.scoring;
+
+/**
+ * <p>A minimum distance probed by a {@link ThresholdSearch}, with the score and number of clusters it produced.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class ScoredThreshold
+{
+  private final float threshold;
+
+  private final double score;
+
+  private final int clusterCount;
+
+  /**
+   * @param threshold    The minimum distance.
+   * @param score        The score of the clustering, higher is better.
+   * @param clusterCount The number of clusters.
+   */
+  public ScoredThreshold(float threshold, double score, int clusterCount) {
+    this.threshold = threshold;
+    this.score = score;
+    this.clusterCount = clusterCount;
+  }
+
+  /**
+   * @return The minimum distance.
+   */
+  public float getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * @return The score of the clustering, higher is better.
+   */
+  public double getScore() {
+    return score;
+  }
+
+  /**
+   * @return The number of clusters.
+   */
+  public int getClusterCount() {
+    return clusterCount;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("ScoredThreshold{");
+    sb.append("threshold=").append(threshold);
+    sb.append(", score=").append(score);
+    sb.append(", clusterCount=").append(clusterCount);
+    sb.append('}');
+    return sb.toString();
+  }
+}
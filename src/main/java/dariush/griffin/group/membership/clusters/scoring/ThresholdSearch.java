@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.scoring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.metrics.DistanceMetric;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.Cluster;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+
+/**
+ * <p>Chooses the minimum distance for the {@link AgglomerativeClusterAlgorithm} by clustering with a series of
+ * thresholds and scoring each clustering with a {@link ClusterScorer}, until a time budget runs out.</p><br><p>Scores
+ * are not unimodal in the threshold, so rather than bisecting, probes are spread over the range on a logarithmic scale
+ * in van der Corput order: both ends, then the middle, then the quarters, and so on. Every prefix of the sequence
+ * covers the range evenly, so the search can stop at any probe and the best threshold so far is the best of an even
+ * grid, which gets finer with more time.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class ThresholdSearch
+{
+  private static final int DEFAULT_SILHOUETTE_SAMPLE_SIZE = 1000;
+
+  private static final int DEFAULT_MAX_PROBES = 33;
+
+  private final MembershipMapping membershipMapping;
+
+  private final DistanceMetric distanceMetric;
+
+  private final ScoreObjective objective;
+
+  private final int silhouetteSampleSize;
+
+  private final int maxProbes;
+
+  private final LongSupplier nanoClock;
+
+  private final List<ScoredThreshold> probes = new ArrayList<>();
+
+  /**
+   * <p>Constructs a search of squared euclidean distance thresholds.</p>
+   *
+   * @param membershipMapping The mapping whose {@link dariush.griffin.group.membership.clusters.model.Group}s will be
+   *                          clustered.
+   * @param objective         The score to maximize.
+   */
+  public ThresholdSearch(MembershipMapping membershipMapping, ScoreObjective objective) {
+    this(membershipMapping, new SquaredEuclideanDistance(), objective, DEFAULT_SILHOUETTE_SAMPLE_SIZE,
+        DEFAULT_MAX_PROBES, System::nanoTime);
+  }
+
+  /**
+   * @param membershipMapping    The mapping whose {@link dariush.griffin.group.membership.clusters.model.Group}s will
+   *                             be clustered.
+   * @param distanceMetric       The metric used to measure the distance between
+   *                             {@link dariush.griffin.group.membership.clusters.model.Group}s.
+   * @param objective            The score to maximize.
+   * @param silhouetteSampleSize The most groups sampled by {@link ScoreObjective#SILHOUETTE}.
+   * @param maxProbes            The most thresholds probed, even if there is time left.
+   * @param nanoClock            The current time in nanoseconds.
+   * @throws IllegalArgumentException If fewer than one probe is allowed.
+   */
+  public ThresholdSearch(
+      MembershipMapping membershipMapping,
+      DistanceMetric distanceMetric,
+      ScoreObjective objective,
+      int silhouetteSampleSize,
+      int maxProbes,
+      LongSupplier nanoClock)
+  {
+    if (maxProbes < 1) {
+      throw new IllegalArgumentException(String.format("Cannot search with %d probes.", maxProbes));
+    }
+    this.membershipMapping = membershipMapping;
+    this.distanceMetric = distanceMetric;
+    this.objective = objective;
+    this.silhouetteSampleSize = silhouetteSampleSize;
+    this.maxProbes = maxProbes;
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * <p>Probes thresholds between low and high until the budget runs out, at least one threshold is always probed. A
+   * probe that has started is allowed to finish, so the search can overrun the budget by one probe.</p>
+   *
+   * @param low    The smallest threshold, must be positive.
+   * @param high   The largest threshold, at least low.
+   * @param budget The time allowed.
+   * @param unit   The unit of the budget.
+   * @return The threshold with the best score, the smallest on ties.
+   * @throws IllegalArgumentException If low is not positive or high is less than low.
+   */
+  public ScoredThreshold search(float low, float high, long budget, TimeUnit unit) {
+    if (!(low > 0F) || !(high >= low)) {
+      throw new IllegalArgumentException(
+          String.format("Cannot search thresholds from %f to %f.", low, high));
+    }
+    long deadline = nanoClock.getAsLong() + unit.toNanos(budget);
+    probes.clear();
+
+    ScoredThreshold best = null;
+    double logLow = Math.log(low);
+    double logRange = Math.log(high) - logLow;
+    for (int i = 0; i < maxProbes && (i == 0 || nanoClock.getAsLong() < deadline); i++) {
+      float threshold = (float) Math.exp(logLow + logRange * position(i));
+      ScoredThreshold probe = probe(threshold);
+      probes.add(probe);
+      if (best == null || probe.getScore() > best.getScore()
+          || (probe.getScore() == best.getScore() && probe.getThreshold() < best.getThreshold()))
+      {
+        best = probe;
+      }
+      if (logRange == 0D) {
+        break;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * <p>Clusters with a single threshold and scores the result.</p>
+   *
+   * @param threshold The minimum distance.
+   * @return The score of the clustering.
+   */
+  public ScoredThreshold probe(float threshold) {
+    Set<Cluster> clusters = new AgglomerativeClusterAlgorithm(membershipMapping, distanceMetric, threshold).cluster();
+    ClusterScorer scorer = new ClusterScorer(clusters, distanceMetric);
+    double score;
+    switch (objective) {
+      case SILHOUETTE:
+        score = scorer.silhouette(silhouetteSampleSize, 0L);
+        break;
+      case DAVIES_BOULDIN:
+        score = -scorer.daviesBouldin();
+        break;
+      default:
+        score = scorer.clusterCountScore(membershipMapping.getMembers().size());
+    }
+    return new ScoredThreshold(threshold, score, clusters.size());
+  }
+
+  /**
+   * @return The thresholds probed by the last {@link #search(float, float, long, TimeUnit)}, in the order probed.
+   */
+  public List<ScoredThreshold> getProbes() {
+    return Collections.unmodifiableList(probes);
+  }
+
+  /**
+   * <p>The position of the i-th probe in [0, 1]: 0 and 1 first, then the base 2 van der Corput sequence, 1/2, 1/4,
+   * 3/4, 1/8 and so on.</p>
+   */
+  static double position(int i) {
+    if (i < 2) {
+      return i;
+    }
+    double result = 0D;
+    double base = 0.5D;
+    for (int n = i - 1; n > 0; n >>= 1, base /= 2D) {
+      if ((n & 1) != 0) {
+        result += base;
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.synthetic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import dariush.griffin.group.membership.clusters.algorithms.ClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.model.Cluster;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import dariush.griffin.group.membership.clusters.scoring.ClusterScorer;
+
+/**
+ * <p>Measures how accurately and how quickly {@link ClusterAlgorithm}s recover the clusters planted by a
+ * {@link PlantedPartitionGenerator}. The mapping is generated once, on first use, and shared by every evaluation, so
+ * the algorithms must not modify it.</p><br><p>Accuracy is the adjusted Rand index of the clustering against the
+ * planted clusters. Clusters are streamed through {@link ClusterAlgorithm#cluster(java.util.function.Consumer)} while
+ * timing, so the timing does not include hashing the result into a set, and are only labeled afterwards.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class AccuracyHarness
+{
+  private final PlantedPartitionGenerator generator;
+
+  private MembershipMapping membershipMapping;
+
+  private long generateNanos;
+
+  private long membershipCount;
+
+  /**
+   * @param generator The generator of the mapping every algorithm clusters.
+   */
+  public AccuracyHarness(PlantedPartitionGenerator generator) {
+    this.generator = generator;
+  }
+
+  /**
+   * <p>Clusters the generated mapping and scores the clustering against the planted clusters.</p>
+   *
+   * @param name      The name of the algorithm, used in the report.
+   * @param algorithm Creates the algorithm for the generated mapping.
+   * @return The accuracy and speed of the algorithm.
+   */
+  public AccuracyReport evaluate(String name, Function<MembershipMapping, ? extends ClusterAlgorithm> algorithm) {
+    MembershipMapping mapping = getMembershipMapping();
+    List<Cluster> clusters = new ArrayList<>();
+    long start = System.nanoTime();
+    algorithm.apply(mapping).cluster(clusters::add);
+    long clusterNanos = System.nanoTime() - start;
+
+    int[] expected = new int[generator.getGroupCount()];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = generator.plantedCluster(i);
+    }
+    int[] actual = new int[expected.length];
+    Arrays.fill(actual, -1);
+    int label = 0;
+    for (Cluster cluster : clusters) {
+      for (Group group : cluster.getGroups()) {
+        actual[generator.groupIndex(group.getName())] = label;
+      }
+      label++;
+    }
+    // A group an algorithm left out is scored as a cluster of its own.
+    for (int i = 0; i < actual.length; i++) {
+      if (actual[i] < 0) {
+        actual[i] = label++;
+      }
+    }
+    return new AccuracyReport(name, ClusterScorer.adjustedRandIndex(expected, actual), clusters.size(),
+        expected.length, clusterNanos);
+  }
+
+  /**
+   * @return The generated mapping, generated on the first call.
+   */
+  public synchronized MembershipMapping getMembershipMapping() {
+    if (membershipMapping == null) {
+      long start = System.nanoTime();
+      membershipMapping = generator.generate();
+      generateNanos = System.nanoTime() - start;
+      for (Group group : membershipMapping.getGroups()) {
+        membershipCount += group.getMembers().size();
+      }
+    }
+    return membershipMapping;
+  }
+
+  /**
+   * @return The time taken to generate and build the mapping, in nanoseconds, or 0 if it has not been generated.
+   */
+  public synchronized long getGenerateNanos() {
+    return generateNanos;
+  }
+
+  /**
+   * @return The number of distinct memberships in the generated mapping, or 0 if it has not been generated.
+   */
+  public synchronized long getMembershipCount() {
+    return membershipCount;
+  }
+
+  /**
+   * @return The generator of the mapping.
+   */
+  public PlantedPartitionGenerator getGenerator() {
+    return generator;
+  }
+}
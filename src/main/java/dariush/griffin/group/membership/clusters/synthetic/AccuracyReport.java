@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.synthetic;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>How accurately and how quickly a {@link dariush.griffin.group.membership.clusters.algorithms.ClusterAlgorithm}
+ * recovered the clusters planted by a {@link PlantedPartitionGenerator}, measured by an {@link AccuracyHarness}.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class AccuracyReport
+{
+  private final String name;
+
+  private final double adjustedRandIndex;
+
+  private final int clusterCount;
+
+  private final int groupCount;
+
+  private final long clusterNanos;
+
+  /**
+   * @param name              The name of the evaluated algorithm.
+   * @param adjustedRandIndex The adjusted Rand index of the clustering against the planted clusters.
+   * @param clusterCount      The number of clusters found.
+   * @param groupCount        The number of clustered groups.
+   * @param clusterNanos      The time taken to construct the algorithm and cluster.
+   */
+  public AccuracyReport(String name, double adjustedRandIndex, int clusterCount, int groupCount, long clusterNanos) {
+    this.name = name;
+    this.adjustedRandIndex = adjustedRandIndex;
+    this.clusterCount = clusterCount;
+    this.groupCount = groupCount;
+    this.clusterNanos = clusterNanos;
+  }
+
+  /**
+   * @return The name of the evaluated algorithm.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return The adjusted Rand index of the clustering against the planted clusters, 1 for a perfect match.
+   */
+  public double getAdjustedRandIndex() {
+    return adjustedRandIndex;
+  }
+
+  /**
+   * @return The number of clusters found.
+   */
+  public int getClusterCount() {
+    return clusterCount;
+  }
+
+  /**
+   * @return The number of clustered groups.
+   */
+  public int getGroupCount() {
+    return groupCount;
+  }
+
+  /**
+   * @return The time taken to construct the algorithm and cluster, in nanoseconds.
+   */
+  public long getClusterNanos() {
+    return clusterNanos;
+  }
+
+  /**
+   * @return The number of groups clustered per second.
+   */
+  public double getThroughput() {
+    return (clusterNanos == 0L) ? 0D : groupCount * ((double) TimeUnit.SECONDS.toNanos(1)) / clusterNanos;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("AccuracyReport{");
+    sb.append("name='").append(name).append('\'');
+    sb.append(", adjustedRandIndex=").append(adjustedRandIndex);
+    sb.append(", clusterCount=").append(clusterCount);
+    sb.append(", groupCount=").append(groupCount);
+    sb.append(", clusterNanos=").append(clusterNanos);
+    sb.append('}');
+    return sb.toString();
+  }
+}
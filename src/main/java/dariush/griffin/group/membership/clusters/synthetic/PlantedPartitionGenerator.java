@@ -0,0 +1,415 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.synthetic;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import dariush.griffin.group.membership.clusters.model.MembershipMappingBuilder;
+
+/**
+ * <p>Generates a {@link MembershipMapping} with planted clusters, so the accuracy of a clustering can be measured
+ * against a known answer at any scale.</p><br><p>Group {@code i} is named {@code "group-i"} and planted in cluster
+ * {@code i % clusterCount}. Each cluster owns a pool of members and each group draws distinct members from its
+ * cluster's pool, weighted from 1 to 2. The knobs are:<ul><li>separation: the fraction of a cluster's pool that is not
+ * shared with the next cluster. Pools are laid out on a ring, so at 1 they are disjoint and at 0.5 each cluster shares
+ * half of its pool with each neighbour.</li><li>noise: the probability that a member is drawn uniformly from every
+ * pool rather than the group's own.</li><li>member skew: the exponent of a power law over each pool, the {@code r}th
+ * member of a pool is drawn with probability proportional to {@code 1 / r^skew}. At 0 members are drawn uniformly.
+ * </li><li>hubs: members that every group joins with a fixed probability, regardless of its cluster. They put groups
+ * of every cluster in the same few, very long, posting lists.</li></ul></p><br><p>A member already drawn for a group
+ * is redrawn, and after {@value #MAX_DRAW_ATTEMPTS} attempts the membership is dropped, so with a steep skew groups can
+ * have fewer members than requested.</p><br><p>Edges are streamed straight into a {@link MembershipMappingBuilder}
+ * from parallel tasks, with no intermediate collections. Each block of groups draws from its own random stream seeded
+ * from the seed and the block, so the memberships do not depend on the number of threads, although vector indices
+ * do.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class PlantedPartitionGenerator
+{
+  /**
+   * The prefix of every generated {@link dariush.griffin.group.membership.clusters.model.Group} name.
+   */
+  public static final String GROUP_PREFIX = "group-";
+
+  private static final String MEMBER_PREFIX = "member-";
+
+  private static final String HUB_PREFIX = "hub-";
+
+  private static final int BLOCK_SIZE = 1024;
+
+  /**
+   * How many times a member already drawn for a group is redrawn before the membership is dropped.
+   */
+  private static final int MAX_DRAW_ATTEMPTS = 32;
+
+  private final long seed;
+
+  private final int groupCount;
+
+  private final int clusterCount;
+
+  private final int membersPerCluster;
+
+  private final int membershipsPerGroup;
+
+  private final float separation;
+
+  private final float noise;
+
+  private final double memberSkew;
+
+  private final int hubCount;
+
+  private final float hubProbability;
+
+  /**
+   * The offset between the pools of neighbouring clusters.
+   */
+  private final int poolStride;
+
+  /**
+   * The number of distinct non hub members, every pool wraps around at this count.
+   */
+  private final int poolMemberCount;
+
+  /**
+   * The cumulative probability of each rank in a pool, or null if members are drawn uniformly.
+   */
+  private final double[] rankDistribution;
+
+  /**
+   * <p>Constructs a generator of well separated clusters: disjoint pools, no noise, no skew and no hubs.</p>
+   *
+   * @param seed                The seed of every random draw.
+   * @param groupCount          The number of groups.
+   * @param clusterCount        The number of planted clusters.
+   * @param membersPerCluster   The number of members in each cluster's pool.
+   * @param membershipsPerGroup The number of distinct members drawn for each group, at most membersPerCluster.
+   * @throws IllegalArgumentException If a count is not positive, or there are more memberships per group than members
+   *                                  per cluster.
+   */
+  public PlantedPartitionGenerator(
+      long seed,
+      int groupCount,
+      int clusterCount,
+      int membersPerCluster,
+      int membershipsPerGroup)
+  {
+    this(seed, groupCount, clusterCount, membersPerCluster, membershipsPerGroup, 1F, 0F, 0D, 0, 0F);
+  }
+
+  /**
+   * @param seed                The seed of every random draw.
+   * @param groupCount          The number of groups.
+   * @param clusterCount        The number of planted clusters.
+   * @param membersPerCluster   The number of members in each cluster's pool.
+   * @param membershipsPerGroup The number of distinct members drawn for each group, at most membersPerCluster.
+   * @param separation          The fraction of a cluster's pool not shared with the next cluster, above 0 and at
+   *                            most 1.
+   * @param noise               The probability a membership is drawn from every pool, from 0 to 1.
+   * @param memberSkew          The exponent of the power law members are drawn with, 0 for uniform.
+   * @param hubCount            The number of hub members.
+   * @param hubProbability      The probability a group joins each hub, from 0 to 1.
+   * @throws IllegalArgumentException If a count is not positive, there are more memberships per group than members
+   *                                  per cluster, or a fraction or probability is out of range.
+   */
+  public PlantedPartitionGenerator(
+      long seed,
+      int groupCount,
+      int clusterCount,
+      int membersPerCluster,
+      int membershipsPerGroup,
+      float separation,
+      float noise,
+      double memberSkew,
+      int hubCount,
+      float hubProbability)
+  {
+    if (groupCount < 1 || clusterCount < 1 || membershipsPerGroup < 1 || membershipsPerGroup > membersPerCluster
+        || hubCount < 0)
+    {
+      throw new IllegalArgumentException(String.format(
+          "Cannot plant %d clusters of %d members in %d groups of %d memberships with %d hubs.", clusterCount,
+          membersPerCluster, groupCount, membershipsPerGroup, hubCount));
+    }
+    if (!(separation > 0F && separation <= 1F) || !(noise >= 0F && noise <= 1F) || !(memberSkew >= 0D)
+        || !(hubProbability >= 0F && hubProbability <= 1F))
+    {
+      throw new IllegalArgumentException(String.format(
+          "Invalid separation %f, noise %f, member skew %f or hub probability %f.", separation, noise, memberSkew,
+          hubProbability));
+    }
+    this.seed = seed;
+    this.groupCount = groupCount;
+    this.clusterCount = clusterCount;
+    this.membersPerCluster = membersPerCluster;
+    this.membershipsPerGroup = membershipsPerGroup;
+    this.separation = separation;
+    this.noise = noise;
+    this.memberSkew = memberSkew;
+    this.hubCount = hubCount;
+    this.hubProbability = hubProbability;
+    this.poolStride = Math.max(1, Math.round(membersPerCluster * separation));
+    long members = (long) clusterCount * poolStride;
+    if (members > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+          String.format("%d clusters of %d members is too many members.", clusterCount, membersPerCluster));
+    }
+    this.poolMemberCount = (int) members;
+    this.rankDistribution = (memberSkew == 0D) ? null : rankDistribution(membersPerCluster, memberSkew);
+  }
+
+  /**
+   * <p>Generates the mapping with a new builder.</p>
+   *
+   * @return The generated mapping.
+   */
+  public MembershipMapping generate() {
+    MembershipMappingBuilder builder = new MembershipMappingBuilder();
+    generate(builder);
+    return builder.build();
+  }
+
+  /**
+   * <p>Adds every generated edge to the builder, from the common fork join pool. It returns once every edge has been
+   * added, so the builder can be built straight away.</p>
+   *
+   * @param builder The builder that receives the edges.
+   */
+  public void generate(MembershipMappingBuilder builder) {
+    int blockCount = (int) ((groupCount + (long) BLOCK_SIZE - 1) / BLOCK_SIZE);
+    IntStream.range(0, blockCount).parallel().forEach(block -> generateBlock(block, builder));
+  }
+
+  /**
+   * @param groupIndex The index of a {@link dariush.griffin.group.membership.clusters.model.Group}.
+   * @return The name of the {@link dariush.griffin.group.membership.clusters.model.Group}.
+   */
+  public static String groupName(int groupIndex) {
+    return GROUP_PREFIX + groupIndex;
+  }
+
+  /**
+   * @param groupName The name of a generated {@link dariush.griffin.group.membership.clusters.model.Group}.
+   * @return The index of the {@link dariush.griffin.group.membership.clusters.model.Group}.
+   * @throws IllegalArgumentException If the name was not generated by this generator.
+   */
+  public int groupIndex(String groupName) {
+    int index = -1;
+    if (groupName.startsWith(GROUP_PREFIX)) {
+      try {
+        index = Integer.parseInt(groupName.substring(GROUP_PREFIX.length()));
+      }
+      catch (NumberFormatException e) {
+        index = -1;
+      }
+    }
+    if (index < 0 || index >= groupCount) {
+      throw new IllegalArgumentException(String.format("'%s' is not a generated group.", groupName));
+    }
+    return index;
+  }
+
+  /**
+   * @param groupIndex The index of a {@link dariush.griffin.group.membership.clusters.model.Group}.
+   * @return The cluster the {@link dariush.griffin.group.membership.clusters.model.Group} was planted in.
+   */
+  public int plantedCluster(int groupIndex) {
+    return groupIndex % clusterCount;
+  }
+
+  /**
+   * @return The number of groups.
+   */
+  public int getGroupCount() {
+    return groupCount;
+  }
+
+  /**
+   * @return The number of planted clusters.
+   */
+  public int getClusterCount() {
+    return clusterCount;
+  }
+
+  /**
+   * @return The number of members in each cluster's pool.
+   */
+  public int getMembersPerCluster() {
+    return membersPerCluster;
+  }
+
+  /**
+   * @return The number of distinct members drawn for each group, not counting hubs.
+   */
+  public int getMembershipsPerGroup() {
+    return membershipsPerGroup;
+  }
+
+  /**
+   * @return The fraction of a cluster's pool not shared with the next cluster.
+   */
+  public float getSeparation() {
+    return separation;
+  }
+
+  /**
+   * @return The probability a membership is drawn from every pool.
+   */
+  public float getNoise() {
+    return noise;
+  }
+
+  /**
+   * @return The exponent of the power law members are drawn with.
+   */
+  public double getMemberSkew() {
+    return memberSkew;
+  }
+
+  /**
+   * @return The number of hub members.
+   */
+  public int getHubCount() {
+    return hubCount;
+  }
+
+  /**
+   * @return The probability a group joins each hub.
+   */
+  public float getHubProbability() {
+    return hubProbability;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("PlantedPartitionGenerator{");
+    sb.append("seed=").append(seed);
+    sb.append(", groupCount=").append(groupCount);
+    sb.append(", clusterCount=").append(clusterCount);
+    sb.append(", membersPerCluster=").append(membersPerCluster);
+    sb.append(", membershipsPerGroup=").append(membershipsPerGroup);
+    sb.append(", separation=").append(separation);
+    sb.append(", noise=").append(noise);
+    sb.append(", memberSkew=").append(memberSkew);
+    sb.append(", hubCount=").append(hubCount);
+    sb.append(", hubProbability=").append(hubProbability);
+    sb.append('}');
+    return sb.toString();
+  }
+
+  private void generateBlock(int block, MembershipMappingBuilder builder) {
+    SplittableRandom random = new SplittableRandom(seed ^ (block * 0x9E3779B97F4A7C15L));
+    DrawnMembers drawn = new DrawnMembers(membershipsPerGroup);
+    int end = (int) Math.min(groupCount, (block + 1L) * BLOCK_SIZE);
+    for (int groupIndex = block * BLOCK_SIZE; groupIndex < end; groupIndex++) {
+      String groupName = groupName(groupIndex);
+      int poolStart = plantedCluster(groupIndex) * poolStride;
+      drawn.clear();
+      for (int i = 0; i < membershipsPerGroup; i++) {
+        int member = -1;
+        for (int attempt = 0; attempt < MAX_DRAW_ATTEMPTS && member < 0; attempt++) {
+          int candidate = (random.nextDouble() < noise)
+              ? random.nextInt(poolMemberCount) : (poolStart + drawRank(random)) % poolMemberCount;
+          if (drawn.add(candidate)) {
+            member = candidate;
+          }
+        }
+        if (member >= 0) {
+          builder.addMemberToGroup(MEMBER_PREFIX + member, groupName, 1F + (float) random.nextDouble());
+        }
+      }
+      for (int hub = 0; hub < hubCount; hub++) {
+        if (random.nextDouble() < hubProbability) {
+          builder.addMemberToGroup(HUB_PREFIX + hub, groupName, 1F + (float) random.nextDouble());
+        }
+      }
+    }
+  }
+
+  private int drawRank(SplittableRandom random) {
+    if (rankDistribution == null) {
+      return random.nextInt(membersPerCluster);
+    }
+    int rank = Arrays.binarySearch(rankDistribution, random.nextDouble());
+    return Math.min((rank >= 0) ? rank + 1 : -rank - 1, membersPerCluster - 1);
+  }
+
+  /**
+   * @return The cumulative probability of drawing each rank, normalized so the last is 1.
+   */
+  private static double[] rankDistribution(int size, double exponent) {
+    double[] result = new double[size];
+    double total = 0D;
+    for (int rank = 0; rank < size; rank++) {
+      total += Math.pow(rank + 1, -exponent);
+      result[rank] = total;
+    }
+    for (int rank = 0; rank < size; rank++) {
+      result[rank] /= total;
+    }
+    return result;
+  }
+
+  /**
+   * <p>The members drawn for the current group, an open addressing set that is cleared by bumping a generation
+   * rather than by filling its tables.</p>
+   */
+  private static final class DrawnMembers
+  {
+    private final int[] members;
+
+    private final int[] generations;
+
+    private final int mask;
+
+    private int generation;
+
+    private DrawnMembers(int capacity) {
+      int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+      this.members = new int[size];
+      this.generations = new int[size];
+      this.mask = size - 1;
+    }
+
+    private void clear() {
+      generation++;
+    }
+
+    /**
+     * @return True, if the member had not been drawn yet.
+     */
+    private boolean add(int member) {
+      int slot = (member * 0x9E3779B9) & mask;
+      while (generations[slot] == generation) {
+        if (members[slot] == member) {
+          return false;
+        }
+        slot = (slot + 1) & mask;
+      }
+      generations[slot] = generation;
+      members[slot] = member;
+      return true;
+    }
+  }
+}
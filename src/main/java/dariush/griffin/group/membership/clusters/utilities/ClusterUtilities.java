@@ -25,8 +25,11 @@ import java.util.TreeMap;
 
 import dariush.griffin.group.membership.clusters.model.Group;
 import dariush.griffin.group.membership.clusters.model.Member;
+import dariush.griffin.group.membership.clusters.model.SparseVector;
 import dariush.griffin.group.membership.clusters.model.WeightPair;
 
+import static dariush.griffin.group.membership.clusters.metrics.SparseKernels.squaredEuclidean;
+
 /**
  * <p>Utility methods that can be used when clustering {@link Group}s.</p>
  *
@@ -64,26 +67,33 @@ public class ClusterUtilities
 
   /**
    * <p>Calculates the squared Euclidean distance between two {@link Group}s. Squared Euclidean distance: sum of (g1
-   * sub i minus g2 sub i) squared.</p>
+   * sub i minus g2 sub i) squared. Calculated from the {@link Group}s' cached {@link SparseVector}s, so nothing is
+   * allocated.</p>
    *
    * @param g1 A {@link Group}.
    * @param g2 A {@link Group}.
    * @return The squared Euclidean distance between the two {@link Group}s.
    */
   public static float calculateSquaredEuclideanDistance(Group g1, Group g2) {
-    return calculateSquaredEuclideanDistance(pairVectorWeights(g1, g2));
+    return squaredEuclidean(g1.getVector(), g2.getVector());
   }
 
   /**
    * <p>Calculates the squared Euclidean distance between two vectors, represented by a mapping of {@link Member} to
-   * contribution weight. Squared Euclidean distance: sum of ((g1 sub i minus g2 sub i) squared).</p>
+   * contribution weight. Squared Euclidean distance: sum of ((g1 sub i minus g2 sub i) squared). The maps may be of
+   * any type and iteration order, their {@link Member}s are paired with {@link #pairVectorWeights(Map, Map)}.</p>
    *
    * @param v1 A vector.
    * @param v2 A vector.
    * @return The squared Euclidean distance between two vectors.
    */
   public static float calculateSquaredEuclideanDistance(Map<Member, Float> v1, Map<Member, Float> v2) {
-    return calculateSquaredEuclideanDistance(pairVectorWeights(v1, v2));
+    float sum = 0F;
+    for (WeightPair weightPair : pairVectorWeights(v1, v2).values()) {
+      float difference = weightPair.first - weightPair.second;
+      sum += difference * difference;
+    }
+    return sum;
   }
 
   /**
@@ -129,22 +139,4 @@ public class ClusterUtilities
 
     return weights;
   }
-
-  /**
-   * <p>Calculates the squared Euclidean distance from a sparse vector of {@link Member} to {@link WeightPair}s.</p>
-   *
-   * @param weights {@link WeightPair} representing the weighted contributions of this {@link Member} to each vector or
-   *                {@link Group}.
-   * @return The squared Euclidean distance.
-   */
-  private static float calculateSquaredEuclideanDistance(Map<Member, WeightPair> weights) {
-    float result = 0F;
-
-    for (WeightPair weightPair : weights.values()) {
-      float diff = weightPair.first - weightPair.second;
-      result += (diff * diff);
-    }
-
-    return result;
-  }
 }
@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * <p>A bounded cache of distances between pairs of groups, keyed by their {@link IndexedGroups} ids. The pair is
+ * packed into a single {@code long} so the cache is symmetric, (a, b) and (b, a) share an entry.</p><br><p>Entries are
+ * stored in primitive open addressing tables, split into independently locked segments so the cache can be shared by
+ * parallel clustering threads. Once a segment is full an entry is evicted using the CLOCK policy: each entry has a
+ * reference bit which is set on every hit, and the clock hand clears bits until it finds an entry that has not been
+ * referenced since the hand last passed it.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class DistanceCache
+{
+  /**
+   * The bytes used by a single slot: a packed key, a distance and a reference bit.
+   */
+  public static final int BYTES_PER_ENTRY = Long.BYTES + Float.BYTES + Byte.BYTES;
+
+  private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+  /**
+   * Ids are never negative, so no packed pair can equal this key.
+   */
+  private static final long EMPTY = -1L;
+
+  private static final int MINIMUM_SEGMENT_CAPACITY = 4;
+
+  private final Segment[] segments;
+
+  private final int segmentShift;
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * <p>Constructs a cache that uses at most the provided number of bytes for its tables.</p>
+   *
+   * @param memoryBudgetBytes The maximum number of bytes the cache tables may use.
+   * @throws IllegalArgumentException If the budget cannot hold a minimal table.
+   */
+  public DistanceCache(long memoryBudgetBytes) {
+    this(memoryBudgetBytes, DEFAULT_CONCURRENCY_LEVEL);
+  }
+
+  /**
+   * <p>Constructs a cache that uses at most the provided number of bytes for its tables.</p>
+   *
+   * @param memoryBudgetBytes The maximum number of bytes the cache tables may use.
+   * @param concurrencyLevel  The expected number of threads using the cache, rounded up to a power of two segments.
+   * @throws IllegalArgumentException If the budget cannot hold a minimal table for each segment.
+   */
+  public DistanceCache(long memoryBudgetBytes, int concurrencyLevel) {
+    int segmentCount = (concurrencyLevel <= 1) ? 1 : Integer.highestOneBit(concurrencyLevel - 1) << 1;
+    // Shrink the segment count for small budgets rather than failing.
+    while (segmentCount > 1 && memoryBudgetBytes / segmentCount < MINIMUM_SEGMENT_CAPACITY * BYTES_PER_ENTRY) {
+      segmentCount >>= 1;
+    }
+    long entriesPerSegment = memoryBudgetBytes / segmentCount / BYTES_PER_ENTRY;
+    if (entriesPerSegment < MINIMUM_SEGMENT_CAPACITY) {
+      throw new IllegalArgumentException(
+          String.format("A memory budget of %d bytes is too small for a distance cache.", memoryBudgetBytes));
+    }
+    int segmentCapacity = (int) Long.highestOneBit(Math.min(entriesPerSegment, 1 << 30));
+
+    this.segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment(segmentCapacity);
+    }
+    this.segmentShift = 64 - Integer.numberOfTrailingZeros(segmentCount);
+  }
+
+  /**
+   * <p>Packs two ids into a single key. The smaller id is placed in the high bits so the key does not depend on the
+   * order of the ids.</p>
+   *
+   * @param first  A group id.
+   * @param second A group id.
+   * @return The packed pair.
+   */
+  public static long pack(int first, int second) {
+    int low = Math.min(first, second);
+    int high = Math.max(first, second);
+    return ((long) low << 32) | (high & 0xFFFFFFFFL);
+  }
+
+  /**
+   * @param first  A group id.
+   * @param second A group id.
+   * @return The cached distance between the two groups, or {@link Float#NaN} if it is not cached.
+   */
+  public float get(int first, int second) {
+    long key = pack(first, second);
+    long hash = mix(key);
+    float result = segmentFor(hash).get(key, (int) hash);
+    if (Float.isNaN(result)) {
+      misses.increment();
+    }
+    else {
+      hits.increment();
+    }
+    return result;
+  }
+
+  /**
+   * <p>Caches the distance between two groups, evicting another entry if the segment is full.</p>
+   *
+   * @param first    A group id.
+   * @param second   A group id.
+   * @param distance The distance between the two groups.
+   */
+  public void put(int first, int second, float distance) {
+    long key = pack(first, second);
+    long hash = mix(key);
+    if (segmentFor(hash).put(key, (int) hash, distance)) {
+      evictions.increment();
+    }
+  }
+
+  /**
+   * <p>Removes every entry, statistics are kept.</p>
+   */
+  public void clear() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  /**
+   * @return The number of cached distances.
+   */
+  public long size() {
+    long result = 0;
+    for (Segment segment : segments) {
+      result += segment.size();
+    }
+    return result;
+  }
+
+  /**
+   * @return The maximum number of distances the cache holds before it starts evicting.
+   */
+  public long getMaximumSize() {
+    return (long) segments.length * segments[0].maximumSize;
+  }
+
+  /**
+   * @return The number of bytes used by the cache tables.
+   */
+  public long getTableBytes() {
+    return (long) segments.length * segments[0].keys.length * BYTES_PER_ENTRY;
+  }
+
+  /**
+   * @return The number of lookups that found a cached distance.
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * @return The number of lookups that did not find a cached distance.
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * @return The number of entries evicted to make room for new entries.
+   */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * @return The ratio of hits to lookups, or 0 if there have been no lookups.
+   */
+  public double getHitRate() {
+    long hitCount = getHitCount();
+    long lookups = hitCount + getMissCount();
+    return (lookups == 0) ? 0D : ((double) hitCount) / lookups;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("DistanceCache{");
+    sb.append("size=").append(size());
+    sb.append(", maximumSize=").append(getMaximumSize());
+    sb.append(", hits=").append(getHitCount());
+    sb.append(", misses=").append(getMissCount());
+    sb.append(", evictions=").append(getEvictionCount());
+    sb.append('}');
+    return sb.toString();
+  }
+
+  private Segment segmentFor(long hash) {
+    return (segments.length == 1) ? segments[0] : segments[(int) (hash >>> segmentShift)];
+  }
+
+  /**
+   * <p>The murmur3 finalizer, spreads the packed ids across all bits of the hash.</p>
+   */
+  private static long mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return key;
+  }
+
+  /**
+   * <p>A linear probing table guarded by its own lock. Reads are optimistic and only fall back to a read lock if a
+   * write happened while reading.</p>
+   */
+  private static final class Segment
+  {
+    private final StampedLock lock = new StampedLock();
+
+    private final long[] keys;
+
+    private final float[] distances;
+
+    private final byte[] referenced;
+
+    private final int mask;
+
+    /**
+     * Keeping the load factor at 3/4 keeps probe sequences short.
+     */
+    private final int maximumSize;
+
+    private int size;
+
+    private int clockHand;
+
+    private Segment(int capacity) {
+      this.keys = new long[capacity];
+      this.distances = new float[capacity];
+      this.referenced = new byte[capacity];
+      this.mask = capacity - 1;
+      this.maximumSize = capacity - (capacity >>> 2);
+      Arrays.fill(keys, EMPTY);
+    }
+
+    private float get(long key, int hash) {
+      long stamp = lock.tryOptimisticRead();
+      float result = find(key, hash);
+      if (!lock.validate(stamp)) {
+        stamp = lock.readLock();
+        try {
+          result = find(key, hash);
+        }
+        finally {
+          lock.unlockRead(stamp);
+        }
+      }
+      return result;
+    }
+
+    private float find(long key, int hash) {
+      for (int slot = hash & mask, probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+        long slotKey = keys[slot];
+        if (slotKey == key) {
+          // A racy write of the reference bit is harmless, at worst an entry gets a second chance it did not earn.
+          referenced[slot] = 1;
+          return distances[slot];
+        }
+        if (slotKey == EMPTY) {
+          break;
+        }
+      }
+      return Float.NaN;
+    }
+
+    /**
+     * @return True, if an entry was evicted.
+     */
+    private boolean put(long key, int hash, float distance) {
+      long stamp = lock.writeLock();
+      try {
+        int slot = hash & mask;
+        while (keys[slot] != EMPTY) {
+          if (keys[slot] == key) {
+            distances[slot] = distance;
+            return false;
+          }
+          slot = (slot + 1) & mask;
+        }
+
+        boolean evicted = false;
+        if (size == maximumSize) {
+          evict();
+          evicted = true;
+          // Eviction shifts entries, so the free slot has to be found again.
+          slot = hash & mask;
+          while (keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+          }
+        }
+
+        keys[slot] = key;
+        distances[slot] = distance;
+        referenced[slot] = 0;
+        size++;
+        return evicted;
+      }
+      finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    /**
+     * <p>Advances the clock hand until it finds an occupied slot without its reference bit set, clearing bits along
+     * the way, and removes that entry.</p>
+     */
+    private void evict() {
+      while (true) {
+        int slot = clockHand;
+        clockHand = (clockHand + 1) & mask;
+        if (keys[slot] == EMPTY) {
+          continue;
+        }
+        if (referenced[slot] != 0) {
+          referenced[slot] = 0;
+          continue;
+        }
+        removeAt(slot);
+        return;
+      }
+    }
+
+    /**
+     * <p>Removes the entry in the slot using backward shift deletion, so probe sequences never need tombstones.</p>
+     */
+    private void removeAt(int slot) {
+      int gap = slot;
+      int next = (gap + 1) & mask;
+      while (keys[next] != EMPTY) {
+        int ideal = (int) mix(keys[next]) & mask;
+        // The entry can fill the gap if its ideal slot is not cyclically between the gap and itself.
+        if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+          keys[gap] = keys[next];
+          distances[gap] = distances[next];
+          referenced[gap] = referenced[next];
+          gap = next;
+        }
+        next = (next + 1) & mask;
+      }
+      keys[gap] = EMPTY;
+      referenced[gap] = 0;
+      size--;
+    }
+
+    private int size() {
+      long stamp = lock.readLock();
+      try {
+        return size;
+      }
+      finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    private void clear() {
+      long stamp = lock.writeLock();
+      try {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(referenced, (byte) 0);
+        size = 0;
+        clockHand = 0;
+      }
+      finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+  }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.Arrays;
+
+import dariush.griffin.group.membership.clusters.metrics.DistanceMetric;
+import dariush.griffin.group.membership.clusters.metrics.PruningBound;
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+
+/**
+ * <p>A uniform grid over mappings with only a few members, where groups behave like points in a low dimensional
+ * space. Each dimension is a member, and cells are {@link DistanceMetric#maxCoordinateDifference(float)} wide, so two
+ * groups within the threshold are always in the same or adjacent cells. Only those cells are compared, rather than
+ * every group that shares a member, which for a point cloud is every other group.</p><br><p>Cells are packed into a
+ * {@code long} key, each dimension getting {@code 64 / dimensions} bits, and stored as a sorted array of keys with the
+ * group ids of each cell laid out contiguously.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class GridIndex
+    implements EdgeSource
+{
+  /**
+   * The most members a mapping can have for the grid to be used, each cell has {@code 3^dimensions - 1}
+   * neighbours.
+   */
+  public static final int MAX_DIMENSIONS = 4;
+
+  private final IndexedGroups indexedGroups;
+
+  private final DistanceMetric distanceMetric;
+
+  private final float threshold;
+
+  private final int dimensions;
+
+  private final int bitsPerDimension;
+
+  /**
+   * The sorted, distinct, keys of the occupied cells.
+   */
+  private final long[] cellKeys;
+
+  /**
+   * The group ids of cell {@code c} are {@code cellGroups[cellStarts[c]]} to {@code cellGroups[cellStarts[c + 1] -
+   * 1]}.
+   */
+  private final int[] cellStarts;
+
+  private final int[] cellGroups;
+
+  /**
+   * The packed key deltas of each neighbouring cell.
+   */
+  private final long[] neighbourDeltas;
+
+  /**
+   * <p>Builds the grid.</p>
+   *
+   * @param indexedGroups  The groups to place in the grid.
+   * @param distanceMetric The metric, which must support {@link PruningBound#COORDINATE}.
+   * @param threshold      Groups closer than this distance are edges.
+   * @throws IllegalArgumentException If the grid is not applicable, see {@link #isApplicable(IndexedGroups,
+   *                                  DistanceMetric, float)}.
+   */
+  public GridIndex(IndexedGroups indexedGroups, DistanceMetric distanceMetric, float threshold) {
+    if (!isApplicable(indexedGroups, distanceMetric, threshold)) {
+      throw new IllegalArgumentException(
+          String.format("A grid cannot index these groups with %s and threshold %f.", distanceMetric, threshold));
+    }
+    this.indexedGroups = indexedGroups;
+    this.distanceMetric = distanceMetric;
+    this.threshold = threshold;
+
+    int[] vectorIndices = collectVectorIndices(indexedGroups, MAX_DIMENSIONS);
+    this.dimensions = Math.max(1, vectorIndices.length);
+    this.bitsPerDimension = 64 / dimensions;
+    float cellSide = distanceMetric.maxCoordinateDifference(threshold);
+
+    // Key each group by its cell, then lay the groups out by cell.
+    long[] groupKeys = new long[indexedGroups.size()];
+    long[] cell = new long[dimensions];
+    for (int id = 0; id < groupKeys.length; id++) {
+      Arrays.fill(cell, 0L);
+      SparseVector vector = indexedGroups.getGroup(id).getVector();
+      int[] indices = vector.getIndices();
+      float[] weights = vector.getWeights();
+      for (int i = 0; i < indices.length; i++) {
+        cell[Arrays.binarySearch(vectorIndices, indices[i])] = (long) Math.floor(weights[i] / cellSide);
+      }
+      groupKeys[id] = pack(cell);
+    }
+
+    long[] sortedKeys = groupKeys.clone();
+    Arrays.sort(sortedKeys);
+    int cellCount = 0;
+    for (int i = 0; i < sortedKeys.length; i++) {
+      if (i == 0 || sortedKeys[i] != sortedKeys[i - 1]) {
+        sortedKeys[cellCount++] = sortedKeys[i];
+      }
+    }
+    this.cellKeys = Arrays.copyOf(sortedKeys, cellCount);
+
+    this.cellStarts = new int[cellCount + 1];
+    int[] groupCells = new int[groupKeys.length];
+    for (int id = 0; id < groupKeys.length; id++) {
+      groupCells[id] = Arrays.binarySearch(cellKeys, groupKeys[id]);
+      cellStarts[groupCells[id] + 1]++;
+    }
+    for (int c = 0; c < cellCount; c++) {
+      cellStarts[c + 1] += cellStarts[c];
+    }
+    this.cellGroups = new int[groupKeys.length];
+    int[] cursors = Arrays.copyOf(cellStarts, cellCount);
+    for (int id = 0; id < groupKeys.length; id++) {
+      cellGroups[cursors[groupCells[id]]++] = id;
+    }
+
+    this.neighbourDeltas = createNeighbourDeltas();
+  }
+
+  /**
+   * <p>A grid is applicable when the metric bounds each coordinate, the groups have at most {@link #MAX_DIMENSIONS}
+   * distinct members between them, and every cell coordinate fits in its share of the packed key.</p>
+   *
+   * @param indexedGroups  The groups to place in the grid.
+   * @param distanceMetric The metric groups are compared with.
+   * @param threshold      Groups closer than this distance are edges.
+   * @return True, if a grid can index the groups.
+   */
+  public static boolean isApplicable(IndexedGroups indexedGroups, DistanceMetric distanceMetric, float threshold) {
+    if (!distanceMetric.supports(PruningBound.COORDINATE) || !(threshold > 0F)) {
+      return false;
+    }
+    float cellSide = distanceMetric.maxCoordinateDifference(threshold);
+    if (!(cellSide > 0F) || Float.isInfinite(cellSide)) {
+      return false;
+    }
+    int[] vectorIndices = collectVectorIndices(indexedGroups, MAX_DIMENSIONS);
+    if (vectorIndices == null) {
+      return false;
+    }
+
+    float maxWeight = 0F;
+    for (int id = 0; id < indexedGroups.size(); id++) {
+      for (float weight : indexedGroups.getGroup(id).getVector().getWeights()) {
+        maxWeight = Math.max(maxWeight, Math.abs(weight));
+      }
+    }
+    // Leave room for the neighbouring cells on either side.
+    double maxCell = Math.floor(maxWeight / cellSide) + 2;
+    int bits = 64 / Math.max(1, vectorIndices.length);
+    return maxCell < Math.pow(2, bits - 1);
+  }
+
+  @Override
+  public void forEachEdge(EdgeConsumer consumer) {
+    for (int c = 0; c < cellKeys.length; c++) {
+      int start = cellStarts[c];
+      int end = cellStarts[c + 1];
+      for (int i = start; i < end; i++) {
+        for (int j = i + 1; j < end; j++) {
+          emitIfWithin(cellGroups[i], cellGroups[j], consumer);
+        }
+      }
+
+      // Each pair of neighbouring cells is visited once, from the cell with the smaller key.
+      for (long delta : neighbourDeltas) {
+        long neighbourKey = cellKeys[c] + delta;
+        if (neighbourKey <= cellKeys[c]) {
+          continue;
+        }
+        int neighbour = Arrays.binarySearch(cellKeys, c + 1, cellKeys.length, neighbourKey);
+        if (neighbour < 0) {
+          continue;
+        }
+        for (int i = start; i < end; i++) {
+          for (int j = cellStarts[neighbour]; j < cellStarts[neighbour + 1]; j++) {
+            emitIfWithin(cellGroups[i], cellGroups[j], consumer);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @return The number of occupied cells.
+   */
+  public int getCellCount() {
+    return cellKeys.length;
+  }
+
+  /**
+   * @return The number of dimensions, or members, of the grid.
+   */
+  public int getDimensions() {
+    return dimensions;
+  }
+
+  private void emitIfWithin(int first, int second, EdgeConsumer consumer) {
+    float distance =
+        distanceMetric.distance(indexedGroups.getGroup(first).getVector(), indexedGroups.getGroup(second).getVector());
+    if (distance < threshold) {
+      consumer.accept(first, second, distance);
+    }
+  }
+
+  /**
+   * <p>Each coordinate is offset to be non-negative within its bits, so adding a delta of one cell to a dimension
+   * never borrows from or carries into another dimension.</p>
+   */
+  private long pack(long[] cell) {
+    if (dimensions == 1) {
+      return cell[0];
+    }
+    long offset = 1L << (bitsPerDimension - 1);
+    long mask = (1L << bitsPerDimension) - 1;
+    long result = 0L;
+    for (int d = 0; d < dimensions; d++) {
+      result |= ((cell[d] + offset) & mask) << (d * bitsPerDimension);
+    }
+    return result;
+  }
+
+  private long[] createNeighbourDeltas() {
+    int count = 1;
+    for (int d = 0; d < dimensions; d++) {
+      count *= 3;
+    }
+    long[] result = new long[count - 1];
+    int size = 0;
+    for (int combination = 0; combination < count; combination++) {
+      long delta = 0L;
+      int remaining = combination;
+      for (int d = 0; d < dimensions; d++) {
+        long step = (remaining % 3) - 1;
+        remaining /= 3;
+        delta += (dimensions == 1) ? step : step << (d * bitsPerDimension);
+      }
+      if (delta != 0L) {
+        result[size++] = delta;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return The sorted distinct vector indices of all groups, or null if there are more than the limit.
+   */
+  private static int[] collectVectorIndices(IndexedGroups indexedGroups, int limit) {
+    int[] result = SortedIntArrays.EMPTY;
+    for (int id = 0; id < indexedGroups.size(); id++) {
+      result = SortedIntArrays.union(result, indexedGroups.getGroup(id).getVector().getIndices());
+      if (result.length > limit) {
+        return null;
+      }
+    }
+    return result;
+  }
+}
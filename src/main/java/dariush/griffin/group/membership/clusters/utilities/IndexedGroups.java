@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import dariush.griffin.group.membership.clusters.model.Group;
+
+/**
+ * <p>Assigns each {@link Group} a dense integer id, from zero to {@code size() - 1}. Ids let us refer to groups with
+ * primitives, so caches and indices do not need to hash a {@link Group}, whose hash code is computed from its whole
+ * member vector.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class IndexedGroups
+{
+  /**
+   * The {@link Group}s, positioned by id.
+   */
+  private final Group[] groups;
+
+  /**
+   * A mapping of {@link Group} to its id. Identity based, as {@link Group#hashCode()} is expensive.
+   */
+  private final Map<Group, Integer> ids;
+
+  /**
+   * <p>Constructs the index, ids are assigned in iteration order of the provided {@link Group}s.</p>
+   *
+   * @param groups The {@link Group}s to index.
+   */
+  public IndexedGroups(Collection<Group> groups) {
+    this.groups = groups.toArray(new Group[0]);
+    this.ids = new IdentityHashMap<>(this.groups.length);
+    for (int id = 0; id < this.groups.length; id++) {
+      ids.put(this.groups[id], id);
+    }
+  }
+
+  /**
+   * @return The number of indexed {@link Group}s.
+   */
+  public int size() {
+    return groups.length;
+  }
+
+  /**
+   * @param id The id of the {@link Group}.
+   * @return The {@link Group} with the provided id.
+   */
+  public Group getGroup(int id) {
+    return groups[id];
+  }
+
+  /**
+   * @param group The {@link Group} whose id will be returned.
+   * @return The id of the {@link Group}, or -1 if the {@link Group} is not indexed.
+   */
+  public int getId(Group group) {
+    Integer id = ids.get(group);
+    return (id != null) ? id : -1;
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A lock free histogram of latencies in nanoseconds, for reporting percentiles such as the p50 and p99. Values are
+ * counted in log-linear buckets: each power of two is split into {@code 2^SUB_BUCKET_BITS} equal buckets, so a
+ * percentile is reported within 1 / {@code 2^SUB_BUCKET_BITS} of the recorded value while the histogram stays a fixed
+ * size.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class LatencyHistogram
+{
+  private static final int SUB_BUCKET_BITS = 4;
+
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * Values below {@code SUB_BUCKETS} have a bucket each, every larger power of two has {@code SUB_BUCKETS} buckets.
+   */
+  private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+  private final LongAdder count = new LongAdder();
+
+  private final LongAdder totalNanos = new LongAdder();
+
+  /**
+   * @param nanos A latency in nanoseconds, negative latencies are counted as zero.
+   */
+  public void record(long nanos) {
+    long value = Math.max(0L, nanos);
+    counts.incrementAndGet(bucketOf(value));
+    count.increment();
+    totalNanos.add(value);
+  }
+
+  /**
+   * @return The number of recorded latencies.
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * @return The mean recorded latency in nanoseconds, or 0 if nothing has been recorded.
+   */
+  public double getMeanNanos() {
+    long recorded = getCount();
+    return (recorded == 0) ? 0D : ((double) totalNanos.sum()) / recorded;
+  }
+
+  /**
+   * @param percentile A percentile between 0 and 100, such as 50 or 99.
+   * @return The highest latency of the bucket that contains the percentile, or 0 if nothing has been recorded.
+   * @throws IllegalArgumentException If the percentile is not between 0 and 100.
+   */
+  public long getPercentileNanos(double percentile) {
+    if (!(percentile >= 0D && percentile <= 100D)) {
+      throw new IllegalArgumentException(String.format("%f is not a percentile.", percentile));
+    }
+    long[] snapshot = new long[BUCKET_COUNT];
+    long total = 0;
+    for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+      snapshot[bucket] = counts.get(bucket);
+      total += snapshot[bucket];
+    }
+    if (total == 0) {
+      return 0L;
+    }
+    long rank = Math.max(1L, (long) Math.ceil(total * percentile / 100D));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+      seen += snapshot[bucket];
+      if (seen >= rank) {
+        return highestValueOf(bucket);
+      }
+    }
+    return highestValueOf(BUCKET_COUNT - 1);
+  }
+
+  /**
+   * <p>Removes every recorded latency.</p>
+   */
+  public void reset() {
+    for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+      counts.set(bucket, 0L);
+    }
+    count.reset();
+    totalNanos.reset();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("LatencyHistogram{");
+    sb.append("count=").append(getCount());
+    sb.append(", p50=").append(getPercentileNanos(50D));
+    sb.append(", p99=").append(getPercentileNanos(99D));
+    sb.append('}');
+    return sb.toString();
+  }
+
+  private static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  private static long highestValueOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = bucket % SUB_BUCKETS;
+    long lowest = (1L << exponent) | (subBucket << (exponent - SUB_BUCKET_BITS));
+    return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+}
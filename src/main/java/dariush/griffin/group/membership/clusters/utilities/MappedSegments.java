@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>A file of primitives paged in through memory mapping, addressed by byte offset. A single mapping is limited to
+ * 2 GiB, so the file is mapped as a sequence of fixed size segments. Segments are a multiple of eight bytes, so a
+ * primitive at an offset aligned to its own size never spans two segments.</p><br><p>The mapped pages belong to the
+ * operating system's page cache rather than the heap: the file can be far larger than the heap, and pages that have
+ * not been touched recently are written back and dropped under memory pressure. Reads and writes are not
+ * synchronized, threads must write disjoint offsets or coordinate themselves.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class MappedSegments
+    implements AutoCloseable
+{
+  /**
+   * The default segment size, 1 GiB.
+   */
+  public static final int DEFAULT_SEGMENT_BYTES = 1 << 30;
+
+  private final FileChannel channel;
+
+  private final MappedByteBuffer[] segments;
+
+  private final int segmentShift;
+
+  private final int segmentMask;
+
+  private final long size;
+
+  private MappedSegments(FileChannel channel, long size, int segmentBytes, FileChannel.MapMode mode)
+      throws IOException
+  {
+    this.channel = channel;
+    this.size = size;
+    this.segmentShift = Integer.numberOfTrailingZeros(segmentBytes);
+    this.segmentMask = segmentBytes - 1;
+    this.segments = new MappedByteBuffer[(int) ((size + segmentMask) >>> segmentShift)];
+    for (int s = 0; s < segments.length; s++) {
+      long position = (long) s << segmentShift;
+      segments[s] = channel.map(mode, position, Math.min(segmentBytes, size - position));
+    }
+  }
+
+  /**
+   * <p>Creates, or truncates, a file of the provided size and maps it for reading and writing. The file starts out
+   * zeroed.</p>
+   *
+   * @param file         The file to create.
+   * @param size         The size of the file in bytes.
+   * @param segmentBytes The size of each mapped segment, a power of two of at least 8 bytes.
+   * @return The mapped file.
+   * @throws IllegalArgumentException If the segment size is not a power of two of at least 8 bytes.
+   * @throws UncheckedIOException     If the file cannot be created or mapped.
+   */
+  public static MappedSegments create(Path file, long size, int segmentBytes) {
+    checkSegmentBytes(segmentBytes);
+    try {
+      FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+          StandardOpenOption.READ, StandardOpenOption.WRITE);
+      // Writing the last byte sizes the file without writing the rest, which stays sparse until it is touched.
+      if (size > 0) {
+        channel.write(ByteBuffer.allocate(1), size - 1);
+      }
+      return new MappedSegments(channel, size, segmentBytes, FileChannel.MapMode.READ_WRITE);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * <p>Maps an existing file for reading.</p>
+   *
+   * @param file         The file to map.
+   * @param segmentBytes The size of each mapped segment, a power of two of at least 8 bytes.
+   * @return The mapped file.
+   * @throws IllegalArgumentException If the segment size is not a power of two of at least 8 bytes.
+   * @throws UncheckedIOException     If the file cannot be opened or mapped.
+   */
+  public static MappedSegments open(Path file, int segmentBytes) {
+    checkSegmentBytes(segmentBytes);
+    try {
+      FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+      return new MappedSegments(channel, channel.size(), segmentBytes, FileChannel.MapMode.READ_ONLY);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * @param offset The byte offset, a multiple of the value's size.
+   * @return The int at the offset.
+   */
+  public int getInt(long offset) {
+    return segments[(int) (offset >>> segmentShift)].getInt((int) (offset & segmentMask));
+  }
+
+  /**
+   * @param offset The byte offset, a multiple of the value's size.
+   * @param value  The int to write at the offset.
+   */
+  public void putInt(long offset, int value) {
+    segments[(int) (offset >>> segmentShift)].putInt((int) (offset & segmentMask), value);
+  }
+
+  /**
+   * @param offset The byte offset, a multiple of the value's size.
+   * @return The long at the offset.
+   */
+  public long getLong(long offset) {
+    return segments[(int) (offset >>> segmentShift)].getLong((int) (offset & segmentMask));
+  }
+
+  /**
+   * @param offset The byte offset, a multiple of the value's size.
+   * @param value  The long to write at the offset.
+   */
+  public void putLong(long offset, long value) {
+    segments[(int) (offset >>> segmentShift)].putLong((int) (offset & segmentMask), value);
+  }
+
+  /**
+   * @param offset The byte offset, a multiple of the value's size.
+   * @return The float at the offset.
+   */
+  public float getFloat(long offset) {
+    return segments[(int) (offset >>> segmentShift)].getFloat((int) (offset & segmentMask));
+  }
+
+  /**
+   * @param offset The byte offset, a multiple of the value's size.
+   * @param value  The float to write at the offset.
+   */
+  public void putFloat(long offset, float value) {
+    segments[(int) (offset >>> segmentShift)].putFloat((int) (offset & segmentMask), value);
+  }
+
+  /**
+   * @return The size of the file in bytes.
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * @return The number of mapped segments.
+   */
+  public int getSegmentCount() {
+    return segments.length;
+  }
+
+  /**
+   * <p>Closes the file. Java 8 has no way to unmap a segment, the mappings are released once they are garbage
+   * collected, so the file must not be used after it is closed.</p>
+   */
+  @Override
+  public void close() {
+    try {
+      channel.close();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void checkSegmentBytes(int segmentBytes) {
+    if (Integer.bitCount(segmentBytes) != 1 || segmentBytes < Long.BYTES) {
+      throw new IllegalArgumentException(
+          String.format("Segment size %d must be a power of two of at least 8 bytes.", segmentBytes));
+    }
+  }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.function.BiConsumer;
+
+/**
+ * <p>An immutable map of names to values, stored as a hash array mapped trie. Every update returns a new trie that
+ * shares all but the path to the updated entry with the original, so an update copies at most seven small nodes
+ * however large the trie is, and any trie can be kept as a snapshot for free.</p><br><p>Each node uses five bits of
+ * the key's hash to pick one of 32 slots, and only allocates the occupied slots, located through a bitmap. Keys whose
+ * hashes are identical share a collision node.</p>
+ *
+ * @param <V> The type of value.
+ * @author Dariush Griffin
+ */
+public final class PersistentHashTrie<V>
+{
+  private static final int BITS = 5;
+
+  private static final int MASK = (1 << BITS) - 1;
+
+  private static final PersistentHashTrie<?> EMPTY = new PersistentHashTrie<>(new Node(0, new Object[0]), 0);
+
+  private final Node root;
+
+  private final int size;
+
+  private PersistentHashTrie(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * @param <V> The type of value.
+   * @return The empty trie.
+   */
+  @SuppressWarnings("unchecked")
+  public static <V> PersistentHashTrie<V> empty() {
+    return (PersistentHashTrie<V>) EMPTY;
+  }
+
+  /**
+   * @return The number of entries.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param key A name.
+   * @return The value of the name, or null if it has none.
+   */
+  @SuppressWarnings("unchecked")
+  public V get(String key) {
+    int hash = hash(key);
+    Object slot = root;
+    for (int shift = 0; ; shift += BITS) {
+      if (slot instanceof Node) {
+        Node node = (Node) slot;
+        int bit = 1 << ((hash >>> shift) & MASK);
+        if ((node.bitmap & bit) == 0) {
+          return null;
+        }
+        slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+      }
+      else if (slot instanceof Entry) {
+        Entry entry = (Entry) slot;
+        return entry.key.equals(key) ? (V) entry.value : null;
+      }
+      else {
+        for (Entry entry : (Entry[]) slot) {
+          if (entry.key.equals(key)) {
+            return (V) entry.value;
+          }
+        }
+        return null;
+      }
+    }
+  }
+
+  /**
+   * @param key   A name.
+   * @param value The name's new value, not null.
+   * @return A trie with the name mapped to the value, this trie is unchanged.
+   */
+  public PersistentHashTrie<V> put(String key, V value) {
+    int newSize = (get(key) == null) ? size + 1 : size;
+    return new PersistentHashTrie<>((Node) put(root, new Entry(key, hash(key), value), 0), newSize);
+  }
+
+  /**
+   * <p>Visits every entry, in no particular order.</p>
+   *
+   * @param consumer Receives each name and value.
+   */
+  public void forEach(BiConsumer<String, V> consumer) {
+    forEach(root, consumer);
+  }
+
+  /**
+   * <p>Visits every entry of this trie whose value is not the same object in the previous trie, including names the
+   * previous trie does not have. Subtries this trie shares with the previous one are skipped without being walked, so
+   * comparing a trie with an earlier version of itself costs in proportion to the updates in between.</p>
+   *
+   * @param previous An earlier version of this trie, or any other trie.
+   * @param consumer Receives each changed or added name and its value in this trie.
+   */
+  public void forEachDifference(PersistentHashTrie<V> previous, BiConsumer<String, V> consumer) {
+    forEachDifference(root, previous.root, previous, consumer);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void forEachDifference(
+      Object slot,
+      Object previousSlot,
+      PersistentHashTrie<V> previous,
+      BiConsumer<String, V> consumer)
+  {
+    if (slot == previousSlot) {
+      return;
+    }
+    if (slot instanceof Node && previousSlot instanceof Node) {
+      Node node = (Node) slot;
+      Node previousNode = (Node) previousSlot;
+      for (int position = 0, bitmap = node.bitmap; bitmap != 0; position++, bitmap &= bitmap - 1) {
+        int bit = Integer.lowestOneBit(bitmap);
+        Object previousChild = ((previousNode.bitmap & bit) != 0)
+            ? previousNode.slots[Integer.bitCount(previousNode.bitmap & (bit - 1))] : null;
+        forEachDifference(node.slots[position], previousChild, previous, consumer);
+      }
+      return;
+    }
+    // The shapes differ, so compare the entries one by one against the previous trie.
+    forEach(slot, (key, value) -> {
+      if (previous.get(key) != value) {
+        consumer.accept(key, value);
+      }
+    });
+  }
+
+  @SuppressWarnings("unchecked")
+  private void forEach(Object slot, BiConsumer<String, V> consumer) {
+    if (slot instanceof Node) {
+      for (Object child : ((Node) slot).slots) {
+        forEach(child, consumer);
+      }
+    }
+    else if (slot instanceof Entry) {
+      consumer.accept(((Entry) slot).key, (V) ((Entry) slot).value);
+    }
+    else {
+      for (Entry entry : (Entry[]) slot) {
+        consumer.accept(entry.key, (V) entry.value);
+      }
+    }
+  }
+
+  /**
+   * @return The slot with the entry added or replaced, a copy of the provided slot.
+   */
+  private static Object put(Object slot, Entry entry, int shift) {
+    if (slot instanceof Node) {
+      Node node = (Node) slot;
+      int bit = 1 << ((entry.hash >>> shift) & MASK);
+      int position = Integer.bitCount(node.bitmap & (bit - 1));
+      if ((node.bitmap & bit) == 0) {
+        Object[] slots = new Object[node.slots.length + 1];
+        System.arraycopy(node.slots, 0, slots, 0, position);
+        slots[position] = entry;
+        System.arraycopy(node.slots, position, slots, position + 1, node.slots.length - position);
+        return new Node(node.bitmap | bit, slots);
+      }
+      Object[] slots = node.slots.clone();
+      slots[position] = put(slots[position], entry, shift + BITS);
+      return new Node(node.bitmap, slots);
+    }
+    if (slot instanceof Entry) {
+      Entry existing = (Entry) slot;
+      if (existing.key.equals(entry.key)) {
+        return entry;
+      }
+      return merge(existing, entry, shift);
+    }
+    Entry[] collisions = (Entry[]) slot;
+    for (int i = 0; i < collisions.length; i++) {
+      if (collisions[i].key.equals(entry.key)) {
+        Entry[] replaced = collisions.clone();
+        replaced[i] = entry;
+        return replaced;
+      }
+    }
+    Entry[] appended = new Entry[collisions.length + 1];
+    System.arraycopy(collisions, 0, appended, 0, collisions.length);
+    appended[collisions.length] = entry;
+    return appended;
+  }
+
+  /**
+   * @return A slot holding two entries with different keys, which agree on the hash bits below the shift.
+   */
+  private static Object merge(Entry first, Entry second, int shift) {
+    if (shift >= Integer.SIZE) {
+      return new Entry[] {first, second};
+    }
+    int firstIndex = (first.hash >>> shift) & MASK;
+    int secondIndex = (second.hash >>> shift) & MASK;
+    if (firstIndex == secondIndex) {
+      return new Node(1 << firstIndex, new Object[] {merge(first, second, shift + BITS)});
+    }
+    Object[] slots = (firstIndex < secondIndex) ? new Object[] {first, second} : new Object[] {second, first};
+    return new Node((1 << firstIndex) | (1 << secondIndex), slots);
+  }
+
+  /**
+   * <p>Spreads the string hash so that names with a common prefix still use different slots near the root.</p>
+   */
+  private static int hash(String key) {
+    int hash = key.hashCode() * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * <p>A trie node, each slot is a {@link Node}, an {@link Entry} or an array of colliding {@link Entry}s.</p>
+   */
+  private static final class Node
+  {
+    private final int bitmap;
+
+    private final Object[] slots;
+
+    private Node(int bitmap, Object[] slots) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+    }
+  }
+
+  private static final class Entry
+  {
+    private final String key;
+
+    private final int hash;
+
+    private final Object value;
+
+    private Entry(String key, int hash, Object value) {
+      this.key = key;
+      this.hash = hash;
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.Member;
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+
+/**
+ * <p>An immutable index of the {@link IndexedGroups} ids of the groups that contain each {@link Member}, used to find
+ * "similar" {@link Group}s, those that share at least one {@link Member}, like a {@link GroupCache}. Once built it is
+ * never modified, so a single index can be shared by any number of threads and algorithms clustering the same
+ * {@link IndexedGroups}.</p><br><p>Posting lists are concatenated into a single array, positioned by the
+ * {@link Member}s' vector indices, and built in parallel in three passes: the degree of every {@link Member} is
+ * counted with atomic counters, and a parallel prefix sum of the degrees gives exact sizes for the arrays and the start
+ * of each list. Every group then claims its slot in each of its lists with an atomic cursor, and finally each list is
+ * sorted, small lists in parallel with each other and large lists, such as those of hub members, with a parallel
+ * sort of their own.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class PostingLists
+{
+  /**
+   * Lists longer than this are sorted with {@link Arrays#parallelSort(int[], int, int)}.
+   */
+  private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
+
+  private final IndexedGroups indexedGroups;
+
+  /**
+   * The start of each member's posting list, by vector index, followed by the total length.
+   */
+  private final int[] starts;
+
+  /**
+   * The increasing group ids of every posting list, concatenated.
+   */
+  private final int[] ids;
+
+  private PostingLists(IndexedGroups indexedGroups, int[] starts, int[] ids) {
+    this.indexedGroups = indexedGroups;
+    this.starts = starts;
+    this.ids = ids;
+  }
+
+  /**
+   * <p>Builds the posting lists of every indexed {@link Group}, on the common fork join pool.</p>
+   *
+   * @param indexedGroups The {@link Group}s to index.
+   * @return The posting lists.
+   */
+  public static PostingLists build(IndexedGroups indexedGroups) {
+    int groupCount = indexedGroups.size();
+    SparseVector[] vectors = new SparseVector[groupCount];
+    int dimensions = IntStream.range(0, groupCount).parallel().map(id -> {
+      int[] indices = (vectors[id] = indexedGroups.getGroup(id).getVector()).getIndices();
+      return (indices.length == 0) ? 0 : indices[indices.length - 1] + 1;
+    }).max().orElse(0);
+
+    AtomicIntegerArray degrees = new AtomicIntegerArray(dimensions);
+    IntStream.range(0, groupCount).parallel().forEach(id -> {
+      for (int index : vectors[id].getIndices()) {
+        degrees.incrementAndGet(index);
+      }
+    });
+    int[] starts = new int[dimensions + 1];
+    IntStream.range(0, dimensions).parallel().forEach(index -> starts[index + 1] = degrees.get(index));
+    Arrays.parallelPrefix(starts, Integer::sum);
+
+    int[] ids = new int[starts[dimensions]];
+    // Reuse the counters as cursors, each starting at the start of its list.
+    IntStream.range(0, dimensions).parallel().forEach(index -> degrees.set(index, starts[index]));
+    IntStream.range(0, groupCount).parallel().forEach(id -> {
+      for (int index : vectors[id].getIndices()) {
+        ids[degrees.getAndIncrement(index)] = id;
+      }
+    });
+
+    IntStream.range(0, dimensions).parallel().forEach(index -> {
+      if (starts[index + 1] - starts[index] <= PARALLEL_SORT_THRESHOLD) {
+        Arrays.sort(ids, starts[index], starts[index + 1]);
+      }
+    });
+    for (int index = 0; index < dimensions; index++) {
+      if (starts[index + 1] - starts[index] > PARALLEL_SORT_THRESHOLD) {
+        Arrays.parallelSort(ids, starts[index], starts[index + 1]);
+      }
+    }
+    return new PostingLists(indexedGroups, starts, ids);
+  }
+
+  /**
+   * @return The indexed {@link Group}s, whose ids the lists hold.
+   */
+  public IndexedGroups getIndexedGroups() {
+    return indexedGroups;
+  }
+
+  /**
+   * @return The number of posting lists, one per vector index up to the largest in use.
+   */
+  public int getMemberCount() {
+    return starts.length - 1;
+  }
+
+  /**
+   * @return The total length of every posting list, the number of memberships.
+   */
+  public int getPostingCount() {
+    return ids.length;
+  }
+
+  /**
+   * @param member A {@link Member} of the indexed {@link Group}s.
+   * @return A new strictly increasing array of the ids of the {@link Group}s that contain the {@link Member}.
+   */
+  public int[] getGroupIds(Member member) {
+    int index = member.getVectorIndex();
+    if (index < 0 || index >= getMemberCount()) {
+      return SortedIntArrays.EMPTY;
+    }
+    return Arrays.copyOfRange(ids, starts[index], starts[index + 1]);
+  }
+
+  /**
+   * @param id The id of an indexed {@link Group}.
+   * @return A strictly increasing array of the ids of {@link Group}s that contain a {@link Member} shared with the
+   * {@link Group}, excluding the {@link Group} itself.
+   */
+  public int[] getSimilarGroupIds(int id) {
+    return similarGroupIds(indexedGroups.getGroup(id).getVector(), id);
+  }
+
+  /**
+   * @param group Any {@link Group} of the same mapping, it does not have to be indexed.
+   * @return A strictly increasing array of the ids of {@link Group}s that contain a {@link Member} shared with the
+   * {@link Group}, excluding the {@link Group} itself.
+   */
+  public int[] getSimilarGroupIds(Group group) {
+    return similarGroupIds(group.getVector(), indexedGroups.getId(group));
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("PostingLists{");
+    sb.append("groupCount=").append(indexedGroups.size());
+    sb.append(", memberCount=").append(getMemberCount());
+    sb.append(", postingCount=").append(getPostingCount());
+    sb.append('}');
+    return sb.toString();
+  }
+
+  private int[] similarGroupIds(SparseVector vector, int excludedId) {
+    int memberCount = getMemberCount();
+    int size = 0;
+    for (int index : vector.getIndices()) {
+      if (index < memberCount) {
+        size += starts[index + 1] - starts[index];
+      }
+    }
+
+    int[] result = new int[size];
+    size = 0;
+    for (int index : vector.getIndices()) {
+      if (index >= memberCount) {
+        continue;
+      }
+      for (int p = starts[index]; p < starts[index + 1]; p++) {
+        if (ids[p] != excludedId) {
+          result[size++] = ids[p];
+        }
+      }
+    }
+    return SortedIntArrays.sortedSet(result, size);
+  }
+}
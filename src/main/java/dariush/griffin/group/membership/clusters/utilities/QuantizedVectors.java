@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+import dariush.griffin.group.membership.clusters.metrics.SparseKernels;
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+
+/**
+ * <p>A compact copy of the vectors of indexed groups, with each weight stored as an 8 or 16 bit code. A weight
+ * {@code w} is stored as {@code q = round(w / scale) + zeroPoint}, and read back as {@code (q - zeroPoint) * scale}.
+ * The zero point is an integer, so an absent member, a weight of zero, is represented exactly and vectors stay
+ * sparse.</p><br><p>Squared euclidean distances are calculated on the centred codes {@code c = q - zeroPoint} with
+ * integer arithmetic, {@code d' = sa^2 * |ca|^2 + sb^2 * |cb|^2 - 2 * sa * sb * (ca . cb)}, and rescaled once at the
+ * end.</p><br><p>Error bound: each stored weight is within {@code scale / 2} of the original, so the error vector of
+ * a group with {@code n} members has a norm of at most {@code scale * sqrt(n) / 2}, its error radius. By the triangle
+ * inequality the euclidean distance between two originals is within the sum of both error radii of the quantized
+ * euclidean distance, {@code |sqrt(d) - sqrt(d')| <= ra + rb}. {@link #isWithin(int, int, float, IntFunction)} only
+ * falls back to the original vectors when the threshold lies inside that interval.</p><br><p>Only the codes are kept,
+ * the original vectors are read once when quantizing and afterwards only looked up through the function passed to
+ * {@link #isWithin(int, int, float, IntFunction)}, so the store never keeps them reachable itself. Scans such as
+ * {@link dariush.griffin.group.membership.clusters.query.GroupQueryService} use {@link #isBeyond(SparseVector, int,
+ * float)} to skip the original vectors of candidates that are certainly too far.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class QuantizedVectors
+{
+  /**
+   * How the scale and zero point are chosen.
+   */
+  public enum Scale
+  {
+    /**
+     * One scale and zero point fitted to every weight, distances are exact integer sums of squared code
+     * differences.
+     */
+    GLOBAL,
+    /**
+     * A scale and zero point fitted to each group's weights, which keeps more precision for groups with small
+     * weights.
+     */
+    PER_GROUP
+  }
+
+  /**
+   * The relative margin {@link #isBeyond(SparseVector, int, float)} keeps from the threshold.
+   */
+  private static final double MARGIN = 1E-4;
+
+  private final int bits;
+
+  /**
+   * The members of group {@code g} are at positions {@code starts[g]} to {@code starts[g + 1] - 1}.
+   */
+  private final int[] starts;
+
+  private final int[] indices;
+
+  /**
+   * The codes of 8 bit vectors, null for 16 bit vectors.
+   */
+  private final byte[] byteCodes;
+
+  /**
+   * The codes of 16 bit vectors, null for 8 bit vectors.
+   */
+  private final short[] shortCodes;
+
+  private final float[] scales;
+
+  private final int[] zeroPoints;
+
+  /**
+   * The squared norm of each group's centred codes.
+   */
+  private final long[] codeSquaredNorms;
+
+  /**
+   * The largest possible norm of the difference between each group's stored and original vector.
+   */
+  private final double[] errorRadii;
+
+  /**
+   * The norm of each group's quantized vector.
+   */
+  private final double[] norms;
+
+  private final LongAdder verifications = new LongAdder();
+
+  /**
+   * @param indexedGroups The groups whose vectors are quantized, they are only read while constructing.
+   * @param bits          The bits per code, 8 or 16.
+   * @param scale         Whether a scale is fitted to all weights or to each group.
+   * @throws IllegalArgumentException If the bits are not 8 or 16.
+   */
+  public QuantizedVectors(IndexedGroups indexedGroups, int bits, Scale scale) {
+    if (bits != Byte.SIZE && bits != Short.SIZE) {
+      throw new IllegalArgumentException(String.format("Codes must be 8 or 16 bits, not %d.", bits));
+    }
+    this.bits = bits;
+
+    int groupCount = indexedGroups.size();
+    this.starts = new int[groupCount + 1];
+    for (int id = 0; id < groupCount; id++) {
+      starts[id + 1] = starts[id] + indexedGroups.getGroup(id).getVector().size();
+    }
+    int length = starts[groupCount];
+    this.indices = new int[length];
+    this.byteCodes = (bits == Byte.SIZE) ? new byte[length] : null;
+    this.shortCodes = (bits == Short.SIZE) ? new short[length] : null;
+    this.scales = new float[groupCount];
+    this.zeroPoints = new int[groupCount];
+    this.codeSquaredNorms = new long[groupCount];
+    this.errorRadii = new double[groupCount];
+    this.norms = new double[groupCount];
+
+    float globalMinimum = 0F;
+    float globalMaximum = 0F;
+    if (scale == Scale.GLOBAL) {
+      for (int id = 0; id < groupCount; id++) {
+        for (float weight : indexedGroups.getGroup(id).getVector().getWeights()) {
+          globalMinimum = Math.min(globalMinimum, weight);
+          globalMaximum = Math.max(globalMaximum, weight);
+        }
+      }
+    }
+
+    for (int id = 0; id < groupCount; id++) {
+      SparseVector vector = indexedGroups.getGroup(id).getVector();
+      float minimum = globalMinimum;
+      float maximum = globalMaximum;
+      if (scale == Scale.PER_GROUP) {
+        minimum = 0F;
+        maximum = 0F;
+        for (float weight : vector.getWeights()) {
+          minimum = Math.min(minimum, weight);
+          maximum = Math.max(maximum, weight);
+        }
+      }
+      quantize(id, vector, minimum, maximum);
+    }
+  }
+
+  /**
+   * @return The number of quantized groups.
+   */
+  public int size() {
+    return scales.length;
+  }
+
+  /**
+   * @return The bits per code.
+   */
+  public int getBits() {
+    return bits;
+  }
+
+  /**
+   * @param id A group id.
+   * @return The scale of the group's codes.
+   */
+  public float getScale(int id) {
+    return scales[id];
+  }
+
+  /**
+   * @param id A group id.
+   * @return The group's vector as read back from its codes.
+   */
+  public SparseVector dequantize(int id) {
+    int start = starts[id];
+    int length = starts[id + 1] - start;
+    int[] vectorIndices = new int[length];
+    float[] weights = new float[length];
+    System.arraycopy(indices, start, vectorIndices, 0, length);
+    for (int i = 0; i < length; i++) {
+      weights[i] = centredCode(start + i, zeroPoints[id]) * scales[id];
+    }
+    return new SparseVector(vectorIndices, weights);
+  }
+
+  /**
+   * @param first  A group id.
+   * @param second A group id.
+   * @return The squared euclidean distance between the quantized vectors of the groups.
+   */
+  public double squaredDistance(int first, int second) {
+    long dot = codeDot(first, second);
+    double firstScale = scales[first];
+    double secondScale = scales[second];
+    if (firstScale == secondScale) {
+      // The integer sum is exact, only the final rescale rounds.
+      return firstScale * firstScale * (codeSquaredNorms[first] + codeSquaredNorms[second] - 2 * dot);
+    }
+    double result = firstScale * firstScale * codeSquaredNorms[first]
+        + secondScale * secondScale * codeSquaredNorms[second] - 2 * firstScale * secondScale * dot;
+    return Math.max(0D, result);
+  }
+
+  /**
+   * @param first  A group id.
+   * @param second A group id.
+   * @return The largest possible difference between the euclidean distance of the groups' original vectors and of
+   * their quantized vectors.
+   */
+  public double getErrorBound(int first, int second) {
+    return errorRadii[first] + errorRadii[second];
+  }
+
+  /**
+   * @param id A group id.
+   * @return The largest possible norm of the difference between the group's original and quantized vector.
+   */
+  public double getErrorRadius(int id) {
+    return errorRadii[id];
+  }
+
+  /**
+   * <p>The squared euclidean distance between an unquantized query vector and a group's quantized vector, calculated
+   * from the query's weights and the group's centred codes without dequantizing them.</p>
+   *
+   * @param query A vector, which does not need to be quantized.
+   * @param id    A group id.
+   * @return The squared euclidean distance between the query and the group's quantized vector.
+   */
+  public double squaredDistance(SparseVector query, int id) {
+    int[] queryIndices = query.getIndices();
+    float[] queryWeights = query.getWeights();
+    int i = 0;
+    int j = starts[id];
+    int end = starts[id + 1];
+    int zeroPoint = zeroPoints[id];
+    double dot = 0D;
+    while (i < queryIndices.length && j < end) {
+      int queryIndex = queryIndices[i];
+      int index = indices[j];
+      if (queryIndex == index) {
+        dot += queryWeights[i++] * (double) centredCode(j++, zeroPoint);
+      }
+      else if (queryIndex < index) {
+        i++;
+      }
+      else {
+        j++;
+      }
+    }
+    double scale = scales[id];
+    double result = query.getSquaredNorm() + scale * scale * codeSquaredNorms[id] - 2 * scale * dot;
+    return Math.max(0D, result);
+  }
+
+  /**
+   * <p>Decides from the codes alone whether a group's original vector is certainly not closer than the threshold to
+   * the query. The comparison keeps a small relative margin, so float rounding in a caller's exact distance can never
+   * disagree with it.</p>
+   *
+   * @param query     A vector, which does not need to be quantized.
+   * @param id        A group id.
+   * @param threshold A squared euclidean distance.
+   * @return True, if the original squared euclidean distance is at least the threshold. False does not imply it is
+   * closer.
+   */
+  public boolean isBeyond(SparseVector query, int id, float threshold) {
+    double metricThreshold = Math.sqrt(threshold) * (1D + MARGIN);
+    double queryNorm = Math.sqrt(query.getSquaredNorm());
+    if (Math.abs(queryNorm - norms[id]) - errorRadii[id] >= metricThreshold) {
+      return true;
+    }
+    return Math.sqrt(squaredDistance(query, id)) - errorRadii[id] >= metricThreshold;
+  }
+
+  /**
+   * <p>Decides whether two groups' original vectors are closer than the threshold, using the quantized distance
+   * unless it is within the error bound of the threshold.</p>
+   *
+   * @param first     A group id.
+   * @param second    A group id.
+   * @param threshold A squared euclidean distance.
+   * @param originals Looks up the original vector of a group id, only called when the quantized distance is within
+   *                  the error bound of the threshold.
+   * @return True, if the original squared euclidean distance is less than the threshold.
+   */
+  public boolean isWithin(int first, int second, float threshold, IntFunction<SparseVector> originals) {
+    double errorBound = getErrorBound(first, second);
+    double metricThreshold = Math.sqrt(threshold);
+    // The norms bound the distance from below without walking the codes.
+    if (Math.abs(norms[first] - norms[second]) - errorBound >= metricThreshold) {
+      return false;
+    }
+    double distance = Math.sqrt(squaredDistance(first, second));
+    if (distance + errorBound < metricThreshold) {
+      return true;
+    }
+    if (distance - errorBound >= metricThreshold) {
+      return false;
+    }
+    verifications.increment();
+    return SparseKernels.squaredEuclidean(originals.apply(first), originals.apply(second)) < threshold;
+  }
+
+  /**
+   * @return The number of {@link #isWithin(int, int, float, IntFunction)} calls that compared the original vectors.
+   */
+  public long getVerificationCount() {
+    return verifications.sum();
+  }
+
+  /**
+   * @return The number of bytes used by the indices, codes and per group parameters.
+   */
+  public long getMemoryBytes() {
+    long length = indices.length;
+    long groupCount = scales.length;
+    return length * (Integer.BYTES + bits / Byte.SIZE)
+        + groupCount * (Integer.BYTES + Float.BYTES + Integer.BYTES + Long.BYTES + 2 * Double.BYTES) + Integer.BYTES;
+  }
+
+  /**
+   * <p>Fits a scale to the range, which always includes zero, keeping one code spare so rounding the zero point can
+   * never push the largest weight out of range.</p>
+   */
+  private void quantize(int id, SparseVector vector, float minimum, float maximum) {
+    int maximumCode = (1 << bits) - 1;
+    float scale = (maximum > minimum) ? (maximum - minimum) / (maximumCode - 1) : 1F;
+    int zeroPoint = Math.round(-minimum / scale);
+    scales[id] = scale;
+    zeroPoints[id] = zeroPoint;
+
+    int[] vectorIndices = vector.getIndices();
+    float[] weights = vector.getWeights();
+    int start = starts[id];
+    long squaredNorm = 0L;
+    for (int i = 0; i < vectorIndices.length; i++) {
+      int code = Math.min(maximumCode, Math.max(0, Math.round(weights[i] / scale) + zeroPoint));
+      indices[start + i] = vectorIndices[i];
+      if (byteCodes != null) {
+        byteCodes[start + i] = (byte) code;
+      }
+      else {
+        shortCodes[start + i] = (short) code;
+      }
+      long centred = code - zeroPoint;
+      squaredNorm += centred * centred;
+    }
+    codeSquaredNorms[id] = squaredNorm;
+    errorRadii[id] = scale * Math.sqrt(vectorIndices.length) / 2D;
+    norms[id] = scale * Math.sqrt(squaredNorm);
+  }
+
+  private long codeDot(int first, int second) {
+    return (byteCodes != null) ? byteCodeDot(first, second) : shortCodeDot(first, second);
+  }
+
+  private long byteCodeDot(int first, int second) {
+    int i = starts[first];
+    int firstEnd = starts[first + 1];
+    int j = starts[second];
+    int secondEnd = starts[second + 1];
+    int firstZeroPoint = zeroPoints[first];
+    int secondZeroPoint = zeroPoints[second];
+    long result = 0L;
+    while (i < firstEnd && j < secondEnd) {
+      int firstIndex = indices[i];
+      int secondIndex = indices[j];
+      if (firstIndex == secondIndex) {
+        result += ((byteCodes[i++] & 0xFF) - firstZeroPoint) * ((byteCodes[j++] & 0xFF) - secondZeroPoint);
+      }
+      else if (firstIndex < secondIndex) {
+        i++;
+      }
+      else {
+        j++;
+      }
+    }
+    return result;
+  }
+
+  private long shortCodeDot(int first, int second) {
+    int i = starts[first];
+    int firstEnd = starts[first + 1];
+    int j = starts[second];
+    int secondEnd = starts[second + 1];
+    int firstZeroPoint = zeroPoints[first];
+    int secondZeroPoint = zeroPoints[second];
+    long result = 0L;
+    while (i < firstEnd && j < secondEnd) {
+      int firstIndex = indices[i];
+      int secondIndex = indices[j];
+      if (firstIndex == secondIndex) {
+        long firstCode = (shortCodes[i++] & 0xFFFF) - firstZeroPoint;
+        result += firstCode * ((shortCodes[j++] & 0xFFFF) - secondZeroPoint);
+      }
+      else if (firstIndex < secondIndex) {
+        i++;
+      }
+      else {
+        j++;
+      }
+    }
+    return result;
+  }
+
+  private int centredCode(int position, int zeroPoint) {
+    int code = (byteCodes != null) ? byteCodes[position] & 0xFF : shortCodes[position] & 0xFFFF;
+    return code - zeroPoint;
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.Arrays;
+
+/**
+ * <p>Set operations on strictly increasing {@code int} arrays, such as sorted {@link IndexedGroups} ids. Each
+ * operation is size aware: when one array is much smaller than the other, the smaller array's values are binary
+ * searched in the larger array and the runs between them are copied in bulk. Otherwise both arrays are merged
+ * linearly.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class SortedIntArrays
+{
+  public static final int[] EMPTY = new int[0];
+
+  /**
+   * @param sorted A strictly increasing array.
+   * @param value  The value to find.
+   * @return True, if the array contains the value.
+   */
+  public static boolean contains(int[] sorted, int value) {
+    return Arrays.binarySearch(sorted, value) >= 0;
+  }
+
+  /**
+   * <p>Creates a strictly increasing array from the provided values, which may be unsorted and contain
+   * duplicates.</p>
+   *
+   * @param values The values, this array is sorted in place.
+   * @param length The number of values to use from the start of the array.
+   * @return A new strictly increasing array of the distinct values.
+   */
+  public static int[] sortedSet(int[] values, int length) {
+    if (length == 0) {
+      return EMPTY;
+    }
+    Arrays.sort(values, 0, length);
+    int size = 1;
+    for (int i = 1; i < length; i++) {
+      if (values[i] != values[size - 1]) {
+        values[size++] = values[i];
+      }
+    }
+    return Arrays.copyOf(values, size);
+  }
+
+  /**
+   * @param first  A strictly increasing array.
+   * @param second A strictly increasing array.
+   * @return A strictly increasing array of the values in either array. If one array is empty the other is returned,
+   * so arrays passed in should not be modified afterwards.
+   */
+  public static int[] union(int[] first, int[] second) {
+    if (first.length == 0) {
+      return second;
+    }
+    if (second.length == 0) {
+      return first;
+    }
+    int[] small = (first.length <= second.length) ? first : second;
+    int[] large = (small == first) ? second : first;
+    if (isSkewed(small.length, large.length)) {
+      return gallopingUnion(small, large);
+    }
+
+    int[] result = new int[first.length + second.length];
+    int i = 0;
+    int j = 0;
+    int size = 0;
+    while (i < first.length && j < second.length) {
+      int a = first[i];
+      int b = second[j];
+      if (a <= b) {
+        result[size++] = a;
+        i++;
+        if (a == b) {
+          j++;
+        }
+      }
+      else {
+        result[size++] = b;
+        j++;
+      }
+    }
+    System.arraycopy(first, i, result, size, first.length - i);
+    size += first.length - i;
+    System.arraycopy(second, j, result, size, second.length - j);
+    size += second.length - j;
+    return trim(result, size);
+  }
+
+  /**
+   * @param minuend    A strictly increasing array.
+   * @param subtrahend A strictly increasing array.
+   * @return A strictly increasing array of the values in the minuend that are not in the subtrahend. The minuend itself
+   * is returned if nothing was removed.
+   */
+  public static int[] difference(int[] minuend, int[] subtrahend) {
+    if (minuend.length == 0 || subtrahend.length == 0) {
+      return minuend;
+    }
+    if (isSkewed(minuend.length, subtrahend.length)) {
+      // Few values to keep, search each one in the subtrahend.
+      int[] result = new int[minuend.length];
+      int size = 0;
+      int from = 0;
+      for (int value : minuend) {
+        int position = Arrays.binarySearch(subtrahend, from, subtrahend.length, value);
+        if (position < 0) {
+          result[size++] = value;
+          from = -position - 1;
+        }
+        else {
+          from = position + 1;
+        }
+      }
+      return (size == minuend.length) ? minuend : trim(result, size);
+    }
+    if (isSkewed(subtrahend.length, minuend.length)) {
+      // Few values to remove, copy the runs between them.
+      int[] result = new int[minuend.length];
+      int size = 0;
+      int from = 0;
+      for (int value : subtrahend) {
+        int position = Arrays.binarySearch(minuend, from, minuend.length, value);
+        int end = (position >= 0) ? position : -position - 1;
+        System.arraycopy(minuend, from, result, size, end - from);
+        size += end - from;
+        from = (position >= 0) ? position + 1 : end;
+      }
+      System.arraycopy(minuend, from, result, size, minuend.length - from);
+      size += minuend.length - from;
+      return (size == minuend.length) ? minuend : trim(result, size);
+    }
+
+    int[] result = new int[minuend.length];
+    int size = 0;
+    int j = 0;
+    for (int value : minuend) {
+      while (j < subtrahend.length && subtrahend[j] < value) {
+        j++;
+      }
+      if (j == subtrahend.length || subtrahend[j] != value) {
+        result[size++] = value;
+      }
+    }
+    return (size == minuend.length) ? minuend : trim(result, size);
+  }
+
+  /**
+   * <p>Binary searching each of the small array's values costs about {@code small * log2(large)}, which beats a
+   * linear merge of {@code small + large} once the arrays are skewed enough.</p>
+   */
+  private static boolean isSkewed(int small, int large) {
+    return (long) small * (32 - Integer.numberOfLeadingZeros(large)) < large;
+  }
+
+  private static int[] gallopingUnion(int[] small, int[] large) {
+    int[] result = new int[small.length + large.length];
+    int size = 0;
+    int from = 0;
+    for (int value : small) {
+      int position = Arrays.binarySearch(large, from, large.length, value);
+      int end = (position >= 0) ? position : -position - 1;
+      System.arraycopy(large, from, result, size, end - from);
+      size += end - from;
+      from = end;
+      // Values already in the large array are copied with the next run.
+      if (position < 0) {
+        result[size++] = value;
+      }
+    }
+    System.arraycopy(large, from, result, size, large.length - from);
+    size += large.length - from;
+    return trim(result, size);
+  }
+
+  private static int[] trim(int[] values, int size) {
+    return (size == values.length) ? values : Arrays.copyOf(values, size);
+  }
+}
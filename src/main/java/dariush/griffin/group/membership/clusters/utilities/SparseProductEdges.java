@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+import dariush.griffin.group.membership.clusters.metrics.DistanceMetric;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+
+/**
+ * <p>Finds every pair of groups that share a member and are within a squared euclidean threshold, with a single
+ * sparse matrix product instead of one vector merge per pair.</p><br><p>Since {@code |a - b|^2 = |a|^2 + |b|^2 -
+ * 2 a.b}, only the dot product depends on both groups, and it only has terms for the members they share. Each group's
+ * squared norm is computed once, and the dot products of a group with every later group are accumulated by walking the
+ * posting list, the groups containing a member, of each of its members. This is a row of {@code A A^T} computed in the
+ * style of Gustavson's algorithm, into a dense accumulator with a list of the touched columns so only those are read
+ * and reset.</p><br><p>Rows are computed in parallel in blocks, each task taking an accumulator from a pool kept for
+ * the call, and each block's edges are buffered and passed to the consumer on the calling thread, so consumers do not
+ * need to be thread safe. Like {@link GroupCache} candidates, pairs with no shared member are never edges, so unlike
+ * {@link dariush.griffin.group.membership.clusters.algorithms.CandidateStrategy#SHARED_MEMBERS} a cluster never
+ * reaches a group through a merged cluster's other members.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class SparseProductEdges
+    implements EdgeSource
+{
+  /**
+   * The number of rows computed by a single task.
+   */
+  private static final int ROWS_PER_TASK = 256;
+
+  /**
+   * The number of tasks computed before their edges are passed on, bounding the buffered edges.
+   */
+  private static final int TASKS_PER_BLOCK = 4 * Runtime.getRuntime().availableProcessors();
+
+  private final float threshold;
+
+  /**
+   * The squared norm of each group, in double precision so the expanded distance loses as little as possible.
+   */
+  private final double[] squaredNorms;
+
+  /**
+   * Each group's vector, by id.
+   */
+  private final SparseVector[] vectors;
+
+  /**
+   * The start of each member's posting list, by vector index, followed by the total length.
+   */
+  private final int[] postingStarts;
+
+  /**
+   * The increasing group ids of every posting list, concatenated.
+   */
+  private final int[] postingIds;
+
+  /**
+   * The weight of each group in {@link #postingIds} for the list's member.
+   */
+  private final float[] postingWeights;
+
+  /**
+   * @param indexedGroups The groups whose pairs are found.
+   * @param threshold     Pairs closer than this squared euclidean distance are edges.
+   */
+  public SparseProductEdges(IndexedGroups indexedGroups, float threshold) {
+    this.threshold = threshold;
+    int groupCount = indexedGroups.size();
+    this.vectors = new SparseVector[groupCount];
+    this.squaredNorms = new double[groupCount];
+    int dimensions = 0;
+    for (int id = 0; id < groupCount; id++) {
+      SparseVector vector = indexedGroups.getGroup(id).getVector();
+      vectors[id] = vector;
+      double squaredNorm = 0D;
+      for (float weight : vector.getWeights()) {
+        squaredNorm += (double) weight * weight;
+      }
+      squaredNorms[id] = squaredNorm;
+      int[] indices = vector.getIndices();
+      if (indices.length > 0) {
+        dimensions = Math.max(dimensions, indices[indices.length - 1] + 1);
+      }
+    }
+
+    // Counting sort of every (member, group) entry into posting lists, ids are visited in order so lists are sorted.
+    this.postingStarts = new int[dimensions + 1];
+    for (SparseVector vector : vectors) {
+      for (int index : vector.getIndices()) {
+        postingStarts[index + 1]++;
+      }
+    }
+    for (int index = 0; index < dimensions; index++) {
+      postingStarts[index + 1] += postingStarts[index];
+    }
+    this.postingIds = new int[postingStarts[dimensions]];
+    this.postingWeights = new float[postingIds.length];
+    int[] cursors = Arrays.copyOf(postingStarts, dimensions);
+    for (int id = 0; id < groupCount; id++) {
+      int[] indices = vectors[id].getIndices();
+      float[] weights = vectors[id].getWeights();
+      for (int i = 0; i < indices.length; i++) {
+        int position = cursors[indices[i]]++;
+        postingIds[position] = id;
+        postingWeights[position] = weights[i];
+      }
+    }
+  }
+
+  /**
+   * @param distanceMetric The metric clustering will use.
+   * @return True, if the metric is squared euclidean distance, which this source computes.
+   */
+  public static boolean isApplicable(DistanceMetric distanceMetric) {
+    return distanceMetric instanceof SquaredEuclideanDistance;
+  }
+
+  @Override
+  public void forEachEdge(EdgeConsumer consumer) {
+    int taskCount = (vectors.length + ROWS_PER_TASK - 1) / ROWS_PER_TASK;
+    // Accumulators are pooled for this call only, so no more are built than there are concurrent tasks.
+    Queue<Accumulator> accumulators = new ConcurrentLinkedQueue<>();
+    for (int blockStart = 0; blockStart < taskCount; blockStart += TASKS_PER_BLOCK) {
+      EdgeBuffer[] buffers = new EdgeBuffer[Math.min(TASKS_PER_BLOCK, taskCount - blockStart)];
+      int firstTask = blockStart;
+      IntStream.range(0, buffers.length).parallel().forEach(task -> {
+        int start = (firstTask + task) * ROWS_PER_TASK;
+        int end = Math.min(start + ROWS_PER_TASK, vectors.length);
+        EdgeBuffer buffer = new EdgeBuffer();
+        Accumulator accumulator = accumulators.poll();
+        if (accumulator == null) {
+          accumulator = new Accumulator(vectors.length);
+        }
+        for (int row = start; row < end; row++) {
+          multiplyRow(row, accumulator, buffer);
+        }
+        accumulators.add(accumulator);
+        buffers[task] = buffer;
+      });
+      for (EdgeBuffer buffer : buffers) {
+        for (int i = 0; i < buffer.size; i++) {
+          consumer.accept(buffer.firsts[i], buffer.seconds[i], buffer.distances[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return The total length of the posting lists, the number of non-zero weights.
+   */
+  public int getPostingCount() {
+    return postingIds.length;
+  }
+
+  /**
+   * <p>Accumulates the dot products of a group with every later group it shares a member with, and buffers the pairs
+   * within the threshold.</p>
+   */
+  private void multiplyRow(int row, Accumulator accumulator, EdgeBuffer buffer) {
+    int[] indices = vectors[row].getIndices();
+    float[] weights = vectors[row].getWeights();
+    double[] dots = accumulator.dots;
+    int[] touched = accumulator.touched;
+    int touchedCount = 0;
+    for (int i = 0; i < indices.length; i++) {
+      int end = postingStarts[indices[i] + 1];
+      // Lists are sorted, so only the tail after the row holds later groups.
+      int position = Arrays.binarySearch(postingIds, postingStarts[indices[i]], end, row) + 1;
+      double weight = weights[i];
+      for (; position < end; position++) {
+        int column = postingIds[position];
+        if (!accumulator.seen[column]) {
+          accumulator.seen[column] = true;
+          touched[touchedCount++] = column;
+        }
+        dots[column] += weight * postingWeights[position];
+      }
+    }
+
+    double rowNorm = squaredNorms[row];
+    for (int t = 0; t < touchedCount; t++) {
+      int column = touched[t];
+      // Compared once rounded, so an edge is recorded exactly when its recorded distance is within the threshold.
+      float distance = (float) Math.max(0D, rowNorm + squaredNorms[column] - 2D * dots[column]);
+      if (distance < threshold) {
+        buffer.add(row, column, distance);
+      }
+      dots[column] = 0D;
+      accumulator.seen[column] = false;
+    }
+  }
+
+  /**
+   * <p>A dense row of dot products with the list of columns written since it was last cleared.</p>
+   */
+  private static final class Accumulator
+  {
+    private final double[] dots;
+
+    private final boolean[] seen;
+
+    private final int[] touched;
+
+    private Accumulator(int size) {
+      this.dots = new double[size];
+      this.seen = new boolean[size];
+      this.touched = new int[size];
+    }
+  }
+
+  /**
+   * <p>The edges found by one task, in growable primitive arrays.</p>
+   */
+  private static final class EdgeBuffer
+  {
+    private int[] firsts = new int[64];
+
+    private int[] seconds = new int[64];
+
+    private float[] distances = new float[64];
+
+    private int size;
+
+    private void add(int first, int second, float distance) {
+      if (size == firsts.length) {
+        firsts = Arrays.copyOf(firsts, size * 2);
+        seconds = Arrays.copyOf(seconds, size * 2);
+        distances = Arrays.copyOf(distances, size * 2);
+      }
+      firsts[size] = first;
+      seconds[size] = second;
+      distances[size] = distance;
+      size++;
+    }
+  }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.stream.IntStream;
+
+import dariush.griffin.group.membership.clusters.metrics.DenseKernels;
+import dariush.griffin.group.membership.clusters.metrics.DistanceMetric;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+
+/**
+ * <p>Finds every pair of groups within a squared euclidean threshold by comparing all pairs, for dense mappings where
+ * most groups share members and candidate pruning does not help.</p><br><p>Groups are split into tiles of rows, each
+ * tile a dense row major block in its own direct buffer, sized so two tiles' worth of columns fit in a core's L2
+ * cache. Pairs of tiles are compared in parallel: each block of columns of the two tiles is copied in bulk into
+ * reusable heap rows, their dot products are computed with the {@link DenseKernels} and accumulated into an off heap
+ * accumulator, and the pairs whose {@code |a|^2 + |b|^2 - 2 a.b} is within the threshold are written to an off heap
+ * edge buffer. Each wave of tile pairs is then drained to the consumer on the
+ * calling thread, so the distance matrix is never held, and consumers such as a {@link UnionFind} do not need to be
+ * thread safe.</p><br><p>Direct buffers live outside the heap until they are garbage collected, the tiles cost
+ * {@code 4 * groups * members} bytes for as long as this source is referenced.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class TiledAllPairsEdges
+    implements EdgeSource
+{
+  /**
+   * A typical per core L2 cache.
+   */
+  public static final int DEFAULT_CACHE_BYTES = 256 * 1024;
+
+  private static final int MIN_TILE_ROWS = 16;
+
+  /**
+   * Caps the edges a tile pair can produce, which bounds each edge buffer.
+   */
+  private static final int MAX_TILE_ROWS = 256;
+
+  /**
+   * The widest block of columns accumulated at a time, wider rows are split into blocks.
+   */
+  private static final int MAX_BLOCK_COLUMNS = 1024;
+
+  /**
+   * Bytes of an edge record, two ids and a distance.
+   */
+  private static final int EDGE_BYTES = Integer.BYTES + Integer.BYTES + Float.BYTES;
+
+  /**
+   * The number of tile pairs compared before their edges are drained.
+   */
+  private static final int SLOTS = 2 * Runtime.getRuntime().availableProcessors();
+
+  private final float threshold;
+
+  private final int groupCount;
+
+  private final int dimensions;
+
+  private final int tileRows;
+
+  private final int blockColumns;
+
+  /**
+   * The dense rows of each tile, row major.
+   */
+  private final FloatBuffer[] tiles;
+
+  private final double[] squaredNorms;
+
+  /**
+   * <p>Constructs the tiles for the {@link #DEFAULT_CACHE_BYTES}.</p>
+   *
+   * @param indexedGroups The groups whose pairs are found.
+   * @param threshold     Pairs closer than this squared euclidean distance are edges.
+   */
+  public TiledAllPairsEdges(IndexedGroups indexedGroups, float threshold) {
+    this(indexedGroups, threshold, DEFAULT_CACHE_BYTES);
+  }
+
+  /**
+   * @param indexedGroups The groups whose pairs are found.
+   * @param threshold     Pairs closer than this squared euclidean distance are edges.
+   * @param cacheBytes    The cache two tiles' blocks of columns should fit in.
+   * @throws IllegalArgumentException If a single group's dense row does not fit in a direct buffer.
+   */
+  public TiledAllPairsEdges(IndexedGroups indexedGroups, float threshold, int cacheBytes) {
+    this.threshold = threshold;
+    this.groupCount = indexedGroups.size();
+    int maxIndex = -1;
+    for (int id = 0; id < groupCount; id++) {
+      int[] indices = indexedGroups.getGroup(id).getVector().getIndices();
+      if (indices.length > 0) {
+        maxIndex = Math.max(maxIndex, indices[indices.length - 1]);
+      }
+    }
+    this.dimensions = maxIndex + 1;
+    long rowBytes = (long) dimensions * Float.BYTES;
+    if (rowBytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+          String.format("A dense row of %d members does not fit in a direct buffer.", dimensions));
+    }
+    this.blockColumns = Math.max(1, Math.min(dimensions, MAX_BLOCK_COLUMNS));
+    int cacheRows = Math.max(MIN_TILE_ROWS, Math.min(MAX_TILE_ROWS, cacheBytes / (2 * Float.BYTES * blockColumns)));
+    // Very wide rows shrink the tiles, a direct buffer holds at most Integer.MAX_VALUE bytes.
+    this.tileRows = (int) Math.min(cacheRows, Integer.MAX_VALUE / Math.max(1L, rowBytes));
+
+    int tileCount = (groupCount + tileRows - 1) / tileRows;
+    this.tiles = new FloatBuffer[tileCount];
+    this.squaredNorms = new double[groupCount];
+    for (int tile = 0; tile < tileCount; tile++) {
+      int start = tile * tileRows;
+      int rows = Math.min(tileRows, groupCount - start);
+      FloatBuffer buffer = ByteBuffer.allocateDirect((int) (rows * rowBytes)).order(ByteOrder.nativeOrder())
+          .asFloatBuffer();
+      for (int row = 0; row < rows; row++) {
+        SparseVector vector = indexedGroups.getGroup(start + row).getVector();
+        int[] indices = vector.getIndices();
+        float[] weights = vector.getWeights();
+        double squaredNorm = 0D;
+        for (int i = 0; i < indices.length; i++) {
+          buffer.put(row * dimensions + indices[i], weights[i]);
+          squaredNorm += (double) weights[i] * weights[i];
+        }
+        squaredNorms[start + row] = squaredNorm;
+      }
+      tiles[tile] = buffer;
+    }
+  }
+
+  /**
+   * @param distanceMetric The metric clustering will use.
+   * @return True, if the metric is squared euclidean distance, which this source computes.
+   */
+  public static boolean isApplicable(DistanceMetric distanceMetric) {
+    return distanceMetric instanceof SquaredEuclideanDistance;
+  }
+
+  @Override
+  public void forEachEdge(EdgeConsumer consumer) {
+    int tileCount = tiles.length;
+    long pairCount = (long) tileCount * (tileCount + 1) / 2;
+    DoubleBuffer[] accumulators = new DoubleBuffer[SLOTS];
+    ByteBuffer[] edgeBuffers = new ByteBuffer[SLOTS];
+    float[][][] firstBlocks = new float[SLOTS][tileRows][blockColumns];
+    float[][][] secondBlocks = new float[SLOTS][tileRows][blockColumns];
+    for (int slot = 0; slot < SLOTS; slot++) {
+      accumulators[slot] = ByteBuffer.allocateDirect(tileRows * tileRows * Double.BYTES)
+          .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+      edgeBuffers[slot] = ByteBuffer.allocateDirect(tileRows * tileRows * EDGE_BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    // Tile pairs (first <= second) are numbered row by row and compared a wave of slots at a time.
+    int[] firstTiles = new int[SLOTS];
+    int[] secondTiles = new int[SLOTS];
+    int first = 0;
+    int second = 0;
+    for (long wave = 0; wave < pairCount; wave += SLOTS) {
+      int slots = (int) Math.min(SLOTS, pairCount - wave);
+      for (int slot = 0; slot < slots; slot++) {
+        firstTiles[slot] = first;
+        secondTiles[slot] = second;
+        if (++second == tileCount) {
+          second = ++first;
+        }
+      }
+      IntStream.range(0, slots).parallel().forEach(slot ->
+          compareTiles(firstTiles[slot], secondTiles[slot], firstBlocks[slot], secondBlocks[slot], accumulators[slot],
+              edgeBuffers[slot]));
+      for (int slot = 0; slot < slots; slot++) {
+        ByteBuffer edges = edgeBuffers[slot];
+        edges.flip();
+        while (edges.hasRemaining()) {
+          consumer.accept(edges.getInt(), edges.getInt(), edges.getFloat());
+        }
+        edges.clear();
+      }
+    }
+  }
+
+  /**
+   * @return The number of groups in each tile, except the last.
+   */
+  public int getTileRows() {
+    return tileRows;
+  }
+
+  /**
+   * @return The number of tiles.
+   */
+  public int getTileCount() {
+    return tiles.length;
+  }
+
+  /**
+   * @return The bytes of the tiles held outside the heap.
+   */
+  public long getTileBytes() {
+    return (long) groupCount * dimensions * Float.BYTES;
+  }
+
+  /**
+   * <p>Accumulates the dot products of every row of one tile with every row of the other, a block of columns at a
+   * time, and writes the pairs within the threshold to the edge buffer. A tile compared with itself only accumulates
+   * the pairs above the diagonal.</p><br><p>The kernels take heap arrays, so each block is first copied in bulk from
+   * the tiles into the slot's block rows, which are sized like the tiles' blocks and stay in cache while the block's
+   * {@code rows * rows} dot products are computed.</p>
+   */
+  private void compareTiles(int firstTile, int secondTile, float[][] firstBlock, float[][] secondBlock,
+      DoubleBuffer accumulator, ByteBuffer edges)
+  {
+    FloatBuffer firstRows = tiles[firstTile];
+    FloatBuffer secondRows = tiles[secondTile];
+    int firstStart = firstTile * tileRows;
+    int secondStart = secondTile * tileRows;
+    int firstCount = Math.min(tileRows, groupCount - firstStart);
+    int secondCount = Math.min(tileRows, groupCount - secondStart);
+    boolean diagonal = firstTile == secondTile;
+    for (int i = 0; i < firstCount * secondCount; i++) {
+      accumulator.put(i, 0D);
+    }
+
+    for (int blockStart = 0; blockStart < dimensions; blockStart += blockColumns) {
+      int width = Math.min(dimensions - blockStart, blockColumns);
+      copyBlock(firstRows, firstCount, blockStart, width, firstBlock);
+      float[][] otherBlock = diagonal ? firstBlock : copyBlock(secondRows, secondCount, blockStart, width, secondBlock);
+      for (int i = 0; i < firstCount; i++) {
+        for (int j = diagonal ? i + 1 : 0; j < secondCount; j++) {
+          int position = i * secondCount + j;
+          accumulator.put(position, accumulator.get(position) + DenseKernels.dot(firstBlock[i], otherBlock[j], width));
+        }
+      }
+    }
+
+    for (int i = 0; i < firstCount; i++) {
+      double firstNorm = squaredNorms[firstStart + i];
+      for (int j = diagonal ? i + 1 : 0; j < secondCount; j++) {
+        // Compared once rounded, so an edge is recorded exactly when its recorded distance is within the threshold.
+        float distance = (float) Math.max(0D,
+            firstNorm + squaredNorms[secondStart + j] - 2D * accumulator.get(i * secondCount + j));
+        if (distance < threshold) {
+          edges.putInt(firstStart + i).putInt(secondStart + j).putFloat(distance);
+        }
+      }
+    }
+  }
+
+  /**
+   * <p>Copies the columns {@code [blockStart, blockStart + width)} of each of a tile's rows into the block rows.</p>
+   *
+   * @return The block rows.
+   */
+  private float[][] copyBlock(FloatBuffer rows, int rowCount, int blockStart, int width, float[][] block) {
+    // A view of its own, the same tile may be copied by several slots at once.
+    FloatBuffer view = rows.duplicate();
+    for (int row = 0; row < rowCount; row++) {
+      view.position(row * dimensions + blockStart);
+      view.get(block[row], 0, width);
+    }
+    return block;
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.Arrays;
+
+/**
+ * <p>A disjoint set forest over the ids {@code 0} to {@code size - 1}, using union by size and path halving. Used to
+ * turn the edges of a threshold graph into its connected components.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class UnionFind
+{
+  private final int[] parents;
+
+  private final int[] sizes;
+
+  private int componentCount;
+
+  /**
+   * <p>Constructs a forest where every id is its own component.</p>
+   *
+   * @param size The number of ids.
+   */
+  public UnionFind(int size) {
+    this.parents = new int[size];
+    this.sizes = new int[size];
+    for (int i = 0; i < size; i++) {
+      parents[i] = i;
+    }
+    Arrays.fill(sizes, 1);
+    this.componentCount = size;
+  }
+
+  /**
+   * <p>Constructs a copy of another forest, so a state can be checkpointed and later extended with more unions
+   * without replaying the unions that led to it.</p>
+   *
+   * @param other The forest to copy.
+   */
+  public UnionFind(UnionFind other) {
+    this.parents = other.parents.clone();
+    this.sizes = other.sizes.clone();
+    this.componentCount = other.componentCount;
+  }
+
+  /**
+   * @param id An id.
+   * @return The representative id of the component containing the id.
+   */
+  public int find(int id) {
+    while (parents[id] != id) {
+      parents[id] = parents[parents[id]];
+      id = parents[id];
+    }
+    return id;
+  }
+
+  /**
+   * <p>Joins the components containing the two ids.</p>
+   *
+   * @param first  An id.
+   * @param second An id.
+   * @return True, if the ids were in different components.
+   */
+  public boolean union(int first, int second) {
+    int firstRoot = find(first);
+    int secondRoot = find(second);
+    if (firstRoot == secondRoot) {
+      return false;
+    }
+    if (sizes[firstRoot] < sizes[secondRoot]) {
+      int swap = firstRoot;
+      firstRoot = secondRoot;
+      secondRoot = swap;
+    }
+    parents[secondRoot] = firstRoot;
+    sizes[firstRoot] += sizes[secondRoot];
+    componentCount--;
+    return true;
+  }
+
+  /**
+   * @param first  An id.
+   * @param second An id.
+   * @return True, if the ids are in the same component.
+   */
+  public boolean connected(int first, int second) {
+    return find(first) == find(second);
+  }
+
+  /**
+   * @return The number of ids.
+   */
+  public int size() {
+    return parents.length;
+  }
+
+  /**
+   * @return The number of components.
+   */
+  public int getComponentCount() {
+    return componentCount;
+  }
+}
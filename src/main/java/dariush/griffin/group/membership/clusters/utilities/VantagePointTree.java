@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+import dariush.griffin.group.membership.clusters.metrics.DistanceMetric;
+import dariush.griffin.group.membership.clusters.metrics.PruningBound;
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+
+/**
+ * <p>A vantage point tree over the vectors of indexed groups, answering "every group within a distance of this
+ * vector" range queries. Each node picks a group as its vantage point and splits the rest of its groups at the median
+ * distance from it; the triangle inequality then rules out a whole side of the split when the query is far enough
+ * from that median. Unlike a {@link GroupCache} it also finds groups that share no member, and unlike a
+ * {@link GridIndex} it does not depend on the number of members.</p><br><p>The tree is stored implicitly: the group
+ * ids are reordered so each node is a contiguous range whose first id is the vantage point, followed by its inner and
+ * then its outer subtree. Subtrees are built in parallel on the common fork join pool, and the finished tree is
+ * immutable so queries are thread safe.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class VantagePointTree
+{
+  /**
+   * Ranges of at most this many groups are scanned rather than split.
+   */
+  private static final int LEAF_SIZE = 8;
+
+  /**
+   * Ranges of at least this many groups build their subtrees as separate tasks.
+   */
+  private static final int PARALLEL_THRESHOLD = 2048;
+
+  /**
+   * Distances are mapped through {@link DistanceMetric#toMetric(float)}, which rounds, so pruning leaves this much
+   * relative slack. Groups that are not pruned are always checked with the exact distance.
+   */
+  private static final float SLACK = 1e-5F;
+
+  private final IndexedGroups indexedGroups;
+
+  private final DistanceMetric distanceMetric;
+
+  /**
+   * The group ids, ordered so that each node is a contiguous range.
+   */
+  private final int[] ids;
+
+  /**
+   * For the node starting at position {@code p}, the median metric distance from its vantage point. The inner
+   * subtree holds groups no further than this, the outer subtree groups no closer.
+   */
+  private final float[] medians;
+
+  /**
+   * For the node starting at position {@code p}, the first position of its outer subtree.
+   */
+  private final int[] outerStarts;
+
+  /**
+   * @param indexedGroups  The groups to index.
+   * @param distanceMetric The metric, which must support {@link PruningBound#TRIANGLE_INEQUALITY}.
+   * @throws IllegalArgumentException If the metric does not satisfy the triangle inequality.
+   */
+  public VantagePointTree(IndexedGroups indexedGroups, DistanceMetric distanceMetric) {
+    if (!distanceMetric.supports(PruningBound.TRIANGLE_INEQUALITY)) {
+      throw new IllegalArgumentException(
+          String.format("%s does not satisfy the triangle inequality.", distanceMetric));
+    }
+    this.indexedGroups = indexedGroups;
+    this.distanceMetric = distanceMetric;
+    this.ids = new int[indexedGroups.size()];
+    for (int id = 0; id < ids.length; id++) {
+      ids[id] = id;
+    }
+    this.medians = new float[ids.length];
+    this.outerStarts = new int[ids.length];
+    new BuildTask(0, ids.length, new float[ids.length]).invoke();
+  }
+
+  /**
+   * <p>Visits every group closer than the threshold to the vector.</p>
+   *
+   * @param vector    The query vector.
+   * @param threshold Groups closer than this distance are visited.
+   * @param consumer  Receives the id of each group.
+   */
+  public void forEachWithin(SparseVector vector, float threshold, IntConsumer consumer) {
+    forEachWithin(vector, -1, threshold, 0, ids.length, (queryId, id, distance) -> consumer.accept(id));
+  }
+
+  /**
+   * <p>An {@link EdgeSource} of every pair of groups closer than the threshold, found with one range query per
+   * group.</p>
+   *
+   * @param threshold Groups closer than this distance are edges.
+   * @return The edges.
+   */
+  public EdgeSource edgesWithin(float threshold) {
+    return consumer -> {
+      for (int first = 0; first < ids.length; first++) {
+        forEachWithin(indexedGroups.getGroup(first).getVector(), first, threshold, 0, ids.length,
+            (queryId, second, distance) -> {
+              // Each pair is found from both ends, only the query from the smaller id reports it.
+              if (second > queryId) {
+                consumer.accept(queryId, second, distance);
+              }
+            });
+      }
+    };
+  }
+
+  /**
+   * @return The number of indexed groups.
+   */
+  public int size() {
+    return ids.length;
+  }
+
+  /**
+   * <p>Searches the node over {@code ids[start..end)}, reporting each group within the threshold as an edge from the
+   * query id.</p>
+   */
+  private void forEachWithin(
+      SparseVector vector,
+      int queryId,
+      float threshold,
+      int start,
+      int end,
+      EdgeConsumer consumer)
+  {
+    float metricThreshold = distanceMetric.toMetric(threshold);
+    while (end - start > LEAF_SIZE) {
+      int vantagePoint = ids[start];
+      float distance = distanceMetric.distance(vector, indexedGroups.getGroup(vantagePoint).getVector());
+      if (distance < threshold) {
+        consumer.accept(queryId, vantagePoint, distance);
+      }
+      float metricDistance = distanceMetric.toMetric(distance);
+      float median = medians[start];
+      float slack = SLACK * (metricDistance + median + metricThreshold);
+      int outerStart = outerStarts[start];
+      // Inner groups are at least (distance - median) away, outer groups at least (median - distance).
+      boolean searchInner = metricDistance - median < metricThreshold + slack;
+      boolean searchOuter = median - metricDistance < metricThreshold + slack;
+      if (searchInner && searchOuter) {
+        forEachWithin(vector, queryId, threshold, start + 1, outerStart, consumer);
+        start = outerStart;
+      }
+      else if (searchInner) {
+        end = outerStart;
+        start++;
+      }
+      else if (searchOuter) {
+        start = outerStart;
+      }
+      else {
+        return;
+      }
+    }
+    for (int p = start; p < end; p++) {
+      float distance = distanceMetric.distance(vector, indexedGroups.getGroup(ids[p]).getVector());
+      if (distance < threshold) {
+        consumer.accept(queryId, ids[p], distance);
+      }
+    }
+  }
+
+  /**
+   * <p>Builds the node over {@code ids[start..end)}. The distances array is scratch space shared by all tasks, each
+   * only touching its own range.</p>
+   */
+  private final class BuildTask
+      extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final int start;
+
+    private final int end;
+
+    private final float[] distances;
+
+    private BuildTask(int start, int end, float[] distances) {
+      this.start = start;
+      this.end = end;
+      this.distances = distances;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start <= LEAF_SIZE) {
+        return;
+      }
+      // A deterministic, spread out, choice of vantage point keeps builds reproducible.
+      swap(start, start + (int) ((start * 0x9E3779B97F4A7C15L >>> 33) % (end - start)));
+      SparseVector vantagePoint = indexedGroups.getGroup(ids[start]).getVector();
+      for (int p = start + 1; p < end; p++) {
+        distances[p] = distanceMetric.toMetric(
+            distanceMetric.distance(vantagePoint, indexedGroups.getGroup(ids[p]).getVector()));
+      }
+
+      int outerStart = (start + 1 + end) >>> 1;
+      select(start + 1, end - 1, outerStart);
+      medians[start] = distances[outerStart];
+      outerStarts[start] = outerStart;
+
+      BuildTask inner = new BuildTask(start + 1, outerStart, distances);
+      BuildTask outer = new BuildTask(outerStart, end, distances);
+      if (end - start >= PARALLEL_THRESHOLD) {
+        ForkJoinTask.invokeAll(inner, outer);
+      }
+      else {
+        inner.compute();
+        outer.compute();
+      }
+    }
+
+    /**
+     * <p>Quickselect, afterwards the k-th position holds the k-th smallest distance, with no larger distance before
+     * it and no smaller distance after it.</p>
+     */
+    private void select(int low, int high, int k) {
+      while (high > low) {
+        float pivot = distances[(low + high) >>> 1];
+        int i = low;
+        int j = high;
+        while (i <= j) {
+          while (distances[i] < pivot) {
+            i++;
+          }
+          while (distances[j] > pivot) {
+            j--;
+          }
+          if (i <= j) {
+            swap(i++, j--);
+          }
+        }
+        if (k <= j) {
+          high = j;
+        }
+        else if (k >= i) {
+          low = i;
+        }
+        else {
+          return;
+        }
+      }
+    }
+
+    private void swap(int first, int second) {
+      int id = ids[first];
+      ids[first] = ids[second];
+      ids[second] = id;
+      float distance = distances[first];
+      distances[first] = distances[second];
+      distances[second] = distance;
+    }
+  }
+}
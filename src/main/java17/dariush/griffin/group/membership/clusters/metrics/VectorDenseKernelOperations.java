@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.metrics;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * <p>Vector API kernels, compiled into the Java 17 layer of the multi-release JAR. Lanes are accumulated with a
+ * separate multiply and add rather than a fused multiply add, which is emulated slowly on hardware without FMA.</p>
+ *
+ * @author Dariush Griffin
+ */
+class VectorDenseKernelOperations
+    implements DenseKernelOperations
+{
+  /**
+   * Touching the species links the incubator module, so a missing module fails here, when the class is loaded.
+   */
+  private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+  @Override
+  public float dot(float[] first, float[] second, int length) {
+    FloatVector sum = FloatVector.zero(SPECIES);
+    int i = 0;
+    for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+      FloatVector a = FloatVector.fromArray(SPECIES, first, i);
+      FloatVector b = FloatVector.fromArray(SPECIES, second, i);
+      sum = sum.add(a.mul(b));
+    }
+    float result = sum.reduceLanes(VectorOperators.ADD);
+    for (; i < length; i++) {
+      result += first[i] * second[i];
+    }
+    return result;
+  }
+
+  @Override
+  public float squaredEuclidean(float[] first, float[] second, int length) {
+    FloatVector sum = FloatVector.zero(SPECIES);
+    int i = 0;
+    for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+      FloatVector diff = FloatVector.fromArray(SPECIES, first, i).sub(FloatVector.fromArray(SPECIES, second, i));
+      sum = sum.add(diff.mul(diff));
+    }
+    float result = sum.reduceLanes(VectorOperators.ADD);
+    for (; i < length; i++) {
+      float diff = first[i] - second[i];
+      result += diff * diff;
+    }
+    return result;
+  }
+
+  @Override
+  public float gatherDot(int[] indices, float[] weights, int length, float[] dense) {
+    FloatVector sum = FloatVector.zero(SPECIES);
+    int i = 0;
+    for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+      FloatVector gathered = FloatVector.fromArray(SPECIES, dense, 0, indices, i);
+      sum = sum.add(FloatVector.fromArray(SPECIES, weights, i).mul(gathered));
+    }
+    float result = sum.reduceLanes(VectorOperators.ADD);
+    for (; i < length; i++) {
+      result += weights[i] * dense[indices[i]];
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "vector-" + SPECIES.vectorBitSize();
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.batch;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>Runs every job on its own virtual thread, compiled into the Java 21 layer of the multi-release JAR. A virtual
+ * thread is a small heap object rather than a platform thread with its own stack, so threads are created per job
+ * instead of pooled and the number of jobs at once is bounded by {@link BatchClusterExecutor}'s admission control
+ * alone.</p>
+ *
+ * @author Dariush Griffin
+ */
+class VirtualJobThreads
+    implements JobThreads
+{
+  @Override
+  public ExecutorService newExecutor(int maxConcurrency) {
+    return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("cluster-job-", 0).factory());
+  }
+
+  /**
+   * @return No limit, jobs are only admitted while their memory fits.
+   */
+  @Override
+  public int getDefaultConcurrency() {
+    return Integer.MAX_VALUE;
+  }
+
+  @Override
+  public String toString() {
+    return "virtual";
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.algorithms;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static dariush.griffin.group.membership.clusters.utilities.PerfMeasurements.randomMapping;
+import static dariush.griffin.group.membership.clusters.utilities.PerfMeasurements.scalingExponent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+@Tag("perf")
+public class AgglomerativeClusterAlgorithmPerfTest
+{
+  /**
+   * With a constant number of groups per member clustering is close to linear, quadratic work would fit an exponent
+   * close to 2.
+   */
+  private static final double EXPONENT_BUDGET = 1.5;
+
+  private static final float THRESHOLD = .05F;
+
+  private static volatile int sink;
+
+  @Test
+  public void testCluster_ScalesLinearly() {
+    assertScaling(CandidateStrategy.AUTOMATIC);
+  }
+
+  @Test
+  public void testCluster_SharedMembers_ScalesLinearly() {
+    assertScaling(CandidateStrategy.SHARED_MEMBERS);
+  }
+
+  private static void assertScaling(CandidateStrategy strategy) {
+    Map<Integer, MembershipMapping> mappings = new HashMap<>();
+    double exponent = scalingExponent(new int[] {10_000, 20_000, 40_000, 80_000}, groupCount -> {
+      MembershipMapping membershipMapping = mappings.computeIfAbsent(groupCount,
+          size -> randomMapping(new Random(size), size, size / 2));
+
+      long start = System.nanoTime();
+      sink = new AgglomerativeClusterAlgorithm(membershipMapping, new SquaredEuclideanDistance(), THRESHOLD, null,
+          strategy).cluster().size();
+      return System.nanoTime() - start;
+    });
+
+    assertThat(String.format("%s scaling exponent %.2f", strategy, exponent), exponent, lessThan(EXPONENT_BUDGET));
+  }
+}
@@ -18,16 +18,28 @@
  */
 package dariush.griffin.group.membership.clusters.algorithms;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
+import dariush.griffin.group.membership.clusters.metrics.CosineDistance;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
 import dariush.griffin.group.membership.clusters.model.Cluster;
 import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import dariush.griffin.group.membership.clusters.utilities.DistanceCache;
 import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AgglomerativeClusterAlgorithmTest
 {
@@ -52,4 +64,177 @@ public class AgglomerativeClusterAlgorithmTest
     expectedClusterZero.addGroups(Arrays.asList(membershipMapping.getGroup("test-group-zero"), membershipMapping.getGroup("test-group-one")));
     assertThat(clusters, containsInAnyOrder(expectedClusterZero, expectedClusterOne));
   }
+
+  @Test
+  public void testCluster_DistanceCache() {
+    MembershipMapping membershipMapping = new MembershipMapping();
+
+    membershipMapping.addMemberToGroup("test-member-zero", "test-group-zero", .2F);
+    membershipMapping.addMemberToGroup("test-member-one", "test-group-zero", .8F);
+    membershipMapping.addMemberToGroup("test-member-one", "test-group-one", .9F);
+    membershipMapping.addMemberToGroup("test-member-two", "test-group-one", .1F);
+    membershipMapping.addMemberToGroup("test-member-two", "test-group-two", .9F);
+    membershipMapping.addMemberToGroup("test-member-three", "test-group-two", .1F);
+
+    DistanceCache distanceCache = new DistanceCache(1024);
+    AgglomerativeClusterAlgorithm algorithm =
+        new AgglomerativeClusterAlgorithm(membershipMapping, new SquaredEuclideanDistance(), 0.6F, distanceCache,
+            CandidateStrategy.SHARED_MEMBERS);
+
+    Set<Cluster> clusters = algorithm.cluster();
+    Cluster expectedClusterOne = new Cluster();
+    expectedClusterOne.addGroup(membershipMapping.getGroup("test-group-two"));
+    Cluster expectedClusterZero = new Cluster();
+    expectedClusterZero.addGroups(Arrays.asList(membershipMapping.getGroup("test-group-zero"), membershipMapping.getGroup("test-group-one")));
+    assertThat(clusters, containsInAnyOrder(expectedClusterZero, expectedClusterOne));
+    // The final round revisits pairs that were compared in earlier rounds.
+    assertThat(distanceCache.getHitCount(), greaterThan(0L));
+  }
+
+  @Test
+  public void testCluster_DistanceMetric() {
+    MembershipMapping membershipMapping = new MembershipMapping();
+
+    // Zero and one point the same way at different magnitudes, two is orthogonal to both.
+    membershipMapping.addMemberToGroup("test-member-zero", "test-group-zero", .1F);
+    membershipMapping.addMemberToGroup("test-member-one", "test-group-zero", .1F);
+    membershipMapping.addMemberToGroup("test-member-zero", "test-group-one", .9F);
+    membershipMapping.addMemberToGroup("test-member-one", "test-group-one", .8F);
+    membershipMapping.addMemberToGroup("test-member-one", "test-group-two", .1F);
+    membershipMapping.addMemberToGroup("test-member-two", "test-group-two", .9F);
+
+    Set<Cluster> clusters =
+        new AgglomerativeClusterAlgorithm(membershipMapping, new CosineDistance(), 0.1F).cluster();
+    Cluster expectedClusterZero = new Cluster();
+    expectedClusterZero.addGroups(Arrays.asList(membershipMapping.getGroup("test-group-zero"), membershipMapping.getGroup("test-group-one")));
+    Cluster expectedClusterOne = new Cluster();
+    expectedClusterOne.addGroup(membershipMapping.getGroup("test-group-two"));
+    assertThat(clusters, containsInAnyOrder(expectedClusterZero, expectedClusterOne));
+  }
+
+  @Test
+  public void testCluster_GridMatchesSharedMembers() {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    Random random = new Random(5);
+    for (int i = 0; i < 500; i++) {
+      membershipMapping.addMemberToGroup("x", "test-group-" + i, random.nextFloat());
+      membershipMapping.addMemberToGroup("y", "test-group-" + i, random.nextFloat());
+    }
+
+    AgglomerativeClusterAlgorithm grid = new AgglomerativeClusterAlgorithm(membershipMapping,
+        new SquaredEuclideanDistance(), .002F, null, CandidateStrategy.AUTOMATIC);
+    AgglomerativeClusterAlgorithm sharedMembers = new AgglomerativeClusterAlgorithm(membershipMapping,
+        new SquaredEuclideanDistance(), .002F, null, CandidateStrategy.SHARED_MEMBERS);
+
+    assertEquals(CandidateStrategy.GRID, grid.resolveCandidateStrategy());
+    assertEquals(sharedMembers.cluster(), grid.cluster());
+  }
+
+  @Test
+  public void testCluster_VantagePointTreeMatchesSharedMembers() {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    Random random = new Random(9);
+    for (int i = 0; i < 400; i++) {
+      for (int m = 0; m < 12; m++) {
+        membershipMapping.addMemberToGroup("test-member-" + m, "test-group-" + i, random.nextFloat());
+      }
+    }
+
+    AgglomerativeClusterAlgorithm vantagePointTree = new AgglomerativeClusterAlgorithm(membershipMapping,
+        new SquaredEuclideanDistance(), .25F, null, CandidateStrategy.VANTAGE_POINT_TREE);
+    AgglomerativeClusterAlgorithm sharedMembers = new AgglomerativeClusterAlgorithm(membershipMapping,
+        new SquaredEuclideanDistance(), .25F, null, CandidateStrategy.SHARED_MEMBERS);
+
+    Set<Cluster> clusters = vantagePointTree.cluster();
+    assertThat(clusters.size(), greaterThan(1));
+    assertEquals(sharedMembers.cluster(), clusters);
+  }
+
+  @Test
+  public void testCluster_ComparesCandidateStrategies() {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    // A is within the threshold of C but shares no member with it, B and C share a member but are too far apart.
+    membershipMapping.addMemberToGroup("m1", "test-group-a", 1F);
+    membershipMapping.addMemberToGroup("m1", "test-group-b", 1F);
+    membershipMapping.addMemberToGroup("m2", "test-group-b", 1F);
+    membershipMapping.addMemberToGroup("m2", "test-group-c", .1F);
+    // Far groups with more members, so the grid is not picked automatically.
+    for (int i = 3; i < 8; i++) {
+      membershipMapping.addMemberToGroup("m" + i, "test-group-far-" + i, 10F * i);
+    }
+
+    Map<CandidateStrategy, Integer> clusterCounts = new EnumMap<>(CandidateStrategy.class);
+    for (CandidateStrategy strategy : CandidateStrategy.values()) {
+      if (strategy != CandidateStrategy.GRID) {
+        clusterCounts.put(strategy, new AgglomerativeClusterAlgorithm(membershipMapping,
+            new SquaredEuclideanDistance(), 1.5F, null, strategy).cluster().size());
+      }
+    }
+
+    assertEquals(CandidateStrategy.SHARED_MEMBERS, new AgglomerativeClusterAlgorithm(membershipMapping, 1.5F)
+        .resolveCandidateStrategy());
+    assertEquals(6, clusterCounts.get(CandidateStrategy.AUTOMATIC));
+    assertEquals(6, clusterCounts.get(CandidateStrategy.SHARED_MEMBERS));
+    assertEquals(6, clusterCounts.get(CandidateStrategy.VANTAGE_POINT_TREE));
+    assertEquals(6, clusterCounts.get(CandidateStrategy.TILED_ALL_PAIRS));
+    // Only pairs that share a member are edges, so C is left on its own.
+    assertEquals(7, clusterCounts.get(CandidateStrategy.SPARSE_PRODUCT));
+  }
+
+  @Test
+  public void testCluster_SparseProductRefinesExactClusters() {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    Random random = new Random(29);
+    for (int i = 0; i < 400; i++) {
+      for (int m = 0; m < 1 + random.nextInt(3); m++) {
+        membershipMapping.addMemberToGroup("test-member-" + random.nextInt(40), "test-group-" + i,
+            random.nextFloat());
+      }
+    }
+    SquaredEuclideanDistance metric = new SquaredEuclideanDistance();
+    Set<Cluster> sparseProduct = new AgglomerativeClusterAlgorithm(membershipMapping, metric, .3F, null,
+        CandidateStrategy.SPARSE_PRODUCT).cluster();
+    Set<Cluster> sharedMembers = new AgglomerativeClusterAlgorithm(membershipMapping, metric, .3F, null,
+        CandidateStrategy.SHARED_MEMBERS).cluster();
+    Set<Cluster> allPairs = new AgglomerativeClusterAlgorithm(membershipMapping, metric, .3F, null,
+        CandidateStrategy.TILED_ALL_PAIRS).cluster();
+
+    assertEquals(allPairs, new AgglomerativeClusterAlgorithm(membershipMapping, metric, .3F, null,
+        CandidateStrategy.VANTAGE_POINT_TREE).cluster());
+    // Each strategy only adds edges to the one before, so every cluster lies within a cluster of the next.
+    assertRefines(sparseProduct, sharedMembers);
+    assertRefines(sharedMembers, allPairs);
+    assertThat(sparseProduct.size(), greaterThan(allPairs.size()));
+  }
+
+  private static void assertRefines(Set<Cluster> finer, Set<Cluster> coarser) {
+    for (Cluster cluster : finer) {
+      assertTrue(coarser.stream().anyMatch(other -> other.getGroups().containsAll(cluster.getGroups())),
+          cluster.toString());
+    }
+  }
+
+  @Test
+  public void testCluster_StreamsEachClusterOnce() {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    Random random = new Random(13);
+    for (int i = 0; i < 300; i++) {
+      membershipMapping.addMemberToGroup("x", "test-group-" + i, random.nextFloat());
+      membershipMapping.addMemberToGroup("y", "test-group-" + i, random.nextFloat());
+    }
+
+    for (CandidateStrategy strategy : Arrays.asList(CandidateStrategy.SHARED_MEMBERS, CandidateStrategy.GRID,
+        CandidateStrategy.VANTAGE_POINT_TREE))
+    {
+      AgglomerativeClusterAlgorithm algorithm = new AgglomerativeClusterAlgorithm(membershipMapping,
+          new SquaredEuclideanDistance(), .003F, null, strategy);
+      List<Cluster> streamed = new ArrayList<>();
+      algorithm.cluster(streamed::add);
+
+      Set<Cluster> clusters = algorithm.cluster();
+      assertThat(clusters.size(), greaterThan(1));
+      assertEquals(clusters.size(), streamed.size());
+      assertEquals(clusters, new HashSet<>(streamed));
+    }
+  }
 }
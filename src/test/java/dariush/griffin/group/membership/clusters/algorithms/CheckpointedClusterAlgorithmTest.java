@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.algorithms;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.Cluster;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CheckpointedClusterAlgorithmTest
+{
+  @TempDir
+  Path directory;
+
+  @Test
+  public void testCluster_MatchesAgglomerative() {
+    MembershipMapping membershipMapping = TestMappings.sparseMapping(new Random(3), 500, 50);
+    Path checkpointFile = directory.resolve("run.checkpoint");
+
+    CheckpointedClusterAlgorithm algorithm = new CheckpointedClusterAlgorithm(membershipMapping,
+        new SquaredEuclideanDistance(), 0.3F, checkpointFile, 1, TimeUnit.MINUTES);
+
+    Set<Cluster> sparseProduct = sparseProductClusters(membershipMapping, 0.3F);
+    // Shared member candidates reach groups through merged clusters, so they must cluster this mapping differently.
+    assertNotEquals(new AgglomerativeClusterAlgorithm(membershipMapping, new SquaredEuclideanDistance(), 0.3F, null,
+        CandidateStrategy.SHARED_MEMBERS).cluster(), sparseProduct);
+    assertEquals(sparseProduct, algorithm.cluster());
+    assertEquals(500, algorithm.getNextRow());
+    assertTrue(Files.exists(checkpointFile));
+    assertFalse(Files.exists(directory.resolve("run.checkpoint.tmp")));
+  }
+
+  @Test
+  public void testResume_ContinuesFromCheckpoint() throws IOException {
+    Random random = new Random(5);
+    MembershipMapping membershipMapping = TestMappings.sparseMapping(random, 3000, 300);
+    Path checkpointFile = directory.resolve("run.checkpoint");
+
+    CheckpointedClusterAlgorithm interrupted = new CheckpointedClusterAlgorithm(membershipMapping,
+        new SquaredEuclideanDistance(), 0.1F, checkpointFile, 0, TimeUnit.SECONDS);
+    interrupted.run(1500);
+    assertEquals(1500, interrupted.getNextRow());
+
+    // The same content built in another order, as after a restart, has the same fingerprint.
+    MembershipMapping rebuilt = new MembershipMapping();
+    for (int i = 2999; i >= 0; i--) {
+      String groupName = "test-group-" + i;
+      membershipMapping.getGroup(groupName).getMembers().forEach(
+          (member, weight) -> rebuilt.addMemberToGroup(member.getName(), groupName, weight));
+    }
+    CheckpointedClusterAlgorithm resumed = CheckpointedClusterAlgorithm.resume(rebuilt,
+        new SquaredEuclideanDistance(), checkpointFile, 0, TimeUnit.SECONDS);
+    assertEquals(1500, resumed.getResumedRow());
+
+    assertEquals(sparseProductClusters(rebuilt, 0.1F), resumed.cluster());
+    assertEquals(3000, resumed.getNextRow());
+  }
+
+  @Test
+  public void testResume_RejectsDifferentMapping() {
+    MembershipMapping membershipMapping = TestMappings.randomMapping(new Random(7), 100, 40);
+    Path checkpointFile = directory.resolve("run.checkpoint");
+    new CheckpointedClusterAlgorithm(membershipMapping, new SquaredEuclideanDistance(), 0.1F, checkpointFile, 0,
+        TimeUnit.SECONDS).run(50);
+
+    membershipMapping.addMemberToGroup("test-member-0", "test-group-0", 0.5F);
+    assertThrows(IllegalArgumentException.class, () -> CheckpointedClusterAlgorithm.resume(membershipMapping,
+        new SquaredEuclideanDistance(), checkpointFile, 0, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testResume_RejectsCorruptCheckpoint() throws IOException {
+    MembershipMapping membershipMapping = TestMappings.randomMapping(new Random(11), 100, 40);
+    Path checkpointFile = directory.resolve("run.checkpoint");
+    new CheckpointedClusterAlgorithm(membershipMapping, new SquaredEuclideanDistance(), 0.1F, checkpointFile, 0,
+        TimeUnit.SECONDS).run(50);
+
+    byte[] bytes = Files.readAllBytes(checkpointFile);
+    bytes[bytes.length - 12] ^= 1;
+    Files.write(checkpointFile, bytes);
+    assertThrows(IOException.class, () -> CheckpointedClusterAlgorithm.resume(membershipMapping,
+        new SquaredEuclideanDistance(), checkpointFile, 0, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testRun_FailedWriteRemovesTemporaryFile() throws IOException {
+    MembershipMapping membershipMapping = TestMappings.randomMapping(new Random(13), 100, 40);
+    // A non-empty directory where the checkpoint belongs, so the rename fails after the temporary file is written.
+    Path checkpointFile = Files.createDirectory(directory.resolve("run.checkpoint"));
+    Files.createFile(checkpointFile.resolve("occupied"));
+
+    CheckpointedClusterAlgorithm algorithm = new CheckpointedClusterAlgorithm(membershipMapping,
+        new SquaredEuclideanDistance(), 0.1F, checkpointFile, 0, TimeUnit.SECONDS);
+
+    assertThrows(UncheckedIOException.class, () -> algorithm.run(50));
+    assertFalse(Files.exists(directory.resolve("run.checkpoint.tmp")));
+  }
+
+  private static Set<Cluster> sparseProductClusters(MembershipMapping membershipMapping, float minDistance) {
+    return new AgglomerativeClusterAlgorithm(membershipMapping, new SquaredEuclideanDistance(), minDistance, null,
+        CandidateStrategy.SPARSE_PRODUCT).cluster();
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.algorithms;
+
+import java.util.Random;
+
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ClusterCountSearchTest
+{
+  @Test
+  public void testSearchThreshold_MatchesAgglomerative() {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    Random random = new Random(17);
+    for (int i = 0; i < 300; i++) {
+      membershipMapping.addMemberToGroup("x", "test-group-" + i, random.nextFloat());
+      membershipMapping.addMemberToGroup("y", "test-group-" + i, random.nextFloat());
+    }
+
+    for (CandidateStrategy strategy : new CandidateStrategy[]{CandidateStrategy.AUTOMATIC,
+        CandidateStrategy.SPARSE_PRODUCT, CandidateStrategy.VANTAGE_POINT_TREE})
+    {
+      ClusterCountSearch search = new ClusterCountSearch(membershipMapping, new SquaredEuclideanDistance(), strategy,
+          0.0001F, 1F);
+      for (int target : new int[]{100, 20, 150, 5}) {
+        float threshold = search.searchThreshold(target);
+
+        int clusterCount = clusterCount(membershipMapping, threshold, search.getCandidateStrategy());
+        int belowCount = clusterCount(membershipMapping, Math.nextDown(threshold), search.getCandidateStrategy());
+        assertThat(clusterCount, lessThanOrEqualTo(target));
+        assertThat(belowCount, greaterThan(target));
+        assertEquals(clusterCount, search.clusterCount(threshold));
+      }
+    }
+  }
+
+  @Test
+  public void testSearchThreshold_ReusesRecordedEdges() {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    Random random = new Random(19);
+    for (int i = 0; i < 200; i++) {
+      membershipMapping.addMemberToGroup("x", "test-group-" + i, random.nextFloat());
+      membershipMapping.addMemberToGroup("y", "test-group-" + i, random.nextFloat());
+    }
+    ClusterCountSearch search = new ClusterCountSearch(membershipMapping, 0.0001F, 1F);
+
+    search.searchThreshold(10);
+    int collections = search.getCollectionCount();
+    int edges = search.getEdgeCount();
+    // A larger target is reached by a prefix of the edges already recorded.
+    search.searchThreshold(50);
+    assertEquals(collections, search.getCollectionCount());
+    assertEquals(edges, search.getEdgeCount());
+    // Each search bisects the edges, so probes grow with the log of the edge count.
+    assertThat(search.getProbeCount(), lessThanOrEqualTo(2 * (32 - Integer.numberOfLeadingZeros(edges))));
+  }
+
+  @Test
+  public void testSearchThreshold_ResolvesStrategyOnce() {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    Random random = new Random(23);
+    for (int i = 0; i < 200; i++) {
+      membershipMapping.addMemberToGroup("x", "test-group-" + i, random.nextFloat());
+      membershipMapping.addMemberToGroup("y", "test-group-" + i, random.nextFloat());
+    }
+    ClusterCountSearch gridSearch = new ClusterCountSearch(membershipMapping, 0.0001F, 1F);
+    assertEquals(CandidateStrategy.GRID, gridSearch.getCandidateStrategy());
+
+    // A grid of cells as narrow as the initial threshold allows would not fit, even though one for the maximum would.
+    membershipMapping.addMemberToGroup("x", "test-group-far", 1E6F);
+    ClusterCountSearch search = new ClusterCountSearch(membershipMapping, 1E-8F, 1F);
+    assertEquals(CandidateStrategy.SPARSE_PRODUCT, search.getCandidateStrategy());
+    float threshold = search.searchThreshold(20);
+    assertThat(search.getCollectionCount(), greaterThan(1));
+    assertThat(clusterCount(membershipMapping, threshold, CandidateStrategy.SPARSE_PRODUCT), lessThanOrEqualTo(20));
+  }
+
+  @Test
+  public void testSearchThreshold_UnreachableTarget() {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    for (int i = 0; i < 10; i++) {
+      membershipMapping.addMemberToGroup("test-member-" + i, "test-group-" + i, 1F);
+    }
+    ClusterCountSearch search = new ClusterCountSearch(membershipMapping, new SquaredEuclideanDistance(),
+        CandidateStrategy.SPARSE_PRODUCT, 0.1F, 1.5F);
+
+    // Groups without shared members are never candidates.
+    assertEquals(1.5F, search.searchThreshold(1), 0F);
+    assertEquals(Float.MIN_VALUE, search.searchThreshold(10), 0F);
+    assertThrows(IllegalArgumentException.class, () -> search.searchThreshold(0));
+    assertThrows(IllegalArgumentException.class, () -> search.clusterCount(2F));
+  }
+
+  @Test
+  public void testSearchThreshold_GroupsSharingNoMember() {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    // A and C are 1.01 apart but share no member, B and C share a member but are 1.81 apart.
+    membershipMapping.addMemberToGroup("m1", "test-group-a", 1F);
+    membershipMapping.addMemberToGroup("m1", "test-group-b", 1F);
+    membershipMapping.addMemberToGroup("m2", "test-group-b", 1F);
+    membershipMapping.addMemberToGroup("m2", "test-group-c", .1F);
+    // Far groups with more members, so the grid is not picked automatically.
+    for (int i = 3; i < 8; i++) {
+      membershipMapping.addMemberToGroup("m" + i, "test-group-far-" + i, 100F);
+    }
+    SquaredEuclideanDistance metric = new SquaredEuclideanDistance();
+
+    // Shared member candidates reach C through B's cluster, which no fixed set of edges can reproduce.
+    assertThrows(IllegalArgumentException.class, () -> new ClusterCountSearch(membershipMapping, metric,
+        CandidateStrategy.SHARED_MEMBERS, 0.5F, 4F));
+    ClusterCountSearch search = new ClusterCountSearch(membershipMapping, metric, CandidateStrategy.AUTOMATIC, 0.5F,
+        4F);
+    assertEquals(CandidateStrategy.SPARSE_PRODUCT, search.getCandidateStrategy());
+    float threshold = search.searchThreshold(6);
+    assertEquals(Math.nextUp(1.81F), threshold, 1E-6F);
+    assertEquals(6, clusterCount(membershipMapping, threshold, CandidateStrategy.SPARSE_PRODUCT));
+    assertEquals(7, clusterCount(membershipMapping, Math.nextDown(threshold), CandidateStrategy.SPARSE_PRODUCT));
+
+    // Every pair within the threshold is an edge for the vantage point tree, so A and C join at 1.01.
+    ClusterCountSearch allPairs = new ClusterCountSearch(membershipMapping, metric,
+        CandidateStrategy.VANTAGE_POINT_TREE, 0.5F, 4F);
+    threshold = allPairs.searchThreshold(6);
+    assertEquals(Math.nextUp(1.01F), threshold, 1E-6F);
+    assertEquals(6, clusterCount(membershipMapping, threshold, CandidateStrategy.VANTAGE_POINT_TREE));
+  }
+
+  private static int clusterCount(MembershipMapping membershipMapping, float threshold, CandidateStrategy strategy) {
+    return new AgglomerativeClusterAlgorithm(membershipMapping, new SquaredEuclideanDistance(), threshold, null,
+        strategy).cluster().size();
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.algorithms;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import dariush.griffin.group.membership.clusters.metrics.CosineDistance;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.Cluster;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OutOfCoreClusterAlgorithmTest
+{
+  @TempDir
+  Path directory;
+
+  @Test
+  public void testCluster_MatchesInMemory() throws IOException {
+    MembershipMapping membershipMapping = TestMappings.randomMapping(new Random(13), 3000, 10);
+
+    // A minimal budget, a worker's buffer beside the groups by id, and tiny segments force many runs and many segments
+    // per file.
+    OutOfCoreClusterAlgorithm outOfCore = new OutOfCoreClusterAlgorithm(membershipMapping.getGroups(),
+        new SquaredEuclideanDistance(), 0.3F, directory, OutOfCoreClusterAlgorithm.MIN_BUFFER_BYTES + 32 * 1024, 4096);
+
+    assertEquals(new AgglomerativeClusterAlgorithm(membershipMapping, new SquaredEuclideanDistance(), 0.3F, null,
+        CandidateStrategy.SPARSE_PRODUCT).cluster(), outOfCore.cluster());
+    assertThat(outOfCore.getRunCount(), greaterThan(1));
+    assertThat(outOfCore.getSegmentCount(), greaterThan(10));
+    assertEquals(1, outOfCore.getWorkerCount());
+    try (Stream<Path> files = Files.list(directory)) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  public void testCluster_MatchesSparseProduct() {
+    MembershipMapping membershipMapping = TestMappings.sparseMapping(new Random(29), 400, 40);
+    SquaredEuclideanDistance metric = new SquaredEuclideanDistance();
+
+    OutOfCoreClusterAlgorithm outOfCore = new OutOfCoreClusterAlgorithm(membershipMapping, metric, 0.3F, directory,
+        1 << 20);
+
+    Set<Cluster> sparseProduct = new AgglomerativeClusterAlgorithm(membershipMapping, metric, 0.3F, null,
+        CandidateStrategy.SPARSE_PRODUCT).cluster();
+    // Shared member candidates reach groups through merged clusters, so they must cluster this mapping differently.
+    assertNotEquals(new AgglomerativeClusterAlgorithm(membershipMapping, metric, 0.3F, null,
+        CandidateStrategy.SHARED_MEMBERS).cluster(), sparseProduct);
+    assertEquals(sparseProduct, outOfCore.cluster());
+  }
+
+  @Test
+  public void testCluster_OtherMetric() {
+    MembershipMapping membershipMapping = TestMappings.sparseMapping(new Random(17), 400, 40);
+
+    OutOfCoreClusterAlgorithm outOfCore = new OutOfCoreClusterAlgorithm(membershipMapping, new CosineDistance(),
+        0.05F, directory, 1 << 20);
+
+    assertEquals(TestMappings.sharedMemberComponents(membershipMapping, new CosineDistance(), 0.05F),
+        outOfCore.cluster());
+  }
+
+  @Test
+  public void testConstructor_BudgetTooSmall() {
+    assertThrows(IllegalArgumentException.class, () -> new OutOfCoreClusterAlgorithm(new MembershipMapping(), 0.3F,
+        directory, 1024));
+  }
+
+  @Test
+  public void testCluster_BudgetTooSmallForGroups() {
+    MembershipMapping membershipMapping = TestMappings.randomMapping(new Random(19), 10000, 10);
+
+    // The budget counts the array of groups by id, which leaves too little for a worker.
+    OutOfCoreClusterAlgorithm outOfCore = new OutOfCoreClusterAlgorithm(membershipMapping, 0.3F, directory,
+        OutOfCoreClusterAlgorithm.MIN_BUFFER_BYTES);
+
+    assertThrows(IllegalStateException.class, outOfCore::cluster);
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.algorithms;
+
+import java.util.Random;
+
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static dariush.griffin.group.membership.clusters.utilities.PerfMeasurements.randomMapping;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+@Tag("perf")
+public class SampledClusterAlgorithmPerfTest
+{
+  /**
+   * Every member is shared by hundreds of groups, so the exact algorithm compares many pairs per group while the
+   * sampled one only compares each group with the sampled groups that share a member.
+   */
+  private static final int GROUP_COUNT = 40_000;
+
+  private static final int MEMBER_COUNT = 200;
+
+  private static final float THRESHOLD = .005F;
+
+  private static final int TIMING_RUNS = 3;
+
+  private static volatile int sink;
+
+  @Test
+  public void testCluster_FasterThanExact() {
+    MembershipMapping membershipMapping = randomMapping(new Random(GROUP_COUNT), GROUP_COUNT, MEMBER_COUNT);
+    SquaredEuclideanDistance metric = new SquaredEuclideanDistance();
+
+    long exact = fastest(() -> sink = new AgglomerativeClusterAlgorithm(membershipMapping, metric, THRESHOLD, null,
+        CandidateStrategy.AUTOMATIC).cluster().size());
+    long sampled = fastest(() -> sink = new SampledClusterAlgorithm(membershipMapping, metric, THRESHOLD, 0.05D, 1000,
+        1L).cluster().size());
+
+    assertThat(String.format("sampled %.2f ms, exact %.2f ms", sampled / 1e6, exact / 1e6), sampled, lessThan(exact));
+  }
+
+  /**
+   * @return The nanoseconds the fastest of several runs took, after one run to warm up.
+   */
+  private static long fastest(Runnable workload) {
+    workload.run();
+    long result = Long.MAX_VALUE;
+    for (int run = 0; run < TIMING_RUNS; run++) {
+      long start = System.nanoTime();
+      workload.run();
+      result = Math.min(result, System.nanoTime() - start);
+    }
+    return result;
+  }
+}
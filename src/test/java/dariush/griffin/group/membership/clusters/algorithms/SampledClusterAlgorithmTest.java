@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.algorithms;
+
+import java.util.Random;
+import java.util.Set;
+
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.Cluster;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SampledClusterAlgorithmTest
+{
+  @Test
+  public void testCluster_FullSampleIsExact() {
+    MembershipMapping membershipMapping = createBlobs(4, 30, new Random(7));
+
+    SampledClusterAlgorithm algorithm = new SampledClusterAlgorithm(membershipMapping, 0.5F, 1D);
+    Set<Cluster> clusters = algorithm.cluster();
+
+    assertEquals(new AgglomerativeClusterAlgorithm(membershipMapping, 0.5F).cluster(), clusters);
+    assertEquals(120, algorithm.getSampleSize());
+    assertEquals(0, algorithm.getOutlierCount());
+    assertTrue(Double.isNaN(algorithm.getEstimatedRandIndex()));
+  }
+
+  @Test
+  public void testCluster_SeparatedBlobsMatchExact() {
+    MembershipMapping membershipMapping = createBlobs(5, 60, new Random(11));
+
+    SampledClusterAlgorithm algorithm = new SampledClusterAlgorithm(membershipMapping, new SquaredEuclideanDistance(),
+        0.5F, 0.25D, 100, 3L);
+    Set<Cluster> clusters = algorithm.cluster();
+
+    assertEquals(new AgglomerativeClusterAlgorithm(membershipMapping, 0.5F).cluster(), clusters);
+    assertTrue(algorithm.getSampleSize() < 300 / 2);
+    assertEquals(1D, algorithm.getEstimatedRandIndex(), 1e-9D);
+  }
+
+  @Test
+  public void testCluster_DistantGroupsAreOutliers() {
+    MembershipMapping membershipMapping = createBlobs(1, 40, new Random(5));
+    for (int i = 0; i < 40; i++) {
+      membershipMapping.addMemberToGroup("far-member-" + i, "far-group-" + i, 10F);
+    }
+
+    SampledClusterAlgorithm algorithm = new SampledClusterAlgorithm(membershipMapping, new SquaredEuclideanDistance(),
+        0.5F, 0.1D, 0, 3L);
+    Set<Cluster> clusters = algorithm.cluster();
+
+    // The far groups are alone in their own stratum, so 4 are sampled and the other 36 find no representative.
+    assertEquals(36, algorithm.getOutlierCount());
+    assertEquals(41, clusters.size());
+    assertTrue(Double.isNaN(algorithm.getEstimatedRandIndex()));
+  }
+
+  @Test
+  public void testConstructor_InvalidArguments() {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    assertThrows(IllegalArgumentException.class, () -> new SampledClusterAlgorithm(membershipMapping, 0.5F, 0D));
+    assertThrows(IllegalArgumentException.class, () -> new SampledClusterAlgorithm(membershipMapping, 0.5F, 1.5D));
+  }
+
+  /**
+   * <p>Blobs of groups sharing three members, with small weights around a different centre for each blob.</p>
+   */
+  private static MembershipMapping createBlobs(int blobCount, int groupsPerBlob, Random random) {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    for (int blob = 0; blob < blobCount; blob++) {
+      for (int group = 0; group < groupsPerBlob; group++) {
+        for (int member = 0; member < 3; member++) {
+          membershipMapping.addMemberToGroup("member-" + blob + "-" + member, "group-" + blob + "-" + group,
+              1F + random.nextFloat() * 0.2F);
+        }
+      }
+    }
+    return membershipMapping;
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.algorithms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import dariush.griffin.group.membership.clusters.metrics.DistanceMetric;
+import dariush.griffin.group.membership.clusters.model.Cluster;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import dariush.griffin.group.membership.clusters.utilities.UnionFind;
+
+/**
+ * <p>Mappings and expected clusters shared by the tests of the algorithms that join pairs sharing a member.</p>
+ *
+ * @author Dariush Griffin
+ */
+final class TestMappings
+{
+  private TestMappings() {
+  }
+
+  /**
+   * <p>Creates a mapping where every group draws three memberships, weighted from 1 to 2, from the members.</p>
+   *
+   * @param random      The source of memberships.
+   * @param groupCount  The number of groups, named {@code test-group-<i>}.
+   * @param memberCount The number of distinct members, named {@code test-member-<i>}.
+   * @return The mapping.
+   */
+  static MembershipMapping randomMapping(Random random, int groupCount, int memberCount) {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    for (int i = 0; i < groupCount; i++) {
+      for (int m = 0; m < 3; m++) {
+        membershipMapping.addMemberToGroup("test-member-" + random.nextInt(memberCount), "test-group-" + i,
+            1F + random.nextFloat());
+      }
+    }
+    return membershipMapping;
+  }
+
+  /**
+   * <p>Creates a mapping of small groups with weights below 1, over enough members that many groups close to each
+   * other share no member. Clustering it with {@link CandidateStrategy#SHARED_MEMBERS}, which reaches groups through a
+   * merged cluster's other members, gives coarser clusters than joining only the pairs that share a member.</p>
+   *
+   * @param random      The source of memberships.
+   * @param groupCount  The number of groups, named {@code test-group-<i>}.
+   * @param memberCount The number of distinct members, named {@code test-member-<i>}.
+   * @return The mapping.
+   */
+  static MembershipMapping sparseMapping(Random random, int groupCount, int memberCount) {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    for (int i = 0; i < groupCount; i++) {
+      int size = 1 + random.nextInt(3);
+      for (int m = 0; m < size; m++) {
+        membershipMapping.addMemberToGroup("test-member-" + random.nextInt(memberCount), "test-group-" + i,
+            random.nextFloat());
+      }
+    }
+    return membershipMapping;
+  }
+
+  /**
+   * <p>Finds the connected components of the pairs of groups that share a member and are within the minimum
+   * distance by comparing every pair, the expected clusters for metrics the sparse product does not compute.</p>
+   *
+   * @param membershipMapping The mapping to cluster.
+   * @param distanceMetric    The metric used to measure the distance between groups.
+   * @param minDistance       Groups closer than this distance are joined.
+   * @return The clusters.
+   */
+  static Set<Cluster> sharedMemberComponents(
+      MembershipMapping membershipMapping,
+      DistanceMetric distanceMetric,
+      float minDistance)
+  {
+    List<Group> groups = new ArrayList<>(membershipMapping.getGroups());
+    UnionFind components = new UnionFind(groups.size());
+    for (int first = 0; first < groups.size(); first++) {
+      for (int second = first + 1; second < groups.size(); second++) {
+        Group firstGroup = groups.get(first);
+        Group secondGroup = groups.get(second);
+        if (!Collections.disjoint(firstGroup.getMembers().keySet(), secondGroup.getMembers().keySet()) &&
+            distanceMetric.distance(firstGroup, secondGroup) < minDistance)
+        {
+          components.union(first, second);
+        }
+      }
+    }
+    Map<Integer, Cluster> clusters = new HashMap<>();
+    for (int id = 0; id < groups.size(); id++) {
+      clusters.computeIfAbsent(components.find(id), root -> new Cluster()).addGroup(groups.get(id));
+    }
+    return new HashSet<>(clusters.values());
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.batch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.algorithms.ClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.model.Cluster;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BatchClusterExecutorTest
+{
+  @Test
+  public void testSubmit_ClustersEachJob() throws Exception {
+    List<MembershipMapping> mappings = new ArrayList<>();
+    List<CompletableFuture<JobResult>> futures = new ArrayList<>();
+    try (BatchClusterExecutor executor = new BatchClusterExecutor(1 << 20, 4)) {
+      for (int i = 0; i < 20; i++) {
+        MembershipMapping membershipMapping = new MembershipMapping();
+        for (int g = 0; g < 10; g++) {
+          membershipMapping.addMemberToGroup("test-member-" + (g % 3), "test-group-" + g, g * 0.1F);
+        }
+        mappings.add(membershipMapping);
+        futures.add(executor.submit(ClusterJob.of("test-tenant-" + (i % 3), "test-job-" + i, membershipMapping,
+            0.05F)));
+      }
+    }
+
+    for (int i = 0; i < 20; i++) {
+      JobResult result = futures.get(i).get();
+      assertEquals("test-job-" + i, result.getJob().getName());
+      assertEquals(new AgglomerativeClusterAlgorithm(mappings.get(i), 0.05F).cluster(), result.getClusters());
+      assertEquals(ClusterJob.estimateBytes(mappings.get(i)), result.getReservedBytes());
+    }
+  }
+
+  @Test
+  public void testSubmit_TakesTenantsInTurn() throws Exception {
+    List<String> started = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch release = new CountDownLatch(1);
+    try (BatchClusterExecutor executor = new BatchClusterExecutor(1 << 20, 1)) {
+      executor.submit(new ClusterJob("a", "a0", 1, () -> {
+        started.add("a0");
+        return blockingAlgorithm(release);
+      }));
+      for (String name : new String[]{"a1", "a2", "a3", "b0", "c0", "b1"}) {
+        executor.submit(new ClusterJob(name.substring(0, 1), name, 1, () -> {
+          started.add(name);
+          return Collections::emptySet;
+        }));
+      }
+      release.countDown();
+    }
+
+    assertEquals(Arrays.asList("a0", "b0", "c0", "a1", "b1", "a2", "a3"), started);
+  }
+
+  @Test
+  public void testSubmit_StaysWithinBudget() throws Exception {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger peakRunning = new AtomicInteger();
+    BatchClusterExecutor executor = new BatchClusterExecutor(100, 8);
+    try {
+      for (int i = 0; i < 12; i++) {
+        executor.submit(new ClusterJob("test-tenant-" + (i % 4), "test-job-" + i, 40, () -> () -> {
+          peakRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          try {
+            Thread.sleep(20);
+          }
+          catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          running.decrementAndGet();
+          return Collections.<Cluster>emptySet();
+        }));
+      }
+    }
+    finally {
+      executor.close();
+    }
+
+    assertEquals(2, peakRunning.get());
+    assertEquals(80, executor.getPeakReservedBytes());
+    assertEquals(12, executor.getCompletedCount());
+    assertEquals(0, executor.getReservedBytes());
+  }
+
+  @Test
+  public void testSubmit_OversizedJobRunsAlone() throws Exception {
+    try (BatchClusterExecutor executor = new BatchClusterExecutor(100, 4)) {
+      JobResult result = executor.submit(new ClusterJob("test-tenant", "test-job", 1000,
+          () -> Collections::emptySet)).get();
+      assertEquals(100, result.getReservedBytes());
+      assertThat(executor.getPeakReservedBytes(), lessThanOrEqualTo(100L));
+    }
+  }
+
+  @Test
+  public void testSubmit_FailedJobReleasesReservation() throws Exception {
+    BatchClusterExecutor executor = new BatchClusterExecutor(100, 1);
+    CompletableFuture<JobResult> failed = executor.submit(new ClusterJob("test-tenant", "test-job", 100, () -> {
+      throw new IllegalStateException("test");
+    }));
+    CompletableFuture<JobResult> next = executor.submit(new ClusterJob("test-tenant", "test-job", 100,
+        () -> Collections::emptySet));
+
+    ExecutionException exception = assertThrows(ExecutionException.class, failed::get);
+    assertThat(exception.getCause(), instanceOf(IllegalStateException.class));
+    assertEquals(0, next.get().getClusters().size());
+    executor.close();
+    assertEquals(2, executor.getCompletedCount());
+    assertThrows(IllegalStateException.class, () -> executor.submit(new ClusterJob("test-tenant", "test-job", 1,
+        () -> Collections::emptySet)));
+  }
+
+  @Test
+  public void testConstructor_DefaultConcurrency() throws Exception {
+    try (BatchClusterExecutor executor = new BatchClusterExecutor(100)) {
+      // Virtual threads are only limited by the memory budget, pooled threads by the processors.
+      int expected = "virtual".equals(executor.getThreadKind()) ? Integer.MAX_VALUE
+          : Runtime.getRuntime().availableProcessors();
+      assertEquals(expected, executor.getMaxConcurrency());
+    }
+  }
+
+  private static ClusterAlgorithm blockingAlgorithm(CountDownLatch release) {
+    return () -> {
+      try {
+        release.await();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return Collections.emptySet();
+    };
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.cli;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.model.Cluster;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ClusterPipelineTest
+{
+  @TempDir
+  Path directory;
+
+  @Test
+  public void testRun_MatchesAgglomerative() throws Exception {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    Random random = new Random(23);
+    List<String> firstLines = new ArrayList<>();
+    List<String> secondLines = new ArrayList<>(Arrays.asList("# comment", ""));
+    for (int i = 0; i < 3000; i++) {
+      int firstMember = random.nextInt(30);
+      for (int m = 0; m < 3; m++) {
+        // Distinct members, so the in-memory mapping needs no rule for repeated edges.
+        String member = "test-member-" + (firstMember + 7 * m) % 30;
+        float weight = 1F + random.nextInt(10) / 10F;
+        membershipMapping.addMemberToGroup(member, "test-group-" + i, weight);
+        (random.nextBoolean() ? firstLines : secondLines).add(member + "\ttest-group-" + i + "\t" + weight);
+      }
+    }
+    Path first = Files.write(directory.resolve("first.tsv"), firstLines);
+    Path second = Files.write(directory.resolve("second.tsv"), secondLines);
+
+    StringWriter output = new StringWriter();
+    List<StageTiming> timings = new ClusterPipeline(Arrays.asList(first, second), '\t',
+        mapping -> new AgglomerativeClusterAlgorithm(mapping, 0.5F)).run(output);
+
+    Map<String, Set<String>> clusterIdToGroupNames = new HashMap<>();
+    for (String line : output.toString().split("\n")) {
+      String[] fields = line.split("\t");
+      clusterIdToGroupNames.computeIfAbsent(fields[1], clusterId -> new HashSet<>()).add(fields[0]);
+    }
+    Set<Set<String>> expected = new HashSet<>();
+    for (Cluster cluster : new AgglomerativeClusterAlgorithm(membershipMapping, 0.5F).cluster()) {
+      Set<String> groupNames = new HashSet<>();
+      for (Group group : cluster.getGroups()) {
+        groupNames.add(group.getName());
+      }
+      expected.add(groupNames);
+    }
+    assertEquals(expected, new HashSet<>(clusterIdToGroupNames.values()));
+
+    assertEquals(Arrays.asList("parse", "index", "cluster", "write", "total"),
+        Arrays.asList(timings.stream().map(StageTiming::getName).toArray()));
+    assertEquals(9000, timings.get(0).getItemCount());
+    assertEquals(3000, timings.get(3).getItemCount());
+  }
+
+  @Test
+  public void testRun_DefaultWeight() throws Exception {
+    Path edges = Files.write(directory.resolve("edges.csv"), Arrays.asList("a,g1", "a,g2,1", "b,g3"));
+
+    StringWriter output = new StringWriter();
+    new ClusterPipeline(Arrays.asList(edges), ',', mapping -> new AgglomerativeClusterAlgorithm(mapping, 0.1F))
+        .run(output);
+
+    Map<String, String> groupToClusterId = new HashMap<>();
+    for (String line : output.toString().split("\n")) {
+      String[] fields = line.split(",");
+      groupToClusterId.put(fields[0], fields[1]);
+    }
+    assertEquals(groupToClusterId.get("g1"), groupToClusterId.get("g2"));
+    assertEquals(3, groupToClusterId.size());
+    assertEquals(2, new HashSet<>(groupToClusterId.values()).size());
+  }
+
+  @Test
+  public void testRun_DuplicateEdgesLastLineWins() throws Exception {
+    // g2's edge is repeated within the first input, g3's across both, and every other group pads the batches.
+    List<String> firstLines = new ArrayList<>(Arrays.asList("a,g1,1", "a,g2,9", "a,g3,1"));
+    List<String> secondLines = new ArrayList<>();
+    for (int i = 0; i < 3 * ClusterPipeline.BATCH_SIZE; i++) {
+      firstLines.add("b,test-group-" + i + ",1");
+      secondLines.add("c,test-group-" + i + ",1");
+    }
+    firstLines.add("a,g2,1");
+    secondLines.add("a,g3,9");
+    Path first = Files.write(directory.resolve("first.csv"), firstLines);
+    Path second = Files.write(directory.resolve("second.csv"), secondLines);
+
+    for (int run = 0; run < 5; run++) {
+      StringWriter output = new StringWriter();
+      new ClusterPipeline(Arrays.asList(first, second), ',',
+          mapping -> new AgglomerativeClusterAlgorithm(mapping, 0.5F), 4).run(output);
+
+      Map<String, String> groupToClusterId = new HashMap<>();
+      for (String line : output.toString().split("\n")) {
+        String[] fields = line.split(",");
+        groupToClusterId.put(fields[0], fields[1]);
+      }
+      // g2 keeps the weight of its last line, g3 the weight from the later input.
+      assertEquals(groupToClusterId.get("g1"), groupToClusterId.get("g2"));
+      assertNotEquals(groupToClusterId.get("g1"), groupToClusterId.get("g3"));
+    }
+  }
+
+  @Test
+  public void testRun_MalformedLine() throws IOException {
+    Path edges = Files.write(directory.resolve("edges.tsv"), Arrays.asList("a\tg1\t1", "a\tg2\tnot-a-weight"));
+
+    assertThrows(IllegalArgumentException.class, () -> new ClusterPipeline(Arrays.asList(edges), '\t',
+        mapping -> new AgglomerativeClusterAlgorithm(mapping, 0.1F)).run(new StringWriter()));
+  }
+}
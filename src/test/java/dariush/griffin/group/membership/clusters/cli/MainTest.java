@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MainTest
+{
+  @TempDir
+  Path directory;
+
+  @Test
+  public void testRun_WritesAssignments() throws Exception {
+    Path edges = Files.write(directory.resolve("edges.tsv"), Arrays.asList("a\tg1\t1", "a\tg2\t1", "b\tg3\t1"));
+    Path output = directory.resolve("clusters.tsv");
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    for (String engine : new String[]{"agglomerative", "sampled", "out-of-core", "checkpointed"}) {
+      int status = Main.run(new String[]{"--threshold", "0.5", "--engine", engine, "--work-directory",
+          directory.toString(), "--checkpoint", directory.resolve("checkpoint").toString(), "--output",
+          output.toString(), edges.toString()}, new PrintStream(new ByteArrayOutputStream()), new PrintStream(err));
+
+      assertEquals(0, status);
+      List<String> lines = Files.readAllLines(output);
+      assertEquals(3, lines.size());
+      assertThat(err.toString(), containsString("cluster"));
+    }
+  }
+
+  @Test
+  public void testRun_WritesToStandardOutput() throws Exception {
+    Path edges = Files.write(directory.resolve("edges.csv"), Arrays.asList("a,g1", "b,g2"));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    int status = Main.run(new String[]{"--threshold", "0.5", "--delimiter", ",", "--metric", "cosine",
+        edges.toString()}, new PrintStream(out), new PrintStream(new ByteArrayOutputStream()));
+
+    assertEquals(0, status);
+    assertEquals(2, out.toString().split("\n").length);
+  }
+
+  @Test
+  public void testRun_InvalidArguments() {
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(new ByteArrayOutputStream());
+
+    assertEquals(2, Main.run(new String[]{"edges.tsv"}, out, new PrintStream(err)));
+    assertThat(err.toString(), containsString("Missing --threshold."));
+    assertEquals(2, Main.run(new String[]{"--threshold", "0.5"}, out, new PrintStream(err)));
+    assertEquals(2, Main.run(new String[]{"--threshold", "0.5", "--engine", "magic", "edges.tsv"}, out,
+        new PrintStream(err)));
+    assertEquals(2, Main.run(new String[]{"--threshold", "x", "edges.tsv"}, out, new PrintStream(err)));
+  }
+
+  @Test
+  public void testRun_MissingFile() {
+    assertEquals(1, Main.run(new String[]{"--threshold", "0.5", directory.resolve("missing.tsv").toString()},
+        new PrintStream(new ByteArrayOutputStream()), new PrintStream(new ByteArrayOutputStream())));
+  }
+}
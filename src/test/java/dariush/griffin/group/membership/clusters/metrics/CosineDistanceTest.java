@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.metrics;
+
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CosineDistanceTest
+{
+  @Test
+  public void testDistanceAndBounds() {
+    DistanceMetric metric = new CosineDistance();
+    SparseVector first = new SparseVector(new int[]{0, 1}, new float[]{3F, 4F});
+    SparseVector scaled = new SparseVector(new int[]{0, 1}, new float[]{6F, 8F});
+    SparseVector disjoint = new SparseVector(new int[]{2}, new float[]{1F});
+
+    // Cosine distance ignores magnitude.
+    assertEquals(0F, metric.distance(first, scaled), .0001);
+    assertEquals(1F, metric.distance(first, disjoint));
+    assertEquals(1F, metric.distance(first, SparseVector.EMPTY));
+    assertEquals((float) Math.sqrt(2), metric.toMetric(1F), .0001);
+    assertTrue(metric.supports(PruningBound.DISJOINT_MAXIMUM));
+    assertFalse(metric.supports(PruningBound.COORDINATE));
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.metrics;
+
+import java.util.Random;
+
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+import org.junit.jupiter.api.Test;
+
+/**
+ * <p>Compares {@link DenseKernels} against the scalar loops. Run with {@code mvn verify -Pbenchmarks} so the packaged
+ * multi-release JAR, and with it the Vector API kernels, is on the class path.</p>
+ */
+public class DenseKernelsBenchmark
+{
+  private static final int LENGTH = 4096;
+
+  private static final int ITERATIONS = 20_000;
+
+  private static volatile float sink;
+
+  @Test
+  public void benchmarkDenseKernels() {
+    Random random = new Random(3);
+    float[] first = new float[LENGTH];
+    float[] second = new float[LENGTH];
+    int[] indices = new int[LENGTH / 4];
+    float[] weights = new float[indices.length];
+    for (int i = 0; i < LENGTH; i++) {
+      first[i] = random.nextFloat();
+      second[i] = random.nextFloat();
+    }
+    for (int i = 0; i < indices.length; i++) {
+      indices[i] = i * 4;
+      weights[i] = random.nextFloat();
+    }
+    SparseVector sparse = new SparseVector(indices, weights);
+    DenseKernelOperations scalar = new ScalarDenseKernelOperations();
+
+    System.out.printf("DenseKernels implementation: %s%n", DenseKernels.getImplementation());
+    report("dot", time(() -> scalar.dot(first, second, LENGTH)), time(() -> DenseKernels.dot(first, second, LENGTH)));
+    report("squaredEuclidean", time(() -> scalar.squaredEuclidean(first, second, LENGTH)),
+        time(() -> DenseKernels.squaredEuclidean(first, second, LENGTH)));
+    report("gatherDot", time(() -> scalar.gatherDot(indices, weights, indices.length, first)),
+        time(() -> DenseKernels.gatherDot(sparse, first)));
+  }
+
+  private static void report(String kernel, double scalarNanos, double kernelNanos) {
+    System.out.printf("%-16s scalar %9.1f ns/op, selected %9.1f ns/op, speedup %.2fx%n", kernel, scalarNanos,
+        kernelNanos, scalarNanos / kernelNanos);
+  }
+
+  private static double time(Kernel kernel) {
+    // Warm up so both loops are compiled before they are measured.
+    for (int i = 0; i < ITERATIONS; i++) {
+      sink = kernel.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      sink = kernel.run();
+    }
+    return ((double) (System.nanoTime() - start)) / ITERATIONS;
+  }
+
+  private interface Kernel
+  {
+    float run();
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.metrics;
+
+import java.util.Random;
+
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DenseKernelsTest
+{
+  @Test
+  public void testDenseKernels_MatchScalar() {
+    Random random = new Random(11);
+    DenseKernelOperations scalar = new ScalarDenseKernelOperations();
+    for (int length : new int[]{0, 1, 7, 8, 33, 1000}) {
+      float[] first = randomVector(random, length);
+      float[] second = randomVector(random, length);
+      assertEquals(scalar.dot(first, second, length), DenseKernels.dot(first, second, length), .001);
+      assertEquals(scalar.squaredEuclidean(first, second, length), DenseKernels.squaredEuclidean(first, second, length),
+          .001);
+    }
+  }
+
+  @Test
+  public void testGatherDot() {
+    SparseVector sparse = new SparseVector(new int[]{0, 1}, new float[]{.2F, .8F});
+    float[] dense = {0F, .9F, .1F};
+
+    assertEquals(.72F, DenseKernels.gatherDot(sparse, dense), .0001);
+    float denseSquaredNorm = DenseKernels.dot(dense, dense, dense.length);
+    assertEquals(SparseKernels.squaredEuclidean(sparse, new SparseVector(new int[]{1, 2}, new float[]{.9F, .1F})),
+        DenseKernels.squaredEuclidean(sparse, dense, denseSquaredNorm), .0001);
+  }
+
+  @Test
+  public void testScatterAndClear() {
+    SparseVector first = new SparseVector(new int[]{0, 1}, new float[]{.2F, .8F});
+    SparseVector second = new SparseVector(new int[]{1, 2}, new float[]{.9F, .1F});
+    float[] block = new float[3];
+
+    DenseKernels.scatter(first, block);
+    assertEquals(SparseKernels.dot(first, second), DenseKernels.gatherDot(second, block), .0001);
+    DenseKernels.clear(first, block);
+    assertEquals(0F, DenseKernels.dot(block, block, block.length));
+  }
+
+  private static float[] randomVector(Random random, int length) {
+    float[] result = new float[length];
+    for (int i = 0; i < length; i++) {
+      result[i] = random.nextFloat();
+    }
+    return result;
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.metrics;
+
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ManhattanDistanceTest
+{
+  @Test
+  public void testDistanceAndBounds() {
+    DistanceMetric metric = new ManhattanDistance();
+    SparseVector first = new SparseVector(new int[]{0, 1}, new float[]{.2F, .8F});
+    SparseVector second = new SparseVector(new int[]{1, 2}, new float[]{.9F, .5F});
+
+    float distance = metric.distance(first, second);
+    assertEquals(.8F, distance, .0001);
+    assertEquals(.4F, metric.normLowerBound(first, second), .0001);
+    assertThat(metric.normLowerBound(first, second), lessThanOrEqualTo(distance));
+    assertEquals(.25F, metric.maxCoordinateDifference(.25F));
+    assertTrue(metric.supports(PruningBound.TRIANGLE_INEQUALITY));
+  }
+}
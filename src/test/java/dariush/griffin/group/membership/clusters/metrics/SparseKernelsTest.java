@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.metrics;
+
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SparseKernelsTest
+{
+  private final SparseVector first = new SparseVector(new int[]{0, 1}, new float[]{.2F, .8F});
+
+  private final SparseVector second = new SparseVector(new int[]{1, 2}, new float[]{.9F, .1F});
+
+  @Test
+  public void testDot() {
+    assertEquals(.72F, SparseKernels.dot(first, second), .0001);
+    assertEquals(0F, SparseKernels.dot(first, SparseVector.EMPTY));
+  }
+
+  @Test
+  public void testSquaredEuclidean() {
+    // (.2 - 0)^2 + (.8 - .9)^2 + (0 - .1)^2) = 0.06
+    assertEquals(.06F, SparseKernels.squaredEuclidean(first, second), .0001);
+    assertEquals(SparseKernels.squaredEuclidean(first, second), SparseKernels.squaredEuclidean(second, first));
+    assertEquals(first.getSquaredNorm(), SparseKernels.squaredEuclidean(first, SparseVector.EMPTY));
+  }
+
+  @Test
+  public void testManhattan() {
+    // |.2 - 0| + |.8 - .9| + |0 - .1| = 0.4
+    assertEquals(.4F, SparseKernels.manhattan(first, second), .0001);
+    assertEquals(first.getSum(), SparseKernels.manhattan(first, SparseVector.EMPTY));
+  }
+
+  @Test
+  public void testMinimumSum() {
+    assertEquals(.8F, SparseKernels.minimumSum(first, second), .0001);
+    assertEquals(0F, SparseKernels.minimumSum(first, SparseVector.EMPTY));
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.metrics;
+
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SquaredEuclideanDistanceTest
+{
+  @Test
+  public void testDistanceAndBounds() {
+    DistanceMetric metric = new SquaredEuclideanDistance();
+    SparseVector first = new SparseVector(new int[]{0, 1}, new float[]{.2F, .8F});
+    SparseVector second = new SparseVector(new int[]{1, 2}, new float[]{.9F, .1F});
+
+    float distance = metric.distance(first, second);
+    assertEquals(.06F, distance, .0001);
+    assertThat(metric.normLowerBound(first, second), lessThanOrEqualTo(distance));
+    assertEquals((float) Math.sqrt(distance), metric.toMetric(distance));
+    assertEquals(.5F, metric.maxCoordinateDifference(.25F));
+    assertTrue(metric.supports(PruningBound.NORM));
+    assertFalse(metric.supports(PruningBound.DISJOINT_MAXIMUM));
+  }
+}
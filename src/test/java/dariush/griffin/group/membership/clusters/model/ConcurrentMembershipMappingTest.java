@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.algorithms.CandidateStrategy;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.utilities.IndexedGroups;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrentMembershipMappingTest
+{
+  @Test
+  public void testSnapshot_MatchesMembershipMapping() {
+    ConcurrentMembershipMapping testMapping = new ConcurrentMembershipMapping();
+    MembershipMapping expected = new MembershipMapping();
+    for (int i = 0; i < 200; i++) {
+      String memberName = "test-member-" + (i % 17);
+      String groupName = "test-group-" + (i % 23);
+      testMapping.addMemberToGroup(memberName, groupName, i);
+      expected.addMemberToGroup(memberName, groupName, i);
+    }
+    testMapping.removeMemberFromGroup("test-member-3", "test-group-3");
+    expected.removeMemberFromGroup("test-member-3", "test-group-3");
+    testMapping.removeMemberFromAllGroups("test-member-5");
+    expected.removeMemberFromAllGroups("test-member-5");
+
+    assertEquals(expected, testMapping.snapshot().toMembershipMapping());
+    assertEquals(23, testMapping.snapshot().getGroupCount());
+    assertEquals(17, testMapping.snapshot().getMemberCount());
+  }
+
+  @Test
+  public void testSnapshot_Immutable() {
+    ConcurrentMembershipMapping testMapping = new ConcurrentMembershipMapping();
+    testMapping.addMemberToGroup("test-member-zero", "test-group-zero", 1F);
+    MappingSnapshot snapshot = testMapping.snapshot();
+
+    testMapping.addMemberToGroup("test-member-zero", "test-group-zero", 2F);
+    testMapping.addMemberToGroup("test-member-one", "test-group-one", 3F);
+    testMapping.removeMemberFromAllGroups("test-member-zero");
+
+    assertEquals(1L, snapshot.getVersion());
+    assertEquals(1F, snapshot.getWeight("test-member-zero", "test-group-zero"));
+    assertFalse(snapshot.hasGroup("test-group-one"));
+    assertNull(testMapping.snapshot().getWeight("test-member-zero", "test-group-zero"));
+    assertEquals(4L, testMapping.getVersion());
+  }
+
+  @Test
+  public void testToIndexedGroups() {
+    ConcurrentMembershipMapping testMapping = new ConcurrentMembershipMapping();
+    for (int i = 0; i < 300; i++) {
+      testMapping.addMemberToGroup("test-member-" + (i % 13), "test-group-" + (i % 40), 1F + (i % 3));
+    }
+    MappingSnapshot snapshot = testMapping.snapshot();
+    MembershipMapping mapping = snapshot.toMembershipMapping();
+    IndexedGroups indexedGroups = snapshot.toIndexedGroups();
+
+    assertEquals(snapshot.getGroupCount(), indexedGroups.size());
+    for (int id = 0; id < indexedGroups.size(); id++) {
+      Group group = indexedGroups.getGroup(id);
+      Group expected = mapping.getGroup(group.getName());
+      // Groups that share the snapshot's arrays hash and compare like groups built member by member.
+      assertEquals(expected.hashCode(), group.hashCode());
+      assertEquals(expected.getVector(), group.getVector());
+      assertEquals(expected.getWeight(mapping.getMember("test-member-1")),
+          group.getWeight(mapping.getMember("test-member-1")));
+      assertEquals(expected, group);
+    }
+    Set<Cluster> expectedClusters = new AgglomerativeClusterAlgorithm(mapping, 3F).cluster();
+    Set<Cluster> clusters = new AgglomerativeClusterAlgorithm(indexedGroups, new SquaredEuclideanDistance(), 3F, null,
+        CandidateStrategy.AUTOMATIC).cluster();
+    assertEquals(expectedClusters, clusters);
+
+    // Changing a group built from the snapshot leaves the snapshot as it was.
+    indexedGroups.getGroup(0).addMember(new Member("test-member-extra", 99), 1F);
+    assertEquals(mapping, snapshot.toMembershipMapping());
+  }
+
+  @Test
+  public void testRemoveMemberFromAllGroups_ConcurrentWrites() throws Exception {
+    ConcurrentMembershipMapping testMapping = new ConcurrentMembershipMapping();
+    for (int i = 0; i < 2_000; i++) {
+      testMapping.addMemberToGroup("test-member-removed", "test-group-" + i, 1F);
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    CountDownLatch start = new CountDownLatch(1);
+    try {
+      Future<?> writer = executor.submit(() -> {
+        start.await();
+        for (int i = 0; i < 2_000; i++) {
+          testMapping.addMemberToGroup("test-member-kept", "test-group-" + i, 1F);
+        }
+        return null;
+      });
+      Future<?> remover = executor.submit(() -> {
+        start.await();
+        for (int i = 0; i < 20; i++) {
+          testMapping.removeMemberFromAllGroups("test-member-removed");
+          testMapping.addMemberToGroup("test-member-removed", "test-group-" + i, 1F);
+        }
+        testMapping.removeMemberFromAllGroups("test-member-removed");
+        return null;
+      });
+      start.countDown();
+      writer.get();
+      remover.get();
+    }
+    finally {
+      executor.shutdown();
+    }
+
+    MembershipMapping mapping = testMapping.snapshot().toMembershipMapping();
+    Set<Group> remaining = new HashSet<>();
+    for (Group group : mapping.getGroups()) {
+      if (group.getWeight(mapping.getMember("test-member-removed")) != null) {
+        remaining.add(group);
+      }
+      assertEquals(1F, group.getWeight(mapping.getMember("test-member-kept")));
+    }
+    assertEquals(0, remaining.size());
+  }
+
+  @Test
+  public void testCreate_Existing() {
+    ConcurrentMembershipMapping testMapping = new ConcurrentMembershipMapping();
+    testMapping.createGroup("test-group");
+    testMapping.createMember("test-member");
+
+    assertTrue(testMapping.hasGroup("test-group"));
+    assertTrue(testMapping.hasMember("test-member"));
+    assertThrows(IllegalArgumentException.class, () -> testMapping.createGroup("test-group"));
+    assertThrows(IllegalArgumentException.class, () -> testMapping.createMember("test-member"));
+    assertEquals(2L, testMapping.getVersion());
+  }
+
+  @Test
+  public void testAddMemberToGroup_ConcurrentWritesAndSnapshots() throws Exception {
+    ConcurrentMembershipMapping testMapping = new ConcurrentMembershipMapping();
+    int threads = 4;
+    int writes = 2_000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+    CountDownLatch start = new CountDownLatch(1);
+    try {
+      List<Future<?>> writers = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        final int thread = t;
+        writers.add(executor.submit(() -> {
+          start.await();
+          for (int i = 0; i < writes; i++) {
+            // Each thread adds its own members to groups shared by every thread.
+            testMapping.addMemberToGroup("test-member-" + thread + "-" + i, "test-group-" + (i % 50), 1F);
+          }
+          return null;
+        }));
+      }
+      Future<Integer> reader = executor.submit(() -> {
+        start.await();
+        int clustered = 0;
+        while (testMapping.getVersion() < (long) threads * writes) {
+          MappingSnapshot snapshot = testMapping.snapshot();
+          MembershipMapping mapping = snapshot.toMembershipMapping();
+          // A snapshot never changes while it is clustered, however many writes happen meanwhile.
+          Set<Cluster> clusters = new AgglomerativeClusterAlgorithm(snapshot.toIndexedGroups(),
+              new SquaredEuclideanDistance(), .5F, null, CandidateStrategy.AUTOMATIC).cluster();
+          assertEquals(mapping, snapshot.toMembershipMapping());
+          assertEquals(snapshot.getMemberCount(), mapping.getMembers().size());
+          assertTrue(clusters.size() <= snapshot.getGroupCount());
+          clustered++;
+        }
+        return clustered;
+      });
+      start.countDown();
+      for (Future<?> writer : writers) {
+        writer.get();
+      }
+      assertThat(reader.get(), greaterThan(0));
+    }
+    finally {
+      executor.shutdown();
+    }
+
+    MappingSnapshot snapshot = testMapping.snapshot();
+    assertEquals((long) threads * writes, snapshot.getVersion());
+    assertEquals(threads * writes, snapshot.getMemberCount());
+    assertEquals(50, snapshot.getGroupCount());
+    // Vector indices are dense and unique.
+    boolean[] seen = new boolean[threads * writes];
+    for (Member member : snapshot.toMembershipMapping().getMembers()) {
+      assertFalse(seen[member.getVectorIndex()]);
+      seen[member.getVectorIndex()] = true;
+    }
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.algorithms.CandidateStrategy;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.utilities.IndexedGroups;
+import org.junit.jupiter.api.Test;
+
+import static dariush.griffin.group.membership.clusters.utilities.PerfMeasurements.allocatedBytesPerOperation;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DecayingMembershipMappingTest
+{
+  @Test
+  public void testGetWeight_DecaysByHalfLife() {
+    AtomicLong clock = new AtomicLong();
+    DecayingMembershipMapping testMapping = new DecayingMembershipMapping(1000D, 0.01F, clock::get);
+    testMapping.addMemberToGroup("test-member", "test-group", 8F);
+
+    assertEquals(8F, testMapping.getWeight("test-member", "test-group"), 1e-5F);
+    clock.set(1000L);
+    assertEquals(4F, testMapping.getWeight("test-member", "test-group"), 1e-5F);
+    clock.set(3000L);
+    assertEquals(1F, testMapping.getWeight("test-member", "test-group"), 1e-5F);
+    assertNull(testMapping.getWeight("other-member", "test-group"));
+  }
+
+  @Test
+  public void testAddContribution_AccumulatesDecayedWeight() {
+    AtomicLong clock = new AtomicLong();
+    DecayingMembershipMapping testMapping = new DecayingMembershipMapping(1000D, 0.01F, clock::get);
+    testMapping.addContribution("test-member", "test-group", 4F);
+    clock.set(1000L);
+    testMapping.addContribution("test-member", "test-group", 4F);
+    // A newer member of the same group is stored relative to the group's older reference time.
+    testMapping.addMemberToGroup("new-member", "test-group", 3F);
+
+    assertEquals(6F, testMapping.getWeight("test-member", "test-group"), 1e-5F);
+    assertEquals(3F, testMapping.getWeight("new-member", "test-group"), 1e-5F);
+    clock.set(2000L);
+    assertEquals(3F, testMapping.getWeight("test-member", "test-group"), 1e-5F);
+    assertEquals(1.5F, testMapping.getWeight("new-member", "test-group"), 1e-5F);
+  }
+
+  @Test
+  public void testAddContribution_UpdatesExistingMembersInPlace() {
+    AtomicLong clock = new AtomicLong();
+    DecayingMembershipMapping testMapping = new DecayingMembershipMapping(1000D, 0F, clock::get);
+    String[] memberNames = new String[256];
+    for (int i = 0; i < memberNames.length; i++) {
+      memberNames[i] = "test-member-" + i;
+      testMapping.addMemberToGroup(memberNames[i], "test-group", 1F);
+    }
+    int[] position = new int[1];
+
+    double bytes = allocatedBytesPerOperation(25_600, () ->
+        testMapping.addContribution(memberNames[position[0]++ % memberNames.length], "test-group", 1F));
+
+    // Copying the group's 256 weights alone would allocate over a kilobyte per write.
+    assertThat(bytes, lessThan(16D));
+    assertEquals(256, testMapping.getWeightCount());
+    assertEquals(201F, testMapping.getWeight("test-member-0", "test-group"), 0F);
+  }
+
+  @Test
+  public void testAddMemberToGroup_RebasesOldGroups() {
+    AtomicLong clock = new AtomicLong();
+    DecayingMembershipMapping testMapping = new DecayingMembershipMapping(1000D, 0F, clock::get);
+    testMapping.addMemberToGroup("test-member", "test-group", 1F);
+    // Without rebasing a write this late would store 2^100.
+    clock.set(100_000L);
+    testMapping.addMemberToGroup("new-member", "test-group", 1F);
+
+    assertEquals(1F, testMapping.getWeight("new-member", "test-group"), 1e-5F);
+    assertEquals(Math.pow(2D, -100D), testMapping.getWeight("test-member", "test-group"), 1e-35D);
+    clock.set(101_000L);
+    assertEquals(0.5F, testMapping.getWeight("new-member", "test-group"), 1e-5F);
+  }
+
+  @Test
+  public void testSquaredEuclideanDistance_MatchesDecayedMapping() {
+    AtomicLong clock = new AtomicLong();
+    DecayingMembershipMapping testMapping = new DecayingMembershipMapping(1000D, 0F, clock::get);
+    for (int i = 0; i < 20; i++) {
+      clock.set(i * 137L);
+      testMapping.addContribution("test-member-" + (i % 7), "test-group-" + (i % 3), 1F + i);
+    }
+    clock.set(5000L);
+
+    MembershipMapping decayed = testMapping.toMembershipMapping();
+    SquaredEuclideanDistance metric = new SquaredEuclideanDistance();
+    for (int first = 0; first < 3; first++) {
+      for (int second = 0; second < 3; second++) {
+        float expected = metric.distance(decayed.getGroup("test-group-" + first),
+            decayed.getGroup("test-group-" + second));
+        assertEquals(expected, testMapping.squaredEuclideanDistance("test-group-" + first, "test-group-" + second),
+            1e-4F);
+      }
+    }
+    assertThrows(IllegalArgumentException.class, () -> testMapping.squaredEuclideanDistance("test-group-0", "none"));
+  }
+
+  @Test
+  public void testToIndexedGroups_MatchesDecayedMapping() {
+    AtomicLong clock = new AtomicLong();
+    DecayingMembershipMapping testMapping = new DecayingMembershipMapping(1000D, 0F, clock::get);
+    for (int i = 0; i < 40; i++) {
+      clock.set(i * 97L);
+      testMapping.addContribution("test-member-" + (i % 5), "test-group-" + (i % 8), 1F + i % 3);
+    }
+    clock.set(6000L);
+
+    MembershipMapping decayed = testMapping.toMembershipMapping();
+    IndexedGroups indexedGroups = testMapping.toIndexedGroups();
+    SquaredEuclideanDistance metric = new SquaredEuclideanDistance();
+    assertEquals(8, indexedGroups.size());
+    for (int first = 0; first < indexedGroups.size(); first++) {
+      String firstName = indexedGroups.getGroup(first).getName();
+      for (int second = 0; second < indexedGroups.size(); second++) {
+        String secondName = indexedGroups.getGroup(second).getName();
+        assertEquals(metric.distance(decayed.getGroup(firstName), decayed.getGroup(secondName)),
+            metric.distance(indexedGroups.getGroup(first), indexedGroups.getGroup(second)), 1e-4F);
+      }
+    }
+    assertEquals(new AgglomerativeClusterAlgorithm(decayed, 0.05F).cluster(),
+        new AgglomerativeClusterAlgorithm(indexedGroups, metric, 0.05F, null, CandidateStrategy.AUTOMATIC).cluster());
+  }
+
+  @Test
+  public void testPurge_ConcurrentWrites() throws Exception {
+    AtomicLong clock = new AtomicLong();
+    DecayingMembershipMapping testMapping = new DecayingMembershipMapping(1000D, 0.5F, clock::get);
+    for (int i = 0; i < 200; i++) {
+      testMapping.addMemberToGroup("old-member", "test-group-" + i, 1F);
+    }
+    clock.set(2000L);
+
+    List<Thread> writers = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      int writer = t;
+      writers.add(new Thread(() -> {
+        for (int i = 0; i < 200; i++) {
+          testMapping.addContribution("new-member-" + writer, "test-group-" + i, 1F);
+        }
+      }));
+    }
+    writers.forEach(Thread::start);
+    int removed = testMapping.purge();
+    for (Thread writer : writers) {
+      writer.join();
+    }
+    removed += testMapping.purge();
+
+    assertEquals(200, removed);
+    assertEquals(800, testMapping.getWeightCount());
+    for (int i = 0; i < 200; i++) {
+      assertNull(testMapping.getWeight("old-member", "test-group-" + i));
+      for (int t = 0; t < 4; t++) {
+        assertEquals(1F, testMapping.getWeight("new-member-" + t, "test-group-" + i), 1e-5F);
+      }
+    }
+  }
+
+  @Test
+  public void testPurge_RemovesDecayedWeights() {
+    AtomicLong clock = new AtomicLong();
+    DecayingMembershipMapping testMapping = new DecayingMembershipMapping(1000D, 1F, clock::get);
+    testMapping.addMemberToGroup("old-member", "test-group", 2F);
+    clock.set(1500L);
+    testMapping.addMemberToGroup("new-member", "test-group", 2F);
+
+    // The old member is worth 2^-0.5 * 2 / 2 < 1 in the snapshot, but is still stored until purged.
+    clock.set(2000L);
+    assertFalse(testMapping.toMembershipMapping().getGroup("test-group").getMembers().keySet().stream()
+        .anyMatch(member -> member.getName().equals("old-member")));
+    assertEquals(2, testMapping.getWeightCount());
+
+    assertEquals(1, testMapping.purge());
+    assertEquals(1, testMapping.getWeightCount());
+    assertNull(testMapping.getWeight("old-member", "test-group"));
+    assertEquals(Math.pow(2D, 0.5D), testMapping.getWeight("new-member", "test-group"), 1e-5D);
+  }
+
+  @Test
+  public void testSchedulePurge_PurgesInBackground() throws Exception {
+    AtomicLong clock = new AtomicLong();
+    try (DecayingMembershipMapping testMapping = new DecayingMembershipMapping(1000D, 1F, clock::get)) {
+      testMapping.addMemberToGroup("test-member", "test-group", 2F);
+      clock.set(5000L);
+      ScheduledFuture<?> purge = testMapping.schedulePurge(5L, TimeUnit.MILLISECONDS);
+
+      long deadline = System.currentTimeMillis() + 5000L;
+      while (testMapping.getWeightCount() > 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(5L);
+      }
+      assertEquals(0, testMapping.getWeightCount());
+      assertFalse(purge.isDone());
+      testMapping.close();
+      assertTrue(purge.isDone());
+    }
+  }
+
+  @Test
+  public void testConstructor_InvalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> new DecayingMembershipMapping(0D, 0F));
+    assertThrows(IllegalArgumentException.class, () -> new DecayingMembershipMapping(1D, -1F));
+  }
+}
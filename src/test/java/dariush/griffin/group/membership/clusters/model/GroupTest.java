@@ -22,7 +22,9 @@ import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 public class GroupTest
 {
@@ -46,4 +48,23 @@ public class GroupTest
 
     assertThat(testGroup.getMembers().keySet(), containsInAnyOrder(testMemberOne));
   }
+
+  @Test
+  public void testGetVector() {
+    Group testGroup = new Group("Test Group");
+    Member testMemberZero = new Member("Test Member Zero", 0);
+    Member testMemberTwo = new Member("Test Member Two", 2);
+
+    testGroup.addMember(testMemberTwo, .85F);
+    testGroup.addMember(testMemberZero, .5F);
+
+    SparseVector vector = testGroup.getVector();
+    assertArrayEquals(new int[]{0, 2}, vector.getIndices());
+    assertArrayEquals(new float[]{.5F, .85F}, vector.getWeights());
+    assertEquals(.5F * .5F + .85F * .85F, vector.getSquaredNorm(), .0001);
+    assertSame(vector, testGroup.getVector());
+
+    testGroup.removeMember(testMemberTwo);
+    assertArrayEquals(new int[]{0}, testGroup.getVector().getIndices());
+  }
 }
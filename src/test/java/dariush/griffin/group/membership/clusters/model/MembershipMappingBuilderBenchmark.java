@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * <p>Compares ingest throughput of a single threaded {@link MembershipMapping} against a
+ * {@link MembershipMappingBuilder} fed by an increasing number of threads, each standing in for a consumer of one
+ * partition of the stream. Run with {@code mvn verify -Pbenchmarks}.</p>
+ */
+public class MembershipMappingBuilderBenchmark
+{
+  private static final int EDGE_COUNT = 4_000_000;
+
+  private static volatile int sink;
+
+  @Test
+  public void benchmarkIngest() throws Exception {
+    Random random = new Random(11);
+    String[] memberNames = new String[200_000];
+    String[] groupNames = new String[50_000];
+    for (int i = 0; i < memberNames.length; i++) {
+      memberNames[i] = "member-" + i;
+    }
+    for (int i = 0; i < groupNames.length; i++) {
+      groupNames[i] = "group-" + i;
+    }
+    int[] edgeMembers = new int[EDGE_COUNT];
+    int[] edgeGroups = new int[EDGE_COUNT];
+    for (int i = 0; i < EDGE_COUNT; i++) {
+      edgeMembers[i] = random.nextInt(memberNames.length);
+      edgeGroups[i] = random.nextInt(groupNames.length);
+    }
+
+    for (int round = 0; round < 2; round++) {
+      long start = System.nanoTime();
+      MembershipMapping mapping = new MembershipMapping();
+      for (int i = 0; i < EDGE_COUNT; i++) {
+        mapping.addMemberToGroup(memberNames[edgeMembers[i]], groupNames[edgeGroups[i]], 1F);
+      }
+      sink = mapping.getGroups().size();
+      report("MembershipMapping", 1, System.nanoTime() - start);
+
+      int processors = Runtime.getRuntime().availableProcessors();
+      for (int threads = 1; threads <= processors; threads *= 2) {
+        start = System.nanoTime();
+        MembershipMappingBuilder builder = new MembershipMappingBuilder();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+          List<Future<?>> futures = new ArrayList<>();
+          for (int t = 0; t < threads; t++) {
+            // Each thread consumes its own contiguous partition of the edges.
+            final int from = (int) ((long) EDGE_COUNT * t / threads);
+            final int to = (int) ((long) EDGE_COUNT * (t + 1) / threads);
+            futures.add(executor.submit(() -> {
+              for (int i = from; i < to; i++) {
+                builder.addMemberToGroup(memberNames[edgeMembers[i]], groupNames[edgeGroups[i]], 1F);
+              }
+            }));
+          }
+          for (Future<?> future : futures) {
+            future.get();
+          }
+        }
+        finally {
+          executor.shutdown();
+        }
+        sink = builder.build().getGroups().size();
+        report("MembershipMappingBuilder", threads, System.nanoTime() - start);
+      }
+    }
+  }
+
+  private static void report(String name, int threads, long nanos) {
+    System.out.printf("%-24s %2d threads: %6d ms, %5.2f M edges/s%n", name, threads, nanos / 1_000_000,
+        EDGE_COUNT * 1_000D / nanos);
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MembershipMappingBuilderTest
+{
+  @Test
+  public void testBuild_SingleThread() {
+    MembershipMappingBuilder testBuilder = new MembershipMappingBuilder(4, 3);
+    MembershipMapping expected = new MembershipMapping();
+    for (int i = 0; i < 100; i++) {
+      String memberName = "test-member-" + (i % 7);
+      String groupName = "test-group-" + (i % 11);
+      testBuilder.addMemberToGroup(memberName, groupName, i);
+      expected.addMemberToGroup(memberName, groupName, i);
+    }
+
+    // A single thread sees members in the same order, so even the vector indices match.
+    assertEquals(expected, testBuilder.build());
+    assertThrows(IllegalStateException.class, () -> testBuilder.addMemberToGroup("test-member", "test-group", 1F));
+    assertThrows(IllegalStateException.class, testBuilder::build);
+  }
+
+  @Test
+  public void testBuild_ManyThreads() throws Exception {
+    MembershipMappingBuilder testBuilder = new MembershipMappingBuilder(8, 64);
+    int threads = 6;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        final int thread = t;
+        futures.add(executor.submit(() -> {
+          // Threads share members and groups, but each sets its own weights.
+          for (int i = 0; i < 5_000; i++) {
+            testBuilder.addMemberToGroup("test-member-" + thread + "-" + (i % 300), "test-group-" + (i % 1000),
+                thread + i / 1000F);
+            testBuilder.addMemberToGroup("test-member-shared-" + (i % 50), "test-group-" + thread, 1F);
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+
+    MembershipMapping mapping = testBuilder.build();
+    assertEquals(threads * 300 + 50, mapping.getMembers().size());
+    assertEquals(1000, mapping.getGroups().size());
+    Set<Integer> vectorIndices = new HashSet<>();
+    for (Member member : mapping.getMembers()) {
+      assertTrue(vectorIndices.add(member.getVectorIndex()));
+    }
+    assertEquals(threads * 300 + 50, vectorIndices.size());
+
+    // Each thread's edges are applied in order, so its last weight for an edge wins.
+    Map<Member, Float> members = mapping.getGroup("test-group-7").getMembers();
+    for (int t = 0; t < threads; t++) {
+      assertEquals(t + 4007 / 1000F, members.get(mapping.getMember("test-member-" + t + "-107")));
+    }
+    // Thread 0 adds the shared members, and every thread three of its own.
+    assertEquals(50 + threads * 3, mapping.getGroup("test-group-0").getMembers().size());
+  }
+
+  @Test
+  public void testBuild_PooledThreads() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      for (int round = 0; round < 3; round++) {
+        MembershipMappingBuilder testBuilder = new MembershipMappingBuilder(2, 1_000);
+        final int builder = round;
+        // The pool thread never flushes, build() applies and releases its buffer.
+        executor.submit(() -> testBuilder.addMemberToGroup("test-member", "test-group-" + builder, 1F)).get();
+
+        MembershipMapping mapping = testBuilder.build();
+        assertEquals(1F, mapping.getGroup("test-group-" + builder).getWeight(mapping.getMember("test-member")));
+        // Flushing a built mapping's released buffer does nothing.
+        executor.submit(testBuilder::flush).get();
+        testBuilder.flush();
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -18,11 +18,18 @@
  */
 package dariush.griffin.group.membership.clusters.model;
 
+import java.util.Arrays;
+
+import dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.algorithms.CandidateStrategy;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.utilities.PostingLists;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -96,6 +103,71 @@ public class MembershipMappingTest
     testMapping.getGroups().forEach(group -> {assertFalse(group.getMembers().containsKey(testMapping.getMember("test-member-zero")));});
   }
 
+  @Test
+  public void testGetGroupNames() {
+    MembershipMapping testMapping = new MembershipMapping();
+
+    testMapping.addMemberToGroup("test-member-zero", "test-group-zero", 1.0F);
+    testMapping.addMemberToGroup("test-member-zero", "test-group-one", 1.0F);
+    testMapping.addMemberToGroup("test-member-one", "test-group-one", 1.0F);
+    testMapping.removeMemberFromGroup("test-member-zero", "test-group-zero");
+
+    assertThat(testMapping.getGroupNames("test-member-zero"), containsInAnyOrder("test-group-one"));
+    assertThat(testMapping.getGroupNames("test-member-one"), containsInAnyOrder("test-group-one"));
+    assertTrue(testMapping.getGroupNames("test-member-missing").isEmpty());
+  }
+
+  @Test
+  public void testEvictMembers() {
+    MembershipMapping testMapping = new MembershipMapping();
+
+    testMapping.addMemberToGroup("test-member-zero", "test-group-zero", 1.0F);
+    testMapping.addMemberToGroup("test-member-one", "test-group-zero", 1.0F);
+    testMapping.addMemberToGroup("test-member-two", "test-group-one", 1.0F);
+    testMapping.addMemberToGroup("test-member-three", "test-group-one", 1.0F);
+
+    assertEquals(1, testMapping.evictMembers(Arrays.asList("test-member-zero", "test-member-missing")));
+    assertEquals(2, testMapping.evictMembers(member -> member.getVectorIndex() >= 2));
+
+    assertThat(testMapping.getMembers(), containsInAnyOrder(new Member("test-member-one", 1)));
+    assertThat(testMapping.getGroup("test-group-zero").getMembers().keySet(),
+        containsInAnyOrder(new Member("test-member-one", 1)));
+    assertTrue(testMapping.getGroup("test-group-one").getMembers().isEmpty());
+    assertFalse(testMapping.hasMember("test-member-zero"));
+    assertTrue(testMapping.getGroupNames("test-member-two").isEmpty());
+  }
+
+  @Test
+  public void testCompact() {
+    MembershipMapping testMapping = new MembershipMapping();
+
+    testMapping.addMemberToGroup("test-member-zero", "test-group-zero", 1.0F);
+    testMapping.addMemberToGroup("test-member-one", "test-group-zero", 2.0F);
+    testMapping.addMemberToGroup("test-member-two", "test-group-one", 3.0F);
+    testMapping.addMemberToGroup("test-member-three", "test-group-one", 4.0F);
+    testMapping.evictMembers(Arrays.asList("test-member-zero", "test-member-two"));
+
+    PostingLists postingLists = testMapping.compact();
+
+    MembershipMapping expected = new MembershipMapping();
+    expected.addMemberToGroup("test-member-one", "test-group-zero", 2.0F);
+    expected.addMemberToGroup("test-member-three", "test-group-one", 4.0F);
+    assertEquals(expected, testMapping);
+    assertEquals(new Member("test-member-three", 1), testMapping.getMember("test-member-three"));
+    assertArrayEquals(new int[] {1}, testMapping.getGroup("test-group-one").getVector().getIndices());
+    int[] groupIds = postingLists.getGroupIds(testMapping.getMember("test-member-three"));
+    assertEquals(1, groupIds.length);
+    assertEquals(testMapping.getGroup("test-group-one"), postingLists.getIndexedGroups().getGroup(groupIds[0]));
+    assertEquals(2, postingLists.getMemberCount());
+    // The posting lists are ready to cluster with.
+    assertEquals(2, new AgglomerativeClusterAlgorithm(postingLists, new SquaredEuclideanDistance(), 1F, null,
+        CandidateStrategy.AUTOMATIC).cluster().size());
+
+    // New members continue after the compacted indices.
+    testMapping.addMemberToGroup("test-member-four", "test-group-zero", 5.0F);
+    assertEquals(2, testMapping.getMember("test-member-four").getVectorIndex());
+  }
+
   @Test
   public void testValidation() {
     MembershipMapping testMapping = new MembershipMapping();
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import dariush.griffin.group.membership.clusters.metrics.CosineDistance;
+import dariush.griffin.group.membership.clusters.metrics.DistanceMetric;
+import dariush.griffin.group.membership.clusters.metrics.ManhattanDistance;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.metrics.WeightedJaccardDistance;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class GroupQueryServiceTest
+{
+  @Test
+  public void testNearest() {
+    MembershipMapping membershipMapping = randomMapping(new Random(1), 400, 25);
+    for (DistanceMetric metric : Arrays.asList(new SquaredEuclideanDistance(), new ManhattanDistance(),
+        new WeightedJaccardDistance())) {
+      GroupQueryService testService = new GroupQueryService(membershipMapping, metric);
+      for (Group group : sample(membershipMapping, 20)) {
+        List<Neighbour> expected = bruteForce(membershipMapping, metric, group, Float.POSITIVE_INFINITY);
+        assertEquals(expected.subList(0, 10), testService.nearest(group, 10), metric.toString());
+      }
+      assertEquals(20, testService.getNearestLatencies().getCount());
+    }
+  }
+
+  @Test
+  public void testNearest_SharedMembers() {
+    MembershipMapping membershipMapping = randomMapping(new Random(2), 400, 60);
+    CosineDistance metric = new CosineDistance();
+    GroupQueryService testService = new GroupQueryService(membershipMapping, metric);
+    for (Group group : sample(membershipMapping, 20)) {
+      List<Neighbour> expected = bruteForce(membershipMapping, metric, group, 1F);
+      List<Neighbour> nearest = testService.nearest(group, 5);
+      assertEquals(expected.subList(0, Math.min(5, expected.size())), nearest);
+    }
+  }
+
+  @Test
+  public void testNearest_WithinThreshold() {
+    MembershipMapping membershipMapping = randomMapping(new Random(7), 400, 25);
+    for (DistanceMetric metric : Arrays.asList(new SquaredEuclideanDistance(), new WeightedJaccardDistance())) {
+      GroupQueryService testService = new GroupQueryService(membershipMapping, metric);
+      for (Group group : sample(membershipMapping, 20)) {
+        List<Neighbour> expected = bruteForce(membershipMapping, metric, group, 1.5F);
+        assertEquals(expected.subList(0, Math.min(3, expected.size())), testService.nearest(group, 3, 1.5F),
+            metric.toString());
+      }
+    }
+  }
+
+  @Test
+  public void testWithin() {
+    MembershipMapping membershipMapping = randomMapping(new Random(3), 400, 25);
+    SquaredEuclideanDistance metric = new SquaredEuclideanDistance();
+    GroupQueryService testService = new GroupQueryService(membershipMapping, metric);
+    int found = 0;
+    for (Group group : sample(membershipMapping, 20)) {
+      List<Neighbour> within = testService.within(group, 1.5F);
+      assertEquals(bruteForce(membershipMapping, metric, group, 1.5F), within);
+      found += within.size();
+    }
+    assertThat(found, greaterThan(0));
+    assertEquals(20, testService.getWithinLatencies().getCount());
+    assertThat(testService.getWithinLatencies().getPercentileNanos(99D),
+        greaterThanOrEqualTo(testService.getWithinLatencies().getPercentileNanos(50D)));
+  }
+
+  @Test
+  public void testQuantized() {
+    MembershipMapping membershipMapping = randomMapping(new Random(6), 400, 25);
+    GroupQueryService exactService = new GroupQueryService(membershipMapping);
+    for (int bits : new int[] {8, 16}) {
+      GroupQueryService testService = new GroupQueryService(membershipMapping, bits);
+      for (Group group : sample(membershipMapping, 20)) {
+        assertEquals(exactService.nearest(group, 10), testService.nearest(group, 10));
+        assertEquals(exactService.within(group, 1.5F), testService.within(group, 1.5F));
+      }
+    }
+    assertThrows(IllegalArgumentException.class, () -> new GroupQueryService(membershipMapping, 0));
+    assertThrows(IllegalArgumentException.class, () -> new GroupQueryService(membershipMapping, 12));
+  }
+
+  @Test
+  public void testNearest_Concurrent() throws Exception {
+    MembershipMapping membershipMapping = randomMapping(new Random(4), 500, 25);
+    GroupQueryService testService = new GroupQueryService(membershipMapping);
+    List<Group> groups = sample(membershipMapping, 50);
+    List<List<Neighbour>> expected = new ArrayList<>();
+    for (Group group : groups) {
+      expected.add(testService.nearest(group, 8));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<List<Neighbour>>> futures = new ArrayList<>();
+      for (int round = 0; round < 4; round++) {
+        for (Group group : groups) {
+          futures.add(executor.submit(() -> testService.nearest(group, 8)));
+        }
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        assertEquals(expected.get(i % groups.size()), futures.get(i).get());
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+    assertEquals(250, testService.getNearestLatencies().getCount());
+  }
+
+  @Test
+  public void testNearest_Edges() {
+    MembershipMapping membershipMapping = randomMapping(new Random(5), 10, 5);
+    GroupQueryService testService = new GroupQueryService(membershipMapping);
+    Group group = membershipMapping.getGroup("test-group-0");
+
+    assertThat(testService.nearest(group, 0), empty());
+    // Asking for more groups than there are returns every other group.
+    assertThat(testService.nearest(group, 50), hasSize(9));
+    assertThrows(IllegalArgumentException.class, () -> testService.nearest(group, -1));
+  }
+
+  private static List<Neighbour> bruteForce(
+      MembershipMapping membershipMapping,
+      DistanceMetric metric,
+      Group group,
+      float threshold)
+  {
+    List<Neighbour> result = new ArrayList<>();
+    for (Group other : membershipMapping.getGroups()) {
+      float distance = metric.distance(group, other);
+      if (other != group && distance < threshold) {
+        result.add(new Neighbour(other, distance));
+      }
+    }
+    Collections.sort(result);
+    return result;
+  }
+
+  private static List<Group> sample(MembershipMapping membershipMapping, int count) {
+    List<Group> result = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      result.add(membershipMapping.getGroup("test-group-" + (i * 7)));
+    }
+    return result;
+  }
+
+  private static MembershipMapping randomMapping(Random random, int groupCount, int memberCount) {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    for (int i = 0; i < groupCount; i++) {
+      int size = 1 + random.nextInt(6);
+      for (int m = 0; m < size; m++) {
+        membershipMapping.addMemberToGroup("test-member-" + random.nextInt(memberCount), "test-group-" + i,
+            .1F + random.nextFloat());
+      }
+    }
+    return membershipMapping;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.scoring;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.Set;
+
+import dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.model.Cluster;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClusterScorerTest
+{
+  @Test
+  public void testScores() {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    membershipMapping.addMemberToGroup("test-member", "test-group-zero", 0F);
+    membershipMapping.addMemberToGroup("test-member", "test-group-one", 1F);
+    membershipMapping.addMemberToGroup("test-member", "test-group-ten", 10F);
+    Cluster first = new Cluster();
+    first.addGroups(Arrays.asList(membershipMapping.getGroup("test-group-zero"),
+        membershipMapping.getGroup("test-group-one")));
+    Cluster second = new Cluster();
+    second.addGroup(membershipMapping.getGroup("test-group-ten"));
+
+    ClusterScorer scorer = new ClusterScorer(Arrays.asList(first, second));
+
+    // Squared distances are scored as euclidean: (1 - 1/10) and (1 - 1/9), the singleton scores 0.
+    assertEquals((0.9D + 8D / 9D) / 3D, scorer.silhouette(), 1e-6D);
+    // Both clusters' worst ratio is (0.5 + 0) / 9.5.
+    assertEquals(0.5D / 9.5D, scorer.daviesBouldin(), 1e-6D);
+    assertEquals(2, scorer.getClusterCount());
+    assertEquals(3, scorer.getGroupCount());
+    // One member is optimally one cluster.
+    assertEquals(0.5D, scorer.clusterCountScore(1), 1e-9D);
+  }
+
+  @Test
+  public void testScores_SeparatedBetterThanMerged() {
+    MembershipMapping membershipMapping = createBlobs(4, 50, new Random(3));
+    Set<Cluster> separated = new AgglomerativeClusterAlgorithm(membershipMapping, 0.5F).cluster();
+    Cluster merged = new Cluster();
+    merged.addGroups(membershipMapping.getGroups());
+
+    ClusterScorer separatedScorer = new ClusterScorer(separated);
+    ClusterScorer mergedScorer = new ClusterScorer(Collections.singleton(merged));
+
+    assertEquals(4, separatedScorer.getClusterCount());
+    assertThat(separatedScorer.silhouette(), greaterThan(0.9D));
+    assertThat(separatedScorer.daviesBouldin(), lessThan(0.1D));
+    assertEquals(0D, mergedScorer.silhouette(), 0D);
+    assertEquals(0D, mergedScorer.daviesBouldin(), 0D);
+  }
+
+  @Test
+  public void testSilhouette_SampleApproximatesFull() {
+    MembershipMapping membershipMapping = createBlobs(3, 200, new Random(5));
+    // A threshold that splits the blobs unevenly, so the silhouette is well below 1.
+    ClusterScorer scorer = new ClusterScorer(new AgglomerativeClusterAlgorithm(membershipMapping, 0.05F).cluster());
+
+    assertEquals(scorer.silhouette(), scorer.silhouette(200, 1L), 0.1D);
+    assertEquals(scorer.silhouette(200, 1L), scorer.silhouette(200, 1L), 0D);
+  }
+
+  @Test
+  public void testOptimalClusterCount() {
+    assertEquals(1, ClusterScorer.optimalClusterCount(1, 10));
+    assertEquals(7, ClusterScorer.optimalClusterCount(3, 10));
+    assertEquals(10, ClusterScorer.optimalClusterCount(4, 10));
+    assertEquals(100, ClusterScorer.optimalClusterCount(64, 100));
+  }
+
+  @Test
+  public void testAdjustedRandIndex() {
+    // Matching labelings score 1 whatever the labels are called.
+    assertEquals(1D, ClusterScorer.adjustedRandIndex(new int[] {0, 0, 1, 1, 2}, new int[] {7, 7, 3, 3, -1}), 0D);
+    // 2 pairs together in both, 6 together as expected and 3 as actual, out of 15: (2 - 1.2) / (4.5 - 1.2).
+    assertEquals(8D / 33D,
+        ClusterScorer.adjustedRandIndex(new int[] {0, 0, 0, 1, 1, 1}, new int[] {0, 0, 1, 1, 2, 2}), 1e-12D);
+    // Splitting every planted cluster across every found cluster is worse than chance.
+    assertThat(ClusterScorer.adjustedRandIndex(new int[] {0, 0, 1, 1}, new int[] {0, 1, 0, 1}), lessThan(0D));
+    assertEquals(1D, ClusterScorer.adjustedRandIndex(new int[] {4}, new int[] {2}), 0D);
+  }
+
+  @Test
+  public void testAdjustedRandIndex_DifferentLengths() {
+    assertThrows(IllegalArgumentException.class, () -> ClusterScorer.adjustedRandIndex(new int[2], new int[3]));
+  }
+
+  @Test
+  public void testRandIndex() {
+    assertEquals(1D, ClusterScorer.randIndex(new int[] {0, 0, 1, 1}, new int[] {5, 5, 3, 3}), 1e-9D);
+    // Of the 6 pairs, only (0, 1) is together in the first and only (2, 3) in the second.
+    assertEquals(4D / 6D, ClusterScorer.randIndex(new int[] {0, 0, 1, 2}, new int[] {0, 1, 2, 2}), 1e-9D);
+    assertTrue(Double.isNaN(ClusterScorer.randIndex(new int[] {4}, new int[] {2})));
+    assertThrows(IllegalArgumentException.class, () -> ClusterScorer.randIndex(new int[2], new int[3]));
+  }
+
+  /**
+   * <p>Blobs of groups sharing three members, with small weights around a different centre for each blob.</p>
+   */
+  static MembershipMapping createBlobs(int blobCount, int groupsPerBlob, Random random) {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    for (int blob = 0; blob < blobCount; blob++) {
+      for (int group = 0; group < groupsPerBlob; group++) {
+        for (int member = 0; member < 3; member++) {
+          membershipMapping.addMemberToGroup("member-" + blob + "-" + member, "group-" + blob + "-" + group,
+              1F + random.nextFloat() * 0.2F);
+        }
+      }
+    }
+    return membershipMapping;
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.scoring;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ThresholdSearchTest
+{
+  @Test
+  public void testSearch_FindsBlobs() {
+    MembershipMapping membershipMapping = ClusterScorerTest.createBlobs(4, 30, new Random(7));
+
+    for (ScoreObjective objective : new ScoreObjective[]{ScoreObjective.SILHOUETTE, ScoreObjective.DAVIES_BOULDIN}) {
+      ThresholdSearch search = new ThresholdSearch(membershipMapping, objective);
+      ScoredThreshold best = search.search(0.001F, 1F, 1, TimeUnit.MINUTES);
+
+      assertEquals(4, best.getClusterCount(), objective.name());
+      assertEquals(33, search.getProbes().size());
+    }
+  }
+
+  @Test
+  public void testSearch_StopsAtBudget() {
+    MembershipMapping membershipMapping = ClusterScorerTest.createBlobs(2, 10, new Random(7));
+    long[] time = {0L};
+    ThresholdSearch search = new ThresholdSearch(membershipMapping, new SquaredEuclideanDistance(),
+        ScoreObjective.CLUSTER_COUNT, 100, 33, () -> time[0] += 10L);
+
+    // The deadline is checked once per probe after the first, each check advances the clock by 10.
+    search.search(0.01F, 1F, 15L, TimeUnit.NANOSECONDS);
+    assertEquals(2, search.getProbes().size());
+    assertEquals(0.01F, search.getProbes().get(0).getThreshold(), 1e-6F);
+    assertEquals(1F, search.getProbes().get(1).getThreshold(), 1e-6F);
+  }
+
+  @Test
+  public void testPosition() {
+    double[] expected = {0D, 1D, 0.5D, 0.25D, 0.75D, 0.125D, 0.625D, 0.375D, 0.875D};
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], ThresholdSearch.position(i), 0D);
+    }
+  }
+
+  @Test
+  public void testSearch_InvalidRange() {
+    ThresholdSearch search = new ThresholdSearch(new MembershipMapping(), ScoreObjective.SILHOUETTE);
+    assertThrows(IllegalArgumentException.class, () -> search.search(0F, 1F, 1L, TimeUnit.SECONDS));
+    assertThrows(IllegalArgumentException.class, () -> search.search(2F, 1F, 1L, TimeUnit.SECONDS));
+  }
+}
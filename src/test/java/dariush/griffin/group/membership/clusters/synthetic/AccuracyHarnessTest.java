@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.synthetic;
+
+import dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.algorithms.SampledClusterAlgorithm;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class AccuracyHarnessTest
+{
+  /**
+   * Groups of a cluster share about half their members, groups of different clusters share none. With weights from 1
+   * to 2 their squared distances are about 23 and at least 20.
+   */
+  private static final float THRESHOLD = 19F;
+
+  @Test
+  public void testEvaluate_SeparatedClustersRecovered() {
+    AccuracyHarness harness = new AccuracyHarness(new PlantedPartitionGenerator(1L, 2000, 20, 20, 10));
+
+    AccuracyReport report = harness.evaluate("agglomerative", m -> new AgglomerativeClusterAlgorithm(m, THRESHOLD));
+
+    assertEquals("agglomerative", report.getName());
+    assertThat(report.getAdjustedRandIndex(), greaterThan(.99D));
+    assertEquals(2000, report.getGroupCount());
+    assertThat(report.getClusterCount(), lessThan(25));
+    assertThat(report.getThroughput(), greaterThan(0D));
+    assertEquals(2000L * 10, harness.getMembershipCount());
+    assertThat(harness.getGenerateNanos(), greaterThan(0L));
+  }
+
+  @Test
+  public void testEvaluate_OverlapAndNoiseLowerAccuracy() {
+    AccuracyHarness separated = new AccuracyHarness(new PlantedPartitionGenerator(1L, 2000, 20, 20, 10));
+    AccuracyHarness overlapping =
+        new AccuracyHarness(new PlantedPartitionGenerator(1L, 2000, 20, 20, 10, .5F, 0F, 0D, 0, 0F));
+    AccuracyHarness noisy =
+        new AccuracyHarness(new PlantedPartitionGenerator(1L, 2000, 20, 20, 10, 1F, .2F, 0D, 0, 0F));
+
+    double separatedIndex = separated.evaluate("separated", m -> new AgglomerativeClusterAlgorithm(m, THRESHOLD))
+        .getAdjustedRandIndex();
+
+    assertThat(overlapping.evaluate("overlapping", m -> new AgglomerativeClusterAlgorithm(m, THRESHOLD))
+        .getAdjustedRandIndex(), lessThan(separatedIndex - .5D));
+    assertThat(noisy.evaluate("noisy", m -> new AgglomerativeClusterAlgorithm(m, THRESHOLD))
+        .getAdjustedRandIndex(), lessThan(separatedIndex - .5D));
+  }
+
+  @Test
+  public void testEvaluate_SharesTheMapping() {
+    AccuracyHarness harness = new AccuracyHarness(new PlantedPartitionGenerator(1L, 500, 5, 20, 10));
+
+    AccuracyReport full = harness.evaluate("agglomerative", m -> new AgglomerativeClusterAlgorithm(m, THRESHOLD));
+    AccuracyReport sampled = harness.evaluate("sampled", m -> new SampledClusterAlgorithm(m, THRESHOLD, .5D));
+
+    assertSame(harness.getMembershipMapping(), harness.getMembershipMapping());
+    assertEquals(full.getGroupCount(), sampled.getGroupCount());
+    assertThat(sampled.getAdjustedRandIndex(), greaterThan(.9D));
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.synthetic;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.algorithms.CandidateStrategy;
+import dariush.griffin.group.membership.clusters.algorithms.OutOfCoreClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * <p>Reports the accuracy and throughput of each clustering algorithm on planted partitions, from clean to noisy and
+ * with skewed members and hubs. Run with {@code mvn verify -Pbenchmarks}.</p>
+ */
+public class PlantedPartitionBenchmark
+{
+  private static final int GROUP_COUNT = 100_000;
+
+  private static final float THRESHOLD = 19F;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  public void benchmarkAccuracy() throws IOException {
+    PlantedPartitionGenerator[] generators = {
+        new PlantedPartitionGenerator(1L, GROUP_COUNT, 2_000, 20, 10),
+        new PlantedPartitionGenerator(1L, GROUP_COUNT, 2_000, 20, 10, .9F, .02F, 0D, 0, 0F),
+        new PlantedPartitionGenerator(1L, GROUP_COUNT, 2_000, 20, 10, 1F, 0F, 1D, 4, .01F)};
+    for (PlantedPartitionGenerator generator : generators) {
+      AccuracyHarness harness = new AccuracyHarness(generator);
+      harness.getMembershipMapping();
+      System.out.printf("separation %.2f, noise %.2f, skew %.1f, %d hubs: generated %d memberships in %d ms (%.0f"
+              + " memberships/s)%n", generator.getSeparation(), generator.getNoise(), generator.getMemberSkew(),
+          generator.getHubCount(), harness.getMembershipCount(), harness.getGenerateNanos() / 1_000_000,
+          harness.getMembershipCount() * 1e9D / harness.getGenerateNanos());
+
+      print(harness.evaluate("agglomerative", m -> new AgglomerativeClusterAlgorithm(m, THRESHOLD)));
+      print(harness.evaluate("shared members", m -> new AgglomerativeClusterAlgorithm(m,
+          new SquaredEuclideanDistance(), THRESHOLD, null, CandidateStrategy.SHARED_MEMBERS)));
+      print(harness.evaluate("out of core", m -> new OutOfCoreClusterAlgorithm(m, THRESHOLD, directory, 256L << 20)));
+    }
+  }
+
+  private static void print(AccuracyReport report) {
+    System.out.printf("  %-15s ARI %.4f, %6d clusters, %6d ms, %9.0f groups/s%n", report.getName(),
+        report.getAdjustedRandIndex(), report.getClusterCount(), report.getClusterNanos() / 1_000_000,
+        report.getThroughput());
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.synthetic;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.Member;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PlantedPartitionGeneratorTest
+{
+  @Test
+  public void testGenerate_DisjointPools() {
+    PlantedPartitionGenerator generator = new PlantedPartitionGenerator(1L, 3000, 7, 20, 10);
+
+    MembershipMapping membershipMapping = generator.generate();
+
+    assertEquals(3000, membershipMapping.getGroups().size());
+    assertEquals(7 * 20, membershipMapping.getMembers().size());
+    for (Group group : membershipMapping.getGroups()) {
+      int cluster = generator.plantedCluster(generator.groupIndex(group.getName()));
+      assertEquals(10, group.getMembers().size());
+      for (Member member : group.getMembers().keySet()) {
+        // Cluster c owns members 20c to 20c + 19.
+        assertEquals(cluster, memberNumber(member) / 20, group.getName());
+        assertThat(group.getMembers().get(member), allOf(greaterThanOrEqualTo(1F), lessThan(2F)));
+      }
+    }
+  }
+
+  @Test
+  public void testGenerate_SameSeedSameMemberships() {
+    PlantedPartitionGenerator generator =
+        new PlantedPartitionGenerator(5L, 5000, 10, 30, 8, .5F, .1F, 1D, 3, .25F);
+
+    assertEquals(memberships(generator.generate()), memberships(generator.generate()));
+    assertThat(memberships(new PlantedPartitionGenerator(6L, 5000, 10, 30, 8, .5F, .1F, 1D, 3, .25F).generate()),
+        not(memberships(generator.generate())));
+  }
+
+  @Test
+  public void testGenerate_SeparationSharesPools() {
+    PlantedPartitionGenerator generator = new PlantedPartitionGenerator(2L, 2000, 4, 20, 10, .5F, 0F, 0D, 0, 0F);
+
+    MembershipMapping membershipMapping = generator.generate();
+
+    // Pools start 10 members apart on a ring of 40 members.
+    assertEquals(40, membershipMapping.getMembers().size());
+    for (Group group : membershipMapping.getGroups()) {
+      int poolStart = 10 * generator.plantedCluster(generator.groupIndex(group.getName()));
+      for (Member member : group.getMembers().keySet()) {
+        assertThat(Math.floorMod(memberNumber(member) - poolStart, 40), lessThan(20));
+      }
+    }
+  }
+
+  @Test
+  public void testGenerate_SkewAndHubs() {
+    PlantedPartitionGenerator generator = new PlantedPartitionGenerator(3L, 2000, 1, 100, 5, 1F, 0F, 2D, 2, 1F);
+
+    MembershipMapping membershipMapping = generator.generate();
+
+    for (Group group : membershipMapping.getGroups()) {
+      assertTrue(group.getMembers().containsKey(membershipMapping.getMember("hub-0")));
+      assertTrue(group.getMembers().containsKey(membershipMapping.getMember("hub-1")));
+    }
+    Map<Integer, Integer> counts = new HashMap<>();
+    for (Group group : membershipMapping.getGroups()) {
+      for (Member member : group.getMembers().keySet()) {
+        if (member.getName().startsWith("member-")) {
+          counts.merge(memberNumber(member), 1, Integer::sum);
+        }
+      }
+    }
+    // With an exponent of 2 the first member is drawn 4 times as often as the second, so nearly every group has it.
+    assertThat(counts.get(0), greaterThan(1900));
+    assertThat(counts.get(0), greaterThan(counts.get(1)));
+    assertThat(counts.get(1), greaterThan(counts.getOrDefault(50, 0)));
+  }
+
+  @Test
+  public void testGroupIndex() {
+    PlantedPartitionGenerator generator = new PlantedPartitionGenerator(1L, 10, 2, 5, 5);
+
+    assertEquals(9, generator.groupIndex(PlantedPartitionGenerator.groupName(9)));
+    assertEquals(1, generator.plantedCluster(9));
+    assertThrows(IllegalArgumentException.class, () -> generator.groupIndex("group-10"));
+    assertThrows(IllegalArgumentException.class, () -> generator.groupIndex("group-x"));
+    assertThrows(IllegalArgumentException.class, () -> generator.groupIndex("other-1"));
+  }
+
+  @Test
+  public void testConstructor_InvalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> new PlantedPartitionGenerator(1L, 0, 2, 5, 5));
+    assertThrows(IllegalArgumentException.class, () -> new PlantedPartitionGenerator(1L, 10, 2, 5, 6));
+    assertThrows(IllegalArgumentException.class,
+        () -> new PlantedPartitionGenerator(1L, 10, 2, 5, 5, 0F, 0F, 0D, 0, 0F));
+    assertThrows(IllegalArgumentException.class,
+        () -> new PlantedPartitionGenerator(1L, 10, 2, 5, 5, 1F, 1.5F, 0D, 0, 0F));
+    assertThrows(IllegalArgumentException.class,
+        () -> new PlantedPartitionGenerator(1L, 10, 2, 5, 5, 1F, 0F, -1D, 0, 0F));
+    assertThrows(IllegalArgumentException.class,
+        () -> new PlantedPartitionGenerator(1L, 10, 2, 5, 5, 1F, 0F, 0D, 1, 2F));
+  }
+
+  private static int memberNumber(Member member) {
+    return Integer.parseInt(member.getName().substring("member-".length()));
+  }
+
+  /**
+   * <p>The mapping by name, as vector indices depend on thread scheduling.</p>
+   */
+  private static Map<String, Map<String, Float>> memberships(MembershipMapping membershipMapping) {
+    Map<String, Map<String, Float>> result = new HashMap<>();
+    for (Group group : membershipMapping.getGroups()) {
+      Map<String, Float> members = new HashMap<>();
+      for (Entry<Member, Float> entry : group.getMembers().entrySet()) {
+        members.put(entry.getKey().getName(), entry.getValue());
+      }
+      result.put(group.getName(), members);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.Random;
+
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static dariush.griffin.group.membership.clusters.utilities.PerfMeasurements.allocatedBytesPerOperation;
+import static dariush.griffin.group.membership.clusters.utilities.PerfMeasurements.randomMapping;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+@Tag("perf")
+public class ClusterUtilitiesPerfTest
+{
+  private static final int ITERATIONS = 200_000;
+
+  private static volatile float sink;
+
+  @Test
+  public void testCalculateSquaredEuclideanDistance_DoesNotAllocate() {
+    MembershipMapping membershipMapping = randomMapping(new Random(1), 1_000, 50);
+    Group[] groups = membershipMapping.getGroups().toArray(new Group[0]);
+    int[] position = new int[1];
+
+    double bytes = allocatedBytesPerOperation(ITERATIONS, () -> {
+      int i = position[0]++ % (groups.length - 1);
+      sink = ClusterUtilities.calculateSquaredEuclideanDistance(groups[i], groups[i + 1]);
+    });
+
+    // A boxed weight costs 16 bytes, so anything above a byte per call means the distance is allocating again.
+    assertThat(bytes, lessThan(1D));
+  }
+}
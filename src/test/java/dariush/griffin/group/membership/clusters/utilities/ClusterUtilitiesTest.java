@@ -19,6 +19,7 @@
 package dariush.griffin.group.membership.clusters.utilities;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -26,6 +27,7 @@ import java.util.TreeSet;
 import dariush.griffin.group.membership.clusters.model.Cluster;
 import dariush.griffin.group.membership.clusters.model.Group;
 import dariush.griffin.group.membership.clusters.model.Member;
+import dariush.griffin.group.membership.clusters.model.SparseVector;
 import dariush.griffin.group.membership.clusters.model.WeightPair;
 import org.junit.jupiter.api.Test;
 
@@ -161,4 +163,28 @@ public class ClusterUtilitiesTest
     assertEquals(calculateSquaredEuclideanDistance(testGroupZero.getMembers(), testGroupOne.getMembers()),
         calculateSquaredEuclideanDistance(testGroupOne.getMembers(), testGroupZero.getMembers()));
   }
+
+  @Test
+  public void testCalculateSquaredEuclideanDistance_UnorderedVectors() {
+    Group testGroupZero = new Group("test-group-zero");
+    Group testGroupOne = new Group("test-group-one");
+    Map<Member, Float> unorderedZero = new HashMap<>();
+    Map<Member, Float> unorderedOne = new HashMap<>();
+
+    // Enough members that a HashMap iterates them out of vector index order.
+    for (int i = 0; i < 64; i++) {
+      Member member = new Member("test-member-" + i, (i * 37) % 64);
+      testGroupZero.addMember(member, i / 64F);
+      unorderedZero.put(member, i / 64F);
+      if (i % 3 == 0) {
+        testGroupOne.addMember(member, 1F - i / 64F);
+        unorderedOne.put(member, 1F - i / 64F);
+      }
+    }
+
+    float expected = calculateSquaredEuclideanDistance(testGroupZero, testGroupOne);
+    assertEquals(expected, calculateSquaredEuclideanDistance(unorderedZero, unorderedOne), .0001);
+    assertEquals(testGroupZero.getVector(), SparseVector.of(unorderedZero));
+    assertEquals(testGroupOne.getVector(), SparseVector.of(unorderedOne));
+  }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DistanceCacheTest
+{
+  @Test
+  public void testCRUD() {
+    DistanceCache testCache = new DistanceCache(1024);
+
+    assertTrue(Float.isNaN(testCache.get(1, 2)));
+    testCache.put(1, 2, .5F);
+    assertEquals(.5F, testCache.get(1, 2));
+    // Pairs are symmetric.
+    assertEquals(.5F, testCache.get(2, 1));
+    testCache.put(2, 1, .25F);
+    assertEquals(.25F, testCache.get(1, 2));
+    assertEquals(1, testCache.size());
+
+    assertEquals(3, testCache.getHitCount());
+    assertEquals(1, testCache.getMissCount());
+    assertEquals(.75D, testCache.getHitRate(), .0001);
+
+    testCache.clear();
+    assertEquals(0, testCache.size());
+    assertTrue(Float.isNaN(testCache.get(1, 2)));
+  }
+
+  @Test
+  public void testPack() {
+    assertEquals(DistanceCache.pack(3, 7), DistanceCache.pack(7, 3));
+    assertEquals((3L << 32) | 7L, DistanceCache.pack(7, 3));
+  }
+
+  @Test
+  public void testEviction_RespectsMemoryBudget() {
+    long budget = 64 * DistanceCache.BYTES_PER_ENTRY;
+    DistanceCache testCache = new DistanceCache(budget, 1);
+    assertThat(testCache.getTableBytes(), lessThanOrEqualTo(budget));
+
+    for (int i = 0; i < 1000; i++) {
+      testCache.put(i, i + 1, i);
+    }
+
+    assertEquals(testCache.getMaximumSize(), testCache.size());
+    assertThat(testCache.getEvictionCount(), greaterThan(0L));
+    // Every entry that survived eviction must still be found with its own distance.
+    int found = 0;
+    for (int i = 0; i < 1000; i++) {
+      float distance = testCache.get(i, i + 1);
+      if (!Float.isNaN(distance)) {
+        assertEquals((float) i, distance);
+        found++;
+      }
+    }
+    assertEquals(testCache.getMaximumSize(), found);
+  }
+
+  @Test
+  public void testEviction_KeepsReferencedEntries() {
+    DistanceCache testCache = new DistanceCache(16 * DistanceCache.BYTES_PER_ENTRY, 1);
+    long maximumSize = testCache.getMaximumSize();
+    for (int i = 0; i < maximumSize; i++) {
+      testCache.put(0, i + 1, i);
+    }
+    // Reference the first entry so the clock hand passes over it.
+    testCache.get(0, 1);
+    testCache.put(100, 101, 1F);
+
+    assertEquals(0F, testCache.get(0, 1));
+    assertEquals(1, testCache.getEvictionCount());
+  }
+
+  @Test
+  public void testValidation() {
+    assertThrows(IllegalArgumentException.class, () -> new DistanceCache(DistanceCache.BYTES_PER_ENTRY));
+  }
+
+  @Test
+  public void testConcurrentAccess() throws Exception {
+    DistanceCache testCache = new DistanceCache(1 << 16, 4);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        final int offset = thread * 10_000;
+        results.add(executor.submit(() -> {
+          boolean consistent = true;
+          for (int i = 0; i < 10_000; i++) {
+            testCache.put(offset + i, offset + i + 1, offset + i);
+            float distance = testCache.get(offset + i, offset + i + 1);
+            consistent &= Float.isNaN(distance) || distance == offset + i;
+          }
+          return consistent;
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        assertTrue(result.get());
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+    assertThat(testCache.size(), lessThanOrEqualTo(testCache.getMaximumSize()));
+  }
+}
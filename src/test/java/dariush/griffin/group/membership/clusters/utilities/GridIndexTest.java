@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import dariush.griffin.group.membership.clusters.metrics.CosineDistance;
+import dariush.griffin.group.membership.clusters.metrics.ManhattanDistance;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.Member;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GridIndexTest
+{
+  @Test
+  public void testForEachEdge_MatchesAllPairs() {
+    for (int dimensions = 1; dimensions <= GridIndex.MAX_DIMENSIONS; dimensions++) {
+      IndexedGroups indexedGroups = randomGroups(new Random(dimensions), 300, dimensions);
+      SquaredEuclideanDistance metric = new SquaredEuclideanDistance();
+      float threshold = .01F * dimensions;
+
+      GridIndex testIndex = new GridIndex(indexedGroups, metric, threshold);
+      assertEquals(dimensions, testIndex.getDimensions());
+      Set<Long> edges = new HashSet<>();
+      testIndex.forEachEdge((first, second, distance) -> {
+        assertTrue(distance < threshold);
+        // Each edge is reported exactly once.
+        assertTrue(edges.add(DistanceCache.pack(first, second)));
+      });
+
+      Set<Long> expected = new HashSet<>();
+      for (int i = 0; i < indexedGroups.size(); i++) {
+        for (int j = i + 1; j < indexedGroups.size(); j++) {
+          if (metric.distance(indexedGroups.getGroup(i), indexedGroups.getGroup(j)) < threshold) {
+            expected.add(DistanceCache.pack(i, j));
+          }
+        }
+      }
+      assertEquals(expected, edges);
+    }
+  }
+
+  @Test
+  public void testIsApplicable() {
+    IndexedGroups lowDimensional = randomGroups(new Random(1), 10, 2);
+    IndexedGroups highDimensional = randomGroups(new Random(1), 10, GridIndex.MAX_DIMENSIONS + 1);
+
+    assertTrue(GridIndex.isApplicable(lowDimensional, new SquaredEuclideanDistance(), .1F));
+    assertTrue(GridIndex.isApplicable(lowDimensional, new ManhattanDistance(), .1F));
+    assertFalse(GridIndex.isApplicable(lowDimensional, new CosineDistance(), .1F));
+    assertFalse(GridIndex.isApplicable(lowDimensional, new SquaredEuclideanDistance(), 0F));
+    assertFalse(GridIndex.isApplicable(highDimensional, new SquaredEuclideanDistance(), .1F));
+    assertThrows(IllegalArgumentException.class,
+        () -> new GridIndex(highDimensional, new SquaredEuclideanDistance(), .1F));
+  }
+
+  private static IndexedGroups randomGroups(Random random, int count, int dimensions) {
+    List<Member> members = new ArrayList<>();
+    for (int d = 0; d < dimensions; d++) {
+      members.add(new Member("test-member-" + d, d * 3));
+    }
+    List<Group> groups = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Group group = new Group("test-group-" + i);
+      for (Member member : members) {
+        // Leave some coordinates out so missing members are treated as zero.
+        if (random.nextInt(10) > 0) {
+          group.addMember(member, random.nextFloat() - .25F);
+        }
+      }
+      groups.add(group);
+    }
+    return new IndexedGroups(groups);
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LatencyHistogramTest
+{
+  @Test
+  public void testGetPercentileNanos() {
+    LatencyHistogram testHistogram = new LatencyHistogram();
+    assertEquals(0L, testHistogram.getPercentileNanos(50D));
+
+    for (long nanos = 1; nanos <= 100_000; nanos++) {
+      testHistogram.record(nanos * 10);
+    }
+    assertEquals(100_000, testHistogram.getCount());
+    assertEquals(500_005D, testHistogram.getMeanNanos(), 1e-6);
+    // Percentiles are reported within a sixteenth of the true value.
+    assertThat(testHistogram.getPercentileNanos(50D), allOf(greaterThanOrEqualTo(500_000L), lessThanOrEqualTo(
+        500_000L * 17 / 16)));
+    assertThat(testHistogram.getPercentileNanos(99D), allOf(greaterThanOrEqualTo(990_000L), lessThanOrEqualTo(
+        990_000L * 17 / 16)));
+    assertEquals(10L, testHistogram.getPercentileNanos(0D));
+
+    testHistogram.reset();
+    assertEquals(0, testHistogram.getCount());
+    assertThrows(IllegalArgumentException.class, () -> testHistogram.getPercentileNanos(101D));
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MappedSegmentsTest
+{
+  @TempDir
+  Path directory;
+
+  @Test
+  public void testPutGet_AcrossSegments() {
+    Path file = directory.resolve("values");
+    try (MappedSegments segments = MappedSegments.create(file, 1000 * Long.BYTES, 64)) {
+      assertEquals(125, segments.getSegmentCount());
+      for (int i = 0; i < 1000; i++) {
+        segments.putLong((long) i * Long.BYTES, i * 31L);
+      }
+      for (int i = 0; i < 1000; i++) {
+        assertEquals(i * 31L, segments.getLong((long) i * Long.BYTES));
+      }
+      segments.putInt(68, 7);
+      segments.putFloat(124, 0.5F);
+    }
+
+    try (MappedSegments segments = MappedSegments.open(file, 128)) {
+      assertEquals(1000 * Long.BYTES, segments.size());
+      assertEquals(63, segments.getSegmentCount());
+      assertEquals(7, segments.getInt(68));
+      assertEquals(0.5F, segments.getFloat(124));
+      assertEquals(999 * 31L, segments.getLong(999 * Long.BYTES));
+    }
+  }
+
+  @Test
+  public void testCreate_ZeroSize() {
+    try (MappedSegments segments = MappedSegments.create(directory.resolve("empty"), 0, 64)) {
+      assertEquals(0, segments.getSegmentCount());
+    }
+  }
+
+  @Test
+  public void testCreate_InvalidSegmentSize() {
+    assertThrows(IllegalArgumentException.class, () -> MappedSegments.create(directory.resolve("values"), 64, 48));
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.function.IntToLongFunction;
+
+import com.sun.management.ThreadMXBean;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * <p>Measurements used by the {@code perf} tagged tests, which guard allocation and complexity budgets. Run with
+ * {@code mvn test -Pperf}.</p>
+ *
+ * @author Dariush Griffin
+ */
+public class PerfMeasurements
+{
+  /**
+   * The number of times each size is timed, the fastest run is kept so a pause does not skew the fit.
+   */
+  private static final int TIMING_RUNS = 3;
+
+  /**
+   * <p>Measures the bytes the current thread allocates per operation. The operation is run once for every
+   * iteration before measuring, so lazily built state and JIT compilation are not counted.</p>
+   *
+   * @param iterations The number of times the operation is run.
+   * @param operation  The operation to measure.
+   * @return The average number of bytes allocated by a single run of the operation.
+   */
+  public static double allocatedBytesPerOperation(int iterations, Runnable operation) {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean,
+        "Thread allocation counters are not available.");
+    ThreadMXBean allocations = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(allocations.isThreadAllocatedMemorySupported(), "Thread allocation counters are not supported.");
+    allocations.setThreadAllocatedMemoryEnabled(true);
+
+    for (int i = 0; i < iterations; i++) {
+      operation.run();
+    }
+
+    long threadId = Thread.currentThread().getId();
+    long before = allocations.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < iterations; i++) {
+      operation.run();
+    }
+    long after = allocations.getThreadAllocatedBytes(threadId);
+    return ((double) (after - before)) / iterations;
+  }
+
+  /**
+   * <p>Times a workload at each size and fits a line to log(time) against log(size) by least squares. The slope is
+   * the empirical exponent k of time ~ size^k, roughly 1 for linear or n log n work and 2 for quadratic work.</p>
+   *
+   * @param sizes    The input sizes, each larger than the last.
+   * @param workload Runs the workload for a size and returns the nanoseconds it took.
+   * @return The fitted scaling exponent.
+   */
+  public static double scalingExponent(int[] sizes, IntToLongFunction workload) {
+    // The smallest size doubles as a warm up.
+    workload.applyAsLong(sizes[0]);
+
+    double[] x = new double[sizes.length];
+    double[] y = new double[sizes.length];
+    for (int i = 0; i < sizes.length; i++) {
+      long fastest = Long.MAX_VALUE;
+      for (int run = 0; run < TIMING_RUNS; run++) {
+        fastest = Math.min(fastest, workload.applyAsLong(sizes[i]));
+      }
+      x[i] = Math.log(sizes[i]);
+      y[i] = Math.log(Math.max(fastest, 1L));
+    }
+    return slope(x, y);
+  }
+
+  /**
+   * <p>Creates a mapping where every {@link Group} has one to five random members. Scaling the member count with the
+   * group count keeps the number of groups sharing a member, and so the work per group, constant as the mapping
+   * grows.</p>
+   *
+   * @param random      The source of memberships.
+   * @param groupCount  The number of groups.
+   * @param memberCount The number of distinct members to draw from.
+   * @return The mapping.
+   */
+  public static MembershipMapping randomMapping(Random random, int groupCount, int memberCount) {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    for (int i = 0; i < groupCount; i++) {
+      int size = 1 + random.nextInt(5);
+      for (int m = 0; m < size; m++) {
+        membershipMapping.addMemberToGroup("member-" + random.nextInt(memberCount), "group-" + i,
+            1 + random.nextFloat());
+      }
+    }
+    return membershipMapping;
+  }
+
+  static double slope(double[] x, double[] y) {
+    double meanX = 0;
+    double meanY = 0;
+    for (int i = 0; i < x.length; i++) {
+      meanX += x[i] / x.length;
+      meanY += y[i] / y.length;
+    }
+    double covariance = 0;
+    double variance = 0;
+    for (int i = 0; i < x.length; i++) {
+      covariance += (x[i] - meanX) * (y[i] - meanY);
+      variance += (x[i] - meanX) * (x[i] - meanX);
+    }
+    return covariance / variance;
+  }
+}
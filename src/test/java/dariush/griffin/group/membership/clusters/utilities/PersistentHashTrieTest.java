@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class PersistentHashTrieTest
+{
+  @Test
+  public void testPut() {
+    Random random = new Random(1);
+    Map<String, Integer> expected = new HashMap<>();
+    PersistentHashTrie<Integer> testTrie = PersistentHashTrie.empty();
+    for (int i = 0; i < 20_000; i++) {
+      String key = "test-key-" + random.nextInt(5_000);
+      expected.put(key, i);
+      testTrie = testTrie.put(key, i);
+    }
+
+    assertEquals(expected.size(), testTrie.size());
+    for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+      assertEquals(entry.getValue(), testTrie.get(entry.getKey()));
+    }
+    assertNull(testTrie.get("test-key-missing"));
+
+    Map<String, Integer> visited = new HashMap<>();
+    testTrie.forEach(visited::put);
+    assertEquals(expected, visited);
+  }
+
+  @Test
+  public void testPut_Persistent() {
+    PersistentHashTrie<String> first = PersistentHashTrie.<String>empty().put("test-key", "first");
+    PersistentHashTrie<String> second = first.put("test-key", "second").put("test-key-other", "other");
+
+    assertEquals("first", first.get("test-key"));
+    assertNull(first.get("test-key-other"));
+    assertEquals(1, first.size());
+    assertEquals("second", second.get("test-key"));
+    assertEquals(2, second.size());
+  }
+
+  @Test
+  public void testPut_HashCollisions() {
+    // "Aa" and "BB" have the same hash code, as do any strings built from them.
+    PersistentHashTrie<Integer> testTrie = PersistentHashTrie.empty();
+    String[] keys = {"AaAa", "AaBB", "BBAa", "BBBB"};
+    for (int i = 0; i < keys.length; i++) {
+      testTrie = testTrie.put(keys[i], i);
+    }
+    testTrie = testTrie.put("AaBB", 10);
+
+    assertEquals(4, testTrie.size());
+    assertEquals(0, testTrie.get("AaAa"));
+    assertEquals(10, testTrie.get("AaBB"));
+    assertEquals(3, testTrie.get("BBBB"));
+    assertNull(testTrie.get("BBAaAa"));
+  }
+
+  @Test
+  public void testForEachDifference() {
+    PersistentHashTrie<Integer> previous = PersistentHashTrie.empty();
+    for (int i = 0; i < 5_000; i++) {
+      previous = previous.put("test-key-" + i, i);
+    }
+    // "AaAa" and "BBBB" collide, so collision nodes are compared too.
+    previous = previous.put("AaAa", -1);
+    PersistentHashTrie<Integer> testTrie = previous.put("test-key-7", 70).put("test-key-new", 1).put("BBBB", -2);
+    testTrie = testTrie.put("test-key-9", testTrie.get("test-key-9"));
+
+    Map<String, Integer> differences = new HashMap<>();
+    testTrie.forEachDifference(previous, differences::put);
+    Map<String, Integer> expected = new HashMap<>();
+    expected.put("test-key-7", 70);
+    expected.put("test-key-new", 1);
+    expected.put("BBBB", -2);
+    assertEquals(expected, differences);
+
+    differences.clear();
+    testTrie.forEachDifference(testTrie, differences::put);
+    assertEquals(0, differences.size());
+  }
+}
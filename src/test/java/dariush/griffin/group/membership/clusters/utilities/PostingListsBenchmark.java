@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import dariush.griffin.group.membership.clusters.synthetic.PlantedPartitionGenerator;
+import org.junit.jupiter.api.Test;
+
+/**
+ * <p>Compares building a {@link GroupCache} one group at a time with building {@link PostingLists} in parallel, on
+ * mappings with and without hub members. Run with {@code mvn verify -Pbenchmarks}.</p>
+ */
+public class PostingListsBenchmark
+{
+  private static final int GROUP_COUNT = 400_000;
+
+  private static volatile long sink;
+
+  @Test
+  public void benchmarkBuild() {
+    for (int hubCount : new int[] {0, 4}) {
+      MembershipMapping membershipMapping = new PlantedPartitionGenerator(1L, GROUP_COUNT, GROUP_COUNT / 50, 20, 10,
+          1F, 0F, 1D, hubCount, .05F).generate();
+      IndexedGroups indexedGroups = new IndexedGroups(membershipMapping.getGroups());
+      for (int id = 0; id < indexedGroups.size(); id++) {
+        indexedGroups.getGroup(id).getVector();
+      }
+
+      for (int run = 0; run < 3; run++) {
+        long start = System.nanoTime();
+        GroupCache groupCache = new GroupCache();
+        groupCache.addGroups(membershipMapping.getGroups());
+        long groupCacheNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        PostingLists postingLists = PostingLists.build(indexedGroups);
+        long postingListsNanos = System.nanoTime() - start;
+        sink = postingLists.getPostingCount();
+
+        System.out.printf("%d hubs: group cache %6d ms, posting lists %6d ms, %d postings, %d processors%n",
+            hubCount, groupCacheNanos / 1_000_000, postingListsNanos / 1_000_000, postingLists.getPostingCount(),
+            Runtime.getRuntime().availableProcessors());
+      }
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static dariush.griffin.group.membership.clusters.utilities.PerfMeasurements.randomMapping;
+import static dariush.griffin.group.membership.clusters.utilities.PerfMeasurements.scalingExponent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+@Tag("perf")
+public class PostingListsPerfTest
+{
+  /**
+   * Building the lists is linear apart from sorting them, quadratic work would fit an exponent close to 2.
+   */
+  private static final double EXPONENT_BUDGET = 1.4;
+
+  private static volatile long sink;
+
+  @Test
+  public void testBuild_ScalesLinearly() {
+    Map<Integer, IndexedGroups> indices = new HashMap<>();
+    double exponent = scalingExponent(new int[] {25_000, 50_000, 100_000, 200_000}, groupCount -> {
+      IndexedGroups indexedGroups = indices.computeIfAbsent(groupCount, size -> {
+        MembershipMapping membershipMapping = randomMapping(new Random(size), size, size / 2);
+        return new IndexedGroups(membershipMapping.getGroups());
+      });
+
+      long start = System.nanoTime();
+      PostingLists postingLists = PostingLists.build(indexedGroups);
+      long similar = 0;
+      for (int id = 0; id < indexedGroups.size(); id++) {
+        similar += postingLists.getSimilarGroupIds(id).length;
+      }
+      long elapsed = System.nanoTime() - start;
+      sink = similar;
+      return elapsed;
+    });
+
+    assertThat(String.format("Scaling exponent %.2f", exponent), exponent, lessThan(EXPONENT_BUDGET));
+  }
+}
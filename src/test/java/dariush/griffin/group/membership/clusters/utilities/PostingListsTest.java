@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.algorithms.CandidateStrategy;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.Cluster;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.Member;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class PostingListsTest
+{
+  @Test
+  public void testGetGroupIds() {
+    Group testGroupZero = new Group("test-group-zero");
+    Group testGroupOne = new Group("test-group-one");
+    Group testGroupTwo = new Group("test-group-two");
+    Member testMemberZero = new Member("test-member-zero", 0);
+    Member testMemberOne = new Member("test-member-one", 1);
+    Member testMemberTwo = new Member("test-member-two", 2);
+    testGroupZero.addMember(testMemberOne, 1F);
+    testGroupOne.addMember(testMemberZero, 1F);
+    testGroupOne.addMember(testMemberOne, 1F);
+    testGroupTwo.addMember(testMemberOne, 1F);
+    IndexedGroups indexedGroups = new IndexedGroups(Arrays.asList(testGroupZero, testGroupOne, testGroupTwo));
+
+    PostingLists postingLists = PostingLists.build(indexedGroups);
+
+    assertSame(indexedGroups, postingLists.getIndexedGroups());
+    assertEquals(2, postingLists.getMemberCount());
+    assertEquals(4, postingLists.getPostingCount());
+    assertArrayEquals(new int[] {1}, postingLists.getGroupIds(testMemberZero));
+    assertArrayEquals(new int[] {0, 1, 2}, postingLists.getGroupIds(testMemberOne));
+    assertArrayEquals(new int[0], postingLists.getGroupIds(testMemberTwo));
+    assertArrayEquals(new int[] {1, 2}, postingLists.getSimilarGroupIds(0));
+    assertArrayEquals(new int[] {0, 2}, postingLists.getSimilarGroupIds(testGroupOne));
+  }
+
+  @Test
+  public void testGetSimilarGroupIds_MatchesGroupCache() {
+    MembershipMapping membershipMapping = SparseProductEdgesTest.createMapping(new Random(7), 20_000, 2_000);
+    IndexedGroups indexedGroups = new IndexedGroups(membershipMapping.getGroups());
+    GroupCache groupCache = new GroupCache();
+    groupCache.addGroups(membershipMapping.getGroups());
+
+    PostingLists postingLists = PostingLists.build(indexedGroups);
+
+    for (int id = 0; id < indexedGroups.size(); id++) {
+      Group group = indexedGroups.getGroup(id);
+      int[] expected = groupCache.getSimilarGroups(group).stream().mapToInt(indexedGroups::getId).sorted().toArray();
+      assertArrayEquals(expected, postingLists.getSimilarGroupIds(id));
+      assertArrayEquals(expected, postingLists.getSimilarGroupIds(group));
+    }
+  }
+
+  @Test
+  public void testGetSimilarGroupIds_NotIndexedGroup() {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    membershipMapping.addMemberToGroup("test-member-zero", "test-group-zero", 1F);
+    membershipMapping.addMemberToGroup("test-member-one", "test-group-one", 1F);
+    membershipMapping.addMemberToGroup("test-member-zero", "test-group-two", 1F);
+    membershipMapping.addMemberToGroup("test-member-one", "test-group-two", 1F);
+    Group testGroupTwo = membershipMapping.getGroup("test-group-two");
+    IndexedGroups indexedGroups = new IndexedGroups(Arrays.asList(membershipMapping.getGroup("test-group-zero"),
+        membershipMapping.getGroup("test-group-one")));
+
+    PostingLists postingLists = PostingLists.build(indexedGroups);
+
+    assertArrayEquals(new int[] {0, 1}, postingLists.getSimilarGroupIds(testGroupTwo));
+  }
+
+  @Test
+  public void testShared_AcrossThreadsAndAlgorithms() throws Exception {
+    MembershipMapping membershipMapping = SparseProductEdgesTest.createMapping(new Random(11), 5_000, 2_000);
+    PostingLists postingLists = PostingLists.build(new IndexedGroups(membershipMapping.getGroups()));
+
+    for (CandidateStrategy strategy : new CandidateStrategy[] {CandidateStrategy.SPARSE_PRODUCT,
+        CandidateStrategy.SHARED_MEMBERS}) {
+      for (float threshold : new float[] {.05F, .2F}) {
+        Set<Cluster> expected = new AgglomerativeClusterAlgorithm(membershipMapping, new SquaredEuclideanDistance(),
+            threshold, null, strategy).cluster();
+        CompletableFuture<Set<Cluster>> first = CompletableFuture.supplyAsync(() -> new AgglomerativeClusterAlgorithm(
+            postingLists, new SquaredEuclideanDistance(), threshold, null, strategy).cluster());
+        CompletableFuture<Set<Cluster>> second = CompletableFuture.supplyAsync(() -> new AgglomerativeClusterAlgorithm(
+            postingLists, new SquaredEuclideanDistance(), threshold, null, strategy).cluster());
+
+        assertEquals(expected, first.get(), strategy.toString());
+        assertEquals(expected, second.get(), strategy.toString());
+      }
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import dariush.griffin.group.membership.clusters.metrics.SparseKernels;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.Member;
+import org.junit.jupiter.api.Test;
+
+/**
+ * <p>Compares scanning every pair of groups for distances under a threshold with the original vectors against
+ * {@link QuantizedVectors#isWithin(int, int, float, java.util.function.IntFunction)}. Run with
+ * {@code mvn verify -Pbenchmarks}.</p>
+ */
+public class QuantizedVectorsBenchmark
+{
+  private static final int GROUP_COUNT = 3000;
+
+  private static final int MEMBER_COUNT = 64;
+
+  private static final float THRESHOLD = 1F;
+
+  private static volatile long sink;
+
+  @Test
+  public void benchmarkScan() {
+    Random random = new Random(8);
+    List<Member> members = new ArrayList<>();
+    for (int m = 0; m < MEMBER_COUNT; m++) {
+      members.add(new Member("member-" + m, m));
+    }
+    List<Group> groups = new ArrayList<>();
+    for (int i = 0; i < GROUP_COUNT; i++) {
+      Group group = new Group("group-" + i);
+      // Groups range from a few to most members, so their norms differ.
+      float density = .05F + random.nextFloat() * .9F;
+      for (Member member : members) {
+        if (random.nextFloat() < density) {
+          group.addMember(member, random.nextFloat());
+        }
+      }
+      groups.add(group);
+    }
+    IndexedGroups indexedGroups = new IndexedGroups(groups);
+
+    long sparseBytes = 0;
+    for (Group group : groups) {
+      sparseBytes += (long) group.getVector().size() * (Integer.BYTES + Float.BYTES);
+    }
+    System.out.printf("SparseVector weights: %d bytes%n", sparseBytes);
+    for (int i = 0; i < 3; i++) {
+      timeExact(indexedGroups);
+    }
+    System.out.printf("exact:        %d ms%n", timeExact(indexedGroups));
+    for (int bits : new int[] {8, 16}) {
+      for (QuantizedVectors.Scale scale : QuantizedVectors.Scale.values()) {
+        QuantizedVectors quantizedVectors = new QuantizedVectors(indexedGroups, bits, scale);
+        for (int i = 0; i < 3; i++) {
+          timeQuantized(quantizedVectors, indexedGroups);
+        }
+        long millis = timeQuantized(quantizedVectors, indexedGroups);
+        System.out.printf("%2d bit %-9s %d ms, %d bytes, %d verified%n", bits, scale, millis,
+            quantizedVectors.getMemoryBytes(), quantizedVectors.getVerificationCount());
+      }
+    }
+  }
+
+  private static long timeExact(IndexedGroups indexedGroups) {
+    long start = System.nanoTime();
+    long within = 0;
+    for (int i = 0; i < indexedGroups.size(); i++) {
+      for (int j = i + 1; j < indexedGroups.size(); j++) {
+        if (SparseKernels.squaredEuclidean(indexedGroups.getGroup(i).getVector(),
+            indexedGroups.getGroup(j).getVector()) < THRESHOLD) {
+          within++;
+        }
+      }
+    }
+    sink = within;
+    return (System.nanoTime() - start) / 1_000_000;
+  }
+
+  private static long timeQuantized(QuantizedVectors quantizedVectors, IndexedGroups indexedGroups) {
+    long start = System.nanoTime();
+    long within = 0;
+    for (int i = 0; i < quantizedVectors.size(); i++) {
+      for (int j = i + 1; j < quantizedVectors.size(); j++) {
+        if (quantizedVectors.isWithin(i, j, THRESHOLD, id -> indexedGroups.getGroup(id).getVector())) {
+          within++;
+        }
+      }
+    }
+    sink = within;
+    return (System.nanoTime() - start) / 1_000_000;
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import dariush.griffin.group.membership.clusters.metrics.SparseKernels;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.Member;
+import dariush.griffin.group.membership.clusters.model.SparseVector;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class QuantizedVectorsTest
+{
+  @Test
+  public void testSquaredDistance_WithinErrorBound() {
+    IndexedGroups indexedGroups = randomGroups(new Random(2), 200, 30);
+    for (int bits : new int[] {8, 16}) {
+      for (QuantizedVectors.Scale scale : QuantizedVectors.Scale.values()) {
+        QuantizedVectors testVectors = new QuantizedVectors(indexedGroups, bits, scale);
+        for (int i = 0; i < indexedGroups.size(); i++) {
+          for (int j = i + 1; j < indexedGroups.size(); j++) {
+            double exact = Math.sqrt(SparseKernels.squaredEuclidean(indexedGroups.getGroup(i).getVector(),
+                indexedGroups.getGroup(j).getVector()));
+            double quantized = Math.sqrt(testVectors.squaredDistance(i, j));
+            assertThat(Math.abs(exact - quantized), lessThanOrEqualTo(testVectors.getErrorBound(i, j) + 1e-5));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testIsWithin() {
+    IndexedGroups indexedGroups = randomGroups(new Random(4), 300, 20);
+    QuantizedVectors testVectors = new QuantizedVectors(indexedGroups, 8, QuantizedVectors.Scale.GLOBAL);
+    float threshold = 2F;
+
+    int within = 0;
+    for (int i = 0; i < indexedGroups.size(); i++) {
+      for (int j = i + 1; j < indexedGroups.size(); j++) {
+        boolean expected = SparseKernels.squaredEuclidean(indexedGroups.getGroup(i).getVector(),
+            indexedGroups.getGroup(j).getVector()) < threshold;
+        assertEquals(expected,
+            testVectors.isWithin(i, j, threshold, id -> indexedGroups.getGroup(id).getVector()));
+        within += expected ? 1 : 0;
+      }
+    }
+    assertThat(within, greaterThan(0));
+    // Only pairs near the threshold need the original vectors.
+    assertThat(testVectors.getVerificationCount(), greaterThan(0L));
+    assertThat(testVectors.getVerificationCount(), lessThan(300L * 299 / 2 / 10));
+  }
+
+  @Test
+  public void testIsBeyond() {
+    IndexedGroups indexedGroups = randomGroups(new Random(5), 300, 20);
+    QuantizedVectors testVectors = new QuantizedVectors(indexedGroups, 8, QuantizedVectors.Scale.PER_GROUP);
+    IndexedGroups queries = randomGroups(new Random(7), 20, 20);
+    float threshold = 2F;
+
+    int beyond = 0;
+    for (int q = 0; q < queries.size(); q++) {
+      SparseVector query = queries.getGroup(q).getVector();
+      for (int id = 0; id < indexedGroups.size(); id++) {
+        float distance = SparseKernels.squaredEuclidean(query, indexedGroups.getGroup(id).getVector());
+        double radius = testVectors.getErrorRadius(id);
+        assertEquals(distance, testVectors.squaredDistance(query, id),
+            radius * (2 * Math.sqrt(distance) + radius) + 1E-4);
+        if (testVectors.isBeyond(query, id, threshold)) {
+          assertThat(distance, greaterThanOrEqualTo(threshold));
+          beyond++;
+        }
+      }
+    }
+    // Most far groups are skipped from the codes alone.
+    assertThat(beyond, greaterThan(queries.size() * indexedGroups.size() / 2));
+  }
+
+  @Test
+  public void testDequantize() {
+    Group group = new Group("test-group");
+    group.addMember(new Member("test-member-zero", 0), -1F);
+    group.addMember(new Member("test-member-one", 3), 0F);
+    group.addMember(new Member("test-member-two", 5), 2F);
+    List<Group> groups = new ArrayList<>();
+    groups.add(group);
+    QuantizedVectors testVectors = new QuantizedVectors(new IndexedGroups(groups), 16, QuantizedVectors.Scale.GLOBAL);
+
+    SparseVector dequantized = testVectors.dequantize(0);
+    assertArrayEquals(new int[] {0, 3, 5}, dequantized.getIndices());
+    assertArrayEquals(new float[] {-1F, 0F, 2F}, dequantized.getWeights(), testVectors.getScale(0) / 2);
+    // Zero is always stored exactly.
+    assertEquals(0F, dequantized.getWeights()[1]);
+    assertEquals(16, testVectors.getBits());
+    assertThrows(IllegalArgumentException.class,
+        () -> new QuantizedVectors(new IndexedGroups(groups), 12, QuantizedVectors.Scale.GLOBAL));
+  }
+
+  @Test
+  public void testGetMemoryBytes() {
+    IndexedGroups indexedGroups = randomGroups(new Random(6), 100, 200);
+    long sparseBytes = 0;
+    for (int id = 0; id < indexedGroups.size(); id++) {
+      sparseBytes += (long) indexedGroups.getGroup(id).getVector().size() * (Integer.BYTES + Float.BYTES);
+    }
+    QuantizedVectors testVectors = new QuantizedVectors(indexedGroups, 8, QuantizedVectors.Scale.PER_GROUP);
+    assertThat(testVectors.getMemoryBytes(), lessThan(sparseBytes * 3 / 4));
+  }
+
+  private static IndexedGroups randomGroups(Random random, int count, int memberCount) {
+    List<Member> members = new ArrayList<>();
+    for (int m = 0; m < memberCount; m++) {
+      members.add(new Member("test-member-" + m, m));
+    }
+    List<Group> groups = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Group group = new Group("test-group-" + i);
+      for (Member member : members) {
+        if (random.nextInt(3) == 0) {
+          group.addMember(member, random.nextFloat() * 2F - .5F);
+        }
+      }
+      groups.add(group);
+    }
+    return new IndexedGroups(groups);
+  }
+}
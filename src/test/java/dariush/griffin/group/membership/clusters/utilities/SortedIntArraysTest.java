@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+import static dariush.griffin.group.membership.clusters.utilities.SortedIntArrays.contains;
+import static dariush.griffin.group.membership.clusters.utilities.SortedIntArrays.difference;
+import static dariush.griffin.group.membership.clusters.utilities.SortedIntArrays.sortedSet;
+import static dariush.griffin.group.membership.clusters.utilities.SortedIntArrays.union;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SortedIntArraysTest
+{
+  @Test
+  public void testSortedSet() {
+    assertArrayEquals(new int[]{1, 3, 5}, sortedSet(new int[]{5, 1, 3, 1, 5, 9}, 5));
+    assertArrayEquals(new int[0], sortedSet(new int[]{2}, 0));
+  }
+
+  @Test
+  public void testContains() {
+    assertTrue(contains(new int[]{1, 3, 5}, 3));
+    assertFalse(contains(new int[]{1, 3, 5}, 4));
+  }
+
+  @Test
+  public void testUnion() {
+    assertArrayEquals(new int[]{1, 2, 3, 4, 6}, union(new int[]{1, 3, 6}, new int[]{2, 3, 4}));
+    int[] values = {1, 2};
+    assertSame(values, union(values, new int[0]));
+    // Skewed sizes take the binary search path.
+    int[] large = new int[100];
+    for (int i = 0; i < large.length; i++) {
+      large[i] = i * 2;
+    }
+    int[] result = union(new int[]{-1, 4, 5, 250}, large);
+    assertTrue(contains(result, -1) && contains(result, 4) && contains(result, 5) && contains(result, 250));
+    assertTrue(result.length == 103);
+  }
+
+  @Test
+  public void testDifference() {
+    assertArrayEquals(new int[]{1, 6}, difference(new int[]{1, 3, 6}, new int[]{2, 3, 4}));
+    int[] values = {1, 2};
+    assertSame(values, difference(values, new int[]{3}));
+  }
+
+  @Test
+  public void testOperations_MatchTreeSet() {
+    Random random = new Random(7);
+    for (int trial = 0; trial < 200; trial++) {
+      int[] first = randomSet(random, random.nextInt(200));
+      int[] second = randomSet(random, random.nextInt(8));
+      if (random.nextBoolean()) {
+        int[] swap = first;
+        first = second;
+        second = swap;
+      }
+
+      TreeSet<Integer> expectedUnion = toSet(first);
+      expectedUnion.addAll(toSet(second));
+      assertArrayEquals(toArray(expectedUnion), union(first, second));
+
+      TreeSet<Integer> expectedDifference = toSet(first);
+      expectedDifference.removeAll(toSet(second));
+      assertArrayEquals(toArray(expectedDifference), difference(first, second));
+    }
+  }
+
+  private static int[] randomSet(Random random, int size) {
+    int[] values = new int[size];
+    for (int i = 0; i < size; i++) {
+      values[i] = random.nextInt(300);
+    }
+    return sortedSet(values, size);
+  }
+
+  private static TreeSet<Integer> toSet(int[] values) {
+    TreeSet<Integer> result = new TreeSet<>();
+    for (int value : values) {
+      result.add(value);
+    }
+    return result;
+  }
+
+  private static int[] toArray(TreeSet<Integer> values) {
+    return values.stream().mapToInt(Integer::intValue).toArray();
+  }
+}
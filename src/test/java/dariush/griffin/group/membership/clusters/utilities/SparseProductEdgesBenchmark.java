@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.Random;
+
+import dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.algorithms.CandidateStrategy;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Test;
+
+/**
+ * <p>Compares computing the distance of every pair of groups that share a member one merge at a time, through a
+ * {@link GroupCache}, against a single {@link SparseProductEdges} product. Run with {@code mvn verify -Pbenchmarks}.
+ * </p>
+ */
+public class SparseProductEdgesBenchmark
+{
+  private static final int GROUP_COUNT = 50_000;
+
+  private static final float THRESHOLD = .05F;
+
+  private static volatile long sink;
+
+  @Test
+  public void benchmarkAllPairs() {
+    for (int memberCount : new int[] {20_000, 5_000, 1_000}) {
+      MembershipMapping membershipMapping = SparseProductEdgesTest.createMapping(new Random(memberCount),
+          GROUP_COUNT, memberCount);
+      IndexedGroups indexedGroups = new IndexedGroups(membershipMapping.getGroups());
+      SquaredEuclideanDistance metric = new SquaredEuclideanDistance();
+
+      long start = System.nanoTime();
+      GroupCache groupCache = new GroupCache();
+      groupCache.addGroups(membershipMapping.getGroups());
+      long pairs = 0;
+      long mergeEdges = 0;
+      for (int first = 0; first < indexedGroups.size(); first++) {
+        Group group = indexedGroups.getGroup(first);
+        for (Group similar : groupCache.getSimilarGroups(group)) {
+          if (indexedGroups.getId(similar) > first) {
+            pairs++;
+            if (metric.distance(group, similar) < THRESHOLD) {
+              mergeEdges++;
+            }
+          }
+        }
+      }
+      long mergeNanos = System.nanoTime() - start;
+
+      long[] productEdges = new long[1];
+      start = System.nanoTime();
+      new SparseProductEdges(indexedGroups, THRESHOLD).forEachEdge((first, second, distance) -> productEdges[0]++);
+      long productNanos = System.nanoTime() - start;
+      sink = mergeEdges + productEdges[0];
+
+      System.out.printf("%6d members, %9d candidate pairs: per pair merges %6d ms, sparse product %6d ms;"
+          + " %d / %d edges%n", memberCount, pairs, mergeNanos / 1_000_000, productNanos / 1_000_000, mergeEdges,
+          productEdges[0]);
+      // Round by round merging takes minutes once groups have tens of millions of candidate pairs.
+      String sharedMembers = (pairs < 5_000_000L)
+          ? timeCluster(membershipMapping, CandidateStrategy.SHARED_MEMBERS) + " ms" : "skipped";
+      System.out.printf("%6d members: clustering with SHARED_MEMBERS %s, SPARSE_PRODUCT %d ms%n", memberCount,
+          sharedMembers, timeCluster(membershipMapping, CandidateStrategy.SPARSE_PRODUCT));
+    }
+  }
+
+  private static long timeCluster(MembershipMapping membershipMapping, CandidateStrategy candidateStrategy) {
+    long start = System.nanoTime();
+    sink = new AgglomerativeClusterAlgorithm(membershipMapping, new SquaredEuclideanDistance(), THRESHOLD, null,
+        candidateStrategy).cluster().size();
+    return (System.nanoTime() - start) / 1_000_000;
+  }
+}
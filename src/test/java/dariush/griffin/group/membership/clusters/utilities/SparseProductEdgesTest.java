@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.algorithms.CandidateStrategy;
+import dariush.griffin.group.membership.clusters.metrics.CosineDistance;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SparseProductEdgesTest
+{
+  @Test
+  public void testForEachEdge_MatchesSharedMemberPairs() {
+    MembershipMapping membershipMapping = createMapping(new Random(21), 1500, 200);
+    IndexedGroups indexedGroups = new IndexedGroups(membershipMapping.getGroups());
+    SquaredEuclideanDistance metric = new SquaredEuclideanDistance();
+    float threshold = 1.5F;
+
+    Map<Long, Float> expected = new HashMap<>();
+    GroupCache groupCache = new GroupCache();
+    groupCache.addGroups(membershipMapping.getGroups());
+    for (int first = 0; first < indexedGroups.size(); first++) {
+      Group group = indexedGroups.getGroup(first);
+      for (Group similar : groupCache.getSimilarGroups(group)) {
+        int second = indexedGroups.getId(similar);
+        float distance = metric.distance(group, similar);
+        if (second > first && distance < threshold) {
+          expected.put(DistanceCache.pack(first, second), distance);
+        }
+      }
+    }
+
+    Map<Long, Float> actual = new HashMap<>();
+    SparseProductEdges edges = new SparseProductEdges(indexedGroups, threshold);
+    edges.forEachEdge((first, second, distance) -> {
+      assertTrue(first < second);
+      assertEquals(null, actual.put(DistanceCache.pack(first, second), distance));
+    });
+
+    assertThat(expected.size(), greaterThan(100));
+    assertEquals(expected.keySet(), actual.keySet());
+    for (Map.Entry<Long, Float> entry : expected.entrySet()) {
+      assertNotNull(actual.get(entry.getKey()));
+      assertEquals(entry.getValue(), actual.get(entry.getKey()), 1e-4F);
+    }
+  }
+
+  @Test
+  public void testCluster_SparseProductMatchesSharedMembers() {
+    MembershipMapping membershipMapping = createMapping(new Random(23), 2000, 300);
+
+    AgglomerativeClusterAlgorithm sparseProduct = new AgglomerativeClusterAlgorithm(membershipMapping,
+        new SquaredEuclideanDistance(), 1F, null, CandidateStrategy.SPARSE_PRODUCT);
+    AgglomerativeClusterAlgorithm sharedMembers = new AgglomerativeClusterAlgorithm(membershipMapping, 1F);
+
+    assertEquals(CandidateStrategy.SHARED_MEMBERS, sharedMembers.resolveCandidateStrategy());
+    assertEquals(sharedMembers.cluster(), sparseProduct.cluster());
+  }
+
+  @Test
+  public void testIsApplicable() {
+    assertTrue(SparseProductEdges.isApplicable(new SquaredEuclideanDistance()));
+    assertFalse(SparseProductEdges.isApplicable(new CosineDistance()));
+    assertEquals(CandidateStrategy.SHARED_MEMBERS, new AgglomerativeClusterAlgorithm(
+        createMapping(new Random(1), 50, 20), new CosineDistance(), .1F).resolveCandidateStrategy());
+  }
+
+  /**
+   * <p>Each group has a few members drawn from a pool, so groups share members sparsely.</p>
+   */
+  static MembershipMapping createMapping(Random random, int groupCount, int memberCount) {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    for (int i = 0; i < groupCount; i++) {
+      int size = 1 + random.nextInt(5);
+      for (int m = 0; m < size; m++) {
+        membershipMapping.addMemberToGroup("member-" + random.nextInt(memberCount), "group-" + i,
+            random.nextFloat());
+      }
+    }
+    return membershipMapping;
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.Random;
+
+import dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.algorithms.CandidateStrategy;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Test;
+
+/**
+ * <p>Compares comparing every pair of groups of a dense mapping with one sparse merge per pair against
+ * {@link TiledAllPairsEdges}. Run with {@code mvn verify -Pbenchmarks}.</p>
+ */
+public class TiledAllPairsEdgesBenchmark
+{
+  private static final int GROUP_COUNT = 10_000;
+
+  private static final float THRESHOLD = .05F;
+
+  private static volatile long sink;
+
+  @Test
+  public void benchmarkAllPairs() {
+    for (int memberCount : new int[] {16, 64, 256}) {
+      MembershipMapping membershipMapping = TiledAllPairsEdgesTest.createMapping(new Random(memberCount),
+          GROUP_COUNT, memberCount);
+      IndexedGroups indexedGroups = new IndexedGroups(membershipMapping.getGroups());
+      SquaredEuclideanDistance metric = new SquaredEuclideanDistance();
+      float threshold = THRESHOLD * memberCount;
+
+      long start = System.nanoTime();
+      long mergeEdges = 0;
+      for (int first = 0; first < indexedGroups.size(); first++) {
+        for (int second = first + 1; second < indexedGroups.size(); second++) {
+          if (metric.distance(indexedGroups.getGroup(first), indexedGroups.getGroup(second)) < threshold) {
+            mergeEdges++;
+          }
+        }
+      }
+      long mergeNanos = System.nanoTime() - start;
+
+      long[] tiledEdges = new long[1];
+      start = System.nanoTime();
+      TiledAllPairsEdges tiled = new TiledAllPairsEdges(indexedGroups, threshold);
+      tiled.forEachEdge((first, second, distance) -> tiledEdges[0]++);
+      long tiledNanos = System.nanoTime() - start;
+      sink = mergeEdges + tiledEdges[0];
+
+      System.out.printf("%3d members: per pair merges %6d ms, tiled %6d ms (%d rows per tile, %d KiB off heap);"
+              + " %d / %d edges%n", memberCount, mergeNanos / 1_000_000, tiledNanos / 1_000_000,
+          tiled.getTileRows(), tiled.getTileBytes() / 1024, mergeEdges, tiledEdges[0]);
+      // Uniformly dense groups leave a vantage point tree nothing to prune, so it is not compared.
+      System.out.printf("%3d members: clustering with TILED_ALL_PAIRS %d ms%n", memberCount,
+          timeCluster(membershipMapping, threshold, CandidateStrategy.TILED_ALL_PAIRS));
+    }
+  }
+
+  private static long timeCluster(MembershipMapping membershipMapping, float threshold,
+      CandidateStrategy candidateStrategy)
+  {
+    long start = System.nanoTime();
+    sink = new AgglomerativeClusterAlgorithm(membershipMapping, new SquaredEuclideanDistance(), threshold, null,
+        candidateStrategy).cluster().size();
+    return (System.nanoTime() - start) / 1_000_000;
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.algorithms.CandidateStrategy;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TiledAllPairsEdgesTest
+{
+  @Test
+  public void testForEachEdge_MatchesAllPairs() {
+    // Small tiles, so there are many tile pairs and a partial last tile.
+    assertMatchesAllPairs(createMapping(new Random(29), 203, 12), 0.6F, 1024);
+  }
+
+  @Test
+  public void testForEachEdge_BlocksWideRows() {
+    // More members than a block of columns, so dot products are accumulated over several blocks.
+    assertMatchesAllPairs(createMapping(new Random(31), 60, 1500), 500F, TiledAllPairsEdges.DEFAULT_CACHE_BYTES);
+  }
+
+  @Test
+  public void testCluster_TiledMatchesVantagePointTree() {
+    MembershipMapping membershipMapping = createMapping(new Random(37), 500, 10);
+
+    AgglomerativeClusterAlgorithm tiled = new AgglomerativeClusterAlgorithm(membershipMapping,
+        new SquaredEuclideanDistance(), .08F, null, CandidateStrategy.TILED_ALL_PAIRS);
+    AgglomerativeClusterAlgorithm vantagePointTree = new AgglomerativeClusterAlgorithm(membershipMapping,
+        new SquaredEuclideanDistance(), .08F, null, CandidateStrategy.VANTAGE_POINT_TREE);
+
+    assertThat(tiled.cluster().size(), greaterThan(1));
+    assertEquals(vantagePointTree.cluster(), tiled.cluster());
+  }
+
+  @Test
+  public void testTiles() {
+    MembershipMapping membershipMapping = createMapping(new Random(41), 100, 8);
+    TiledAllPairsEdges edges = new TiledAllPairsEdges(new IndexedGroups(membershipMapping.getGroups()), 1F, 1024);
+
+    // 1024 bytes hold two tiles of 8 floats wide rows of 16 rows, the minimum.
+    assertEquals(16, edges.getTileRows());
+    assertEquals(7, edges.getTileCount());
+    assertEquals(100L * 8 * Float.BYTES, edges.getTileBytes());
+  }
+
+  private static void assertMatchesAllPairs(MembershipMapping membershipMapping, float threshold, int cacheBytes) {
+    IndexedGroups indexedGroups = new IndexedGroups(membershipMapping.getGroups());
+    SquaredEuclideanDistance metric = new SquaredEuclideanDistance();
+    Map<Long, Float> expected = new HashMap<>();
+    for (int first = 0; first < indexedGroups.size(); first++) {
+      for (int second = first + 1; second < indexedGroups.size(); second++) {
+        float distance = metric.distance(indexedGroups.getGroup(first), indexedGroups.getGroup(second));
+        if (distance < threshold) {
+          expected.put(DistanceCache.pack(first, second), distance);
+        }
+      }
+    }
+
+    Map<Long, Float> actual = new HashMap<>();
+    new TiledAllPairsEdges(indexedGroups, threshold, cacheBytes).forEachEdge((first, second, distance) -> {
+      assertTrue(first < second);
+      assertNull(actual.put(DistanceCache.pack(first, second), distance));
+    });
+
+    assertThat(expected.size(), greaterThan(20));
+    assertEquals(expected.keySet(), actual.keySet());
+    for (Map.Entry<Long, Float> entry : expected.entrySet()) {
+      assertNotNull(actual.get(entry.getKey()));
+      assertEquals(entry.getValue(), actual.get(entry.getKey()), 1e-3F * Math.max(1F, entry.getValue()));
+    }
+  }
+
+  /**
+   * <p>Dense groups, each with a weight for most members.</p>
+   */
+  static MembershipMapping createMapping(Random random, int groupCount, int memberCount) {
+    MembershipMapping membershipMapping = new MembershipMapping();
+    for (int i = 0; i < groupCount; i++) {
+      for (int m = 0; m < memberCount; m++) {
+        if (random.nextInt(4) != 0) {
+          membershipMapping.addMemberToGroup("member-" + m, "group-" + i, random.nextFloat() * .5F);
+        }
+      }
+    }
+    return membershipMapping;
+  }
+}
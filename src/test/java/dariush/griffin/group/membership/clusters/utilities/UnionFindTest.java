@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UnionFindTest
+{
+  @Test
+  public void testUnion() {
+    UnionFind testUnionFind = new UnionFind(5);
+    assertEquals(5, testUnionFind.getComponentCount());
+
+    assertTrue(testUnionFind.union(0, 1));
+    assertTrue(testUnionFind.union(3, 4));
+    assertTrue(testUnionFind.union(1, 4));
+    assertFalse(testUnionFind.union(0, 3));
+
+    assertTrue(testUnionFind.connected(0, 3));
+    assertFalse(testUnionFind.connected(0, 2));
+    assertEquals(2, testUnionFind.getComponentCount());
+    assertEquals(5, testUnionFind.size());
+  }
+
+  @Test
+  public void testCopy() {
+    UnionFind testUnionFind = new UnionFind(4);
+    testUnionFind.union(0, 1);
+
+    UnionFind copy = new UnionFind(testUnionFind);
+    copy.union(2, 3);
+
+    assertEquals(3, testUnionFind.getComponentCount());
+    assertFalse(testUnionFind.connected(2, 3));
+    assertEquals(2, copy.getComponentCount());
+    assertTrue(copy.connected(0, 1));
+    assertTrue(copy.connected(2, 3));
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.Random;
+
+import dariush.griffin.group.membership.clusters.algorithms.AgglomerativeClusterAlgorithm;
+import dariush.griffin.group.membership.clusters.algorithms.CandidateStrategy;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.MembershipMapping;
+import org.junit.jupiter.api.Test;
+
+/**
+ * <p>Compares finding candidates through a {@link GroupCache} against range queries on a {@link VantagePointTree},
+ * for mappings with tens to hundreds of members where most groups share a member. Run with
+ * {@code mvn verify -Pbenchmarks}.</p>
+ */
+public class VantagePointTreeBenchmark
+{
+  private static final int GROUP_COUNT = 20_000;
+
+  private static final int QUERY_COUNT = 500;
+
+  private static final float THRESHOLD = .5F;
+
+  private static volatile long sink;
+
+  @Test
+  public void benchmarkRangeQueries() {
+    for (int memberCount : new int[] {16, 64, 256}) {
+      MembershipMapping membershipMapping = createMapping(new Random(memberCount), memberCount);
+      IndexedGroups indexedGroups = new IndexedGroups(membershipMapping.getGroups());
+      SquaredEuclideanDistance metric = new SquaredEuclideanDistance();
+
+      long start = System.nanoTime();
+      GroupCache groupCache = new GroupCache();
+      groupCache.addGroups(membershipMapping.getGroups());
+      long groupCacheBuildNanos = System.nanoTime() - start;
+      start = System.nanoTime();
+      VantagePointTree tree = new VantagePointTree(indexedGroups, metric);
+      long treeBuildNanos = System.nanoTime() - start;
+
+      // Both answer "every group within the threshold", the cache by checking every group that shares a member.
+      long groupCacheResults = 0;
+      start = System.nanoTime();
+      for (int id = 0; id < QUERY_COUNT; id++) {
+        Group query = indexedGroups.getGroup(id);
+        for (Group candidate : groupCache.getSimilarGroups(query)) {
+          if (metric.distance(query, candidate) < THRESHOLD) {
+            groupCacheResults++;
+          }
+        }
+      }
+      long groupCacheNanos = System.nanoTime() - start;
+
+      long[] treeResults = new long[1];
+      start = System.nanoTime();
+      for (int id = 0; id < QUERY_COUNT; id++) {
+        tree.forEachWithin(indexedGroups.getGroup(id).getVector(), THRESHOLD, result -> treeResults[0]++);
+      }
+      long treeNanos = System.nanoTime() - start;
+      // The tree also returns the query group itself.
+      sink = groupCacheResults + treeResults[0] - QUERY_COUNT;
+
+      System.out.printf("%3d members: GroupCache build %5d ms, %8.1f us/query; VantagePointTree build %5d ms,"
+              + " %8.1f us/query; %d results%n", memberCount, groupCacheBuildNanos / 1_000_000,
+          groupCacheNanos / 1_000D / QUERY_COUNT, treeBuildNanos / 1_000_000, treeNanos / 1_000D / QUERY_COUNT,
+          groupCacheResults);
+      System.out.printf("%3d members: clustering with VANTAGE_POINT_TREE %d ms%n", memberCount,
+          timeCluster(membershipMapping, CandidateStrategy.VANTAGE_POINT_TREE));
+    }
+  }
+
+  private static long timeCluster(MembershipMapping membershipMapping, CandidateStrategy candidateStrategy) {
+    long start = System.nanoTime();
+    sink = new AgglomerativeClusterAlgorithm(membershipMapping, new SquaredEuclideanDistance(), THRESHOLD, null,
+        candidateStrategy).cluster().size();
+    return (System.nanoTime() - start) / 1_000_000;
+  }
+
+  /**
+   * <p>Groups are drawn around a hundred centres, each centre having weights for a third of the members. Every group
+   * shares members with most other groups, but is only close to the groups of its own centre.</p>
+   */
+  private static MembershipMapping createMapping(Random random, int memberCount) {
+    float[][] centres = new float[100][memberCount];
+    for (float[] centre : centres) {
+      for (int m = 0; m < memberCount; m++) {
+        centre[m] = (random.nextInt(3) == 0) ? random.nextFloat() + .5F : 0F;
+      }
+    }
+    float noise = .2F / (float) Math.sqrt(memberCount / 3F);
+    MembershipMapping membershipMapping = new MembershipMapping();
+    for (int i = 0; i < GROUP_COUNT; i++) {
+      float[] centre = centres[random.nextInt(centres.length)];
+      for (int m = 0; m < memberCount; m++) {
+        if (centre[m] != 0F) {
+          membershipMapping.addMemberToGroup("member-" + m, "group-" + i,
+              centre[m] + (float) random.nextGaussian() * noise);
+        }
+      }
+    }
+    return membershipMapping;
+  }
+}
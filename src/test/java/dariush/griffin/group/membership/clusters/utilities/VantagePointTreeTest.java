@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2023 Dariush Griffin.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the “Software”), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE
+ * OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package dariush.griffin.group.membership.clusters.utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import dariush.griffin.group.membership.clusters.metrics.CosineDistance;
+import dariush.griffin.group.membership.clusters.metrics.DistanceMetric;
+import dariush.griffin.group.membership.clusters.metrics.ManhattanDistance;
+import dariush.griffin.group.membership.clusters.metrics.SquaredEuclideanDistance;
+import dariush.griffin.group.membership.clusters.model.Group;
+import dariush.griffin.group.membership.clusters.model.Member;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VantagePointTreeTest
+{
+  @Test
+  public void testForEachWithin() {
+    IndexedGroups indexedGroups = randomGroups(new Random(7), 3000, 40);
+    SquaredEuclideanDistance metric = new SquaredEuclideanDistance();
+    VantagePointTree testTree = new VantagePointTree(indexedGroups, metric);
+    assertEquals(3000, testTree.size());
+
+    Group query = indexedGroups.getGroup(11);
+    Set<Integer> found = new HashSet<>();
+    testTree.forEachWithin(query.getVector(), 2F, id -> assertTrue(found.add(id)));
+
+    Set<Integer> expected = new HashSet<>();
+    for (int id = 0; id < indexedGroups.size(); id++) {
+      if (metric.distance(query, indexedGroups.getGroup(id)) < 2F) {
+        expected.add(id);
+      }
+    }
+    assertTrue(found.contains(11));
+    assertEquals(expected, found);
+  }
+
+  @Test
+  public void testEdgesWithin_MatchesAllPairs() {
+    IndexedGroups indexedGroups = randomGroups(new Random(3), 600, 30);
+    for (DistanceMetric metric : Arrays.asList(new SquaredEuclideanDistance(), new ManhattanDistance(),
+        new CosineDistance())) {
+      // Pick a threshold that links a small share of the pairs.
+      float threshold = metric.distance(indexedGroups.getGroup(0), indexedGroups.getGroup(1)) * .7F;
+
+      Set<Long> edges = new HashSet<>();
+      new VantagePointTree(indexedGroups, metric).edgesWithin(threshold).forEachEdge((first, second, distance) -> {
+        assertTrue(distance < threshold);
+        assertTrue(edges.add(DistanceCache.pack(first, second)));
+      });
+
+      Set<Long> expected = new HashSet<>();
+      for (int i = 0; i < indexedGroups.size(); i++) {
+        for (int j = i + 1; j < indexedGroups.size(); j++) {
+          if (metric.distance(indexedGroups.getGroup(i), indexedGroups.getGroup(j)) < threshold) {
+            expected.add(DistanceCache.pack(i, j));
+          }
+        }
+      }
+      assertTrue(expected.size() > indexedGroups.size() && expected.size() < 600 * 599 / 4, metric.toString());
+      assertEquals(expected, edges, metric.toString());
+    }
+  }
+
+  @Test
+  public void testVantagePointTree_NotAMetric() {
+    DistanceMetric notAMetric = new SquaredEuclideanDistance()
+    {
+      @Override
+      public Set<dariush.griffin.group.membership.clusters.metrics.PruningBound> getPruningBounds() {
+        return new HashSet<>();
+      }
+    };
+    assertThrows(IllegalArgumentException.class,
+        () -> new VantagePointTree(randomGroups(new Random(1), 10, 5), notAMetric));
+  }
+
+  private static IndexedGroups randomGroups(Random random, int count, int memberCount) {
+    List<Member> members = new ArrayList<>();
+    for (int m = 0; m < memberCount; m++) {
+      members.add(new Member("test-member-" + m, m));
+    }
+    List<Group> groups = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Group group = new Group("test-group-" + i);
+      // Groups share most members, with a few clumps so some pairs are close.
+      int clump = random.nextInt(20);
+      for (Member member : members) {
+        if (random.nextInt(4) > 0) {
+          float centre = ((member.getVectorIndex() * 31 + clump * 17) % 10) / 10F;
+          group.addMember(member, centre + (float) random.nextGaussian() * .1F);
+        }
+      }
+      groups.add(group);
+    }
+    return new IndexedGroups(groups);
+  }
+}